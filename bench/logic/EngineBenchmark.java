@@ -0,0 +1,430 @@
+package logic;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks every stepping engine on the patterns in the Patterns directory
+ * and on random soups of several sizes and densities, so changes to an
+ * engine can be compared by numbers rather than by feel.
+ * <br>
+ * Every engine is given the same cells and stepped with Conway's rule. The
+ * dense engines step a bounded board of the size of the workload, the
+ * others the unbounded plane. Like JMH, each engine and workload is a
+ * trial of its own: the engine is created anew, warmed up for a number of
+ * iterations that are not counted, and then measured for a number of
+ * iterations of a fixed time. For every trial the mean and the standard
+ * deviation over the measured iterations are reported:
+ * <ul>
+ *   <li>gens/s, generations stepped per second,</li>
+ *   <li>cells/s, living cells stepped per second, the population at the
+ *       start of each iteration times the generations stepped in it,</li>
+ *   <li>MB/s and B/gen, bytes allocated per second and per generation by
+ *       every thread, read from com.sun.management.ThreadMXBean, or n/a
+ *       where the JVM does not count them.</li>
+ * </ul>
+ * The benchmark is compiled into the same directory as the sources, with
+ * the same class path, and run from the project directory, i.e.
+ * <pre>
+ *   java -cp out:lib/GIFLib.jar:... logic.EngineBenchmark -e GenerationHash,GenerationTiled -w soup
+ * </pre>
+ * Compile the source root vector too, and add --add-modules
+ * jdk.incubator.vector to both, to benchmark VectorNextGeneration.
+ * The options are:
+ * <pre>
+ *   -e  engines, names separated by commas, all by default
+ *   -w  workloads whose names contain one of the words, all by default
+ *   -p  the directory of the patterns, Patterns by default
+ *   -wi warmup iterations, 3 by default
+ *   -i  measured iterations, 5 by default
+ *   -t  milliseconds of an iteration, 200 by default
+ * </pre>
+ * A new engine is benchmarked by adding it to ENGINES.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class EngineBenchmark{
+
+    //The sides and densities of the random soups.
+    private static final int[] SOUP_SIDES = {64, 256, 1024};
+    private static final double[] SOUP_DENSITIES = {0.15, 0.35, 0.5};
+    //Dead cells around a pattern on the board of the dense engines.
+    private static final int MARGIN = 64;
+
+    /**
+     * Every engine benchmarked.
+     */
+    static final List<Engine> ENGINES = new ArrayList<>();
+
+    static{
+        ENGINES.add(dense("NextGeneration", new NextGeneration()));
+        ENGINES.add(dense("PackedNextGeneration", new PackedNextGeneration()));
+        if(NextGeneration.isVectorAvailable())
+            ENGINES.add(dense("VectorNextGeneration", NextGeneration.create("vector")));
+        ENGINES.add(new Engine("DenseGeneration"){
+            @Override
+            Stepper create(byte[][] cells){
+                DenseGeneration dense = new DenseGeneration();
+                byte[][][] board = {copy(cells)};
+                return new Stepper(){
+                    @Override
+                    void step(){
+                        board[0] = dense.step(board[0], CompiledRule.CONWAY);
+                    }
+
+                    @Override
+                    long population(){
+                        return count(board[0]);
+                    }
+                };
+            }
+        });
+        ENGINES.add(new Engine("MappedGeneration"){
+            @Override
+            Stepper create(byte[][] cells) throws IOException{
+                Path directory = Files.createTempDirectory("gol-bench");
+                MappedGeneration mapped = new MappedGeneration(directory, cells.length, cells[0].length);
+                mapped.load(cells, 0, 0);
+                return new Stepper(){
+                    @Override
+                    void step(){
+                        mapped.step(CompiledRule.CONWAY);
+                    }
+
+                    @Override
+                    long population(){
+                        return mapped.getPopulation();
+                    }
+
+                    @Override
+                    void close() throws IOException{
+                        mapped.close();
+                        delete(directory);
+                    }
+                };
+            }
+        });
+        ENGINES.add(sparse("GenerationHash", GenerationHash::new));
+        ENGINES.add(sparse("GenerationConcurrHash", GenerationConcurrHash::new));
+        ENGINES.add(sparse("GenerationIncremental", GenerationIncremental::new));
+        ENGINES.add(sparse("GenerationTiled", GenerationTiled::new));
+        ENGINES.add(sparse("GenerationHashLife", GenerationHashLife::new));
+        ENGINES.add(sparse("GenerationMultiState", GenerationMultiState::new));
+    }
+
+    /**
+     * An engine, creating a stepper of some cells for every trial.
+     */
+    abstract static class Engine{
+        final String name;
+
+        Engine(String name){
+            this.name = name;
+        }
+
+        /**
+         * @param cells the cells of the workload, not to be changed.
+         * @return a stepper starting at the cells.
+         * @throws IOException if the engine could not be created.
+         */
+        abstract Stepper create(byte[][] cells) throws IOException;
+    }
+
+    /**
+     * Steps the cells of one trial.
+     */
+    abstract static class Stepper{
+        abstract void step();
+
+        /**
+         * @return the living cells, counted outside the measured time.
+         */
+        abstract long population();
+
+        void close() throws IOException{
+        }
+    }
+
+    /**
+     * A byte[][] engine, given a new board every generation.
+     */
+    private static Engine dense(String name, NextGeneration ng){
+        return new Engine(name){
+            @Override
+            Stepper create(byte[][] cells){
+                byte[][][] board = {copy(cells)};
+                return new Stepper(){
+                    @Override
+                    void step(){
+                        board[0] = ng.calcNextGen(board[0]);
+                    }
+
+                    @Override
+                    long population(){
+                        return count(board[0]);
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Creates a Generation of an area and an area-increase.
+     */
+    interface GenerationFactory{
+        Generation create(int area, int areaInc);
+    }
+
+    /**
+     * A Generation of the unbounded plane, centered on the cells.
+     */
+    private static Engine sparse(String name, GenerationFactory factory){
+        return new Engine(name){
+            @Override
+            Stepper create(byte[][] cells){
+                int rows = cells.length, columns = cells[0].length;
+                Generation first = factory.create(Math.max(rows, columns)+2, 1);
+                for(int i = 0; i<rows; i++)
+                    for(int j = 0; j<columns; j++)
+                        if(cells[i][j] != 0)
+                            first.addLivingCell(Generation.key(i-rows/2, j-columns/2));
+                Generation[] gen = {first};
+                return new Stepper(){
+                    @Override
+                    void step(){
+                        gen[0] = gen[0].calcNextGen();
+                    }
+
+                    @Override
+                    long population(){
+                        return gen[0].getPopulation();
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Cells to step, with a name.
+     */
+    static final class Workload{
+        final String name;
+        final byte[][] cells;
+
+        Workload(String name, byte[][] cells){
+            this.name = name;
+            this.cells = cells;
+        }
+    }
+
+    /**
+     * The measured iterations of a trial.
+     */
+    static final class Result{
+        final double[] gensPerSecond;
+        final double[] cellsPerSecond;
+        //Bytes allocated per second, or null if they are not counted.
+        final double[] bytesPerSecond;
+        final long generations;
+
+        Result(double[] gensPerSecond, double[] cellsPerSecond, double[] bytesPerSecond, long generations){
+            this.gensPerSecond = gensPerSecond;
+            this.cellsPerSecond = cellsPerSecond;
+            this.bytesPerSecond = bytesPerSecond;
+            this.generations = generations;
+        }
+    }
+
+    public static void main(String[] args) throws IOException{
+        List<String> engines = null, workloads = null;
+        String patterns = "Patterns";
+        int warmups = 3, iterations = 5, millis = 200;
+        for(int i = 0; i+1<args.length; i += 2){
+            switch(args[i]){
+                case "-e": engines = Arrays.asList(args[i+1].split(",")); break;
+                case "-w": workloads = Arrays.asList(args[i+1].split(",")); break;
+                case "-p": patterns = args[i+1]; break;
+                case "-wi": warmups = Integer.parseInt(args[i+1]); break;
+                case "-i": iterations = Integer.parseInt(args[i+1]); break;
+                case "-t": millis = Integer.parseInt(args[i+1]); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        System.out.println(String.format("%-22s %-26s %20s %22s %16s %12s",
+                "Engine", "Workload", "gens/s", "cells/s", "MB/s", "B/gen"));
+        for(Workload workload : workloads(new File(patterns))){
+            if(workloads != null && workloads.stream().noneMatch(workload.name::contains))
+                continue;
+            for(Engine engine : ENGINES){
+                if(engines != null && !engines.contains(engine.name))
+                    continue;
+                Result result = trial(engine, workload, warmups, iterations, millis);
+                System.out.println(String.format("%-22s %-26s %20s %22s %16s %12s",
+                        engine.name, workload.name,
+                        format(result.gensPerSecond, 1), format(result.cellsPerSecond, 1),
+                        result.bytesPerSecond == null ? "n/a" : format(result.bytesPerSecond, 1 << 20),
+                        result.bytesPerSecond == null ? "n/a"
+                            : String.format("%.0f", mean(result.bytesPerSecond)/mean(result.gensPerSecond))));
+            }
+        }
+    }
+
+    /**
+     * @return the patterns of the directory, then the random soups.
+     */
+    static List<Workload> workloads(File patterns){
+        List<Workload> workloads = new ArrayList<>();
+        File[] files = patterns.listFiles((dir, name) -> name.endsWith(".rle"));
+        if(files != null){
+            Arrays.sort(files, Comparator.comparing(File::getName));
+            for(File file : files){
+                try(FileReader reader = new FileReader(file)){
+                    byte[][] pattern = new LoadPattern().readGameboard(reader);
+                    if(pattern != null && pattern.length > 0)
+                        workloads.add(new Workload(file.getName(), pad(pattern)));
+                }
+                catch(IOException | RuntimeException e){
+                    System.err.println("Skipping " + file + ": " + e);
+                }
+            }
+        }
+        for(int side : SOUP_SIDES)
+            for(double density : SOUP_DENSITIES)
+                workloads.add(new Workload("soup " + side + "x" + side + " " + density,
+                                           soup(side, density, side)));
+        return workloads;
+    }
+
+    /**
+     * @return the pattern in the middle of a board with MARGIN dead cells on
+     *         every side, every state but dead made living.
+     */
+    static byte[][] pad(byte[][] pattern){
+        byte[][] board = new byte[pattern.length+2*MARGIN][pattern[0].length+2*MARGIN];
+        for(int i = 0; i<pattern.length; i++)
+            for(int j = 0; j<pattern[i].length; j++)
+                board[i+MARGIN][j+MARGIN] = (byte) (pattern[i][j] != 0 ? 1 : 0);
+        return board;
+    }
+
+    /**
+     * @return a square board of living cells at a density, the same for a seed.
+     */
+    static byte[][] soup(int side, double density, long seed){
+        Random random = new Random(seed);
+        byte[][] board = new byte[side][side];
+        for(byte[] row : board)
+            for(int j = 0; j<side; j++)
+                row[j] = (byte) (random.nextDouble() < density ? 1 : 0);
+        return board;
+    }
+
+    /**
+     * Runs the warmup and the measured iterations of an engine on a
+     * workload, with a new stepper.
+     */
+    static Result trial(Engine engine, Workload workload, int warmups, int iterations, int millis)
+            throws IOException{
+        Stepper stepper = engine.create(workload.cells);
+        try{
+            for(int i = 0; i<warmups; i++)
+                iteration(stepper, millis);
+            double[] gens = new double[iterations], cells = new double[iterations];
+            double[] bytes = allocatedBytes() < 0 ? null : new double[iterations];
+            long generations = 0;
+            for(int i = 0; i<iterations; i++){
+                long population = stepper.population();
+                long allocated = allocatedBytes();
+                long start = System.nanoTime();
+                long stepped = iteration(stepper, millis);
+                double seconds = (System.nanoTime()-start)/1e9;
+                if(bytes != null)
+                    bytes[i] = Math.max(0, allocatedBytes()-allocated)/seconds;
+                gens[i] = stepped/seconds;
+                cells[i] = population*(double) stepped/seconds;
+                generations += stepped;
+            }
+            return new Result(gens, cells, bytes, generations);
+        }
+        finally{
+            stepper.close();
+        }
+    }
+
+    /**
+     * Steps until the time of an iteration has passed.
+     * @return the generations stepped.
+     */
+    private static long iteration(Stepper stepper, int millis){
+        long end = System.nanoTime()+millis*1000000L;
+        long generations = 0;
+        do{
+            stepper.step();
+            generations++;
+        }while(System.nanoTime() < end);
+        return generations;
+    }
+
+    /**
+     * @return the bytes allocated by every living thread, or -1 if the JVM
+     *         does not count them.
+     */
+    static long allocatedBytes(){
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if(!(threads instanceof com.sun.management.ThreadMXBean))
+            return -1;
+        com.sun.management.ThreadMXBean counting = (com.sun.management.ThreadMXBean) threads;
+        if(!counting.isThreadAllocatedMemorySupported() || !counting.isThreadAllocatedMemoryEnabled())
+            return -1;
+        long total = 0;
+        for(long bytes : counting.getThreadAllocatedBytes(counting.getAllThreadIds()))
+            if(bytes > 0)
+                total += bytes;
+        return total;
+    }
+
+    private static String format(double[] values, double unit){
+        double mean = mean(values), deviation = 0;
+        for(double value : values)
+            deviation += (value-mean)*(value-mean);
+        deviation = values.length > 1 ? Math.sqrt(deviation/(values.length-1)) : 0;
+        return String.format("%.4g +- %.2g", mean/unit, deviation/unit);
+    }
+
+    private static double mean(double[] values){
+        return Arrays.stream(values).average().orElse(0);
+    }
+
+    private static byte[][] copy(byte[][] cells){
+        byte[][] copy = new byte[cells.length][];
+        for(int i = 0; i<cells.length; i++)
+            copy[i] = cells[i].clone();
+        return copy;
+    }
+
+    private static long count(byte[][] board){
+        long population = 0;
+        for(byte[] row : board)
+            for(byte cell : row)
+                if(cell != 0)
+                    population++;
+        return population;
+    }
+
+    private static void delete(Path directory) throws IOException{
+        try(Stream<Path> paths = Files.walk(directory)){
+            for(Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator)
+                Files.delete(path);
+        }
+    }
+}
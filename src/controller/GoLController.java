@@ -1,18 +1,25 @@
 
 package controller;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayDeque;
 import java.util.ResourceBundle;
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
+import javafx.scene.Node;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.XYChart;
+import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.ColorPicker;
 import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.Slider;
 import javafx.scene.control.TextField;
 import javafx.scene.control.Tooltip;
@@ -21,13 +28,24 @@ import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.Pane;
 import javafx.scene.text.Text;
-import javafx.util.Duration;
+import javafx.stage.FileChooser;
+import logic.Cycle;
 import logic.DynamicBoard;
 import logic.Gameboard;
+import logic.GenerationManager;
+import logic.GenerationStats;
+import logic.IOExceptionDialog;
 import logic.InstructionDialog;
 import logic.LoadPattern;
 import logic.PatternFormatException;
+import logic.PatternFormatExceptionDialog;
+import logic.RangeRule;
+import logic.Ruleset;
+import logic.Session;
+import logic.Simulation;
+import logic.Snapshot;
 import logic.StaticBoard;
+import logic.Warp;
 import metadata.PatternEditor;
 
 
@@ -64,14 +82,50 @@ public class GoLController implements Initializable {
     @FXML private Button loadURLBtn;
     @FXML private Button patternEditorBtn;
     @FXML private Button confirmSizeBtn;
+    @FXML private Button gridBtn;
+    @FXML private Button saveSessionBtn;
+    @FXML private Button openSessionBtn;
+    @FXML private TextField warpTextfield;
+    @FXML private TextField redrawTextfield;
+    @FXML private Button warpBtn;
+    @FXML private ProgressBar warpProgress;
+    @FXML private TextField leapTextfield;
+    @FXML private Button leapBtn;
+    @FXML private Label cycleTitle;
+    @FXML private Label cycleLabel;
+    @FXML private Button cycleBtn;
+    @FXML private Label historyTitle;
+    @FXML private Button recordBtn;
+    @FXML private TextField historyTextfield;
+    @FXML private Button backBtn;
+    @FXML private Button jumpBtn;
+    @FXML private LineChart<Number, Number> statsChart;
     
     private Gameboard gb;
     private GraphicsContext gc;
     public static GoLController instance;
    
-    private Timeline initSimulation = new Timeline(new KeyFrame
-                                     (Duration.millis(120), 
-                                      e -> nextGenBtnClicked()));    
+    //Steps the board on its own thread while started, see Simulation.
+    private Simulation simulation;
+    //Draws the latest snapshot of the simulation once a frame.
+    private final AnimationTimer renderer = new AnimationTimer(){
+        @Override
+        public void handle(long now){
+            drawSnapshot();
+        }
+    };
+    //The warp running on a worker thread, or null.
+    private Warp warp;
+    //The last cycle the simulation was paused at, so it is only paused once.
+    private Cycle pausedCycle;
+    //Number of generations shown in the chart of the statistics.
+    private static final int CHART_GENERATIONS = 200;
+    //The statistics stepped but not yet charted, the newest CHART_GENERATIONS.
+    private final ArrayDeque<GenerationStats> pendingStats = new ArrayDeque<>();
+    private final ArrayDeque<Integer> pendingGenerations = new ArrayDeque<>();
+    private final XYChart.Series<Number, Number> populationSeries = new XYChart.Series<>();
+    private final XYChart.Series<Number, Number> birthsSeries = new XYChart.Series<>();
+    private final XYChart.Series<Number, Number> deathsSeries = new XYChart.Series<>();
     
     
     /**
@@ -89,8 +143,12 @@ public class GoLController implements Initializable {
     public void initialize(URL url, ResourceBundle rb) {
         instance = this;    
         gc = canvas.getGraphicsContext2D();
-        gb = new DynamicBoard(gc);
-        /*gb = new StaticBoard(gc);*/ //Static representation of the Gameboard
+        //The board is chosen with gol.board, and its Generation with gol.generation.
+        gb = "static".equalsIgnoreCase(System.getProperty("gol.board"))
+           ? new StaticBoard(gc) : new DynamicBoard(gc);
+        simulation = new Simulation(gb);
+        listenStats();
+        listenerSpeed();
         showDynamicBtns();
         setTooltips();
         autoAdjustCanvas();
@@ -104,6 +162,10 @@ public class GoLController implements Initializable {
         setRulesetTip();
         setLoadBtnsTip();
         setPatternEditorBtnTip();
+        setWarpTip();
+        setLeapTip();
+        setCycleTip();
+        setHistoryTip();
     }
     
     /**
@@ -114,14 +176,23 @@ public class GoLController implements Initializable {
         bornTip.setText(  "Born - how\n"
                         + "many neighbours\n"
                         + "a cell must have\n"
-                        + "to become alive.");
+                        + "to become alive.\n"
+                        + "Hensel letters\n"
+                        + "(i.e. 2-a) allowed.\n"
+                        + "Or a whole Larger\n"
+                        + "than Life rule\n"
+                        + "(i.e. R5,C0,M1,\n"
+                        + "S34..58,B34..45,NM).");
 
         
         final Tooltip survivesTip = new Tooltip();
         survivesTip.setText(  "Survives - how\n"
                             + "many neighbours\n"
                             + "a cell must\n"
-                            + "have to survive.");
+                            + "have to survive.\n"
+                            + "May end with the\n"
+                            + "number of states\n"
+                            + "(i.e. 345/C4).");
         
         born.setTooltip(bornTip);
         survives.setTooltip(survivesTip);
@@ -143,6 +214,76 @@ public class GoLController implements Initializable {
     }
     
     
+    /**
+     * Describes the warp controls to the user, 
+     * when hovering over the button for a couple of secounds.
+     */
+    public void setWarpTip(){
+        final Tooltip warpTip = new Tooltip();
+        warpTip.setText(  "Warp - runs the\n"
+                        + "generations ahead\n"
+                        + "without drawing,\n"
+                        + "redrawing every\n"
+                        + "number of generations\n"
+                        + "given, or at the end.\n"
+                        + "Click again to cancel.");
+        
+        warpBtn.setTooltip(warpTip);
+    }
+    
+    /**
+     * Tooltip for leaping ahead 2^k generations.
+     */
+    public void setLeapTip(){
+        final Tooltip leapTip = new Tooltip();
+        leapTip.setText(  "Leap - warps 2^k\n"
+                        + "generations ahead,\n"
+                        + "k from 0 to 30.\n"
+                        + "Cancel with the\n"
+                        + "warp button. Fastest\n"
+                        + "with the hashlife\n"
+                        + "generation,\n"
+                        + "-Dgol.generation=hashlife.");
+        
+        leapBtn.setTooltip(leapTip);
+    }
+    
+    /**
+     * Tooltip for what to do when the generations repeat.
+     */
+    public void setCycleTip(){
+        final Tooltip cycleTip = new Tooltip();
+        cycleTip.setText(  "When the generations\n"
+                         + "repeat, i.e. a still\n"
+                         + "life, a blinker or a\n"
+                         + "glider:\n"
+                         + "Run - keeps running.\n"
+                         + "Pause - pauses.\n"
+                         + "Skip - warps over\n"
+                         + "the repeating periods\n"
+                         + "without calculating.");
+        
+        cycleBtn.setTooltip(cycleTip);
+    }
+    
+    /**
+     * Tooltip for stepping back through the generations.
+     */
+    public void setHistoryTip(){
+        final Tooltip historyTip = new Tooltip();
+        historyTip.setText(  "Record - records the\n"
+                           + "generations stepped,\n"
+                           + "which slows stepping.\n"
+                           + "Back - goes back to\n"
+                           + "the generation before.\n"
+                           + "Go to - goes to the\n"
+                           + "generation given, if\n"
+                           + "it is in the history.");
+        
+        recordBtn.setTooltip(historyTip);
+        backBtn.setTooltip(historyTip);
+    }
+        
     /**
      * Describes the load controls to the user, 
      * when hovering over the button for a couple of secounds.
@@ -165,7 +306,9 @@ public class GoLController implements Initializable {
     
     /**
      * Hiding buttons related to the StaticBoard implementation, 
-     * when DynamicBoard is running.
+     * when DynamicBoard is running, and the controls only a DynamicBoard
+     * has, i.e. the grid, the sessions, the cycle and the history, when
+     * StaticBoard is running.
      */
      public void showDynamicBtns(){
         if(gb.getClass().getName().equals("logic.DynamicBoard")) {
@@ -179,36 +322,149 @@ public class GoLController implements Initializable {
             confirmSizeBtn.setVisible(true);
             widthTextfield.setPromptText("Area of square");
         }
+        else {
+            Node[] dynamicOnly = {gridBtn, saveSessionBtn, openSessionBtn,
+                                  cycleTitle, cycleLabel, cycleBtn, historyTitle,
+                                  recordBtn, backBtn, historyTextfield, jumpBtn};
+            for(Node node : dynamicOnly)
+                node.setVisible(false);
+        }
      }
      
      
     /**
-     * Setting the timeline cycle for the animation.
-     * @param timeline
-     * Timeline takes care of the animation loop.
+     * StartBtnClicked handles the simulation on button click.
+     * Starts the simulation thread and the renderer, or pauses them, and 
+     * changing startBtn's .getText property between "Start" and "Pause".
      */
-    public void setTimeline(Timeline timeline){
-        timeline.setCycleCount(Timeline.INDEFINITE);
-        timeline.setAutoReverse(true);
+    public void startBtnClicked(){
+        if(startBtn.getText().equals("Start")){
+            simulation.start();
+            renderer.start();
+            startBtn.setText("Pause");
+        }else{
+            pauseSimulation();
+        }
     }
     
+    /**
+     * Draws the latest snapshot of the simulation, if a new one was made
+     * since the last frame. The snapshots made in between are never drawn.
+     */
+    private void drawSnapshot(){
+        Snapshot snapshot = simulation.takeSnapshot();
+        if(snapshot == null)
+            return;
+        gb.show(snapshot);
+        genCountLabel.setText("Generation: " + snapshot.getGenCount());
+        if(gb instanceof DynamicBoard)
+            setLivingCellLabelText("Population: " + snapshot.getPopulation());
+        showCycle();
+        showStats();
+    }
     
     /**
-     * StartBtnClicked handles Timeline on button click.
-     * Initiates the play and pause method of the timeline cycle, and changing 
-     * startBtn's .getText property between "Start" and "Pause".
+     * Subscribes to the statistics of every generation the DynamicBoard
+     * steps. The board steps on the simulation or the warp thread, so the
+     * statistics are queued and charted by showStats on the JavaFX thread.
      */
-    public void startBtnClicked(){
-        if(startBtn.getText().equals("Start")){
-            setTimeline(initSimulation);
-            initSimulation.play();
-            startBtn.setText("Pause");
-        }else{
-            startBtn.setText("Start");
-            initSimulation.pause();
+    private void listenStats(){
+        statsChart.getData().add(populationSeries);
+        statsChart.getData().add(birthsSeries);
+        statsChart.getData().add(deathsSeries);
+        if(!(gb instanceof DynamicBoard))
+            return;
+        getDynamicBoard().addStatsListener((generation, stats) -> {
+            synchronized(pendingStats){
+                if(pendingStats.size() == CHART_GENERATIONS){
+                    pendingStats.removeFirst();
+                    pendingGenerations.removeFirst();
+                }
+                pendingStats.addLast(stats);
+                pendingGenerations.addLast(generation);
+            }
+        });
+    }
+    
+    /**
+     * Charts the population, the births and the deaths of the generations
+     * stepped since the last frame, keeping the last CHART_GENERATIONS.
+     */
+    private void showStats(){
+        synchronized(pendingStats){
+            while(!pendingStats.isEmpty()){
+                GenerationStats stats = pendingStats.removeFirst();
+                Integer generation = pendingGenerations.removeFirst();
+                populationSeries.getData().add(new XYChart.Data<>(generation, stats.getPopulation()));
+                birthsSeries.getData().add(new XYChart.Data<>(generation, stats.getBirths()));
+                deathsSeries.getData().add(new XYChart.Data<>(generation, stats.getDeaths()));
+            }
+        }
+        for(XYChart.Series<Number, Number> series : statsChart.getData()){
+            int excess = series.getData().size()-CHART_GENERATIONS;
+            if(excess > 0)
+                series.getData().remove(0, excess);
+        }
+    }
+    
+    /**
+     * Shows the cycle the board has ended in, and pauses the simulation the
+     * first time the cycle is seen if the cycle button says so.
+     */
+    private void showCycle(){
+        if(!(gb instanceof DynamicBoard))
+            return;
+        Cycle cycle = getDynamicBoard().getCycle();
+        cycleLabel.setText(cycle == null ? "None" : cycle.toString());
+        if(cycle != null && cycle != pausedCycle && cycleBtn.getText().equals("Pause")){
+            pausedCycle = cycle;
+            pauseSimulation();
         }
     }
     
+    /**
+     * Changes what to do when the generations repeat, on button click:
+     * run on, pause the simulation, or skip the periods of the cycle when
+     * warping, see DynamicBoard.stepN(int).
+     */
+    public void cycleBtnClicked(){
+        if(!(gb instanceof DynamicBoard))
+            return;
+        switch(cycleBtn.getText()){
+            case "Run":
+                cycleBtn.setText("Pause");
+                break;
+            case "Pause":
+                cycleBtn.setText("Skip");
+                break;
+            default:
+                cycleBtn.setText("Run");
+        }
+        getDynamicBoard().setSkipCycles(cycleBtn.getText().equals("Skip"));
+        showCycle();
+    }
+    
+    /**
+     * Pauses the simulation and the renderer, and draws the board as it was
+     * left by the last generation. Used when the pattern editor is opened,
+     * and before the board is reset or warped.
+     */
+    public void pauseSimulation(){
+        startBtn.setText("Start");
+        if(!simulation.isRunning())
+            return;
+        simulation.pause();
+        renderer.stop();
+        simulation.takeSnapshot();
+        gb.show(null);
+        if(gb instanceof DynamicBoard)
+            getDynamicBoard().setLivingCells();
+        gb.draw();
+        genCountLabel.setText(gb.getGenCounter());
+        showCycle();
+        showStats();
+    }
+    
     public void instructionBtnClicked(){
         new InstructionDialog();
     }
@@ -227,10 +483,16 @@ public class GoLController implements Initializable {
      * ClearBtnClicked pauses simulation and resets board on button click.
      */
     public void resetBtnClicked() {
-        initSimulation.pause();
-        startBtn.setText("Start");
+        pauseSimulation();
         gb.resetBoard();
         genCountLabel.setText(gb.getGenCounter());
+        showCycle();
+        synchronized(pendingStats){
+            pendingStats.clear();
+            pendingGenerations.clear();
+        }
+        for(XYChart.Series<Number, Number> series : statsChart.getData())
+            series.getData().clear();
     }
     
     
@@ -238,14 +500,214 @@ public class GoLController implements Initializable {
      * NextGenClicked jumps to the next generation on button click.
      */
     public void nextGenBtnClicked() {
-        gb.displayNextGen();
+        synchronized(gb){
+            gb.displayNextGen();
+            genCountLabel.setText(gb.getGenCounter());
+        }
+        showCycle();
+        showStats();
+    }
+
+    /**
+     * Turns recording of the history on or off on button click, see
+     * DynamicBoard.setHistory(GenerationManager). The history is dropped
+     * when recording is turned off.
+     */
+    public void recordBtnClicked() {
+        if(!(gb instanceof DynamicBoard))
+            return;
+        boolean recording = recordBtn.getText().equals("Record");
+        synchronized(gb){
+            getDynamicBoard().setHistory(recording ? new GenerationManager() : null);
+        }
+        recordBtn.setText(recording ? "Stop" : "Record");
+    }
+
+    /**
+     * Goes back to the generation before on button click, see
+     * DynamicBoard.stepBack().
+     */
+    public void backBtnClicked() {
+        if(!(gb instanceof DynamicBoard))
+            return;
+        pauseSimulation();
+        synchronized(gb){
+            if(getDynamicBoard().stepBack())
+                drawWarp();
+        }
+    }
+    
+    /**
+     * Goes to the generation in the history field on button click, see
+     * DynamicBoard.jumpTo(int). Only the generations in the history can be
+     * gone to, the oldest are dropped as the history fills up.
+     */
+    public void jumpBtnClicked() {
+        if(!(gb instanceof DynamicBoard))
+            return;
+        int generation;
+        try{
+            generation = Integer.parseInt(historyTextfield.getText().trim());
+            if(generation < 1)
+                throw new NumberFormatException();
+        }catch(NumberFormatException e){
+            Alert alert = new Alert(Alert.AlertType.ERROR);
+            alert.setTitle("Number Format Error");
+            alert.setHeaderText("Please insert a positive whole number of the generation.");
+            alert.showAndWait();
+            return;
+        }
+        
+        pauseSimulation();
+        synchronized(gb){
+            if(getDynamicBoard().jumpTo(generation)){
+                drawWarp();
+                return;
+            }
+        }
+        GenerationManager history = getDynamicBoard().getHistory();
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("Generation not found");
+        alert.setHeaderText(history == null || history.getFirst() == 0
+                          ? "There is no history, click Record to record one."
+                          : "The history holds the generations " + history.getFirst()
+                          + " to " + history.getLast() + ".");
+        alert.showAndWait();
+    }
+
+    /**
+     * Leaps 2^k generations ahead on button click, k given in the leap
+     * field, as a warp that only redraws at the end, see warpBtnClicked.
+     * GenerationHashLife jumps the generations, see DynamicBoard.stepN(int).
+     * The warp button cancels the leap.
+     */
+    public void leapBtnClicked() {
+        int k;
+        try{
+            k = Integer.parseInt(leapTextfield.getText().trim());
+            if(k < 0 || k > 30)
+                throw new NumberFormatException();
+        }catch(NumberFormatException e){
+            Alert alert = new Alert(Alert.AlertType.ERROR);
+            alert.setTitle("Number Format Error");
+            alert.setHeaderText("Please insert a whole number k from 0 to 30.");
+            alert.showAndWait();
+            return;
+        }
+        startWarp(1 << k, 0);
+    }
+
+    /**
+     * Warps the board a number of generations ahead on button click, on a 
+     * worker thread, see Warp. The board is redrawn every number of 
+     * generations in the redraw field, or only at the end if it is empty.
+     * The simulation is paused, and the board and its controls are disabled
+     * until the warp ends. Clicking the button again cancels the warp.
+     */
+    public void warpBtnClicked() {
+        if(isWarping()){
+            warp.cancel();
+            return;
+        }
+        int generations, interval;
+        try{
+            generations = Integer.parseInt(warpTextfield.getText().trim());
+            String redraw = redrawTextfield.getText().trim();
+            interval = redraw.isEmpty() ? 0 : Integer.parseInt(redraw);
+            if(generations < 1 || interval < 0)
+                throw new NumberFormatException();
+        }catch(NumberFormatException e){
+            Alert alert = new Alert(Alert.AlertType.ERROR);
+            alert.setTitle("Number Format Error");
+            alert.setHeaderText("Please insert a positive whole number of generations, "
+                              + "and a redraw interval of 0 or more.");
+            alert.showAndWait();
+            return;
+        }
+        startWarp(generations, interval);
+    }
+    
+    /**
+     * Pauses the simulation, disables the board and its controls, and warps
+     * the board on a worker thread, see Warp.
+     * @param generations number of generations to calculate.
+     * @param interval number of generations between the redraws, or 0 to
+     *        only redraw at the end.
+     */
+    private void startWarp(int generations, int interval) {
+        pauseSimulation();
+        warp = new Warp(gb, generations, interval, this::drawWarp);
+        warpProgress.progressProperty().bind(warp.progressProperty());
+        setWarpControls(true);
+        
+        //A cancelled task stops running at once, the board when its chunk is done.
+        Runnable run = warp;
+        Thread worker = new Thread(() -> {
+            run.run();
+            Platform.runLater(this::endWarp);
+        }, "GoL warp");
+        worker.setDaemon(true);
+        worker.start();
+    }
+    
+    /**
+     * Draws the board and the counters during and after a warp.
+     */
+    private void drawWarp() {
+        if(gb instanceof DynamicBoard)
+            getDynamicBoard().setLivingCells();
+        gb.draw();
         genCountLabel.setText(gb.getGenCounter());
+        showCycle();
+        showStats();
+    }
+    
+    /**
+     * Draws the result of the warp, done or cancelled, and enables the
+     * controls again.
+     */
+    private void endWarp() {
+        if(warp.getException() != null)
+            System.err.println("Warp failed: " + warp.getException());
+        warp = null;
+        warpProgress.progressProperty().unbind();
+        setWarpControls(false);
+        drawWarp();
+    }
+    
+    /**
+     * Disables the board and every control but the warp button while the
+     * worker thread steps the board.
+     * @param warping true when a warp starts, false when it ends.
+     */
+    private void setWarpControls(boolean warping) {
+        grandParent.getLeft().setDisable(warping);
+        grandParent.getBottom().setDisable(warping);
+        canvas.setDisable(warping);
+        warpTextfield.setDisable(warping);
+        redrawTextfield.setDisable(warping);
+        leapTextfield.setDisable(warping);
+        leapBtn.setDisable(warping);
+        recordBtn.setDisable(warping);
+        backBtn.setDisable(warping);
+        historyTextfield.setDisable(warping);
+        jumpBtn.setDisable(warping);
+        warpBtn.setText(warping ? "Cancel" : "Warp");
+    }
+    
+    /**
+     * @return true while a warp is stepping the board on its worker thread.
+     */
+    public boolean isWarping() {
+        return warp != null;
     }
 
     /**
      * Displays a grid on the canvas when clicked. 
      */
     public void gridBtnClicked() {
+        if(!(gb instanceof DynamicBoard))
+            return;
         getDynamicBoard().setGridStatus();
         gb.draw();
     }
@@ -264,10 +726,77 @@ public class GoLController implements Initializable {
         byte[][] pattern = lp.readGameboardFromFile();
         
         if(pattern != null){
-            gb.updateBoardWithPattern(pattern);
+            synchronized(gb){
+                gb.updateBoardWithPattern(pattern);
+            }
+        }
+    }
+    
+    
+    /**
+     * Saves the whole world of the board, its rule and the generation
+     * counter to a session file on button click, see Session. The cells are
+     * compressed. The simulation is paused first.
+     */
+    public void saveSessionBtnClicked(){
+        if(!(gb instanceof DynamicBoard))
+            return;
+        pauseSimulation();
+        File file = sessionDialog().showSaveDialog(null);
+        if(file == null)
+            return;
+        try{
+            synchronized(gb){
+                Session.save(getDynamicBoard(), file.toPath(), true);
+            }
+        }
+        catch(IOException e){
+            new IOExceptionDialog("The session could not be saved: " + e.getMessage());
         }
     }
     
+    /**
+     * Resumes a session file on button click, replacing the board, see
+     * DynamicBoard.resume(Session).
+     */
+    public void openSessionBtnClicked(){
+        if(!(gb instanceof DynamicBoard))
+            return;
+        pauseSimulation();
+        File file = sessionDialog().showOpenDialog(null);
+        if(file == null)
+            return;
+        try{
+            Session session = Session.open(file.toPath());
+            synchronized(gb){
+                getDynamicBoard().resume(session);
+            }
+        }
+        catch(IOException e){
+            new IOExceptionDialog("The session could not be opened: " + e.getMessage());
+            return;
+        }
+        catch(PatternFormatException e){
+            new PatternFormatExceptionDialog(e.getMessage());
+            return;
+        }
+        getDynamicBoard().zoomToFit();
+        zoomSlider.setValue(gb.getCellSize());
+        drawWarp();
+    }
+    
+    /**
+     * @return a FileChooser of session files, in ./Patterns if it exists.
+     */
+    private FileChooser sessionDialog(){
+        File dir = new File("./Patterns");
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Session:");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Game of Life session", "*.gols"));
+        if(dir.exists())
+            chooser.setInitialDirectory(dir);
+        return chooser;
+    }
     
     /**
      * LoadURLBtnClicked() allows the user to load a RLE pattern from a URL on
@@ -282,7 +811,9 @@ public class GoLController implements Initializable {
         byte[][] pattern = lp.readGameBoardFromURL();
         
         if(pattern != null){
-            gb.updateBoardWithPattern(pattern);
+            synchronized(gb){
+                gb.updateBoardWithPattern(pattern);
+            }
         }
     }
     
@@ -294,30 +825,40 @@ public class GoLController implements Initializable {
     * @deprecated not used in DynamicBoard.
     */
     public void confirmSizeBtnClicked() {
-        gb.changeBoardSize();
+        synchronized(gb){
+            gb.changeBoardSize();
+        }
     }
     
     
     /**
      * Changes the to alternative ruleset on userinput. 
      * The input must be valid, it is tested before it is set.
+     * The survives field may end with the number of states of a Generations
+     * rule, i.e. born "2" and survives "345/C4" gives B2/S345/C4. A whole
+     * Larger than Life rule in the born field is used as it is, see RangeRule.
      */
     public void confirmRulesBtnClicked(){
         String b = born.getText();
         String s = survives.getText();
         
-        getDynamicBoard().decodeRuleset(b, s);
-        /*getStaticBoard().getNextGeneration().decodeRuleset(b, s);*/
-        //Required for StaticBoard.
+        synchronized(gb){
+            if(RangeRule.isRangeRule(b))
+                getRuleset().decodeRuleset(b);
+            else
+                getRuleset().decodeRuleset("B" + b.trim() + "/S" + s.trim());
+        }
     }
     
     
     /**
      * Velocity slider listener.
-     * Enables the user to change the velocity of the graphical animation.
+     * Enables the user to change the number of generations per second, from
+     * 1 to 4096. Every step of the slider doubles the speed. The frame rate
+     * of the animation does not change, see Simulation.
      */
     public void listenerSpeed(){
-        initSimulation.setRate(speedSlider.getValue());
+        simulation.setRate(Math.pow(2, speedSlider.getValue()));
     }
     
     
@@ -367,7 +908,10 @@ public class GoLController implements Initializable {
      * @param e e MouseEvent, listening to user input on the canvas.
      */
     public void mouseListner(MouseEvent e){
-        gb.changeCellStatus(e);
+        synchronized(gb){
+            gb.changeCellStatus(e);
+        }
+        showCycle();
     }
    
     
@@ -380,9 +924,16 @@ public class GoLController implements Initializable {
      * @param e e KeyEvent, listening to user input on the canvas.
      */
     public void keyEventScene(KeyEvent e){
+        if(isWarping())
+            return;
         canvas.requestFocus();        
-        gb.moveLoaded(e);
-        getDynamicBoard().navigateBoard(e); //Comment out when running StaticBoard.
+        synchronized(gb){
+            gb.moveLoaded(e);
+            if(gb instanceof DynamicBoard)
+                getDynamicBoard().navigateBoard(e);
+        }
+        showCycle();
+        zoomSlider.setValue(gb.getCellSize());
     }
     
     
@@ -400,8 +951,9 @@ public class GoLController implements Initializable {
         canvas.widthProperty().bind(wrapper.widthProperty());
         canvas.heightProperty().bind(wrapper.heightProperty());
         
-        canvas.widthProperty().addListener(e -> gb.draw());
-        canvas.heightProperty().addListener(e -> gb.draw());
+        //A warp draws the board itself when it ends.
+        canvas.widthProperty().addListener(e -> { if(!isWarping()) gb.draw(); });
+        canvas.heightProperty().addListener(e -> { if(!isWarping()) gb.draw(); });
     }
     
     
@@ -431,15 +983,6 @@ public class GoLController implements Initializable {
     }
     
     
-    /**
-     * Used to pause simulation when pattern editor is opened.
-     * @return timeline of main window.
-     */
-    public Timeline getInitSimulation(){
-        return initSimulation;
-    }
-    
-    
     /**
      * Getter for the highest node in the node hierarki, the BorderPane.
      * @return grandParent is the top node in the node hierarki in 
@@ -461,12 +1004,20 @@ public class GoLController implements Initializable {
     
     /**
      * Getter for the current DynamicBoard object. 
-     * NOTE: Be careful using this, make sure that the Gameboard object you have
-     * initiated actualy is a DynamicBoard.
-     * @return the current DynamicBoard object.
+     * NOTE: The board is a StaticBoard when gol.board=static, then this is null.
+     * @return the current DynamicBoard object, or null.
      */
     public DynamicBoard getDynamicBoard(){
-        return (DynamicBoard) gb;
+        return gb instanceof DynamicBoard ? (DynamicBoard) gb : null;
+    }
+    
+    
+    /**
+     * @return the ruleset of the board, the DynamicBoard itself or the
+     * NextGeneration of the StaticBoard.
+     */
+    public Ruleset getRuleset(){
+        return gb instanceof DynamicBoard ? (DynamicBoard) gb : getStaticBoard().getNextGeneration();
     }
     
     
@@ -477,13 +1028,12 @@ public class GoLController implements Initializable {
     
     /**
      * Setter for the games ruleset.
-     * @param b born rule.
-     * @param s survives rule.
+     * @param rule the whole rule, i.e. B3/S23 or B2/S/C3.
      */
-    public void setPatternRules(String b, String s){
-        getDynamicBoard().decodeRuleset(b, s);
-        /*getStaticBoard().getNextGeneration().decodeRuleset(b, s);*/
-        //Required for StaticBoard.
+    public void setPatternRules(String rule){
+        synchronized(gb){
+            getRuleset().decodeRuleset(rule);
+        }
     } 
     
     
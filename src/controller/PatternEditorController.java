@@ -26,6 +26,7 @@ import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 import logic.LoadPattern;
 import logic.PatternFormatException;
+import logic.RangeRule;
 import metadata.PatternEditor;
 import metadata.SaveGIF;
 import metadata.SavePattern;
@@ -119,13 +120,22 @@ public class PatternEditorController implements Initializable{
         bornTip.setText("Born - how\n"
                       + "many neighbours\n"
                       + "a cell must have\n"
-                      + "to get born.");
+                      + "to get born.\n"
+                      + "Hensel letters\n"
+                      + "(i.e. 2-a) allowed.\n"
+                      + "Or a whole Larger\n"
+                      + "than Life rule\n"
+                      + "(i.e. R5,C0,M1,\n"
+                      + "S34..58,B34..45,NM).");
  
         final Tooltip survivesTip = new Tooltip();
         survivesTip.setText("Survives - how\n"
                           + "many neighbours\n"
                           + "a cell must\n"
-                          + "have to survive.");
+                          + "have to survive.\n"
+                          + "May end with the\n"
+                          + "number of states\n"
+                          + "(i.e. 345/C4).");
         
         born.setTooltip(bornTip);
         survives.setTooltip(survivesTip);
@@ -164,11 +174,16 @@ public class PatternEditorController implements Initializable{
      * Setting the ruleset to the current object of the StaticBoard instance.
      * The user can type in the ruleset he/she wants to use, and use the 
      * confirm button to attach it to the pattern editor sequence/StaticBoard
-     * clone.
+     * clone. The survives field may end with the number of states of a
+     * Generations rule, i.e. "345/C4". A whole Larger than Life rule in the
+     * born field is used as it is.
      */
     public void setRulesBtnClicked(){
-        pe.getStaticBoard().getNextGeneration().
-           decodeRuleset(born.getText(), survives.getText());
+        if(RangeRule.isRangeRule(born.getText()))
+            pe.getStaticBoard().getNextGeneration().decodeRuleset(born.getText());
+        else
+            pe.getStaticBoard().getNextGeneration().
+               decodeRuleset("B" + born.getText().trim() + "/S" + survives.getText().trim());
         
         pe.draw();
     }
@@ -258,10 +273,10 @@ public class PatternEditorController implements Initializable{
         
         if(pattern != null){
             pe.updateBoardWithPattern(pattern);
-            pe.getStaticBoard().getNextGeneration().setBorn
-                                        (ctrl.getDynamicBoard().getBorn());
-            pe.getStaticBoard().getNextGeneration().setSurvives
-                                        (ctrl.getDynamicBoard().getSurvives());
+            pe.getStaticBoard().getNextGeneration().setCompiledRule
+                                        (ctrl.getRuleset().getCompiledRule());
+            pe.getStaticBoard().getNextGeneration().setRangeRule
+                                        (ctrl.getRuleset().getRangeRule());
         }
     }
     
@@ -279,10 +294,10 @@ public class PatternEditorController implements Initializable{
         
         if(pattern != null){
             pe.updateBoardWithPattern(pattern);
-            pe.getStaticBoard().getNextGeneration().setBorn
-                                        (ctrl.getDynamicBoard().getBorn());
-            pe.getStaticBoard().getNextGeneration().setSurvives
-                                        (ctrl.getDynamicBoard().getSurvives());
+            pe.getStaticBoard().getNextGeneration().setCompiledRule
+                                        (ctrl.getRuleset().getCompiledRule());
+            pe.getStaticBoard().getNextGeneration().setRangeRule
+                                        (ctrl.getRuleset().getRangeRule());
         }
     }
     
@@ -0,0 +1,343 @@
+package logic;
+
+import java.util.Arrays;
+
+/**
+ * The bounding box of a set of living cells, kept up to date as cells are
+ * added and removed, so the box and the cells on any row or column of the
+ * world are known without visiting the cells.
+ * <br>
+ * Every row and every column holds the number of living cells on it, in a
+ * plain int[] indexed from the first line it covers, see Lines. Adding a
+ * cell can only widen the box. Removing the last cell of the first or last
+ * row (or column) moves that side inwards to the next row holding a cell,
+ * which is found by reading the counts between them. The cost is the gap
+ * closed, read from one array.
+ * <br>
+ * The arrays cover the box with a margin, and grow when a cell is added
+ * outside them. A box made for the next generation starts with the arrays
+ * covering the box of the generation before, so it rarely grows.
+ * <br>
+ * The box also keeps the Zobrist hash of the cells, see ZobristHash, as
+ * every birth and death passes through it.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+class BoundingBox{
+
+    private final Lines rows;
+    private final Lines columns;
+    private long size;
+    private int top;
+    private int bottom;
+    private int left;
+    private int right;
+    private long hash;
+
+    BoundingBox(){
+        rows = new Lines();
+        columns = new Lines();
+    }
+
+    /**
+     * Creates an empty box with its counts covering the box of the
+     * generation before, i.e. for a generation filled from empty.
+     * @param prev the box of the generation before.
+     */
+    BoundingBox(BoundingBox prev){
+        if(prev.isEmpty()){
+            rows = new Lines();
+            columns = new Lines();
+            return;
+        }
+        rows = new Lines(prev.top, prev.bottom);
+        columns = new Lines(prev.left, prev.right);
+    }
+
+    /**
+     * Adds a living cell.
+     * @param row the row of the cell in the world.
+     * @param column the column of the cell in the world.
+     */
+    void add(int row, int column){
+        hash += ZobristHash.cell(row, column);
+        if(size++ == 0){
+            top = bottom = row;
+            left = right = column;
+            rows.increment(row, row, row);
+            columns.increment(column, column, column);
+            return;
+        }
+        top = Math.min(top, row);
+        bottom = Math.max(bottom, row);
+        left = Math.min(left, column);
+        right = Math.max(right, column);
+        rows.increment(row, top, bottom);
+        columns.increment(column, left, right);
+    }
+
+    /**
+     * Removes a living cell. The cell has to be alive.
+     * @param row the row of the cell in the world.
+     * @param column the column of the cell in the world.
+     */
+    void remove(int row, int column){
+        hash -= ZobristHash.cell(row, column);
+        size--;
+        boolean rowEmpty = rows.decrement(row) == 0;
+        boolean columnEmpty = columns.decrement(column) == 0;
+        if(size == 0)
+            return;
+        if(rowEmpty){
+            if(row == top)
+                top = rows.inward(top, 1);
+            if(row == bottom)
+                bottom = rows.inward(bottom, -1);
+        }
+        if(columnEmpty){
+            if(column == left)
+                left = columns.inward(left, 1);
+            if(column == right)
+                right = columns.inward(right, -1);
+        }
+    }
+
+    /**
+     * Removes every cell, keeping the arrays.
+     */
+    void clear(){
+        if(size > 0){
+            rows.clear(top, bottom);
+            columns.clear(left, right);
+        }
+        size = 0;
+        hash = 0;
+    }
+
+    boolean isEmpty(){
+        return size == 0;
+    }
+
+    int getTop(){
+        return top;
+    }
+
+    int getBottom(){
+        return bottom;
+    }
+
+    int getLeft(){
+        return left;
+    }
+
+    int getRight(){
+        return right;
+    }
+
+    /**
+     * @return the Zobrist hash of the cells, see ZobristHash.
+     */
+    long getHash(){
+        return hash;
+    }
+
+    /**
+     * @param row a row in the world.
+     * @return number of living cells on the row.
+     */
+    int rowCount(int row){
+        return size == 0 ? 0 : rows.get(row);
+    }
+
+    /**
+     * @param column a column in the world.
+     * @return number of living cells in the column.
+     */
+    int columnCount(int column){
+        return size == 0 ? 0 : columns.get(column);
+    }
+
+    /**
+     * The number of living cells on every row, or every column, in an array
+     * between the first and the last line it covers. The lines outside the
+     * box hold 0, so when the box is empty the array can be moved anywhere.
+     * <br>
+     * The cells of a generation are within its area, but cells can be put
+     * anywhere in the world, i.e. by a session. A box wider than MAX_LINES
+     * keeps the lines holding cells in a CellCountMap instead, until it is
+     * empty again.
+     */
+    private static final class Lines{
+        private static final int[] EMPTY = new int[0];
+        private static final int MARGIN = 8;
+        private static final int MAX_LINES = 1 << 20;
+
+        private int[] counts;
+        //The line at index 0.
+        private int base;
+        //The lines holding cells when the box is wider than MAX_LINES, or null.
+        private CellCountMap wide;
+
+        Lines(){
+            counts = EMPTY;
+        }
+
+        /**
+         * @param first the first line to cover.
+         * @param last the last line to cover.
+         */
+        Lines(int first, int last){
+            if(isWide(first, last)){
+                counts = EMPTY;
+                return;
+            }
+            counts = new int[span(first, last)];
+            base = base(first, counts.length);
+        }
+
+        private static boolean isWide(int first, int last){
+            return (long) last-first >= MAX_LINES;
+        }
+
+        /**
+         * @return the length of an array covering the lines with a margin.
+         */
+        private static int span(int first, int last){
+            return last-first+1+2*MARGIN;
+        }
+
+        /**
+         * @return the first line of an array of the length starting a
+         *         margin before the first line, kept within the ints.
+         */
+        private static int base(int first, int length){
+            long base = Math.max((long) first-MARGIN, Integer.MIN_VALUE);
+            return (int) Math.min(base, (long) Integer.MAX_VALUE-length+1);
+        }
+
+        /**
+         * Adds one to the count of a line, growing the array to cover the
+         * lines holding cells if the line is outside it.
+         * @param line the line.
+         * @param first the first line holding cells, the line included.
+         * @param last the last line holding cells, the line included.
+         */
+        void increment(int line, int first, int last){
+            if(wide != null){
+                if(wide.size() > 0){
+                    wide.increment(line);
+                    return;
+                }
+                wide = null;
+            }
+            long i = (long) line-base;
+            if(i < 0 || i >= counts.length){
+                if(isWide(first, last)){
+                    widen();
+                    wide.increment(line);
+                    return;
+                }
+                cover(first, last);
+                i = (long) line-base;
+            }
+            counts[(int) i]++;
+        }
+
+        /**
+         * Moves the counts of the lines holding cells so the array covers
+         * them. A box that only moves, or is filled again somewhere else,
+         * keeps its array. A wider box gets one at least twice as long, so
+         * a box growing a line at a time only copies now and then.
+         */
+        private void cover(int first, int last){
+            int[] old = counts;
+            int oldBase = base;
+            int length = span(first, last);
+            if(length > old.length)
+                counts = new int[Math.max(length, Math.min(MAX_LINES+2*MARGIN, 2*old.length))];
+            base = base(first, counts.length);
+            //Only the lines already holding cells are copied, the new line is 0.
+            long from = Math.max((long) first, oldBase), to = Math.min((long) last, (long) oldBase+old.length-1);
+            if(from > to){
+                from = (long) base+counts.length;
+                to = from-1;
+            }
+            else
+                System.arraycopy(old, (int) (from-oldBase), counts, (int) (from-base), (int) (to-from+1));
+            if(counts == old){
+                Arrays.fill(counts, 0, (int) (from-base), 0);
+                Arrays.fill(counts, (int) (to-base+1), counts.length, 0);
+            }
+        }
+
+        /**
+         * Moves the lines holding cells from the array to a CellCountMap.
+         */
+        private void widen(){
+            wide = new CellCountMap();
+            for(int i = 0; i<counts.length; i++)
+                if(counts[i] != 0)
+                    wide.add(base+i, counts[i]);
+            counts = EMPTY;
+            base = 0;
+        }
+
+        /**
+         * @param line a line holding a cell.
+         * @return the count of the line, one less.
+         */
+        int decrement(int line){
+            if(wide != null)
+                return wide.add(line, -1);
+            return --counts[(int) ((long) line-base)];
+        }
+
+        /**
+         * @param line a line.
+         * @return the count of the line, 0 outside the array.
+         */
+        int get(int line){
+            if(wide != null)
+                return wide.get(line);
+            long i = (long) line-base;
+            return i < 0 || i >= counts.length ? 0 : counts[(int) i];
+        }
+
+        /**
+         * Finds the first line holding a cell, going from an empty side of
+         * the box towards the other side, which holds a cell. In the map,
+         * looking up more lines than there are lines holding cells costs
+         * more than visiting those, so a wide gap is closed with one pass
+         * over the lines instead.
+         * @param from the side of the box.
+         * @param step 1 to go south or east, -1 to go north or west.
+         * @return the new side of the box.
+         */
+        int inward(int from, int step){
+            if(wide != null){
+                int line = from;
+                for(int n = wide.size(); n > 0; n--, line += step)
+                    if(wide.get(line) != 0)
+                        return line;
+                int[] side = {step > 0 ? Integer.MAX_VALUE : Integer.MIN_VALUE};
+                wide.forEach((key, count) -> side[0] = step > 0
+                        ? Math.min(side[0], (int) key) : Math.max(side[0], (int) key));
+                return side[0];
+            }
+            int i = (int) ((long) from-base);
+            while(counts[i] == 0)
+                i += step;
+            return base+i;
+        }
+
+        /**
+         * Sets the counts of the lines between the first and the last to 0.
+         */
+        void clear(int first, int last){
+            if(wide != null){
+                wide = null;
+                return;
+            }
+            Arrays.fill(counts, (int) ((long) first-base), (int) ((long) last-base+1), 0);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package logic;
+
+import java.util.Arrays;
+
+/**
+ * Packs sorted cells into bytes: every key (see Generation.key) is written as
+ * its distance from the key before it, in a variable number of bytes, seven
+ * bits to a byte with the high bit set on every byte but the last.
+ * <br>
+ * The keys are sorted by row and then by column, so two cells in the same
+ * row are as many apart as their columns, mostly one byte, and a new row
+ * costs five bytes. A pattern then takes a byte or two for every cell
+ * instead of the eight bytes of a key. The distances are unsigned, so the
+ * keys may be any 64-bit numbers, as long as they are sorted as signed numbers.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+final class CellCodec{
+
+    private CellCodec(){
+    }
+
+    /**
+     * @param cells the keys, sorted from the smallest.
+     * @param size number of keys.
+     * @return the keys packed.
+     */
+    static byte[] encode(long[] cells, int size){
+        byte[] data = new byte[Math.max(16, size+size/2)];
+        int length = 0;
+        long prev = 0;
+        for(int i = 0; i<size; i++){
+            if(length+10 > data.length)
+                data = Arrays.copyOf(data, 2*data.length);
+            length = putVarLong(data, length, cells[i]-prev);
+            prev = cells[i];
+        }
+        return Arrays.copyOf(data, length);
+    }
+
+    /**
+     * @param data the keys packed by encode.
+     * @param cells the array the keys are unpacked into.
+     * @param size number of keys packed.
+     */
+    static void decode(byte[] data, long[] cells, int size){
+        int position = 0;
+        long cell = 0;
+        for(int i = 0; i<size; i++){
+            long distance = 0;
+            int shift = 0;
+            byte b;
+            do{
+                b = data[position++];
+                distance |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            }while(b < 0);
+            cell += distance;
+            cells[i] = cell;
+        }
+    }
+
+    /**
+     * Writes an unsigned number in seven bits to a byte.
+     * @return the position after the number.
+     */
+    static int putVarLong(byte[] data, int position, long value){
+        while((value & ~0x7FL) != 0){
+            data[position++] = (byte) (value | 0x80);
+            value >>>= 7;
+        }
+        data[position++] = (byte) value;
+        return position;
+    }
+}
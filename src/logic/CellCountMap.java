@@ -0,0 +1,229 @@
+package logic;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * A map from cells to counts, used to count the living neighbours of cells.
+ * Open-addressing hash map storing the keys in a plain long[] and the counts
+ * in a plain int[],
+ * using linear probing, so no Integer objects or entries are created.
+ * <br>
+ * Key 0 marks a free slot in the table, so the count of cell 0 is stored in
+ * a field of its own. Clearing the map keeps the tables. Like CellSet, every
+ * map hashes with its own multiplier.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class CellCountMap{
+
+    /**
+     * Receives every cell and its count from forEach.
+     */
+    public interface CountConsumer{
+        void accept(long key, int count);
+    }
+
+    private long[] keys;
+    private int[] counts;
+    private int mask;
+    private int size;
+    private boolean hasZero;
+    private int zeroCount;
+    private final long seed = CellSet.nextSeed();
+
+    public CellCountMap(){
+        this(16);
+    }
+
+    /**
+     * @param expected number of cells the map should hold without growing.
+     */
+    public CellCountMap(int expected){
+        int capacity = CellSet.tableSize(expected);
+        keys = new long[capacity];
+        counts = new int[capacity];
+        mask = capacity-1;
+    }
+
+    /**
+     * Adds one to the count of a cell. Cells not in the map start at 0.
+     * @param key the cell.
+     * @return the new count.
+     */
+    public int increment(long key){
+        if(key == 0){
+            if(!hasZero){
+                hasZero = true;
+                size++;
+            }
+            return ++zeroCount;
+        }
+        int slot = CellSet.mix(key, seed) & mask;
+        long k;
+        while((k = keys[slot]) != 0){
+            if(k == key)
+                return ++counts[slot];
+            slot = (slot+1) & mask;
+        }
+        keys[slot] = key;
+        counts[slot] = 1;
+        if(++size > (mask+1)*3/4)
+            grow();
+        return 1;
+    }
+
+    /**
+     * Adds delta to the count of a cell. A cell whose count becomes 0 is
+     * removed, shifting back the following cells of the probe sequence.
+     * @param key the cell.
+     * @param delta the amount to add, may be negative.
+     * @return the new count.
+     */
+    public int add(long key, int delta){
+        if(key == 0){
+            zeroCount += delta;
+            if(hasZero != (zeroCount != 0)){
+                hasZero = zeroCount != 0;
+                size += hasZero ? 1 : -1;
+            }
+            return zeroCount;
+        }
+        int slot = CellSet.mix(key, seed) & mask;
+        long k;
+        while((k = keys[slot]) != 0){
+            if(k == key){
+                int count = counts[slot] += delta;
+                if(count == 0){
+                    size--;
+                    shiftBack(slot);
+                }
+                return count;
+            }
+            slot = (slot+1) & mask;
+        }
+        if(delta == 0)
+            return 0;
+        keys[slot] = key;
+        counts[slot] = delta;
+        if(++size > (mask+1)*3/4)
+            grow();
+        return delta;
+    }
+
+    /**
+     * Fills the free slot by moving back the following cells of the probe sequence.
+     */
+    private void shiftBack(int free){
+        int slot = free;
+        while(true){
+            slot = (slot+1) & mask;
+            long k = keys[slot];
+            if(k == 0)
+                break;
+            int home = CellSet.mix(k, seed) & mask;
+            //Moves k if its home is not between the free slot and its slot.
+            if(((slot-home) & mask) >= ((slot-free) & mask)){
+                keys[free] = k;
+                counts[free] = counts[slot];
+                free = slot;
+            }
+        }
+        keys[free] = 0;
+        counts[free] = 0;
+    }
+
+    /**
+     * @param key the cell.
+     * @return the count of the cell, 0 if it is not in the map.
+     */
+    public int get(long key){
+        if(key == 0)
+            return zeroCount;
+        int slot = CellSet.mix(key, seed) & mask;
+        long k;
+        while((k = keys[slot]) != 0){
+            if(k == key)
+                return counts[slot];
+            slot = (slot+1) & mask;
+        }
+        return 0;
+    }
+
+    /**
+     * Removes every cell, keeping the tables.
+     */
+    public void clear(){
+        if(size > 0){
+            Arrays.fill(keys, 0);
+            hasZero = false;
+            zeroCount = 0;
+            size = 0;
+        }
+    }
+
+    /**
+     * @return number of cells in the map.
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Calls the action for every cell and its count, without boxing.
+     * @param action the action.
+     */
+    public void forEach(CountConsumer action){
+        if(hasZero)
+            action.accept(0, zeroCount);
+        for(int slot = 0; slot<keys.length; slot++)
+            if(keys[slot] != 0)
+                action.accept(keys[slot], counts[slot]);
+    }
+
+    /**
+     * @return an iterator over the cells in the map. Use nextLong() to avoid boxing.
+     */
+    public PrimitiveIterator.OfLong keyIterator(){
+        return new PrimitiveIterator.OfLong(){
+            private int slot = hasZero ? -1 : next(0);
+
+            private int next(int from){
+                while(from < keys.length && keys[from] == 0)
+                    from++;
+                return from;
+            }
+
+            @Override
+            public boolean hasNext(){
+                return slot < keys.length;
+            }
+
+            @Override
+            public long nextLong(){
+                if(slot >= keys.length)
+                    throw new NoSuchElementException();
+                long key = slot < 0 ? 0 : keys[slot];
+                slot = next(slot+1);
+                return key;
+            }
+        };
+    }
+
+    private void grow(){
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new long[oldKeys.length*2];
+        counts = new int[oldKeys.length*2];
+        mask = keys.length-1;
+        for(int i = 0; i<oldKeys.length; i++){
+            if(oldKeys[i] != 0){
+                int slot = CellSet.mix(oldKeys[i], seed) & mask;
+                while(keys[slot] != 0)
+                    slot = (slot+1) & mask;
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+}
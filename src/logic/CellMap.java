@@ -0,0 +1,205 @@
+package logic;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A map from cells to objects, i.e. from the keys of tiles to the tiles of
+ * GenerationTiled. Open-addressing hash map storing the keys in a plain
+ * long[] and the values in an Object[], using linear probing like CellSet,
+ * so no key is boxed and no entry is created.
+ * <br>
+ * A HashMap&lt;Long, V&gt; hashes a key by its row xor its column, so the
+ * keys along a diagonal collide, and the bins of a large pattern turn into
+ * trees that are searched by reflection. Every map here mixes the whole key
+ * with its own multiplier, see CellSet.
+ * <br>
+ * Key 0 marks a free slot in the table, so the value of cell 0 is stored in
+ * a field of its own. The values can not be null.
+ * @param <V> the type of the values.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class CellMap<V>{
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    private Object zeroValue;
+    private final long seed = CellSet.nextSeed();
+
+    public CellMap(){
+        this(16);
+    }
+
+    /**
+     * @param expected number of cells the map should hold without growing.
+     */
+    public CellMap(int expected){
+        int capacity = CellSet.tableSize(expected);
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity-1;
+    }
+
+    /**
+     * @param key the cell.
+     * @return the value of the cell, or null if it is not in the map.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key){
+        if(key == 0)
+            return (V) zeroValue;
+        int slot = CellSet.mix(key, seed) & mask;
+        long k;
+        while((k = keys[slot]) != 0){
+            if(k == key)
+                return (V) values[slot];
+            slot = (slot+1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * @param key the cell.
+     * @return true if the cell is in the map.
+     */
+    public boolean containsKey(long key){
+        return get(key) != null;
+    }
+
+    /**
+     * Puts the value of a cell, replacing any value it had.
+     * @param key the cell.
+     * @param value the value, not null.
+     * @return the value the cell had, or null.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value){
+        if(value == null)
+            throw new NullPointerException("The value of cell " + key + " is null");
+        if(key == 0){
+            Object old = zeroValue;
+            zeroValue = value;
+            if(old == null)
+                size++;
+            return (V) old;
+        }
+        int slot = CellSet.mix(key, seed) & mask;
+        long k;
+        while((k = keys[slot]) != 0){
+            if(k == key){
+                Object old = values[slot];
+                values[slot] = value;
+                return (V) old;
+            }
+            slot = (slot+1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if(++size > (mask+1)*3/4)
+            grow();
+        return null;
+    }
+
+    /**
+     * Removes a cell, shifting back the following cells of the probe sequence.
+     * @param key the cell.
+     * @return the value the cell had, or null if it was not in the map.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key){
+        if(key == 0){
+            Object old = zeroValue;
+            if(old != null){
+                zeroValue = null;
+                size--;
+            }
+            return (V) old;
+        }
+        int slot = CellSet.mix(key, seed) & mask;
+        long k;
+        while((k = keys[slot]) != 0){
+            if(k == key){
+                Object old = values[slot];
+                size--;
+                shiftBack(slot);
+                return (V) old;
+            }
+            slot = (slot+1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Fills the free slot by moving back the following cells of the probe sequence.
+     */
+    private void shiftBack(int free){
+        int slot = free;
+        while(true){
+            slot = (slot+1) & mask;
+            long k = keys[slot];
+            if(k == 0)
+                break;
+            int home = CellSet.mix(k, seed) & mask;
+            //Moves k if its home is not between the free slot and its slot.
+            if(((slot-home) & mask) >= ((slot-free) & mask)){
+                keys[free] = k;
+                values[free] = values[slot];
+                free = slot;
+            }
+        }
+        keys[free] = 0;
+        values[free] = null;
+    }
+
+    /**
+     * Removes every cell, keeping the tables.
+     */
+    public void clear(){
+        if(size > 0){
+            Arrays.fill(keys, 0);
+            Arrays.fill(values, null);
+            zeroValue = null;
+            size = 0;
+        }
+    }
+
+    /**
+     * @return number of cells in the map.
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Calls the action for the value of every cell. The map must not be
+     * changed by the action.
+     * @param action the action.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<? super V> action){
+        if(zeroValue != null)
+            action.accept((V) zeroValue);
+        for(int slot = 0; slot<keys.length; slot++)
+            if(keys[slot] != 0)
+                action.accept((V) values[slot]);
+    }
+
+    private void grow(){
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[oldKeys.length*2];
+        values = new Object[oldKeys.length*2];
+        mask = keys.length-1;
+        for(int i = 0; i<oldKeys.length; i++){
+            if(oldKeys[i] != 0){
+                int slot = CellSet.mix(oldKeys[i], seed) & mask;
+                while(keys[slot] != 0)
+                    slot = (slot+1) & mask;
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
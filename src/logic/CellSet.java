@@ -0,0 +1,259 @@
+package logic;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+/**
+ * A set of cells, where every cell is its 64-bit key (see Generation.key).
+ * Open-addressing hash set storing the keys in a plain long[], using linear
+ * probing. Compared to a HashMap&lt;Long, String&gt; there is no boxed key and
+ * no entry object for every cell, only eight or sixteen bytes in the table.
+ * <br>
+ * Key 0 marks a free slot in the table, so the cell 0 is stored in a flag of
+ * its own. Clearing the set keeps the table, so a set can be reused every
+ * generation without new allocations.
+ * <br>
+ * Every table hashes with its own multiplier. Copying one table into another
+ * in slot order would otherwise fill the new table in the order of its own
+ * slots, building long probe sequences.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class CellSet{
+
+    private static final int MIN_CAPACITY = 16;
+    private static final AtomicInteger SEEDS = new AtomicInteger();
+
+    private long[] keys;
+    private int mask;
+    private int size;
+    private boolean hasZero;
+    private final long seed = nextSeed();
+
+    public CellSet(){
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expected number of cells the set should hold without growing.
+     */
+    public CellSet(int expected){
+        int capacity = tableSize(expected);
+        keys = new long[capacity];
+        mask = capacity-1;
+    }
+
+    /**
+     * Adds a cell to the set.
+     * @param key the cell.
+     * @return true if the cell was not in the set.
+     */
+    public boolean add(long key){
+        if(key == 0){
+            if(hasZero)
+                return false;
+            hasZero = true;
+            size++;
+            return true;
+        }
+        int slot = mix(key, seed) & mask;
+        while(keys[slot] != 0){
+            if(keys[slot] == key)
+                return false;
+            slot = (slot+1) & mask;
+        }
+        keys[slot] = key;
+        if(++size > (mask+1)*3/4)
+            grow();
+        return true;
+    }
+
+    /**
+     * @param key the cell.
+     * @return true if the cell is in the set.
+     */
+    public boolean contains(long key){
+        if(key == 0)
+            return hasZero;
+        int slot = mix(key, seed) & mask;
+        long k;
+        while((k = keys[slot]) != 0){
+            if(k == key)
+                return true;
+            slot = (slot+1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Removes a cell from the set. The following cells of the probe sequence
+     * are shifted back, so no tombstones are needed.
+     * @param key the cell.
+     * @return true if the cell was in the set.
+     */
+    public boolean remove(long key){
+        if(key == 0){
+            if(!hasZero)
+                return false;
+            hasZero = false;
+            size--;
+            return true;
+        }
+        int slot = mix(key, seed) & mask;
+        while(keys[slot] != key){
+            if(keys[slot] == 0)
+                return false;
+            slot = (slot+1) & mask;
+        }
+        size--;
+        shiftBack(slot);
+        return true;
+    }
+
+    /**
+     * Fills the free slot by moving back the following keys of the probe sequence.
+     */
+    private void shiftBack(int free){
+        int slot = free;
+        while(true){
+            slot = (slot+1) & mask;
+            long k = keys[slot];
+            if(k == 0)
+                break;
+            int home = mix(k, seed) & mask;
+            //Moves k if its home is not between the free slot and its slot.
+            if(((slot-home) & mask) >= ((slot-free) & mask)){
+                keys[free] = k;
+                free = slot;
+            }
+        }
+        keys[free] = 0;
+    }
+
+    /**
+     * Removes every cell, keeping the table.
+     */
+    public void clear(){
+        if(size > 0){
+            Arrays.fill(keys, 0);
+            hasZero = false;
+            size = 0;
+        }
+    }
+
+    /**
+     * @return number of cells in the set.
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * @return number of slots in the table.
+     */
+    public int capacity(){
+        return keys.length;
+    }
+
+    /**
+     * Calls the action for every cell, without boxing.
+     * @param action the action.
+     */
+    public void forEach(LongConsumer action){
+        if(hasZero)
+            action.accept(0);
+        for(long k : keys)
+            if(k != 0)
+                action.accept(k);
+    }
+
+    /**
+     * @return the cells in a long[].
+     */
+    public long[] toArray(){
+        long[] result = new long[size];
+        int n = 0;
+        if(hasZero)
+            result[n++] = 0;
+        for(long k : keys)
+            if(k != 0)
+                result[n++] = k;
+        return result;
+    }
+
+    /**
+     * @return an iterator over the cells. Use nextLong() to avoid boxing.
+     */
+    public PrimitiveIterator.OfLong iterator(){
+        return new PrimitiveIterator.OfLong(){
+            private int slot = hasZero ? -1 : next(0);
+
+            private int next(int from){
+                while(from < keys.length && keys[from] == 0)
+                    from++;
+                return from;
+            }
+
+            @Override
+            public boolean hasNext(){
+                return slot < keys.length;
+            }
+
+            @Override
+            public long nextLong(){
+                if(slot >= keys.length)
+                    throw new NoSuchElementException();
+                long key = slot < 0 ? 0 : keys[slot];
+                slot = next(slot+1);
+                return key;
+            }
+        };
+    }
+
+    private void grow(){
+        long[] old = keys;
+        keys = new long[old.length*2];
+        mask = keys.length-1;
+        for(long k : old){
+            if(k != 0){
+                int slot = mix(k, seed) & mask;
+                while(keys[slot] != 0)
+                    slot = (slot+1) & mask;
+                keys[slot] = k;
+            }
+        }
+    }
+
+    /**
+     * Spreads the bits of the key, as neighbouring cells have neighbouring keys.
+     * The row is in the upper half of the key, so the upper half of the
+     * product is folded into the lower half.
+     * @param key the cell.
+     * @param seed the odd multiplier of the table.
+     */
+    static int mix(long key, long seed){
+        long h = key * seed;
+        h ^= h >>> 32;
+        return (int) (h ^ (h >>> 16));
+    }
+
+    /**
+     * @return a new odd multiplier for a table.
+     */
+    static long nextSeed(){
+        long h = SEEDS.incrementAndGet() * 0x9E3779B97F4A7C15L;
+        return (h ^ (h >>> 31)) * 0xBF58476D1CE4E5B9L | 1;
+    }
+
+    /**
+     * @return a power of two large enough to hold expected keys at 3/4 load.
+     */
+    static int tableSize(int expected){
+        int capacity = MIN_CAPACITY;
+        while(capacity*3/4 < expected)
+            capacity <<= 1;
+        return capacity;
+    }
+}
@@ -0,0 +1,441 @@
+package logic;
+
+import java.util.Arrays;
+
+/**
+ * An immutable, compiled ruleset.
+ * The rule is a table of 512 entries, one for every 3x3 neighbourhood. The
+ * neighbourhood is a bitmask where bit (di+1)*3+(dj+1) is the cell at row
+ * offset di and column offset dj, so bit 4 (CENTER) is the cell itself:
+ * <pre>
+ *      NW  N  NE        0 1 2
+ *      W   C  E    =    3 4 5
+ *      SW  S  SE        6 7 8
+ * </pre>
+ * An engine that knows the neighbourhood of a cell gets its next state from a
+ * single lookup, nextState(mask). Engines that only count the neighbours can use
+ * getBorn()/getSurvives() when the rule isTotalistic().
+ * <br>
+ * Besides the totalistic rules (B3/S23), the table can hold isotropic
+ * non-totalistic rules in Hensel notation, where a count is followed by the
+ * letters of the neighbourhood shapes it applies to, i.e. B2-a/S12 or B3/S23-k.
+ * A count without letters means every shape, and a minus means every shape
+ * except the letters. As the lookup is the same, such rules cost nothing extra
+ * per cell.
+ * <br>
+ * A rule of the Generations family, like Brian's Brain B2/S/C3 or Star Wars
+ * B2/S345/C4, has more than two states. State 0 is dead and state 1 is alive,
+ * and only the living cells are neighbours. A living cell that does not survive
+ * does not die at once, it decays through the states 2, 3 and on, one state
+ * every generation, and is dead after the last one. A decaying cell is never
+ * born. Engines that store the state of every cell get it from
+ * nextState(state, mask), which is one lookup in the table or in the decay.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public final class CompiledRule{
+
+    /**
+     * The bit of the cell itself in the neighbourhood mask.
+     */
+    public static final int CENTER = 1 << 4;
+
+    //The eight neighbour bits, every bit except the center.
+    private static final int NEIGHBOURS = 0x1FF & ~CENTER;
+
+    //The Hensel letters of the shapes of 0 to 4 neighbours, 5 to 8 are complements.
+    private static final String[] LETTERS = {"", "ce", "ceaikn", "ceaiknjqry", "ceaiknjqrytwz"};
+
+    //One neighbourhood of every shape, in the order of the letters.
+    private static final int[][] SHAPES = {
+        {},
+        {1, 2},
+        {5, 10, 3, 40, 33, 68},
+        {69, 42, 11, 7, 98, 13, 14, 70, 41, 97},
+        {325, 170, 15, 45, 99, 71, 106, 102, 43, 101, 105, 78, 108}
+    };
+
+    //The index of the letter of every neighbourhood mask, without the center.
+    private static final byte[] SHAPE = shapes();
+
+    /**
+     * Conway's Game of Life, B3/S23.
+     */
+    public static final CompiledRule CONWAY = fromCounts(counts(3), counts(2, 3));
+
+    /**
+     * The largest number of states of a rule, so a state fits in a byte.
+     */
+    public static final int MAX_STATES = 256;
+
+    private final byte[] table;
+    private final boolean totalistic;
+    private final int states;
+    //The state after every state, for a cell that is not alive in the next
+    //generation. States the rule does not have, left by an earlier rule, are dead.
+    private final byte[] decay;
+
+    private CompiledRule(byte[] table, int states){
+        this.table = table;
+        this.totalistic = checkTotalistic(table);
+        this.states = states;
+        this.decay = new byte[MAX_STATES];
+        for(int state = 1; state<states; state++)
+            decay[state] = (byte) (state+1 < states ? state+1 : 0);
+    }
+
+    /**
+     * Compiles a totalistic rule.
+     * @param born born[n] is true if a dead cell with n neighbours is born.
+     * @param survives survives[n] is true if a living cell with n neighbours survives.
+     * @return the compiled rule.
+     */
+    public static CompiledRule fromCounts(boolean[] born, boolean[] survives){
+        byte[] table = new byte[512];
+        for(int mask = 0; mask<512; mask++){
+            int count = Integer.bitCount(mask & NEIGHBOURS);
+            boolean next = (mask & CENTER) != 0 ? survives[count] : born[count];
+            table[mask] = (byte) (next ? 1 : 0);
+        }
+        return new CompiledRule(table, 2);
+    }
+
+    /**
+     * Compiles a totalistic rule of the Generations family.
+     * @param born born[n] is true if a dead cell with n neighbours is born.
+     * @param survives survives[n] is true if a living cell with n neighbours survives.
+     * @param states number of states, 2 for a rule without decay.
+     * @return the compiled rule.
+     * @throws IllegalArgumentException if states is not 2 to MAX_STATES.
+     */
+    public static CompiledRule fromCounts(boolean[] born, boolean[] survives, int states){
+        return fromCounts(born, survives).withStates(states);
+    }
+
+    /**
+     * Parses the born and survives part of a rule, in B/S or Hensel notation,
+     * i.e. "3" and "23", or "2-a" and "12". A part may be empty, where no
+     * cell is born or survives.
+     * @param ruleB the counts (and letters) a dead cell is born with.
+     * @param ruleS the counts (and letters) a living cell survives with.
+     * @return the compiled rule.
+     * @throws PatternFormatException if the rule is not valid.
+     */
+    public static CompiledRule parse(String ruleB, String ruleS) throws PatternFormatException{
+        boolean[] born = parseRulePart(ruleB.trim());
+        boolean[] survives = parseRulePart(ruleS.trim());
+        byte[] table = new byte[512];
+        for(int mask = 0; mask<512; mask++){
+            boolean[] part = (mask & CENTER) != 0 ? survives : born;
+            table[mask] = (byte) (part[mask & NEIGHBOURS] ? 1 : 0);
+        }
+        return new CompiledRule(table, 2);
+    }
+
+    /**
+     * Parses a whole rule, i.e. "B3/S23", "B2/S/C3" or "B2-a/S12". The number
+     * of states follows the two parts, with or without the C. Without the
+     * letters B and S the rule is read as survives/born/states, the order of
+     * older pattern files, i.e. "23/3" is B3/S23 and "345/2/4" is B2/S345/C4.
+     * @param rule the rule.
+     * @return the compiled rule.
+     * @throws PatternFormatException if the rule is not valid.
+     */
+    public static CompiledRule parse(String rule) throws PatternFormatException{
+        String[] parts = rule.trim().split("/", -1);
+        if(parts.length < 2 || parts.length > 3)
+            throw new PatternFormatException("Ruleset is not of the form B/S or B/S/C: " + rule);
+        String first = parts[0].trim(), second = parts[1].trim();
+        String ruleB, ruleS;
+        if(first.matches("(?i)b.*") && second.matches("(?i)s.*")){
+            ruleB = first.substring(1);
+            ruleS = second.substring(1);
+        }
+        else if(first.matches("(?i)s.*") && second.matches("(?i)b.*")){
+            ruleB = second.substring(1);
+            ruleS = first.substring(1);
+        }
+        else{
+            ruleB = second;
+            ruleS = first;
+        }
+        CompiledRule compiled = parse(ruleB, ruleS);
+        if(parts.length == 2)
+            return compiled;
+        String states = parts[2].trim().replaceFirst("^[CcGg]", "");
+        if(!states.matches("\\d{1,3}") || Integer.parseInt(states) < 2 || Integer.parseInt(states) > MAX_STATES)
+            throw new PatternFormatException("Number of states has to be 2 to " + MAX_STATES + ": " + parts[2]);
+        return compiled.withStates(Integer.parseInt(states));
+    }
+
+    /**
+     * @param states number of states, 2 to MAX_STATES.
+     * @return this rule with a number of states, see the class description.
+     * @throws IllegalArgumentException if states is not 2 to MAX_STATES.
+     */
+    public CompiledRule withStates(int states){
+        if(states < 2 || states > MAX_STATES)
+            throw new IllegalArgumentException("Number of states has to be 2 to " + MAX_STATES + ": " + states);
+        if(states == this.states)
+            return this;
+        return new CompiledRule(table, states);
+    }
+
+    /**
+     * @param rule the B or S part of a rule.
+     * @return true if the part is valid B/S or Hensel notation.
+     */
+    public static boolean isValid(String rule){
+        try{
+            parsePart(rule.trim());
+            return true;
+        }
+        catch(PatternFormatException e){
+            return false;
+        }
+    }
+
+    /**
+     * Parses one part of a whole rule, where the part may be empty, as the
+     * survives part of B2/S/C3.
+     */
+    private static boolean[] parseRulePart(String part) throws PatternFormatException{
+        if(part.isEmpty())
+            return new boolean[NEIGHBOURS+1];
+        return parsePart(part);
+    }
+
+    /**
+     * Parses one part of a rule into the neighbourhoods it contains.
+     * @return an array where entry mask is true if the neighbourhood is in the part.
+     */
+    private static boolean[] parsePart(String part) throws PatternFormatException{
+        if(!part.matches("([0-8](-?[a-z]+)?)+"))
+            throw new PatternFormatException("Ruleset contains invalid values: " + part);
+
+        boolean[] result = new boolean[NEIGHBOURS+1];
+        int p = 0;
+        while(p < part.length()){
+            int count = part.charAt(p++) - '0';
+            boolean except = p < part.length() && part.charAt(p) == '-';
+            if(except)
+                p++;
+            int start = p;
+            while(p < part.length() && Character.isLetter(part.charAt(p)))
+                p++;
+            String letters = part.substring(start, p);
+            String valid = letters(count);
+            for(char c : letters.toCharArray())
+                if(valid.indexOf(c) < 0)
+                    throw new PatternFormatException("Ruleset contains invalid values: " + count + c);
+
+            for(int mask = 0; mask<=NEIGHBOURS; mask++){
+                if((mask & CENTER) != 0 || Integer.bitCount(mask) != count)
+                    continue;
+                boolean listed = !letters.isEmpty() && letters.indexOf(valid.charAt(SHAPE[mask])) >= 0;
+                if(letters.isEmpty() || listed != except)
+                    result[mask] = true;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the Hensel letters of count neighbours.
+     */
+    private static String letters(int count){
+        return LETTERS[Math.min(count, 8-count)];
+    }
+
+    /**
+     * Gives every neighbourhood the index of its shape, by turning and mirroring
+     * one neighbourhood of every shape. Shapes of more than four neighbours
+     * are the complements of the shapes of less than four.
+     */
+    private static byte[] shapes(){
+        byte[] shape = new byte[NEIGHBOURS+1];
+        for(int count = 1; count<8; count++){
+            int[] shapes = SHAPES[Math.min(count, 8-count)];
+            for(int s = 0; s<shapes.length; s++){
+                int mask = count <= 4 ? shapes[s] : NEIGHBOURS & ~shapes[s];
+                for(int turn = 0; turn<8; turn++){
+                    shape[mask] = (byte) s;
+                    mask = turn == 3 ? mirror(mask) : rotate(mask);
+                }
+            }
+        }
+        return shape;
+    }
+
+    /**
+     * @return the neighbourhood turned 90 degrees clockwise.
+     */
+    private static int rotate(int mask){
+        int result = 0;
+        for(int r = 0; r<3; r++)
+            for(int c = 0; c<3; c++)
+                if((mask & (1 << (r*3+c))) != 0)
+                    result |= 1 << (c*3+2-r);
+        return result;
+    }
+
+    /**
+     * @return the neighbourhood mirrored left to right.
+     */
+    private static int mirror(int mask){
+        int result = 0;
+        for(int r = 0; r<3; r++)
+            for(int c = 0; c<3; c++)
+                if((mask & (1 << (r*3+c))) != 0)
+                    result |= 1 << (r*3+2-c);
+        return result;
+    }
+
+    private static boolean checkTotalistic(byte[] table){
+        byte[] byCount = new byte[18];
+        Arrays.fill(byCount, (byte) -1);
+        for(int mask = 0; mask<512; mask++){
+            int index = ((mask & CENTER) != 0 ? 9 : 0) + Integer.bitCount(mask & NEIGHBOURS);
+            if(byCount[index] == -1)
+                byCount[index] = table[mask];
+            else if(byCount[index] != table[mask])
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean[] counts(int... counts){
+        boolean[] result = new boolean[9];
+        for(int count : counts)
+            result[count] = true;
+        return result;
+    }
+
+    /**
+     * @param di row offset of the neighbour, -1 to 1.
+     * @param dj column offset of the neighbour, -1 to 1.
+     * @return the bit of the neighbour in the neighbourhood mask.
+     */
+    public static int neighbourBit(int di, int dj){
+        return 1 << ((di+1)*3 + dj+1);
+    }
+
+    /**
+     * @param mask the 3x3 neighbourhood, see the class description.
+     * @return 1 if the cell is alive in the next generation, else 0.
+     */
+    public int nextState(int mask){
+        return table[mask];
+    }
+
+    /**
+     * The next state of a cell of any state, see the class description.
+     * @param state the state of the cell, 0 to MAX_STATES-1.
+     * @param mask the 3x3 neighbourhood of the living cells, where the center
+     *        is set if the state is 1.
+     * @return the state of the cell in the next generation.
+     */
+    public int nextState(int state, int mask){
+        if(state < 2 && table[mask] == 1)
+            return 1;
+        return decay[state];
+    }
+
+    /**
+     * @return number of states, 2 for a rule where every cell is dead or alive.
+     */
+    public int getStates(){
+        return states;
+    }
+
+    /**
+     * @return true if the next state only depends on the number of neighbours.
+     */
+    public boolean isTotalistic(){
+        return totalistic;
+    }
+
+    /**
+     * @return born[n] is true if a dead cell with n neighbours is always born.
+     */
+    public boolean[] getBorn(){
+        return countsOf(0);
+    }
+
+    /**
+     * @return survives[n] is true if a living cell with n neighbours always survives.
+     */
+    public boolean[] getSurvives(){
+        return countsOf(CENTER);
+    }
+
+    private boolean[] countsOf(int center){
+        boolean[] result = new boolean[9];
+        Arrays.fill(result, true);
+        for(int mask = 0; mask<=NEIGHBOURS; mask++)
+            if((mask & CENTER) == 0 && table[mask | center] == 0)
+                result[Integer.bitCount(mask)] = false;
+        return result;
+    }
+
+    /**
+     * @return the born part of the rule in Hensel notation, i.e. "3" or "2-a".
+     */
+    public String getBornString(){
+        return partString(0);
+    }
+
+    /**
+     * @return the survives part of the rule in Hensel notation, i.e. "23".
+     */
+    public String getSurvivesString(){
+        return partString(CENTER);
+    }
+
+    private String partString(int center){
+        StringBuilder builder = new StringBuilder();
+        for(int count = 0; count<9; count++){
+            String valid = letters(count);
+            boolean[] in = new boolean[Math.max(1, valid.length())];
+            int included = 0;
+            for(int mask = 0; mask<=NEIGHBOURS; mask++){
+                if((mask & CENTER) == 0 && Integer.bitCount(mask) == count
+                        && table[mask | center] == 1 && !in[SHAPE[mask]]){
+                    in[SHAPE[mask]] = true;
+                    included++;
+                }
+            }
+            if(included == 0)
+                continue;
+            builder.append(count);
+            if(included == in.length)
+                continue;
+            boolean except = included > in.length/2;
+            if(except)
+                builder.append('-');
+            for(int s = 0; s<in.length; s++)
+                if(in[s] != except)
+                    builder.append(valid.charAt(s));
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public boolean equals(Object other){
+        return other instanceof CompiledRule && states == ((CompiledRule) other).states
+                && Arrays.equals(table, ((CompiledRule) other).table);
+    }
+
+    @Override
+    public int hashCode(){
+        return 31*Arrays.hashCode(table) + states;
+    }
+
+    /**
+     * @return the rule in B/S notation, i.e. B3/S23, followed by the number
+     *         of states if there are more than two, i.e. B2/S/C3.
+     */
+    @Override
+    public String toString(){
+        return "B" + getBornString() + "/S" + getSurvivesString() + (states > 2 ? "/C" + states : "");
+    }
+}
@@ -0,0 +1,76 @@
+package logic;
+
+/**
+ * A repetition found by a CycleDetector: the pattern of a generation came
+ * back period generations later, moved by (rowShift, columnShift) cells.
+ * A still life has the period 1 and does not move, an oscillator does not
+ * move, and a spaceship moves.
+ * <br>
+ * From the generation the cycle was found in, the pattern n*period
+ * generations later is the same pattern moved n times as far, see
+ * DynamicBoard.stepN(int).
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public final class Cycle{
+
+    private final int generation;
+    private final int period;
+    private final int rowShift;
+    private final int columnShift;
+    private final int population;
+
+    /**
+     * @param generation the generation the cycle was found in.
+     * @param period number of generations before the pattern repeats.
+     * @param rowShift number of rows the pattern moves south every period.
+     * @param columnShift number of columns the pattern moves east every period.
+     * @param population number of cells of the pattern.
+     */
+    public Cycle(int generation, int period, int rowShift, int columnShift, int population){
+        this.generation = generation;
+        this.period = period;
+        this.rowShift = rowShift;
+        this.columnShift = columnShift;
+        this.population = population;
+    }
+
+    public int getGeneration(){
+        return generation;
+    }
+
+    public int getPeriod(){
+        return period;
+    }
+
+    public int getRowShift(){
+        return rowShift;
+    }
+
+    public int getColumnShift(){
+        return columnShift;
+    }
+
+    public int getPopulation(){
+        return population;
+    }
+
+    /**
+     * @return true if the pattern moves, i.e. a glider.
+     */
+    public boolean isMoving(){
+        return rowShift != 0 || columnShift != 0;
+    }
+
+    /**
+     * @return a short description, i.e. "Still life", "Period 2" or
+     *         "Period 4, moving 1,1".
+     */
+    @Override
+    public String toString(){
+        if(population == 0)
+            return "Died out";
+        if(period == 1 && !isMoving())
+            return "Still life";
+        return "Period " + period + (isMoving() ? ", moving " + rowShift + "," + columnShift : "");
+    }
+}
@@ -0,0 +1,149 @@
+package logic;
+
+/**
+ * Finds still lifes, oscillators and spaceships as they are stepped, from
+ * the Zobrist hashes of the generations, see Generation.getHash().
+ * <br>
+ * The detector keeps a ring of the last generations it has observed: the
+ * hash, the population and the bounding box of each. A new generation is
+ * compared with them from the newest to the oldest, so the shortest period
+ * is found first. Only a generation of the same population and the same
+ * size of box can be the same pattern, and then its hash is translated by
+ * the distance the box has moved, see ZobristHash.translate, and compared.
+ * No cell is visited, so observing a generation costs the size of the ring.
+ * <br>
+ * On a bounded Topology the cells wrap around the edges, and the box does
+ * not follow a spaceship, so only the patterns that come back in place are
+ * found there.
+ * <br>
+ * A hash is no proof: two different patterns of the same population and
+ * box could have the same 64-bit hash, and a board skipping the periods of
+ * a false cycle would lose its cells. So before a match is reported, a
+ * copy of the generation is stepped one period and compared with the
+ * generation moved as far as the cycle moves it, cell by cell. That costs
+ * the steps of one period, once: the board stops observing when a cycle is
+ * found. The generations observed have to follow each other, so the ring
+ * is cleared when the board is edited or jumps ahead.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class CycleDetector{
+
+    /**
+     * Default number of generations remembered, the longest period found.
+     */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final long[] hashes;
+    private final int[] generations;
+    private final int[] populations;
+    //The north west corner and the size of the bounding box of every generation.
+    private final int[] tops;
+    private final int[] lefts;
+    private final int[] heights;
+    private final int[] widths;
+    //The slot of the next generation, and number of generations in the ring.
+    private int next;
+    private int size;
+
+    public CycleDetector(){
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity number of generations remembered, the longest period found.
+     */
+    public CycleDetector(int capacity){
+        hashes = new long[capacity];
+        generations = new int[capacity];
+        populations = new int[capacity];
+        tops = new int[capacity];
+        lefts = new int[capacity];
+        heights = new int[capacity];
+        widths = new int[capacity];
+    }
+
+    /**
+     * Compares a generation with the generations before it, and adds it to
+     * the ring.
+     * @param gen the generation.
+     * @param generation the number of the generation, one more than the last
+     *        generation observed.
+     * @return the cycle of the shortest period the generation ends, or null
+     *         if it is not a repetition of a generation in the ring.
+     */
+    public Cycle observe(Generation gen, int generation){
+        long hash = gen.getHash();
+        int population = gen.getPopulation();
+        int[] box = gen.getBoundingBox();
+        int top = 0, left = 0, height = 0, width = 0;
+        if(box != null){
+            top = box[0];
+            left = box[2];
+            height = box[1]-box[0];
+            width = box[3]-box[2];
+        }
+        boolean bounded = gen.getTopology().isBounded();
+
+        Cycle cycle = null;
+        for(int n = 1; n<=size && cycle == null; n++){
+            int slot = Math.floorMod(next-n, hashes.length);
+            if(populations[slot] != population || heights[slot] != height || widths[slot] != width
+                    || generations[slot] >= generation)
+                continue;
+            int rows = top-tops[slot], columns = left-lefts[slot];
+            if(bounded && (rows != 0 || columns != 0))
+                continue;
+            if(ZobristHash.translate(hashes[slot], rows, columns) == hash
+                    && repeats(gen, generation-generations[slot], rows, columns))
+                cycle = new Cycle(generation, generation-generations[slot], rows, columns, population);
+        }
+
+        hashes[next] = hash;
+        generations[next] = generation;
+        populations[next] = population;
+        tops[next] = top;
+        lefts[next] = left;
+        heights[next] = height;
+        widths[next] = width;
+        next = (next+1) % hashes.length;
+        size = Math.min(size+1, hashes.length);
+        return cycle;
+    }
+
+    /**
+     * Steps a copy of a generation one period, see Generation.copy().
+     * @param gen the generation.
+     * @param period number of generations of the period.
+     * @param rows number of rows the cells move south in the period.
+     * @param columns number of columns the cells move east in the period.
+     * @return true if the copy holds the cells of the generation, in the
+     *         same states, moved by the rows and columns.
+     */
+    private static boolean repeats(Generation gen, int period, int rows, int columns){
+        Generation stepped = gen.copy().stepN(period);
+        if(stepped.getPopulation() != gen.getPopulation())
+            return false;
+        CellCountMap moved = new CellCountMap(gen.getPopulation());
+        for(long cell : gen)
+            moved.add(Generation.key(Generation.row(cell)+rows, Generation.column(cell)+columns), gen.stateOf(cell));
+        for(long cell : stepped)
+            if(moved.get(cell) != stepped.stateOf(cell))
+                return false;
+        return true;
+    }
+
+    /**
+     * Forgets every generation, i.e. when the board is edited.
+     */
+    public void clear(){
+        next = 0;
+        size = 0;
+    }
+
+    /**
+     * @return number of generations remembered, the longest period found.
+     */
+    public int getCapacity(){
+        return hashes.length;
+    }
+}
@@ -0,0 +1,229 @@
+package logic;
+
+/**
+ * Dense implementation stepping a fixed board without creating garbage.
+ * The engine owns two buffers, each the board with a halo of one cell
+ * around it. A step reads one buffer and writes the other, and the two are
+ * swapped, so after the buffers are created no array is allocated, however
+ * many generations are calculated.
+ * <br>
+ * Every row is calculated from a window of three rows of the buffer, the row
+ * and the rows above and below it. Within the window, the 3x3 neighbourhood
+ * (see CompiledRule) is rolled one column at a time: the columns of the last
+ * cell move one step west and the new east column is added, so every cell
+ * reads three bytes. Thanks to the halo the cells at the border need no
+ * checks, and the halo is filled once every step instead, by the Topology:
+ * with dead cells, or with the cells of the opposite edges of a torus or a
+ * Klein bottle, so a wrapped board steps as fast as an open one.
+ * <br>
+ * The board is given as a byte[][] and the result is written back into
+ * the same array, see step(byte[][], CompiledRule). The buffers are only
+ * created again when a larger board is given.
+ * <br>
+ * A rule with more than two states keeps the state of every cell in its
+ * byte, the decay included. The window is rolled in the same way, only the
+ * living cells are read into it through the ALIVE table, and the next state
+ * of the cell is looked up from its state and the window, see
+ * CompiledRule.nextState(int, int).
+ * <br>
+ * The cells born and the cells that died are counted as the rows are
+ * written, see getBirths() and getDeaths(). A decaying cell counts as
+ * living, as in GenerationStats.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class DenseGeneration{
+
+    //The bits of the west and middle columns of a neighbourhood, see CompiledRule.
+    private static final int WEST_MIDDLE = 0b011_011_011;
+
+    //1 for the byte of a living cell, 0 for a dead or a decaying cell.
+    static final int[] ALIVE = new int[256];
+    static{
+        ALIVE[1] = 1;
+    }
+
+    //The current generation, and the buffer the next generation is written into.
+    private byte[][] cells = new byte[2][2];
+    private byte[][] next = new byte[2][2];
+    private int rows;
+    private int columns;
+    private Topology topology = Topology.PLANE;
+    //The cells born and the cells that died in the last generation calculated.
+    private long births;
+    private long deaths;
+
+    /**
+     * Calculates the next generation of the board, and writes it into the board.
+     * @param board the board, updated in place.
+     * @param rule the compiled rule.
+     * @return the board.
+     */
+    public byte[][] step(byte[][] board, CompiledRule rule){
+        return step(board, rule, 1);
+    }
+
+    /**
+     * Calculates a number of generations of the board, swapping the buffers
+     * between the generations, and writes the last one into the board.
+     * @param board the board, updated in place.
+     * @param rule the compiled rule.
+     * @param generations number of generations to calculate.
+     * @return the board.
+     */
+    public byte[][] step(byte[][] board, CompiledRule rule, int generations){
+        if(board.length == 0 || board[0].length == 0)
+            return board;
+        load(board);
+        for(int gen = 0; gen<generations; gen++){
+            births = 0;
+            deaths = 0;
+            fillHalo();
+            if(rule.getStates() > 2)
+                calcStates(rule);
+            else
+                calcRows(rule);
+            byte[][] swap = cells;
+            cells = next;
+            next = swap;
+        }
+        store(board);
+        return board;
+    }
+
+    /**
+     * Copies the board into the middle of the current buffer, creating larger
+     * buffers if the board does not fit.
+     */
+    private void load(byte[][] board){
+        rows = board.length;
+        columns = board[0].length;
+        if(rows+2 > cells.length || columns+2 > cells[0].length){
+            int capacity = Math.max(columns+2, cells[0].length);
+            cells = new byte[Math.max(rows+2, cells.length)][capacity];
+            next = new byte[cells.length][capacity];
+        }
+        for(int i = 0; i<rows; i++)
+            System.arraycopy(board[i], 0, cells[i+1], 1, columns);
+    }
+
+    /**
+     * Copies the middle of the current buffer back into the board.
+     */
+    private void store(byte[][] board){
+        for(int i = 0; i<rows; i++)
+            System.arraycopy(cells[i+1], 1, board[i], 0, columns);
+    }
+
+    /**
+     * Fills the halo of the current buffer, as given by the topology.
+     */
+    private void fillHalo(){
+        topology.fillHalo(cells, rows, columns);
+    }
+
+    /**
+     * Calculates every row of the next buffer from the window of three rows
+     * around it in the current buffer.
+     */
+    private void calcRows(CompiledRule rule){
+        for(int i = 1; i<=rows; i++){
+            byte[] above = cells[i-1], row = cells[i], below = cells[i+1];
+            byte[] out = next[i];
+            //The west column is shifted out in the first step of the loop.
+            int mask = column(above, row, below, 0) << 1 | column(above, row, below, 1) << 2;
+            for(int j = 1; j<=columns; j++){
+                mask = (mask >> 1 & WEST_MIDDLE) | column(above, row, below, j+1) << 2;
+                int state = rule.nextState(mask);
+                count(row[j] & 0xFF, state);
+                out[j] = (byte) state;
+            }
+        }
+    }
+
+    /**
+     * Calculates the rows like calcRows, for a rule with more than two states.
+     */
+    private void calcStates(CompiledRule rule){
+        for(int i = 1; i<=rows; i++){
+            byte[] above = cells[i-1], row = cells[i], below = cells[i+1];
+            byte[] out = next[i];
+            int mask = living(above, row, below, 0) << 1 | living(above, row, below, 1) << 2;
+            for(int j = 1; j<=columns; j++){
+                mask = (mask >> 1 & WEST_MIDDLE) | living(above, row, below, j+1) << 2;
+                int state = rule.nextState(row[j] & 0xFF, mask);
+                count(row[j] & 0xFF, state);
+                out[j] = (byte) state;
+            }
+        }
+    }
+
+    /**
+     * Counts a cell going from one state to the next.
+     */
+    private void count(int state, int next){
+        births += born(state, next);
+        deaths += died(state, next);
+    }
+
+    /**
+     * Tells without branching if a cell is born: a state minus one is
+     * negative only for a dead cell, and a negated state only for a living
+     * or decaying cell. Shared with the other dense engines.
+     * @param state the state of the cell, from 0 to 255.
+     * @param next the next state of the cell.
+     * @return 1 if the cell is born, else 0.
+     */
+    static int born(int state, int next){
+        return ((state-1) & -next) >>> 31;
+    }
+
+    /**
+     * @param state the state of the cell, from 0 to 255.
+     * @param next the next state of the cell.
+     * @return 1 if the cell dies, else 0, see born(int, int).
+     */
+    static int died(int state, int next){
+        return ((next-1) & -state) >>> 31;
+    }
+
+    /**
+     * @return number of cells born in the last generation calculated.
+     */
+    public long getBirths(){
+        return births;
+    }
+
+    /**
+     * @return number of cells that died in the last generation calculated.
+     */
+    public long getDeaths(){
+        return deaths;
+    }
+
+    /**
+     * @return the cells of column j of the window as the west column of a
+     * neighbourhood, see CompiledRule.
+     */
+    private static int column(byte[] above, byte[] row, byte[] below, int j){
+        return above[j] | row[j] << 3 | below[j] << 6;
+    }
+
+    /**
+     * @return the living cells of column j of the window as the west column
+     * of a neighbourhood, the decaying cells are not read.
+     */
+    private static int living(byte[] above, byte[] row, byte[] below, int j){
+        return ALIVE[above[j] & 0xFF] | ALIVE[row[j] & 0xFF] << 3 | ALIVE[below[j] & 0xFF] << 6;
+    }
+
+    /**
+     * @param topology what lies beyond the edges of the board, see Topology.
+     */
+    public void setTopology(Topology topology){
+        this.topology = topology;
+    }
+
+    public Topology getTopology(){
+        return topology;
+    }
+}
@@ -1,5 +1,7 @@
 package logic;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.Alert;
 import javafx.scene.image.Image;
@@ -12,22 +14,38 @@ import javafx.stage.Stage;
 /**
  * A representation of the Game of Life with dynamic implementation allowing the
  * board to expand. The Dynamic Board uses Generation-objects to represent the
- * game.
+ * game. The cells are drawn and edited through a Viewport, which translates
+ * between their rows and columns in the world and the canvas.
  * @author Olav Sørlie and Øyvind Mjelstad
  */
 public class DynamicBoard extends Gameboard implements Ruleset{
              
-    private int moveX = 0;
-    private int moveY = 0;
     private final int areaInc = 1;
-    private double offsetX;
-    private double offsetY;
+    //The range of the zoom slider.
+    public static final double MIN_CELL_SIZE = 0.08;
+    public static final double MAX_CELL_SIZE = 25;
+    private final Viewport viewport = new Viewport();
     private boolean grid = true;
     
     private boolean[] survives = new boolean[9];
     private boolean[]     born = new boolean[9];
+    private CompiledRule      rule = CompiledRule.CONWAY;
+    //The Larger than Life rule used instead of rule, or null.
+    private RangeRule    rangeRule;
         
     private Generation currentGen;
+    //Looks for a cycle in the generations stepped, until one is found.
+    private final CycleDetector detector = new CycleDetector();
+    private volatile Cycle cycle;
+    //True if stepN jumps over the periods of a cycle found.
+    private volatile boolean skipCycles;
+    //The generations stepped, to step back through, or null. Off by default,
+    //as recording costs about a third of a step, see setHistory.
+    private GenerationManager history;
+    //True if the current generation is the last one in the history.
+    private boolean recorded;
+    //Told the statistics of every generation stepped.
+    private final List<StatsListener> statsListeners = new CopyOnWriteArrayList<>();
     
    
     //The default staring area.
@@ -37,19 +55,36 @@ public class DynamicBoard extends Gameboard implements Ruleset{
      * Constructor
      * Class constructor with GrahpicsContexts as argument to enable 
      * drawing-calls on canvas.
-     * Sets the current Generation to the prefered type.
-     * Creates a Generation Manager object to manage the generation-objects.
+     * The Generation implementation is chosen with the system property
+     * gol.generation, see Generation.create(String, int, int).
+     * No history is recorded until one is set, see setHistory.
      * Sets default Game of Life rules.
+     * The topology of the world is read from the system property gol.topology,
+     * see Topology.fromName(String).
      * @param gc GraphicsContext
      */
     public DynamicBoard(GraphicsContext gc) {
         super(gc);
-        currentGen = new GenerationConcurrHash(area, areaInc);
+        currentGen = Generation.create(System.getProperty("gol.generation"), area, areaInc);
+        currentGen.setTopology(Topology.fromName(System.getProperty("gol.topology")));
         this.born[3]     = true;
         this.survives[3] = true;
         this.survives[2] = true;
     }
     
+    /**
+     * Constructor
+     * Class constructor with a chosen Generation implementation, i.e.
+     * GenerationHash, GenerationConcurrHash or GenerationHashLife.
+     * Sets default Game of Life rules.
+     * @param gc GraphicsContext
+     * @param gen the empty Generation the board starts with.
+     */
+    public DynamicBoard(GraphicsContext gc, Generation gen) {
+        this(gc);
+        currentGen = gen;
+    }
+    
     /**
      * Method for resetting the board to default status.
      * clears population so that there are no living cells
@@ -57,18 +92,19 @@ public class DynamicBoard extends Gameboard implements Ruleset{
      * resets the counter for living cells and sets it.
      * resets the generation counter
      * sets default rules for the game.
-     * sets the movement done by user equal zero so that the drawing-area is 
-     * centered.
+     * centers the viewport at the center of the drawing-area.
      * sets the drawing-area and the currentGen-area back to default(25).
      */
     @Override
     public void resetBoard() {
         currentGen.clearPopulation();
+        boardChanged();
+        if(history != null)
+            history.clear();
         setLivingCells();
         resetGenCount();
         setConwayRules();
-        moveX=0;
-        moveY=0;
+        viewport.center(0, 0);
         area = 40;
         currentGen.setArea(40);
         draw();  
@@ -78,48 +114,87 @@ public class DynamicBoard extends Gameboard implements Ruleset{
      * Creates new boolean array with default conway rules
      */
     public void setConwayRules(){
-        born        = new boolean[9];
-        survives    = new boolean[9];
-        born[3]     = true;
-        survives[2] = true;
-        survives[3] = true;
+        setCompiledRule(CompiledRule.CONWAY);
     }
     
     /**
-     * Sets the offsets in x- and y-direction. Everything that uses offsets are
-     * centered in the middle.
+     * Gives the viewport the size of the canvas and the cells. The center of
+     * the viewport is drawn in the middle of the canvas.
      */
-    public void setOffset(){
-        offsetY = (ctrl.getCanvas().heightProperty().doubleValue()-area*getCellSize())/2;
-        offsetX = (ctrl.getCanvas().widthProperty().doubleValue()-area*getCellSize())/2;
+    public void setViewport(){
+        viewport.setCanvas(ctrl.getCanvas().widthProperty().doubleValue(),
+                           ctrl.getCanvas().heightProperty().doubleValue(), getCellSize());
     }
     
     /**
      * Uses clear rect to remove overlay
-     * Iterates through the keys of the living cells hashmap and draws
+     * Iterates through the keys of the living cells of the snapshot and draws
+     * those inside the viewport. With a rule of more than two states the 
+     * decaying cells are drawn fading out, see stateColor(int).
      * Uses cellsize*0.9 in order to make some whitespace in-between cells
-     * Saves the generation in the generation-pool.
      * Checks to see the status of the grid (on/off).
+     * @param snapshot the snapshot of the generation, see Gameboard.draw().
      */
     @Override
-    public void draw(){
+    public void draw(Snapshot snapshot){
         gc.clearRect(0, 0, ctrl.getCanvas().widthProperty().doubleValue(), 
                            ctrl.getCanvas().heightProperty().doubleValue());
-        setOffset();
+        setViewport();
         drawLoaded();
         
-        for(int location : currentGen) {
-            int[] ind = currentGen.intToInd(location);
-            gc.setFill(getLiving());
-            gc.fillRect(offsetX+moveX+(getCellSize()*ind[1]), 
-                        offsetY+moveY+(getCellSize()*ind[0]), 
+        int firstRow = viewport.firstRow(), lastRow = viewport.lastRow();
+        int firstColumn = viewport.firstColumn(), lastColumn = viewport.lastColumn();
+        gc.setFill(getLiving());
+        int fillState = 1;
+        for(int c = 0; c<snapshot.getPopulation(); c++) {
+            long cell = snapshot.cell(c);
+            int row = Generation.row(cell), column = Generation.column(cell);
+            if(row < firstRow || row > lastRow || column < firstColumn || column > lastColumn)
+                continue;
+            //The fill is only changed between cells of different states.
+            if(snapshot.state(c) != fillState){
+                fillState = snapshot.state(c);
+                gc.setFill(stateColor(fillState));
+            }
+            gc.fillRect(viewport.screenX(column), 
+                        viewport.screenY(row), 
                         getCellSize()*0.9, getCellSize()*0.9);
         }
         setArea();
         if(grid)    
-            drawGrid();
+            drawGrid(snapshot);
+    }
+    
+    /**
+     * Copies the cells of the current generation, with their states if the
+     * rule has decaying cells.
+     * @return the snapshot of the current generation.
+     */
+    @Override
+    public Snapshot snapshot(){
+        return Snapshot.of(currentGen, getGenCount(), getStates() > 2);
+    }
+    
+    
+    /**
+     * Gives the color of a state of the rule. A living cell has the living
+     * color, and a decaying cell the same color fading out as it decays.
+     * @param state the state of a cell, from 1.
+     * @return the color the cell is drawn with.
+     */
+    public Color stateColor(int state){
+        if(state <= 1)
+            return getLiving();
+        return getLiving().deriveColor(0, 1, 1, 1-(state-1)/(double) getStates());
     }
     
+    /**
+     * @return number of states of the rule, of the Larger than Life rule if
+     * one is set.
+     */
+    public int getStates(){
+        return rangeRule != null ? rangeRule.getStates() : rule.getStates();
+    }
     
     /**
      * Draws the pattern loaded in by user, either through URL or as a RLE file.
@@ -132,9 +207,9 @@ public class DynamicBoard extends Gameboard implements Ruleset{
             gc.setFill(Color.rgb(192, 192, 192, 0.8));
             for(int i = 0; i<getLoadedPattern().length; i++) {
                 for(int j = 0; j<getLoadedPattern()[0].length; j++) {
-                    if(getLoadedPattern()[i][j]==1) {
-                         gc.fillRect(offsetX+getPattMovesX()*getCellSize()+moveX+(getCellSize()*j), 
-                                     offsetY+getPattMovesY()*getCellSize()+moveY+(getCellSize()*i), 
+                    if(getLoadedPattern()[i][j]!=0) {
+                         gc.fillRect(viewport.screenX(getPattMovesX()+j), 
+                                     viewport.screenY(getPattMovesY()+i), 
                                      getCellSize()*0.9, getCellSize()*0.9); 
                     }
                 }
@@ -150,17 +225,203 @@ public class DynamicBoard extends Gameboard implements Ruleset{
     */
     @Override
     public void displayNextGen(){
-        currentGen = currentGen.calcNextGen();
+        step();
         setLivingCells();
-        incGenCount();
         draw();
     }
+    
+    /**
+     * Calculates the next generation and increases the generation counter.
+     * Until a cycle is found the generation is given to the CycleDetector.
+     * Both generations are recorded in the history, if one is set, and the statistics of
+     * the step are given to the StatsListeners.
+     */
+    private void step(){
+        record();
+        long start = System.nanoTime();
+        currentGen = currentGen.calcNextGen();
+        Metrics.record(Metrics.STEP, start);
+        incGenCount();
+        recorded = false;
+        record();
+        if(cycle == null)
+            cycle = detector.observe(currentGen, getGenCount());
+        GenerationStats stats = currentGen.getStats();
+        if(stats != null)
+            for(StatsListener listener : statsListeners)
+                listener.generationStepped(getGenCount(), stats);
+    }
+    
+    /**
+     * Records the current generation in the history, unless it is there.
+     */
+    private void record(){
+        if(history != null && !recorded)
+            history.record(currentGen, getGenCount());
+        recorded = true;
+    }
+   
+    /**
+     * Calculates a number of generations without drawing them. The
+     * population label is not touched, so this may run on a worker thread.
+     * <br>
+     * When a cycle has been found and skipCycles is set, whole periods are
+     * not calculated: the cells are moved as far as the cycle moves them in
+     * those periods, see Generation.translate. GenerationHashLife jumps
+     * ahead, see Generation.stepN(int), and the other Generations are
+     * stepped one generation at a time, looking for a cycle.
+     * @param generations number of generations to calculate.
+     */
+    @Override
+    public void stepN(int generations){
+        Cycle found = cycle;
+        if(skipCycles && found != null && generations >= found.getPeriod()){
+            int periods = generations/found.getPeriod();
+            long rows = (long) periods*found.getRowShift();
+            long columns = (long) periods*found.getColumnShift();
+            if(rows == (int) rows && columns == (int) columns){
+                currentGen.translate((int) rows, (int) columns);
+                setGenCount(getGenCount() + periods*found.getPeriod());
+                generations -= periods*found.getPeriod();
+                recorded = false;
+            }
+        }
+        if(currentGen instanceof GenerationHashLife && generations > 1){
+            //The generations jumped over are never seen by the detector.
+            currentGen = currentGen.stepN(generations);
+            setGenCount(getGenCount() + generations);
+            detector.clear();
+            recorded = false;
+            return;
+        }
+        for(int i = 0; i<generations; i++)
+            step();
+    }
+    
+    /**
+     * Forgets the cycle found and the generations before, as the cells or
+     * the rule have been changed. The generation is recorded again before
+     * the next step, which drops the generations after it from the history.
+     */
+    private void boardChanged(){
+        detector.clear();
+        cycle = null;
+        recorded = false;
+    }
+    
+    /**
+     * Goes back, or forward, to a generation held by the history, see
+     * GenerationManager. The current generation is recorded first, so it can
+     * be gone back to. Stepping on from an earlier generation calculates the
+     * generations again, and drops those after it from the history.
+     * @param generation the number of the generation.
+     * @return true if the generation was in the history.
+     */
+    public boolean jumpTo(int generation){
+        if(history == null)
+            return false;
+        record();
+        Snapshot snapshot = history.get(generation);
+        if(snapshot == null)
+            return false;
+        currentGen.restore(snapshot);
+        area = snapshot.getArea();
+        setGenCount(generation);
+        detector.clear();
+        cycle = null;
+        return true;
+    }
+    
+    /**
+     * Resumes a session saved by Session.save: sets its rule and topology,
+     * and replaces the cells, the area and the generation counter. The
+     * history is cleared.
+     * @param session the session.
+     * @throws PatternFormatException if the rule of the session is not valid,
+     *         then the board is left as it was.
+     */
+    public void resume(Session session) throws PatternFormatException{
+        String name = session.getRule();
+        if(RangeRule.isRangeRule(name))
+            setRangeRule(RangeRule.parse(name));
+        else
+            setCompiledRule(CompiledRule.parse(name));
+        Snapshot snapshot = session.getSnapshot();
+        currentGen.setTopology(session.getTopology());
+        currentGen.restore(snapshot);
+        area = snapshot.getArea();
+        setGenCount(snapshot.getGenCount());
+        boardChanged();
+        if(history != null)
+            history.clear();
+    }
+    
+    /**
+     * Goes back to the generation before, see jumpTo(int).
+     * @return true if the generation before was in the history.
+     */
+    public boolean stepBack(){
+        return jumpTo(getGenCount()-1);
+    }
+    
+    /**
+     * @return the history of the generations stepped, or null.
+     */
+    public GenerationManager getHistory(){
+        return history;
+    }
+    
+    /**
+     * Turns recording of the history on or off. No history is recorded by
+     * default, since every step would pay for a snapshot of the generation.
+     * @param history the history to record the generations in, i.e. a new
+     *        GenerationManager, or null to record none.
+     */
+    public void setHistory(GenerationManager history){
+        this.history = history;
+        recorded = false;
+    }
+    
+    /**
+     * Adds a listener told the statistics of every generation stepped one
+     * at a time. Generations skipped by stepN, as whole cycles or as jumps of
+     * GenerationHashLife, have no statistics.
+     * @param listener the listener, called on the thread stepping the board.
+     */
+    public void addStatsListener(StatsListener listener){
+        statsListeners.add(listener);
+    }
+    
+    public void removeStatsListener(StatsListener listener){
+        statsListeners.remove(listener);
+    }
+    
+    /**
+     * The cycle is found as the board is stepped, and kept until the cells
+     * or the rule are changed.
+     * @return the cycle the generations have ended in, or null.
+     */
+    public Cycle getCycle(){
+        return cycle;
+    }
+    
+    /**
+     * @param skipCycles true to jump over whole periods of a cycle found,
+     *        instead of calculating them, see stepN(int).
+     */
+    public void setSkipCycles(boolean skipCycles){
+        this.skipCycles = skipCycles;
+    }
+    
+    public boolean getSkipCycles(){
+        return skipCycles;
+    }
    
     /**
      * Takes a mouse event as argument
-     * Gets the coordinate of the mouse event. Casts it to int and diviveds
-     * by the cell size in order to get the corresponding cell to become alive/die.
-     * An if-test checks to see if the mouse event is within the canvas and area-size.
+     * Gets the coordinate of the mouse event and translates it through the 
+     * viewport in order to get the corresponding cell to become alive/die.
+     * An if-test checks to see if the mouse event is within the canvas and area.
      * An if-test to see whether it is right or left mouse dragged. <br>
      * Right mousedragged = create living cell<br>
      * Left mousedragged  = remove living cell
@@ -168,49 +429,52 @@ public class DynamicBoard extends Gameboard implements Ruleset{
      */
     @Override
     public void changeCellStatus(MouseEvent e) {
-        int i = (int)((e.getY()-offsetY-moveY)/getCellSize()); 
-        int j = (int)((e.getX()-offsetX-moveX)/getCellSize());
+        int row = viewport.row(e.getY()); 
+        int column = viewport.column(e.getX());
         
         //Avoid drawing outside canvas and board
-        if(e.getX() < 0 || e.getY() < 0 || i > area-1 || j > area-1){
+        if(e.getX() < 0 || e.getY() < 0 || !currentGen.inArea(row, column)){
             return;
         }
         if(e.isPrimaryButtonDown()) {
-            int temp = currentGen.indToInt(i, j);
-            
-            if(temp<0){
-                return;
-            }
-            currentGen.addLivingCell(temp);
+            currentGen.addLivingCell(Generation.key(row, column));
+            boardChanged();
             setLivingCells();
             draw();
         }
         if(e.isSecondaryButtonDown()){           
-            currentGen.removeLivingCell(currentGen.indToInt(i, j));
+            currentGen.removeLivingCell(Generation.key(row, column));
+            boardChanged();
             draw();
         }    
     }
 
     /**
-     * Draws a grid using horizontal and vertical lines. The constant -1.8 makes
-     * sure that the living cells matches the grid-lines. The offsets and moveX
-     * are used to make the grids position correct relative to userinputs.
+     * Draws a grid using horizontal and vertical lines. The constant -0.8 makes
+     * sure that the living cells matches the grid-lines. The lines are placed
+     * through the viewport, and only the lines of the area inside the canvas
+     * are drawn, however large the area is.
      * The grid also makes a visualisation of the drawable-area. 
+     * @param snapshot the snapshot holding the area.
      */
-    public void drawGrid() {  
+    public void drawGrid(Snapshot snapshot) {  
         gc.setLineWidth(0.1*getCellSize());
-            for (double i = 1; i<(area*getCellSize())+getCellSize(); i+=getCellSize()) {
-                gc.strokeLine((offsetX+moveX+i-1.8), 
-                              (offsetY+moveY-1.8), 
-                              (offsetX+moveX+i-1.8), 
-                              ((area*getCellSize())+(offsetY+moveY)));
-
-                gc.strokeLine((offsetX+moveX-1.8), 
-                              (moveY+offsetY+i-1.8), 
-                              ((area*getCellSize())+(offsetX+moveX)), 
-                              (moveY+offsetY+i-1.8));
-            }
-
+        long top = snapshot.getOriginRow(), bottom = top+snapshot.getArea();
+        long left = snapshot.getOriginColumn(), right = left+snapshot.getArea();
+        double y0 = viewport.screenY(top)-1.8, y1 = viewport.screenY(bottom);
+        double x0 = viewport.screenX(left)-1.8, x1 = viewport.screenX(right);
+        
+        long from = Math.max(left, viewport.firstColumn()), to = Math.min(right, viewport.lastColumn()+1);
+        for (long c = from; c<=to; c++) {
+            double x = viewport.screenX(c)-0.8;
+            gc.strokeLine(x, y0, x, y1);
+        }
+        from = Math.max(top, viewport.firstRow());
+        to = Math.min(bottom, viewport.lastRow()+1);
+        for (long r = from; r<=to; r++) {
+            double y = viewport.screenY(r)-0.8;
+            gc.strokeLine(x0, y, x1, y);
+        }
     }
     
     /**
@@ -226,31 +490,32 @@ public class DynamicBoard extends Gameboard implements Ruleset{
      */
     @Override
     public void decodeRuleset(String ruleB, String ruleS){
-        String[] b;
-        String[] s;
         try{
-        if(ruleB.matches("([0-8]{1,9})") && ruleS.matches("([0-8]{1,9})")){
-            b = ruleB.trim().split("");
-            s = ruleS.trim().split("");
-        
-            boolean[] birth = new boolean[9];
-            boolean[] surviving = new boolean[9];
-        
-            for(int i = 0; i<b.length; i++){
-                birth[Integer.parseInt(b[i])] = true;
-            }
-            for(int i = 0; i<s.length; i++){
-                surviving[Integer.parseInt(s[i])] = true;
-            }
-            setBorn(birth);
-            setSurvives(surviving);
+            setCompiledRule(CompiledRule.parse(ruleB, ruleS));
         }
-        else{
-            throw new PatternFormatException(); 
+        catch(PatternFormatException e){
+            new PatternFormatExceptionDialog(e.getMessage());
         }
+    }
+    
+    /**
+     * Decodes a whole ruleset from userinput and File/URL IO, i.e. B3/S23,
+     * the Generations rule B2/S/C3 or the Larger than Life rule
+     * R5,C0,M1,S34..58,B34..45,NM.
+     * @param rule String in B/S, B/S/C or Larger than Life notation.
+     * @see logic.CompiledRule#parse(String) 
+     * @see logic.RangeRule#parse(String) 
+     */
+    @Override
+    public void decodeRuleset(String rule){
+        try{
+            if(RangeRule.isRangeRule(rule))
+                setRangeRule(RangeRule.parse(rule));
+            else
+                setCompiledRule(CompiledRule.parse(rule));
         }
         catch(PatternFormatException e){
-            new PatternFormatExceptionDialog("Ruleset contains non-digit values");
+            new PatternFormatExceptionDialog(e.getMessage());
         }
     }
     
@@ -267,19 +532,23 @@ public class DynamicBoard extends Gameboard implements Ruleset{
     }
     
     /**
-     * Sets the start-position for the loaded patterns relative to the board size.
+     * Sets the start-position for the loaded patterns in the world, as the
+     * row and column of its north west corner.
      * Makes the loaded pattern appear in the center of the draw-able area (grid).
      */
     @Override
     public void setStartIndexLoaded(){
-        setPattMovesX((area/2)-(getLoadedPattern().length/2));
-        setPattMovesY((area/2)-(getLoadedPattern()[0].length/2));
+        int centerRow = currentGen.getOriginRow()+area/2;
+        int centerColumn = currentGen.getOriginColumn()+area/2;
+        setPattMovesX(centerColumn-(getLoadedPattern()[0].length/2));
+        setPattMovesY(centerRow-(getLoadedPattern().length/2));
     }
     
     /**
      * Glues the loaded pattern to the board by converting the indecies of the 
-     * living cells in the 2D-array and adding their integer-value to the population map. 
-     * Their placement in the map is determined by the movement done by user.
+     * living cells in the 2D-array and adding their keys to the population,
+     * with their states if the pattern has decaying cells. 
+     * Their placement in the world is determined by the movement done by user.
      * Sets living cells and draws the loaded pattern with "living" color.
      */
     @Override
@@ -288,15 +557,16 @@ public class DynamicBoard extends Gameboard implements Ruleset{
         for(int i = 0; i<getLoadedPattern().length; i++){
             for(int j = 0; j<getLoadedPattern()[0].length; j++){
                 
-                if(getLoadedPattern()[i][j] == 1){   
-                    if(i+getPattMovesY()<0 || i+getPattMovesY()>=area || j+getPattMovesX()<0 || j+getPattMovesX() >= area){
+                if(getLoadedPattern()[i][j] != 0){   
+                    int row = i+getPattMovesY(), column = j+getPattMovesX();
+                    if(!currentGen.inArea(row, column)){
                         continue;
                     }
-                    int temp = currentGen.indToInt(i+getPattMovesY(), j+getPattMovesX());
-                    currentGen.addLivingCell(temp);
+                    currentGen.addCell(Generation.key(row, column), getLoadedPattern()[i][j] & 0xFF);
                 }
             }
         }
+        boardChanged();
         setLivingCells();
         draw();
         }
@@ -307,29 +577,46 @@ public class DynamicBoard extends Gameboard implements Ruleset{
      * key T: move the board upwards.<br>
      * key G: move the board downwards.<br>
      * key F: move the board to the left.<br>
-     * key H: move the board to the right.
+     * key H: move the board to the right.<br>
+     * key Z: zoom to fit the living cells.
      * @param e e KeyEvent allowing user input from keyboard.
      */
     public void navigateBoard(KeyEvent e){
         switch(e.getCode()){
             case G:
-                moveY  -= getCellSize();
+                viewport.pan(1, 0);
                 break;
             case T:
-                moveY  += getCellSize();
+                viewport.pan(-1, 0);
                 break;
             case H:
-                moveX  -= getCellSize();
+                viewport.pan(0, 1);
                 break;
             case F:
-                moveX  += getCellSize();
-                break;         
+                viewport.pan(0, -1);
+                break;
+            case Z:
+                zoomToFit();
+                break;
             default:
                 break;
         }
         draw();
     }
     
+    /**
+     * Zooms and moves the viewport so every living cell is on the canvas.
+     * The bounding box is kept by the generation, so this does not depend on
+     * the population.
+     */
+    public void zoomToFit(){
+        int[] box = currentGen.getBoundingBox();
+        if(box == null)
+            return;
+        setViewport();
+        setCellSize(viewport.fit(box[0], box[1], box[2], box[3], MIN_CELL_SIZE, MAX_CELL_SIZE));
+    }
+    
     /**
      * Rotates the loaded pattern in the clockwise direction by transposing the
      * 2D-array and reversing each row.
@@ -354,6 +641,7 @@ public class DynamicBoard extends Gameboard implements Ruleset{
     @Override
     public void setBorn(boolean[] birth){
         this.born = birth;
+        setCompiledRule(CompiledRule.fromCounts(born, survives, rule.getStates()));
     }
     
     /**
@@ -364,6 +652,7 @@ public class DynamicBoard extends Gameboard implements Ruleset{
     @Override
     public void setSurvives(boolean[] surviving){
         this.survives = surviving;
+        setCompiledRule(CompiledRule.fromCounts(born, survives, rule.getStates()));
     }
     
     /**
@@ -396,6 +685,59 @@ public class DynamicBoard extends Gameboard implements Ruleset{
         return born;
     }
     
+    /**
+     * The Generations read the rule from here once every generation.
+     * @return the compiled rule.
+     */
+    @Override
+    public CompiledRule getCompiledRule(){
+        return rule;
+    }
+    
+    /**
+     * Sets the rule, which may be non-totalistic. The living cells of the
+     * other Generations have no state, so a rule with more than two states
+     * moves the cells into a GenerationMultiState, which is kept when the
+     * rule changes back. The cells of a Larger than Life rule are moved into
+     * a GenerationMultiState as well, which steps every compiled rule.
+     * @param rule the compiled rule.
+     */
+    @Override
+    public void setCompiledRule(CompiledRule rule){
+        this.born = rule.getBorn();
+        this.survives = rule.getSurvives();
+        this.rule = rule;
+        boardChanged();
+        if(rangeRule != null){
+            rangeRule = null;
+            currentGen = GenerationMultiState.copyOf(currentGen);
+        }
+        if(rule.getStates() > 2 && !(currentGen instanceof GenerationMultiState))
+            currentGen = GenerationMultiState.copyOf(currentGen);
+    }
+    
+    /**
+     * The GenerationRange reads the rule from here once every generation.
+     * @return the Larger than Life rule, or null.
+     */
+    @Override
+    public RangeRule getRangeRule(){
+        return rangeRule;
+    }
+    
+    /**
+     * Sets a Larger than Life rule, used until a compiled rule is set. The
+     * cells are moved into a GenerationRange, see RangeRule.
+     * @param rule the range rule.
+     */
+    @Override
+    public void setRangeRule(RangeRule rule){
+        this.rangeRule = rule;
+        boardChanged();
+        if(!(currentGen instanceof GenerationRange))
+            currentGen = GenerationRange.copyOf(currentGen);
+    }
+    
     /**
      * Gets the grid status.
      * @return true if the grid-button is clicked.
@@ -438,10 +780,11 @@ public class DynamicBoard extends Gameboard implements Ruleset{
     
     /**
      * Checks if the input is valid. If invalid, an alertbox will show.
-     * We set the cap of our board to 25000x25000.
-     * The input also has to be an even number since the board expands +1 in both
+     * The board has no cap, as the cells are stored by their keys in the world.
+     * The input has to be an even number since the board expands +1 in both
      * x- and y-direction.
-     * If the board is expanded, the living cells maintain their relative position.
+     * If the board is expanded, the living cells maintain their relative position,
+     * and the area grows in one step, whatever the size.
      * If the board-size is set less then its current size, every living cell 
      * is removed and then the board-size is reset.
      */
@@ -449,28 +792,14 @@ public class DynamicBoard extends Gameboard implements Ruleset{
     public void changeBoardSize(){
         try {
             int input = Integer.parseInt(ctrl.getWidthTextfield().getText());
-            if(input>25000) {
-                input = 25000;
-            }
             if(input%2!=0){
                 input+=1;
             }
-            if(input>area){ 
-                while(input>area) {
-                    currentGen.expandWorld();
-                    input = input--;
-                }
-            draw();
-            }
-            else if(input == area) {
-                draw();
-            } 
-            else {
+            if(input<area) {
                 resetBoard();
-                area = input;
-                currentGen.changeBoardSize(input);
-                draw();
-            }   
+            }
+            currentGen.changeBoardSize(input);
+            draw();
         }catch(NumberFormatException e){
             System.err.println("User input invalid.");
             Alert alert = new Alert(Alert.AlertType.ERROR);
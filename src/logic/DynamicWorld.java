@@ -1,11 +1,13 @@
 package logic;
 
 /**
- * Contains the two methods needed in order to represent a dynamic implementation 
- * of the game.
+ * Contains the methods needed in order to represent a dynamic implementation 
+ * of the game. The world grows by moving its origin, so growing by any
+ * number of cells is one operation.
  * @author Olav Sørlie and Øyvind Mjelstad
  */
 interface DynamicWorld{
     boolean needExpansion();  
     void expandWorld();
+    void growWorld(int cells);
 }
@@ -26,6 +26,8 @@ public abstract class Gameboard implements PatternLoader{
     private int genCount = 1;
     private int pattMovesY;
     private int pattMovesX;
+    //The snapshot drawn while a Simulation runs, or null.
+    private volatile Snapshot shown;
     
     //Constructor
     public Gameboard(GraphicsContext gc){
@@ -192,8 +194,57 @@ public abstract class Gameboard implements PatternLoader{
     }
 
     public abstract void displayNextGen();
+    
+    /**
+     * Calculates a number of generations back to back and adds them to the
+     * generation counter, without drawing, so the board can be run ahead on
+     * a worker thread, see Warp. The caller draws the board when it is done.
+     * @param generations number of generations to calculate.
+     */
+    public abstract void stepN(int generations);
+    
+    /**
+     * Copies the board into an immutable snapshot, see Simulation.
+     * @return the snapshot of the board as it is.
+     */
+    public abstract Snapshot snapshot();
+    
+    /**
+     * Draws a snapshot of the board, with the loaded pattern on top.
+     * @param snapshot the snapshot.
+     */
+    public abstract void draw(Snapshot snapshot);
+    
+    /**
+     * Draws a snapshot, and keeps drawing it in draw() until the next one is
+     * shown, so a resize or a zoom does not read the board while a
+     * Simulation steps it.
+     * @param snapshot the snapshot, or null to draw the board itself again.
+     */
+    public void show(Snapshot snapshot){
+        shown = snapshot;
+        if(snapshot != null)
+            drawTimed(snapshot);
+    }
+    
+    /**
+     * Draws the snapshot shown, or a snapshot of the board if none is.
+     */
+    public void draw(){
+        Snapshot snapshot = shown;
+        drawTimed(snapshot != null ? snapshot : snapshot());
+    }
+    
+    /**
+     * Draws a snapshot and records the time in Metrics.DRAW.
+     */
+    private void drawTimed(Snapshot snapshot){
+        long start = System.nanoTime();
+        draw(snapshot);
+        Metrics.record(Metrics.DRAW, start);
+    }
+    
     public abstract void resetBoard();
     public abstract void changeCellStatus(MouseEvent e);
-    public abstract void draw();
     public abstract void changeBoardSize();
 }
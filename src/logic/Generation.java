@@ -1,119 +1,502 @@
 package logic;
 
 import controller.GoLController;
-import java.util.Iterator; 
-import java.util.NoSuchElementException;
+import java.util.Arrays;
+import java.util.Iterator;
 
 /**
  * A Generation is a representation of living cells at a point in time.
- * This Generation superclass contains the methods for converting an index to integer, and vice versa.
+ * This Generation superclass contains the methods for converting an index to a key, and vice versa.
  * Generation implements Iterable to enable the enhanced for-loop in the DynamicBoard's draw-method.
  * <br>
+ * Every cell is stored by its 64-bit key: the row and the column in the world,
+ * signed 32-bit numbers each, packed into a long (see key). The world has no
+ * practical bound and the key of a cell never changes. The area of the board
+ * is the square of area x area cells with its north west corner at the signed
+ * origin, so index (i,j) on the board is the cell (i+originRow, j+originColumn)
+ * in the world. Expanding the world only moves the origin, no cell is re-keyed.
+ * <br>
+ * The world is a growing plane, unless a bounded Topology is set. Then the
+ * area is the whole world: cells outside it are dead, or the edges of the
+ * area are glued together, and the area never expands.
+ * <br>
  * The abstract methods are restrictions every subclass needs to implement.<br>
- * We have created two subclasses: <br>
+ * Among the subclasses are: <br>
  *      GenerationHash          - A HashMap representation<br>
- *      GenerationConcurrHash   - A ConcurrentHashMap representation that uses threads for better performance
+ *      GenerationConcurrHash   - A ConcurrentHashMap representation that uses threads for better performance<br>
+ *      GenerationMultiState    - Holds the state of every cell, for rules with decaying cells
  * @author Olav Sørlie and Øyvind Mjelstad
  */
-public abstract class Generation implements Iterable<Integer>, DynamicWorld{
+public abstract class Generation implements Iterable<Long>, DynamicWorld{
     GoLController ctrl;
-    
+
     private int area;
     private final int areaInc;
+    //The cell in the world at index (0,0) of the area.
+    private int originRow;
+    private int originColumn;
+    //The rule used when there is no DynamicBoard, i.e. when testing.
+    private CompiledRule rule = CompiledRule.CONWAY;
+    private Topology topology = Topology.PLANE;
+    //The statistics of the step that made this generation, or null.
+    private GenerationStats stats;
 
     public Generation(int area, int areaInc){
 	this.area = area;
         this.areaInc = areaInc;
+        this.originRow = -area/2;
+        this.originColumn = -area/2;
         this.ctrl = GoLController.instance;
     }
-    
+
+    /**
+     * Creates a Generation implementation chosen at runtime.
+     * "hash" gives GenerationHash, "hashlife" GenerationHashLife, "tiled"
+     * GenerationTiled, "incremental" GenerationIncremental, and anything
+     * else GenerationConcurrHash.
+     * @param name name of the implementation, in any case, for example the
+     * system property gol.generation.
+     * @param area the side of the square area.
+     * @param areaInc the amount the area grows by when it is expanded.
+     * @return the empty Generation.
+     */
+    public static Generation create(String name, int area, int areaInc){
+        switch(name == null ? "" : name.trim().toLowerCase()){
+            case "hash":
+                return new GenerationHash(area, areaInc);
+            case "hashlife":
+                return new GenerationHashLife(area, areaInc);
+            case "tiled":
+                return new GenerationTiled(area, areaInc);
+            case "incremental":
+                return new GenerationIncremental(area, areaInc);
+            default:
+                return new GenerationConcurrHash(area, areaInc);
+        }
+    }
+
+    /**
+     * Packs a cell in the world into its key, the row in the upper 32 bits
+     * and the column in the lower 32 bits.
+     * @param row the row in the world, may be negative.
+     * @param column the column in the world, may be negative.
+     * @return the key of the cell.
+     */
+    public static long key(int row, int column){
+        return ((long) row << 32) | (column & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param key the key of a cell.
+     * @return the row of the cell in the world.
+     */
+    public static int row(long key){
+        return (int) (key >> 32);
+    }
+
+    /**
+     * @param key the key of a cell.
+     * @return the column of the cell in the world.
+     */
+    public static int column(long key){
+        return (int) key;
+    }
+
     /**
-     * Takes two integers as argument and converts them to an integer.
+     * Takes an index on the board as argument and converts it to the key of
+     * the cell in the world.
      * This method is used because the living-cells are represented as
-     * an integers, and drawn as an indecies.
+     * keys, and drawn as indecies.
      * @param i row
      * @param j column
-     * @return integer representation of the index
+     * @return key of the cell at the index
      */
-    public int indToInt(int i, int j){
-	if(i<0 || j<0 )
-          return -1; 
-        
-	return i*area + j;
+    public long indToKey(int i, int j){
+        return key(i+originRow, j+originColumn);
     }
-	
+
     /**
-     * Takes an integer as argument and convert it to an index
+     * Takes a key as argument and convert it to an index on the board.
      * Creates a int-array with size 2. Uses position 0 as the
-     * row, and position 1 as the column. 
-     * @param i position int the map
-     * @return index representation of the integer
+     * row, and position 1 as the column. The index is outside the area if
+     * the cell is.
+     * @param key the key of the cell
+     * @return index representation of the key
      */
-    public int[] intToInd(int i){
+    public int[] keyToInd(long key){
 	int[] ind = new int[2];
-	ind[0] = (int)(i/area);
-	ind[1] = i - ind[0]*area ;
+	ind[0] = row(key)-originRow;
+	ind[1] = column(key)-originColumn;
         return ind;
     }
-    
+
     /**
-     * Duplicate of the method above, but with an extra argument (area).
-     * This method is only used in the expand-world method in the subclasses of 
-     * generation to make the area of the expanded world match the area the new
-     * cells use.
-     * @param i position in the map
-     * @param area corresponding area of the board
-     * @return index representation of the integer
+     * @param row the row in the world.
+     * @param column the column in the world.
+     * @return true if the cell is inside the area.
      */
-    public int[] intToInd(int i, int area){
-	int[] ind = new int[2];
-	ind[0] = (int)(i/area);
-	ind[1] = i - ind[0]*area ;
-        return ind;
+    public boolean inArea(int row, int column){
+        return row >= originRow && row-originRow < area &&
+               column >= originColumn && column-originColumn < area;
     }
-    
+
     /**
-     * Duplicate of the method indToInt but with an extra argument (area).
-     * This method is only used in the expand-world method in the subclasses of
-     * generation to make the area of the expanded world match the area the new
-     * cells use.
-     * @param i row
-     * @param j colum
-     * @param area corresponding area board
-     * @return integer representation of the index
+     * @param row the row in the world.
+     * @param column the column in the world.
+     * @return true if the cell is on, or outside, the boundary of the area.
+     */
+    protected boolean onBoundary(int row, int column){
+        return row <= originRow || row >= originRow+area-1 ||
+               column <= originColumn || column >= originColumn+area-1;
+    }
+
+    /**
+     * Maps a cell just outside the area onto the cell of the area it is
+     * glued to by the topology. Only the neighbours of the cells on the
+     * boundary need to be mapped.
+     * @param row the row in the world.
+     * @param column the column in the world.
+     * @return the key of the cell in the area, or Topology.DEAD if the cell
+     *         is outside a bounded plane.
+     */
+    protected long wrap(int row, int column){
+        long local = topology.wrap(row-originRow, column-originColumn, area, area);
+        if(local == Topology.DEAD)
+            return local;
+        return key(row(local)+originRow, column(local)+originColumn);
+    }
+
+    /**
+     * @param row the row in the world, outside the area.
+     * @return true if the cells of the row are reached mirrored, east to west,
+     *         see Topology.mirrors(int, int).
      */
-    public int indToInt(int i, int j, int area){
-	return i*area + j;
+    protected boolean mirrors(int row){
+        return topology.mirrors(row-originRow, area);
     }
-    
+
+    /**
+     * Checks the bounding box of the living cells against the boundary of
+     * the area. The subclasses keep the box up to date as cells are born and
+     * die, so no cell is visited here. A bounded world never expands.
+     * @return true if there are any living cells on, or outside, the boundary of the area.
+     */
+    @Override
+    public boolean needExpansion(){
+        if(topology.isBounded())
+            return false;
+        int[] box = getBoundingBox();
+        return box != null && (onBoundary(box[0], box[2]) || onBoundary(box[1], box[3]));
+    }
+
+    /**
+     * Gives the living cells on each of the four edges of the area. The
+     * subclasses keep the cells on every row and column as cells are born
+     * and die, see BoundingBox, so no cell is visited here.
+     * @return int[] containing the cells on the top row, the bottom row, the
+     *         left column and the right column of the area.
+     */
+    public int[] getEdgeOccupancy(){
+        int last = area-1;
+        return new int[]{cellsInRow(originRow), cellsInRow(originRow+last),
+                         cellsInColumn(originColumn), cellsInColumn(originColumn+last)};
+    }
+
+    /**
+     * Expands the area by the area-increase on every side. The cells keep
+     * their keys, only the origin moves, so this costs the same for every
+     * population.
+     */
+    @Override
+    public void expandWorld(){
+        long start = System.nanoTime();
+        growWorld(areaInc);
+        Metrics.record(Metrics.EXPAND_WORLD, start);
+    }
+
+    /**
+     * Expands the area by a number of cells on every side in one step, by
+     * moving the origin. The area is kept below Integer.MAX_VALUE.
+     * @param cells number of cells to add on every side.
+     */
+    @Override
+    public void growWorld(int cells){
+        cells = Math.min(cells, (Integer.MAX_VALUE-area)/2);
+        originRow -= cells;
+        originColumn -= cells;
+        area += 2*cells;
+        DynamicBoard.area = area;
+    }
+
     /**
-     * Changes area of both the dynamic board and the generation-area.
+     * Changes area of both the dynamic board and the generation-area in one
+     * step. A larger area grows around the current area, so the cells keep
+     * their place on the board. A smaller area is centered at (0,0).
      * @param input new area
      */
     public void changeBoardSize(int input){
-        DynamicBoard.area = input;
-        this.area = input;
+        if(input > area)
+            growWorld((input-area)/2);
+        else
+            setArea(input);
+        DynamicBoard.area = area;
     }
-    
+
+    /**
+     * Sets the area, centered at (0,0) in the world.
+     * @param area the new area.
+     */
     public void setArea(int area) {
         this.area = area;
+        this.originRow = -area/2;
+        this.originColumn = -area/2;
     }
-    
+
     public int getAreaInc() {
         return areaInc;
     }
-    
+
     public int getArea() {
         return area;
     }
-    
+
+    public int getOriginRow() {
+        return originRow;
+    }
+
+    public int getOriginColumn() {
+        return originColumn;
+    }
+
+    /**
+     * Gives the rule of the DynamicBoard, or the rule set with setRule when
+     * there is no DynamicBoard. The subclasses read it once every generation.
+     * @return the compiled rule.
+     */
+    public CompiledRule getRule() {
+        if(ctrl != null && ctrl.getDynamicBoard() != null)
+            return ctrl.getDynamicBoard().getCompiledRule();
+        return rule;
+    }
+
+    /**
+     * Sets the rule used when no GoLController is present, i.e. when testing.
+     * When the game is running, the rule is read from the DynamicBoard.
+     * @param rule the compiled rule.
+     */
+    public void setRule(CompiledRule rule) {
+        this.rule = rule;
+    }
+
+    /**
+     * Sets a totalistic rule used when no GoLController is present.
+     * @param born is a boolean[9].
+     * @param survives is a boolean[9].
+     * @see logic.Generation#setRule(CompiledRule)
+     */
+    public void setRules(boolean[] born, boolean[] survives) {
+        setRule(CompiledRule.fromCounts(born, survives));
+    }
+
+    /**
+     * Sets the shape of the world. The plane grows with the living cells,
+     * the other topologies keep the area, see Topology.
+     * @param topology the topology.
+     */
+    public void setTopology(Topology topology) {
+        this.topology = topology;
+    }
+
+    public Topology getTopology() {
+        return topology;
+    }
+
+    /**
+     * Copies the area, the origin and the topology of another generation,
+     * used when a subclass creates the next generation as a new object.
+     * @param prev the previous generation.
+     */
+    protected void copyWorld(Generation prev) {
+        this.area = prev.area;
+        this.originRow = prev.originRow;
+        this.originColumn = prev.originColumn;
+        this.rule = prev.rule;
+        this.topology = prev.topology;
+    }
+
+    /**
+     * Creates a generation of the same class holding the cells, the world
+     * and the rule of this one, which can be stepped without touching it,
+     * i.e. by the CycleDetector. Every Generation has a constructor of the
+     * area and the increment of the area.
+     * @return the copy.
+     */
+    public Generation copy() {
+        Generation copy;
+        try{
+            copy = getClass().getConstructor(int.class, int.class).newInstance(area, areaInc);
+        }catch(ReflectiveOperationException e){
+            throw new IllegalStateException("No constructor of the area: " + getClass().getName(), e);
+        }
+        copy.copyWorld(this);
+        for(long cell : this)
+            copy.addCell(cell, stateOf(cell));
+        return copy;
+    }
+
+    /**
+     * Gives the state of a cell given by the iterator. The cells of a rule
+     * with two states are alive, which is all this class knows; a generation
+     * holding decaying cells, see CompiledRule, overrides this.
+     * @param key the key of a cell given by the iterator.
+     * @return the state of the cell, 1 if it is alive.
+     */
+    public int stateOf(long key) {
+        return 1;
+    }
+
+    /**
+     * Adds a cell of a state, i.e. from a pattern of a rule with more than
+     * two states. Only the living cells are added here, a generation holding
+     * decaying cells overrides this.
+     * @param key the key of the cell.
+     * @param state the state of the cell, 1 if it is alive.
+     */
+    public void addCell(long key, int state) {
+        if(state == 1)
+            addLivingCell(key);
+    }
+
+    /**
+     * Converts the population to a static 2D-array of the area, holding the
+     * state of every cell.
+     * This method is used when entering the pattern editor.
+     * @return 2D-array representation of the population.
+     */
+    public byte[][] convertToStatic() {
+        byte tmp[][] = new byte[area][area];
+        for(long cell : this){
+            int i = row(cell)-originRow, j = column(cell)-originColumn;
+            if(i >= 0 && i < area && j >= 0 && j < area)
+                tmp[i][j] = (byte) stateOf(cell);
+        }
+        return tmp;
+    }
+
+    /**
+     * Calculates a number of generations back to back. The subclasses that
+     * step in place return this object, the others the last generation;
+     * GenerationHashLife jumps ahead in powers of two.
+     * @param generations number of generations to calculate.
+     * @return the generation after the last step.
+     */
+    public Generation stepN(int generations) {
+        Generation gen = this;
+        for(int i = 0; i<generations; i++)
+            gen = gen.calcNextGen();
+        return gen;
+    }
+
+    /**
+     * Moves every cell by a number of rows and columns, and the area with
+     * them, so the cells keep their place on the board. Used to jump a
+     * spaceship a number of periods ahead, see CycleDetector. The cells are
+     * taken out and added again at their new keys.
+     * @param rows number of rows to move the cells south, may be negative.
+     * @param columns number of columns to move the cells east, may be negative.
+     */
+    public void translate(int rows, int columns) {
+        if(rows == 0 && columns == 0)
+            return;
+        long[] cells = new long[Math.max(16, getPopulation())];
+        byte[] states = new byte[cells.length];
+        int size = 0;
+        for(long cell : this){
+            if(size == cells.length){
+                cells = Arrays.copyOf(cells, 2*size);
+                states = Arrays.copyOf(states, 2*size);
+            }
+            states[size] = (byte) stateOf(cell);
+            cells[size++] = cell;
+        }
+        clearPopulation();
+        originRow += rows;
+        originColumn += columns;
+        for(int i = 0; i<size; i++)
+            addCell(key(row(cells[i])+rows, column(cells[i])+columns), states[i] & 0xFF);
+    }
+
+    /**
+     * Gives the statistics of the last step, counted by calcNextGen as it
+     * went. Editing the cells afterwards does not change them, and the jumps
+     * of stepN over more than one generation leave none.
+     * @return the statistics of the step that made this generation, or null.
+     */
+    public GenerationStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Called by calcNextGen, on the generation it returns, when the cells of
+     * the next generation are in place. The population and the bounding box
+     * are read from the generation.
+     * @param births number of cells born in the step.
+     * @param deaths number of cells that died in the step.
+     */
+    protected void emitStats(long births, long deaths) {
+        stats = new GenerationStats(getPopulation(), births, deaths, getBoundingBox());
+    }
+
+    /**
+     * Replaces the cells, the area and the origin with those of a snapshot,
+     * i.e. a generation found in a GenerationManager.
+     * @param snapshot the snapshot.
+     */
+    public void restore(Snapshot snapshot) {
+        clearPopulation();
+        area = snapshot.getArea();
+        originRow = snapshot.getOriginRow();
+        originColumn = snapshot.getOriginColumn();
+        for(int i = 0; i<snapshot.getPopulation(); i++)
+            addCell(snapshot.cell(i), snapshot.state(i));
+    }
+
     @Override
-    public abstract Iterator<Integer> iterator();     
-    
-    public abstract void clearPopulation(); 
+    public abstract Iterator<Long> iterator();
+
+    public abstract void clearPopulation();
     public abstract Generation calcNextGen();
-    public abstract void addLivingCell(int loc);
-    public abstract void removeLivingCell(int i);
+    public abstract void addLivingCell(long key);
+    public abstract void removeLivingCell(long key);
     public abstract int getPopulation();
-    public abstract byte[][] convertToStatic();
+
+    /**
+     * Gives the bounding box of the living cells in the world, kept up to date
+     * by the subclasses, so asking costs the same for every population.
+     * @return int[] containing the top row, the bottom row, the left column
+     *         and the right column of the box, or null if there are no living cells.
+     */
+    public abstract int[] getBoundingBox();
+
+    /**
+     * Gives the Zobrist hash of the cells, kept up to date by the subclasses
+     * with every birth and death, see ZobristHash. Equal patterns at the same
+     * place have equal hashes, and a pattern moved by (rows, columns) has
+     * the hash of the pattern translated, so a CycleDetector can tell the
+     * oscillators and the spaceships without comparing their cells.
+     * @return the hash of the cells.
+     */
+    public abstract long getHash();
+
+    /**
+     * @param row a row in the world.
+     * @return number of living cells on the row.
+     */
+    public abstract int cellsInRow(int row);
+
+    /**
+     * @param column a column in the world.
+     * @return number of living cells in the column.
+     */
+    public abstract int cellsInColumn(int column);
 }
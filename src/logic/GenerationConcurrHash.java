@@ -1,273 +1,397 @@
-
 package logic;
 
 import java.util.Iterator;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 /**
- * ConcurrentHashMap-implementation
- * A Generation is represented by a map of living cells and a map of
+ * Parallel hash-implementation
+ * A Generation is represented by a set of living cells and a map of
  * the neighbourhood (8 neighbour-cells) of every living cell. Every living cell
- * has a key(location) that represent their position in the matrix. Every dead cell
- * has a key(location) and a value(living neighbours). Every living cell increment
- * it's 8 neighbours value by 1.
+ * has a key that represent their position in the world (see Generation.key).
+ * Every dead cell has a key and a value(living neighbours). Every living cell sets
+ * its own bit in the neighbourhood mask (see CompiledRule) of it's 8 neighbours.
+ * <br>
+ * The cells are split into parts by their row, the rows taking turns, and
+ * every part is a primitive CellSet. The neighbours of a cell are in the row
+ * above, its own row and the row below, so they belong to the part before,
+ * the same part or the part after. The next generation is calculated in two
+ * phases, both run in parallel with one task per part:
+ * <br>
+ * 1: Every task goes through the living cells of its own part. The survivors
+ *    are put in the same part of the next generation, and the bits of the
+ *    dead neighbours are put in one of the task's four CellCountMaps: one for
+ *    each of the three parts it can reach, and one for the neighbours a
+ *    bounded world maps to a row far away. No map is shared, so no counts
+ *    are lost and no task waits for another.
+ *    <br>
+ * 2: Every task merges the maps of its part from itself and the tasks of the
+ *    parts before and after it, takes the cells of its part from the maps of
+ *    the far rows, and puts the cells that are born in its part of the next
+ *    generation.
+ * <br>
+ * Every dead cell gets each of its bits from one living cell only, so the
+ * merge is an addition and the result does not depend on the order the
+ * tasks ran in: it is the same as GenerationHash.
  * <br>
  * If a cell is on the periphery of the board, the next generation could have need
- * for a larger area. Even though the cell at the edge of the board might die in 
- * the next generation, the board will still expand to make sure there is room for the 
- * next generation. 
+ * for a larger area. Even though the cell at the edge of the board might die in
+ * the next generation, the board will still expand to make sure there is room for the
+ * next generation.
  * <br>
  * The GenerationHash extends Generation, which is the superclass containing indexToInteger
  * and integerToIndex conversions. The Generation-class could easily be used in other implementations
  * of the board (i.e ArrayList, linkedList, 2DArray etc.. ).
  * @author Olav Sørlie and Øyvind Mjelstad
- * 
+ *
  */
 public class GenerationConcurrHash extends Generation{
 
-    //Contains the key(location) for every living cell in the map.
-    //The value is not used in the population-map.
-    private ConcurrentHashMap<Integer, String> population = new ConcurrentHashMap<>(36000,0.75f,9);
+    //Number of parts, a power of two of about four parts per thread.
+    private static final int PART_BITS = partBits(ForkJoinPool.getCommonPoolParallelism());
+    private static final int PARTS = 1 << PART_BITS;
+    //Smaller populations are calculated in one thread.
+    private static final int PARALLEL_THRESHOLD = 4096;
+    //The count-maps of a task, by the part of the neighbours they hold.
+    private static final int PREV = 0, SAME = 1, NEXT = 2, FAR = 3;
+
+    //Contains the key for every living cell, split into parts.
+    private final CellSet[] population;
+    //The bounding box of every part, filled by the task of the part.
+    private final BoundingBox[] boxes;
 
-    //contains the "neighbouring" eight cells around every living cell
-    //The key represents position and the value represents the number of living neighbours.
-    private  ConcurrentHashMap<Integer, Integer> neighbourhood = new ConcurrentHashMap<>(110000,0.75f,9);
+    //counts[q][PREV], [SAME] and [NEXT] hold the neighbourhood masks of the
+    //dead cells of part q-1, q and q+1 found by the task of part q, and
+    //counts[q][FAR] those of any other part. The maps are handed on to the
+    //next generation.
+    private final CellCountMap[][] counts;
 
     public GenerationConcurrHash(int area, int areaInc){
         super(area, areaInc);
+        population = new CellSet[PARTS];
+        boxes = new BoundingBox[PARTS];
+        for(int p = 0; p<PARTS; p++){
+            population[p] = new CellSet();
+            boxes[p] = new BoundingBox();
+        }
+        counts = new CellCountMap[PARTS][FAR+1];
+        for(int q = 0; q<PARTS; q++)
+            for(int m = 0; m<=FAR; m++)
+                counts[q][m] = new CellCountMap();
+    }
+
+    /**
+     * Creates the next generation, reusing the count-maps of
+     * the previous generation.
+     * @param prev the previous generation.
+     */
+    private GenerationConcurrHash(GenerationConcurrHash prev){
+        super(prev.getArea(), prev.getAreaInc());
+        population = new CellSet[PARTS];
+        boxes = new BoundingBox[PARTS];
+        for(int p = 0; p<PARTS; p++){
+            population[p] = new CellSet(prev.population[p].size());
+            boxes[p] = new BoundingBox(prev.boxes[p]);
+        }
+        counts = prev.counts;
+        copyWorld(prev);
+    }
+
+    /**
+     * @return the number of bits giving about four parts per thread.
+     */
+    private static int partBits(int parallelism){
+        return 32 - Integer.numberOfLeadingZeros(Math.max(1, parallelism)*4 - 1);
+    }
+
+    /**
+     * @param key the cell.
+     * @return the part the cell belongs to, by its row.
+     */
+    private static int part(long key){
+        return row(key) & (PARTS-1);
     }
 
     /**
-     * Removes the key,val from the map. This metod is used by
+     * @param q the part of the task.
+     * @param p the part of a neighbour found by the task.
+     * @return the count-map of the task the neighbour is put in.
+     */
+    private static int slot(int q, int p){
+        int d = (p-q) & (PARTS-1);
+        if(d == 0)
+            return SAME;
+        if(d == 1)
+            return NEXT;
+        return d == PARTS-1 ? PREV : FAR;
+    }
+
+    /**
+     * Runs the task once for every part, in parallel if the population is large.
+     */
+    private void forEachPart(IntConsumer task){
+        IntStream parts = IntStream.range(0, PARTS);
+        if(PARTS > 1 && getPopulation() >= PARALLEL_THRESHOLD)
+            parts = parts.parallel();
+        parts.forEach(task);
+    }
+
+    /**
+     * Removes the key from the set. This metod is used by
      * the change-cell-status method found in DynamicBoard.
-     * @param location The location of which the cell is.
+     * @param key The key of the cell.
      */
     @Override
-    public void removeLivingCell(int location) {
-        population.remove(location, "");
+    public void removeLivingCell(long key) {
+        int p = part(key);
+        if(population[p].remove(key))
+            boxes[p].remove(row(key), column(key));
     }
-    
+
      /**
-     * Adds a key,val to the map. This method is used by
+     * Adds a key to the set. This method is used by
      * the change-cell-status method found in DynamicBoard.
-     * @param location The location of which the cell is.
+     * @param key The key of the cell.
      */
     @Override
-    public void addLivingCell(int location){
-        population.put(location, ""); 
+    public void addLivingCell(long key){
+        int p = part(key);
+        if(population[p].add(key))
+            boxes[p].add(row(key), column(key));
     }
-    
+
     /**
      * Enables to be the target of an enhanced for-loop.
      * This is utilized in the draw-method of the DynamicBoard class.
      * @return an iterator
      */
     @Override
-    public Iterator<Integer> iterator(){
-        return population.keySet().iterator();
-    }
+    public Iterator<Long> iterator(){
+        return new Iterator<Long>(){
+            private int p = 0;
+            private PrimitiveIterator.OfLong it = population[0].iterator();
 
-    /**
-     * Checks the boundary of the map to see if there are any living cells there.
-     * @return true if there are any living cells at the boundary of the map
-     */
-    @Override
-    public boolean needExpansion(){
-        for(int cell : population.keySet()){
-            int[] ind = intToInd(cell);
-            //if on border
-            if( ind[0] == 0 || ind[0] == getArea()-1 ||
-                ind[1] == 0 || ind[1] == getArea()-1 ) 
-            return true;
-        }
-    return false;
-    }
+            @Override
+            public boolean hasNext(){
+                while(!it.hasNext() && p < PARTS-1)
+                    it = population[++p].iterator();
+                return it.hasNext();
+            }
 
-    /**
-     * Creates a new ConcurrentHashMap and adds the living cells
-     * of the current population into the new map. The new living cells
-     * are positioned relative to the area-increase. If the area of the new
-     * world is greater than the cap (25000), the board is reset.
-     * Threads are used through the forEach-loop.
-     */
-    @Override
-    public void expandWorld(){
-        int newArea = getArea()+2*getAreaInc();
-        if(newArea > 25000) {
-            ctrl.resetBtnClicked();
-        }
-  
-        ConcurrentHashMap<Integer, String> newCells = new ConcurrentHashMap<>();
-        population.forEach(3,(key,val) -> {
-            int[] ind = intToInd(key);
-            ind[0]+=getAreaInc();
-            ind[1]+=getAreaInc();
-            newCells.put(indToInt(ind[0], ind[1], newArea), "");
-        });
-       DynamicBoard.area = newArea;
-       setArea(newArea);
-       population = newCells;
+            @Override
+            public Long next(){
+                if(!hasNext())
+                    throw new NoSuchElementException();
+                return it.nextLong();
+            }
+        };
     }
-   
 
     /**
-     * Creates a new map that will contain the living cells of the next generation.
-     * Goes through the population-map and checks how many living neigthbours each cells
-     * have. Puts the cells that will survive into the nextGen map.
-     * Calls the countNeighbours-method which fills the neighbourhood-map with potentially 
+     * Creates a new generation that will contain the living cells of the next
+     * generation, in the two phases described for the class.
+     * <br>
+     * Phase 1 goes through the living cells of every part and checks how many
+     * living neigthbours each cell has. Puts the cells that will survive into
+     * the nextGen, and fills the count-maps of the task with potentially
      * living cells.
      * <br>
-     * Goes through the neighbourhood-map using threads and adds those who have been
-     * "ticked" the correct number of times to the population-map.
-     * 
-     * @return next Generations living cells 
+     * Phase 2 merges the count-maps of every part and adds those who have been
+     * "ticked" the correct number of times to the nextGen.
+     *
+     * @return next Generations living cells
      */
     @Override
     public GenerationConcurrHash calcNextGen(){
-        long start = startTimer();
         if(needExpansion())
             expandWorld();
-        GenerationConcurrHash nextGen = new GenerationConcurrHash(getArea(), getAreaInc());
-        
-        neighbourhood.clear();
-        population.forEach((key,val)->{
-            
-            if(ctrl.getDynamicBoard().getSurvives()[countNeighbours(key)])
-                nextGen.addLivingCell(key);
-            
+
+        CompiledRule rule = getRule();
+        GenerationConcurrHash nextGen = new GenerationConcurrHash(this);
+
+        forEachPart(q -> {
+            CellCountMap[] own = counts[q];
+            for(CellCountMap map : own)
+                map.clear();
+            CellSet survivors = nextGen.population[q];
+            BoundingBox box = nextGen.boxes[q];
+            for(PrimitiveIterator.OfLong it = population[q].iterator(); it.hasNext();){
+                long livingCell = it.nextLong();
+                if(rule.nextState(countNeighbours(livingCell, q, own) | CompiledRule.CENTER) == 1){
+                    survivors.add(livingCell);
+                    box.add(row(livingCell), column(livingCell));
+                }
+            }
         });
-        
-        neighbourhood.forEach(3,(key, val)->{
-             if(ctrl.getDynamicBoard().getBorn()[neighbourhood.get(key)]) 
-                nextGen.addLivingCell(key);
-                   
+
+        int survivors = nextGen.getPopulation();
+
+        forEachPart(p -> {
+            CellCountMap merged = counts[p][SAME];
+            counts[(p-1) & (PARTS-1)][NEXT].forEach(merged::add);
+            counts[(p+1) & (PARTS-1)][PREV].forEach(merged::add);
+            for(CellCountMap[] own : counts){
+                own[FAR].forEach((cell, neighbours) -> {
+                    if(part(cell) == p)
+                        merged.add(cell, neighbours);
+                });
+            }
+            CellSet born = nextGen.population[p];
+            BoundingBox box = nextGen.boxes[p];
+            merged.forEach((deadCell, neighbours) -> {
+                if(rule.nextState(neighbours) == 1){
+                    born.add(deadCell);
+                    box.add(row(deadCell), column(deadCell));
+                }
+            });
         });
-        nextGenerationConcurrentPrintPerformance(start);
+        nextGen.emitStats(nextGen.getPopulation()-survivors, getPopulation()-survivors);
         return nextGen;
     }
-    
-    /**
-     * Starts the timer
-     * @return the start time when this method was called
-     */
-    public long startTimer(){
-        long start = System.currentTimeMillis();
-        return start;
-    }
-    
-    /**
-     * Prints the time it took from calculating the next generation to returning
-     * the next generation.
-     * @param start the start value
-     */
-    public void nextGenerationConcurrentPrintPerformance(long start){
-        long elapsed = System.currentTimeMillis() - start;
-        System.out.println("Counting time (ms): " + elapsed);
-    }
-    
+
     /**
-     * Counts neighbours for every living cell. 
+     * Finds the living neighbours for every living cell, as the bits of a
+     * neighbourhood mask (see CompiledRule).
      * @param livingCell
-     * @return number of neighbours living for the current cell
+     * @param q the part of the task.
+     * @param own the count-maps of the task, see counts.
+     * @return the neighbourhood mask of the living neighbours of the current cell
      */
-    private int countNeighbours(int livingCell){
+    private int countNeighbours(long livingCell, int q, CellCountMap[] own){
         int cnt = 0;
-        
-        //Converts the livingcells position to an index. 
-        int[] ind = intToInd(livingCell);
-        int i = ind[0];
-        int j = ind[1]; 
+
+        //The row and column of the living cell in the world.
+        int i = row(livingCell), j = column(livingCell);
+        //Only the neighbours of a cell on the boundary can be outside a bounded world.
+        boolean edge = getTopology().isBounded() && onBoundary(i, j);
 
         //Nortwest,west,southwest - northeast, east, southeast
-        for(int x = i-1; x<i+2; x++){
-            cnt+= neighbourAt(x, j-1);
-            cnt+= neighbourAt(x, j+1);  
+        for(int x = -1; x<2; x++){
+            cnt |= neighbourAt(i+x, j-1, x, -1, q, own, edge);
+            cnt |= neighbourAt(i+x, j+1, x, 1, q, own, edge);
         }
         //Sole north and sole south
-        cnt += neighbourAt(i-1, j);
-        cnt += neighbourAt(i+1, j);
-        
-       // System.out.println("North:" + neighbourAt(i-1, j));
-        //System.out.println("South:" + neighbourAt(i+1, j));
-
-
+        cnt |= neighbourAt(i-1, j, -1, 0, q, own, edge);
+        cnt |= neighbourAt(i+1, j, 1, 0, q, own, edge);
 
-    return cnt;
+        return cnt;
     }
-    
+
     /**
-     * Three scenarios:
-     *    <br>
-     * 1: The cell is already alive (a key in the population). We return 1
-     *    to give the living cell 1 living neighbour.
+     * Two scenarios:
      *    <br>
-     * 2: The cell is not alive and it is the first time we've encounter it.
-     *    In this case we put the cell-position into the neighbourhood-map
-     *    and gives it a value of 1. The value represents number of times the
-     *    cell has been "marked".
+     * 1: The cell is already alive (a key in the population). We return
+     *    the bit of the cell in the neighbourhood of the living cell.
      *    <br>
-     * 3: The cell is not alive and it has already been "marked".
-     *    We replace the existing value of that cell with +1 more than
-     *    previous value.
+     * 2: The cell is not alive. The add puts the bit of the living cell into
+     *    the neighbourhood of the cell, in the task's own map of the part
+     *    the cell belongs to (see slot). The value represents the cells that have
+     *    "marked" it.
      *    <br>
-     * @param i index_i, representing the row.
-     * @param j index_j, represents the position in the row.
-     * @return returns 1 if the neighbour is alive, and 0 if the neighbour is not alive.
+     * @param i the row of the cell in the world.
+     * @param j the column of the cell in the world.
+     * @param di row offset from the living cell to the neighbour.
+     * @param dj column offset from the living cell to the neighbour.
+     * @param q the part of the task.
+     * @param own the count-maps of the task, see counts.
+     * @param edge true if the living cell is on the boundary, and the
+     *        neighbour is mapped by the topology when it is outside the area.
+     * @return returns the bit of the neighbour if it is alive, and 0 if the neighbour is not alive.
     */
-    private int neighbourAt(int i, int j){
-        int cell = indToInt(i, j);
-        if(population.containsKey(cell)){        
-            return 1;
-        }
-        if(!neighbourhood.containsKey(cell)){    
-            neighbourhood.put(cell, 1);
+    private int neighbourAt(int i, int j, int di, int dj, int q, CellCountMap[] own, boolean edge){
+        long cell = key(i, j);
+        //The living cell is at the opposite offset, seen from the neighbour.
+        int bit = CompiledRule.neighbourBit(-di, -dj);
+        if(edge && !inArea(i, j)){
+            cell = wrap(i, j);
+            if(cell == Topology.DEAD)
+                return 0;
+            //Seen mirrored, east and west change places.
+            if(mirrors(i))
+                bit = CompiledRule.neighbourBit(-di, dj);
         }
-        else{
-            int tmp = neighbourhood.get(cell);
-            neighbourhood.replace(cell, tmp, tmp+1);
+        int p = part(cell);
+        if(population[p].contains(cell)){
+            return CompiledRule.neighbourBit(di, dj);
         }
+        own[slot(q, p)].add(cell, bit);
         return 0;
     }
-    
+
     /**
-    * Removes all of the mappings from population.
+    * Removes all of the cells from population.
     */
     @Override
     public void clearPopulation() {
-        population.clear();
+        for(CellSet part : population)
+            part.clear();
+        for(BoundingBox box : boxes)
+            box.clear();
     }
 
     /**
     * This method makes it possible to constantly track number of living cells.
-    * @return number of key-value mappings in population.
+    * @return number of cells in population.
     */
     @Override
     public int getPopulation() {
-        return population.size();
+        int size = 0;
+        for(CellSet part : population)
+            size += part.size();
+        return size;
     }
-    
 
     /**
-     * Converts the population-map to a static 2D-array.
-     * This method is used when entering the pattern editor.
-     * @return 2D-array representation of the population.
+     * Joins the bounding boxes of the parts, which are kept by the tasks
+     * as they fill the parts, so the cost is the number of parts.
+     * @return the bounding box of the living cells, see Generation.
      */
     @Override
-    public byte[][] convertToStatic() {
-        byte tmp[][] = new byte[getArea()][getArea()];
-        for(int i = 0; i<getArea(); i++)
-            for(int j = 0; j<getArea(); j++) {
-                
-                if(population.containsKey(indToInt(i,j))) {
-                    tmp[i][j] = 1;
-                }
-                else{
-                    tmp[i][j] = 0;    
-                }
+    public int[] getBoundingBox() {
+        int[] joined = null;
+        for(BoundingBox box : boxes){
+            if(box.isEmpty())
+                continue;
+            if(joined == null){
+                joined = new int[]{box.getTop(), box.getBottom(), box.getLeft(), box.getRight()};
+                continue;
+            }
+            joined[0] = Math.min(joined[0], box.getTop());
+            joined[1] = Math.max(joined[1], box.getBottom());
+            joined[2] = Math.min(joined[2], box.getLeft());
+            joined[3] = Math.max(joined[3], box.getRight());
         }
-        return tmp;
+        return joined;
     }
-    
+
+    /**
+     * The hash is a sum, so the hashes of the parts are added.
+     * @return the Zobrist hash of the living cells, see Generation.
+     */
+    @Override
+    public long getHash() {
+        long hash = 0;
+        for(BoundingBox box : boxes)
+            hash += box.getHash();
+        return hash;
+    }
+
+    @Override
+    public int cellsInRow(int row) {
+        return boxes[row & (PARTS-1)].rowCount(row);
+    }
+
+    @Override
+    public int cellsInColumn(int column) {
+        int cells = 0;
+        for(BoundingBox box : boxes)
+            cells += box.columnCount(column);
+        return cells;
+    }
+
     /**
      * @return the class name
      */
@@ -276,4 +400,3 @@ public class GenerationConcurrHash extends Generation{
         return "HashMapGeneration";
     }
 }
-
@@ -5,15 +5,14 @@
 
 package logic;
 
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
 
 /**
  * HashMap-implementation
  * A Generation is represented by a map of living cells and a map of
  * the neighbourhood (8 neighbour-cells) of every living cell. Every living cell
- * has a key(location) that represent their position in the matrix. If a cell is
+ * has a key that represent their position in the world (see Generation.key). If a cell is
  * on the periphery of the board (area), the next generation could have need
  * for a larger area. Even though the cell at the edge of the board might die in 
  * the next generation, the board will still expand to make sure there is room for the 
@@ -22,39 +21,64 @@ import java.util.NoSuchElementException;
  * <br>
  * The GenerationHash extends Generation, which is the superclass containing indexToInteger
  * and integerToIndex conversions.
+ * <br>
+ * The maps are primitive open-addressing tables (CellSet and CellCountMap), so
+ * a cell costs a few bytes in an int[] instead of a boxed Integer and a map entry.
+ * The neighbourhood-map is handed on to the next generation and cleared there,
+ * so it is only allocated once.
  * 
  * @author Olav Sørlie and Øyvind Mjelstad
  */
 
 public class GenerationHash extends Generation{
     
-    //Contains the key(location) for every living cell in the map.
-    private HashMap<Integer, String> population = new HashMap<>();
+    //Contains the key(location) for every living cell in the set.
+    private CellSet population;
     //contains the "neighbouring" eight cells around every living cell
-    private HashMap<Integer, Integer> neighbourhood = new HashMap<>();
+    private CellCountMap neighbourhood;
+    //The bounding box of the population, updated as cells are added and removed.
+    private final BoundingBox box;
 
     public GenerationHash(int area, int areaInc){
 	super(area, areaInc);
+        population = new CellSet();
+        neighbourhood = new CellCountMap();
+        box = new BoundingBox();
+    }
+    
+    /**
+     * Creates the next generation, reusing the neighbourhood-map of
+     * the previous generation.
+     * @param prev the previous generation.
+     */
+    private GenerationHash(GenerationHash prev){
+        super(prev.getArea(), prev.getAreaInc());
+        population = new CellSet(prev.population.size());
+        neighbourhood = prev.neighbourhood;
+        box = new BoundingBox(prev.box);
+        copyWorld(prev);
     }
     
      /**
-     * Adds a key,val to the map. This method is used by
+     * Adds a key to the set. This method is used by
      * the change-cell-status method found in DynamicBoard.
-     * @param location The location of which the cell is.
+     * @param key The key of the cell.
      */
     @Override
-    public void addLivingCell(int location){
-	population.put(location, ""); 
+    public void addLivingCell(long key){
+	if(population.add(key))
+            box.add(row(key), column(key));
     }
     
     /**
-    * Removes the key,val from the map. This metod is used by
+    * Removes the key from the set. This metod is used by
     * the change-cell-status method found in DynamicBoard.
-    * @param location The location of which the cell is.
+    * @param key The key of the cell.
     */
     @Override
-    public void removeLivingCell(int location){
-        population.remove(location, "");
+    public void removeLivingCell(long key){
+        if(population.remove(key))
+            box.remove(row(key), column(key));
     }
 
    /**
@@ -64,58 +88,10 @@ public class GenerationHash extends Generation{
      * @return an iterator
      */    
     @Override
-    public Iterator<Integer> iterator(){
-	return population.keySet().iterator();
+    public Iterator<Long> iterator(){
+	return population.iterator();
     }
 	
-    /**
-     * Checks the boundary of the map to see if there are any living cells there.
-     * @return true if there are any living cells at the boundary of the map
-     */
-    @Override
-    public boolean needExpansion(){
-	for(int cell : population.keySet()){
-            int[] ind = intToInd(cell);
-            //if on border
-            if( ind[0] == 0 || ind[0] == getArea()-1 ||
-		ind[1] == 0 || ind[1] == getArea()-1 ) 
-            return true;
-	}
-	return false;
-    }
-    
-    /**
-     * Creates a new HashMap and adds the living cells
-     * of the current population into the new map. The new living cells
-     * are positioned relative to the area-increase. If the area of the new
-     * world is greater than the cap (25000), the board is reset.
-     */
-    @Override
-    public void expandWorld(){
-	HashMap<Integer, String> newCells = new HashMap<>();
-        int newArea = getArea()+2*getAreaInc();
-        
-        if(newArea > 25000) {
-            ctrl.resetBtnClicked();
-        }
-	
-        int[] ind_i = new int[population.size()];
-	int[] ind_j = new int[population.size()];
-        int i = 0;
-	for(int cell : population.keySet()){
-            int[] ind = intToInd(cell);
-            ind_i[i] = ind[0]+getAreaInc(); 
-            ind_j[i] = ind[1]+getAreaInc();
-            i++;
-	}
-	for(i = 0; i<ind_i.length; i++){
-            newCells.put(indToInt(ind_i[i], ind_j[i],newArea), "");
-        }
-        DynamicBoard.area = newArea;
-        population        = newCells;
-        setArea(newArea);
-	}
-    
     /**
      * Creates a new map that will contain the living cells of the next generation.
      * Goes through the population-map and checks how many living neigthbours each cells
@@ -130,46 +106,31 @@ public class GenerationHash extends Generation{
      */
     @Override
     public GenerationHash calcNextGen(){
-        long start = startTimer();
         if(needExpansion())
             expandWorld();
 		
-        GenerationHash nextGen = new GenerationHash(getArea(), getAreaInc());
+        CompiledRule rule = getRule();
+        
         neighbourhood.clear();
-        for(int livingCell : population.keySet()){
+        GenerationHash nextGen = new GenerationHash(this);
+        for(PrimitiveIterator.OfLong it = population.iterator(); it.hasNext();){
+            long livingCell = it.nextLong();
             int neighbours = countNeighbours(livingCell);
 	
-            if(ctrl.getDynamicBoard().getSurvives()[neighbours])
+            if(rule.nextState(neighbours | CompiledRule.CENTER) == 1)
                 nextGen.addLivingCell(livingCell);	
         }	
-        for(int deadCell : neighbourhood.keySet()) {
+        int survivors = nextGen.getPopulation();
+        neighbourhood.forEach((deadCell, neighbours) -> {
           
-            if(ctrl.getDynamicBoard().getBorn()[neighbourhood.get(deadCell)])
+            if(rule.nextState(neighbours) == 1)
                 nextGen.addLivingCell(deadCell);
-        }
-        nextGenerationConcurrentPrintPerformance(start);
+        });
+        //Only the survivors were added before the births.
+        nextGen.emitStats(nextGen.getPopulation()-survivors, getPopulation()-survivors);
         return nextGen;
     }
     
-    /**
-     * Starts the timer
-     * @return the start time when this method was called
-     */
-    public long startTimer(){
-        long start = System.currentTimeMillis();
-        return start;
-    }
-    
-    /**
-     * Prints the time it took from calculating the next generation to returning
-     * the next generation.
-     * @param start the start value
-     */
-    public void nextGenerationConcurrentPrintPerformance(long start){
-	long elapsed = System.currentTimeMillis() - start;
-	System.out.println("Counting time (ms): " + elapsed);
-    }
-    
     /**
      * @return the class name
      */
@@ -180,25 +141,28 @@ public class GenerationHash extends Generation{
 	
     
     /**
-     * Counts neighbours for every living cell. 
+     * Finds the living neighbours of every living cell. The neighbours are
+     * not counted but set as bits of a neighbourhood mask (see CompiledRule),
+     * which also holds the count, so non-totalistic rules can be looked up.
      * @param livingCell
-     * @return number of neighbours living(!) for the current cell
+     * @return the neighbourhood mask of the living(!) neighbours of the current cell
      */
-    private int countNeighbours(int livingCell){
+    private int countNeighbours(long livingCell){
 	int cnt = 0;
         
-        //Converts the livingcells position to an index. 
-	int[] ind = intToInd(livingCell);
-	int i = ind[0], j = ind[1]; 
+        //The row and column of the living cell in the world.
+	int i = row(livingCell), j = column(livingCell); 
+        //Only the neighbours of a cell on the boundary can be outside a bounded world.
+        boolean edge = getTopology().isBounded() && onBoundary(i, j);
 
         //Nortwest,west,southwest - northeast, east, southeast
-	for(int x = i-1; x<i+2; x++){
-            cnt+= neighbourAt(x, j-1);
-            cnt+= neighbourAt(x, j+1);
+	for(int x = -1; x<2; x++){
+            cnt |= neighbourAt(i+x, j-1, x, -1, edge);
+            cnt |= neighbourAt(i+x, j+1, x, 1, edge);
 	}
         //Sole north and sole south
-        cnt += neighbourAt(i-1, j);
-	cnt += neighbourAt(i+1, j);
+        cnt |= neighbourAt(i-1, j, -1, 0, edge);
+	cnt |= neighbourAt(i+1, j, 1, 0, edge);
 
 	return cnt;
 	
@@ -211,40 +175,40 @@ public class GenerationHash extends Generation{
      *         to give the living cell 1 living neighbour.
      *          <br>
      *      2: The cell is not alive and it is the first time we've encounter it.
-     *         In this case we put the cell-position into the neighbourhood-map
-     *         and gives it a value of 1. The value represents number of times the
-     *         cell has been "marked".
+     *         The add puts the cell-position into the neighbourhood-map
+     *         with the bit of the living cell in its neighbourhood. The value
+     *         represents the cells that have "marked" it.
      *         <br>
      *      3: The cell is not alive and it has already been "marked".
-     *         We replace the existing value of that cell with +1 more than
-     *         previous value.
+     *         The add sets the bit of the living cell in the existing value.
      *      
-     * @param i index_i, representing the row
-     * @param j index_j, represents the position in the row.
-     * @return returns 1 if the neighbour is alive, and 0 if the neighbour is not alive.
+     * @param i the row of the cell in the world.
+     * @param j the column of the cell in the world.
+     * @param di row offset from the living cell to the neighbour.
+     * @param dj column offset from the living cell to the neighbour.
+     * @param edge true if the living cell is on the boundary, and the
+     *        neighbour is mapped by the topology when it is outside the area.
+     * @return returns the bit of the neighbour if it is alive, and 0 if the neighbour is not alive.
      */
-    private int neighbourAt(int i, int j){
-	int cell;
-	try{
-            cell = indToInt(i, j);
-	
-        }catch(NoSuchElementException e){
-            return 0;
-	}
+    private int neighbourAt(int i, int j, int di, int dj, boolean edge){
+	long cell = key(i, j);
+        //The living cell is at the opposite offset, seen from the neighbour.
+        int bit = CompiledRule.neighbourBit(-di, -dj);
+        if(edge && !inArea(i, j)){
+            cell = wrap(i, j);
+            if(cell == Topology.DEAD)
+                return 0;
+            //Seen mirrored, east and west change places.
+            if(mirrors(i))
+                bit = CompiledRule.neighbourBit(-di, dj);
+        }
 	
         //Hvis den gjeldene cellen ligger i bunken med levende celler returnerer vi 1 slik
         // at counteren (cnt) i countNeighbours øker med 1.
-	if(population.containsKey(cell))
-            return 1;
-        
-	if(!neighbourhood.containsKey(cell)) 
-            neighbourhood.put(cell, 1);
+	if(population.contains(cell))
+            return CompiledRule.neighbourBit(di, dj);
         
-        else{
-            int tmp = neighbourhood.get(cell); 
-            neighbourhood.remove(cell);
-            neighbourhood.put(cell,tmp+1);
-	}
+        neighbourhood.add(cell, bit);
 	return 0;
     }
     
@@ -254,6 +218,7 @@ public class GenerationHash extends Generation{
     @Override
     public void clearPopulation() {
         population.clear();
+        box.clear();
     }
 
     /**
@@ -264,24 +229,35 @@ public class GenerationHash extends Generation{
     public int getPopulation() {
         return population.size();
     }
-    
+
     /**
-     * Converts the population-map to a static 2D-array.
-     * This method is used when entering the pattern editor.
-     * @return 2D-array representation of the population.
+     * The box is built as the next generation is filled, so no extra pass
+     * over the population is needed.
+     * @return the bounding box of the living cells, see Generation.
      */
     @Override
-    public byte[][] convertToStatic() {
-        byte tmp[][] = new byte[getArea()][getArea()];
-        for(int i = 0; i<getArea(); i++)
-            for(int j = 0; j<getArea(); j++) {
-                if(population.containsKey(indToInt(i,j))) {
-                    tmp[i][j] = 1;
-                }
-                else
-                    tmp[i][j] = 0;     
-        }
-        return tmp;
+    public int[] getBoundingBox() {
+        if(box.isEmpty())
+            return null;
+        return new int[]{box.getTop(), box.getBottom(), box.getLeft(), box.getRight()};
+    }
+
+    /**
+     * The hash follows the bounding box, see BoundingBox.
+     * @return the Zobrist hash of the living cells, see Generation.
+     */
+    @Override
+    public long getHash() {
+        return box.getHash();
+    }
+
+    @Override
+    public int cellsInRow(int row) {
+        return box.rowCount(row);
+    }
+
+    @Override
+    public int cellsInColumn(int column) {
+        return box.columnCount(column);
     }
 }
- 
\ No newline at end of file
@@ -0,0 +1,696 @@
+package logic;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * HashLife-implementation
+ * A Generation is represented by a quadtree. Every node of the tree is a square
+ * of 2^level x 2^level cells, made of four nodes one level below. Equal squares are
+ * only stored once, by looking every node up in a canonical hash table (NodeCache)
+ * before it is created. Every node also remembers its own future: the center
+ * of the node 2^(level-2) generations later. Since equal squares are the same node,
+ * a glider gun that repeats its pattern is only calculated once for every
+ * distinct square, which makes it possible to jump millions of generations.
+ * <br>
+ * The tree is centered at (0,0) in the world, and the cells have the same
+ * row and column in the tree as in their keys (see Generation.key). Expanding
+ * the world only moves the origin of the area, the tree is never rebuilt.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class GenerationHashLife extends Generation{
+
+    private NodeCache cache;
+    private Node root;
+    //The bounding box of the root, found once for every root.
+    private long[] box;
+    //Number of cells collected by the running collectCells.
+    private int collected;
+
+    public GenerationHashLife(int area, int areaInc){
+        super(area, areaInc);
+        this.cache = new NodeCache(CompiledRule.CONWAY);
+        this.root = cache.empty(3);
+    }
+
+    /**
+     * The tree is centered at (0,0) of an unbounded world, so this generation
+     * only runs on the plane.
+     * @param topology the topology, only Topology.PLANE.
+     * @throws IllegalArgumentException if the topology is bounded.
+     */
+    @Override
+    public void setTopology(Topology topology){
+        if(topology.isBounded())
+            throw new IllegalArgumentException(this + " only runs on the plane, not on " + topology);
+        super.setTopology(topology);
+    }
+
+    /**
+     * Creates the generation after prev, sharing the canonical nodes.
+     * @param prev the previous generation.
+     * @param root the root of the new generation.
+     */
+    private GenerationHashLife(GenerationHashLife prev, Node root){
+        super(prev.getArea(), prev.getAreaInc());
+        this.cache = prev.cache;
+        this.root = root;
+        copyWorld(prev);
+    }
+
+    /**
+     * Adds a living cell to the tree. This method is used by
+     * the change-cell-status method found in DynamicBoard.
+     * @param key The key of the cell.
+     */
+    @Override
+    public void addLivingCell(long key){
+        root = setCell(row(key), column(key), true);
+        box = null;
+    }
+
+    /**
+     * Removes a living cell from the tree. This method is used by
+     * the change-cell-status method found in DynamicBoard.
+     * @param key The key of the cell.
+     */
+    @Override
+    public void removeLivingCell(long key){
+        root = setCell(row(key), column(key), false);
+        box = null;
+    }
+
+    /**
+     * Enables to be the target of an enhanced for-loop.
+     * This is utilized in the draw-method of the DynamicBoard class.
+     * @return an iterator
+     */
+    @Override
+    public Iterator<Long> iterator(){
+        final long[] cells = collectCells();
+        return new Iterator<Long>(){
+            private int next = 0;
+
+            @Override
+            public boolean hasNext(){
+                return next < cells.length;
+            }
+
+            @Override
+            public Long next(){
+                if(next >= cells.length)
+                    throw new NoSuchElementException();
+                return cells[next++];
+            }
+        };
+    }
+
+    /**
+     * The tree is immutable, so the box is found once for every root, by
+     * visiting the nodes along its sides only.
+     * @return the bounding box of the living cells, see Generation.
+     */
+    @Override
+    public int[] getBoundingBox(){
+        long[] box = boundingBox();
+        if(box == null)
+            return null;
+        return new int[]{(int) box[0], (int) box[1], (int) box[2], (int) box[3]};
+    }
+
+    /**
+     * Every node keeps the hash of its cells relative to its corner, found
+     * once when the node is made, so the hash of the root is placed at the
+     * corner of the tree.
+     * @return the Zobrist hash of the living cells, see Generation.
+     */
+    @Override
+    public long getHash(){
+        long half = 1L << (root.level-1);
+        return ZobristHash.at(root.zobrist, -half, -half);
+    }
+
+    @Override
+    public int cellsInRow(int row){
+        long half = 1L << (root.level-1);
+        return (int) Math.min(lineCount(root, -half, -half, row, true), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int cellsInColumn(int column){
+        long half = 1L << (root.level-1);
+        return (int) Math.min(lineCount(root, -half, -half, column, false), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Counts the living cells of node on a row, or a column, of the world.
+     * Only the nodes crossing the line are visited.
+     * @param node the node, with its north west corner at (y,x) in the world.
+     * @param line the row or column in the world.
+     * @param row true for a row, false for a column.
+     * @return number of living cells of node on the line.
+     */
+    private static long lineCount(Node node, long y, long x, long line, boolean row){
+        long first = row ? y : x;
+        if(node.population == 0 || line < first || line >= first+(1L << node.level))
+            return 0;
+        if(node.level == 0)
+            return node.population;
+        long half = 1L << (node.level-1);
+        return lineCount(node.nw, y, x, line, row) + lineCount(node.ne, y, x+half, line, row)
+             + lineCount(node.sw, y+half, x, line, row) + lineCount(node.se, y+half, x+half, line, row);
+    }
+
+    /**
+     * Calculates the next generation. The tree is expanded until the living cells
+     * are inside its center, and the center of the next generation is read from
+     * the memoized nodes.
+     * @return next Generation
+     */
+    @Override
+    public GenerationHashLife calcNextGen(){
+        if(needExpansion())
+            expandWorld();
+        useRule(getRule());
+        NodeCache used = cache;
+        GenerationHashLife next = new GenerationHashLife(this, advance(0));
+        //The old root is no node of a rebuilt cache, the step is then not counted.
+        if(cache == used){
+            long changes = changes(root, next.root);
+            long births = (changes + next.root.population-root.population)/2;
+            next.emitStats(births, changes-births);
+        }
+        return next;
+    }
+
+    /**
+     * Counts the cells that differ between two roots, both centered at (0,0).
+     * The smaller root is expanded, and equal nodes, which are the same
+     * object, are skipped, so a step costs the nodes that changed.
+     * @return the number of cells born and dead.
+     */
+    private long changes(Node a, Node b){
+        while(a.level < b.level)
+            a = cache.expand(a);
+        while(b.level < a.level)
+            b = cache.expand(b);
+        return diff(a, b);
+    }
+
+    private static long diff(Node a, Node b){
+        if(a == b)
+            return 0;
+        if(a.population == 0)
+            return b.population;
+        if(b.population == 0)
+            return a.population;
+        if(a.level == 0)
+            return 1;
+        return diff(a.nw, b.nw) + diff(a.ne, b.ne) + diff(a.sw, b.sw) + diff(a.se, b.se);
+    }
+
+    /**
+     * Jumps 2^k generations ahead in one call. Expands the area so it
+     * contains the living cells of the new generation.
+     * @param k the two-logarithm of the number of generations.
+     * @return the generation 2^k generations after this one.
+     */
+    public GenerationHashLife jump(int k){
+        GenerationHashLife next = new GenerationHashLife(this, advance(k));
+        next.fitWorld();
+        return next;
+    }
+
+    /**
+     * Calculates a number of generations as one jump for every bit of the
+     * number, so a million generations cost twenty jumps.
+     * @param generations number of generations to calculate.
+     * @return the generation the number of generations after this one.
+     */
+    @Override
+    public GenerationHashLife stepN(int generations){
+        GenerationHashLife gen = this;
+        for(int k = 0; k<31; k++)
+            if((generations >> k & 1) != 0)
+                gen = gen.jump(k);
+        return gen;
+    }
+
+    /**
+     * Advances the root 2^k generations.
+     * @param k two-logarithm of the number of generations.
+     * @return the new root.
+     */
+    private Node advance(int k){
+        useRule(getRule());
+
+        Node node = root;
+        while(node.level < k+3 || innerPopulation(node) != node.population)
+            node = cache.expand(node);
+
+        Node next = cache.successor(node, k);
+        if(cache.size() > NodeCache.GC_LIMIT){
+            cache = cache.rebuild(next);
+            next = cache.lastRebuilt;
+        }
+        return next;
+    }
+
+    /**
+     * Replaces the node cache if the rules have changed, as the memoized
+     * results no longer are valid.
+     */
+    private void useRule(CompiledRule rule){
+        if(!cache.hasRule(rule)){
+            NodeCache newCache = new NodeCache(rule);
+            root = newCache.copy(root, new IdentityHashMap<>());
+            cache = newCache;
+        }
+    }
+
+    /**
+     * @return the population of the center square, half the width of the node.
+     */
+    private static long innerPopulation(Node node){
+        return node.nw.se.se.population + node.ne.sw.sw.population +
+               node.sw.ne.ne.population + node.se.nw.nw.population;
+    }
+
+    /**
+     * Expands the area so it contains the bounding box of the tree, in one step.
+     */
+    private void fitWorld(){
+        long[] box = boundingBox();
+        if(box == null)
+            return;
+        long top = getOriginRow(), left = getOriginColumn();
+        long last = getArea()-1;
+        long over = Math.max(Math.max(top-box[0], box[1]-(top+last)),
+                             Math.max(left-box[2], box[3]-(left+last)));
+        if(over < 0)
+            return;
+        growWorld((int) Math.min(over+getAreaInc(), Integer.MAX_VALUE));
+    }
+
+    /**
+     * Sets the cell at (y,x) in the tree, expanding the tree if it is too small.
+     * @return the new root.
+     */
+    private Node setCell(long y, long x, boolean alive){
+        Node node = root;
+        while(!covers(node, y) || !covers(node, x))
+            node = cache.expand(node);
+        long half = 1L << (node.level-1);
+        return cache.setCell(node, y+half, x+half, alive);
+    }
+
+    /**
+     * @return true if the coordinate is inside the root node centered at (0,0).
+     */
+    private static boolean covers(Node node, long c){
+        long half = 1L << (node.level-1);
+        return c >= -half && c < half;
+    }
+
+    /**
+     * Gives the bounding box of the living cells in tree coordinates,
+     * remembered until the root changes.
+     * @return long[] containing min row, max row, min column, max column,
+     *         or null if there are no living cells.
+     */
+    private long[] boundingBox(){
+        if(root.population == 0)
+            return null;
+        if(box == null){
+            long half = 1L << (root.level-1);
+            box = new long[]{Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE};
+            bounds(root, -half, -half, box);
+        }
+        return box;
+    }
+
+    /**
+     * Extends the bounding box with the living cells of node, skipping nodes
+     * that are empty or already inside the box.
+     */
+    private static void bounds(Node node, long y, long x, long[] box){
+        if(node.population == 0)
+            return;
+        long size = 1L << node.level;
+        if(y >= box[0] && y+size-1 <= box[1] && x >= box[2] && x+size-1 <= box[3])
+            return;
+        if(node.level == 0){
+            box[0] = Math.min(box[0], y);
+            box[1] = Math.max(box[1], y);
+            box[2] = Math.min(box[2], x);
+            box[3] = Math.max(box[3], x);
+            return;
+        }
+        long half = size >> 1;
+        bounds(node.nw, y, x, box);
+        bounds(node.ne, y, x+half, box);
+        bounds(node.sw, y+half, x, box);
+        bounds(node.se, y+half, x+half, box);
+    }
+
+    /**
+     * @return the key of every living cell.
+     */
+    private long[] collectCells(){
+        long[] cells = new long[(int) Math.min(root.population, 1 << 16)];
+        long half = 1L << (root.level-1);
+        collected = 0;
+        cells = collect(root, -half, -half, cells);
+        return Arrays.copyOf(cells, collected);
+    }
+
+    /**
+     * Collects the living cells of node, which has its north west corner at
+     * (y,x) in the world.
+     * @return the array of collected cells, grown if it was full.
+     */
+    private long[] collect(Node node, long i, long j, long[] cells){
+        if(node.population == 0)
+            return cells;
+        long size = 1L << node.level;
+        if(node.level == 0){
+            if(collected == cells.length)
+                cells = Arrays.copyOf(cells, Math.max(16, cells.length*2));
+            cells[collected++] = key((int) i, (int) j);
+            return cells;
+        }
+        long half = size >> 1;
+        cells = collect(node.nw, i, j, cells);
+        cells = collect(node.ne, i, j+half, cells);
+        cells = collect(node.sw, i+half, j, cells);
+        return collect(node.se, i+half, j+half, cells);
+    }
+
+    /**
+     * Removes every living cell.
+     */
+    @Override
+    public void clearPopulation() {
+        root = cache.empty(3);
+        box = null;
+    }
+
+    /**
+     * @return the number of living cells, capped at Integer.MAX_VALUE.
+     */
+    @Override
+    public int getPopulation() {
+        return (int) Math.min(root.population, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return the class name
+     */
+    @Override
+    public String toString(){
+        return "HashLifeGeneration";
+    }
+
+    /**
+     * A square of 2^level x 2^level cells. Nodes are immutable and canonical,
+     * two nodes with equal children are the same object.
+     */
+    static final class Node{
+        final Node nw, ne, sw, se;
+        final int level;
+        final long population;
+        final int id;
+        final int hash;
+        //The Zobrist hash of the cells relative to the north west corner, see ZobristHash.
+        final long zobrist;
+        //Next node in the hash chain of the NodeCache.
+        Node chain;
+        //The center 2^(level-2) generations ahead.
+        Node result;
+        //The center 2^slowStep generations ahead, when slowStep < level-2.
+        Node slowResult;
+        int slowStep = -1;
+
+        Node(int id, boolean alive){
+            this.nw = this.ne = this.sw = this.se = null;
+            this.level = 0;
+            this.population = alive ? 1 : 0;
+            this.id = id;
+            this.hash = id;
+            this.zobrist = alive ? 1 : 0;
+        }
+
+        Node(int id, Node nw, Node ne, Node sw, Node se){
+            this.nw = nw;
+            this.ne = ne;
+            this.sw = sw;
+            this.se = se;
+            this.level = nw.level+1;
+            this.population = nw.population+ne.population+sw.population+se.population;
+            this.id = id;
+            this.hash = hash(nw, ne, sw, se);
+            this.zobrist = ZobristHash.node(nw.zobrist, ne.zobrist, sw.zobrist, se.zobrist, level);
+        }
+
+        static int hash(Node nw, Node ne, Node sw, Node se){
+            int h = nw.id;
+            h = h*1000003 + ne.id;
+            h = h*1000003 + sw.id;
+            h = h*1000003 + se.id;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /**
+     * The canonical hash table of nodes, and the memoized stepping. Every cache
+     * belongs to one ruleset.
+     */
+    static final class NodeCache{
+        //Number of nodes before the cache is rebuilt from the current root.
+        static final int GC_LIMIT = 4000000;
+
+        private final CompiledRule rule;
+        private final Node dead;
+        private final Node alive;
+        private final Node[] empties = new Node[64];
+        private Node[] table = new Node[1 << 16];
+        private int size;
+        private int nextId = 2;
+        //The root after the last rebuild.
+        Node lastRebuilt;
+
+        NodeCache(CompiledRule rule){
+            this.rule = rule;
+            this.dead = new Node(0, false);
+            this.alive = new Node(1, true);
+        }
+
+        int size(){
+            return size;
+        }
+
+        boolean hasRule(CompiledRule rule){
+            return this.rule.equals(rule);
+        }
+
+        /**
+         * Gives the canonical node with the four children.
+         */
+        Node join(Node nw, Node ne, Node sw, Node se){
+            int h = Node.hash(nw, ne, sw, se);
+            int slot = h & (table.length-1);
+            for(Node n = table[slot]; n != null; n = n.chain){
+                if(n.nw == nw && n.ne == ne && n.sw == sw && n.se == se)
+                    return n;
+            }
+            Node n = new Node(nextId++, nw, ne, sw, se);
+            n.chain = table[slot];
+            table[slot] = n;
+            if(++size > table.length*3/4)
+                resize();
+            return n;
+        }
+
+        private void resize(){
+            Node[] old = table;
+            table = new Node[old.length*2];
+            for(Node head : old){
+                Node n = head;
+                while(n != null){
+                    Node next = n.chain;
+                    int slot = n.hash & (table.length-1);
+                    n.chain = table[slot];
+                    table[slot] = n;
+                    n = next;
+                }
+            }
+        }
+
+        /**
+         * @return an empty node of the level.
+         */
+        Node empty(int level){
+            if(empties[level] == null)
+                empties[level] = level == 0 ? dead : join(empty(level-1), empty(level-1),
+                                                          empty(level-1), empty(level-1));
+            return empties[level];
+        }
+
+        /**
+         * @return a node one level up with node in the center.
+         */
+        Node expand(Node node){
+            Node border = empty(node.level-1);
+            return join(join(border, border, border, node.nw),
+                        join(border, border, node.ne, border),
+                        join(border, node.sw, border, border),
+                        join(node.se, border, border, border));
+        }
+
+        /**
+         * Sets the cell at (y,x), relative to the north west corner of node.
+         */
+        Node setCell(Node node, long y, long x, boolean state){
+            if(node.level == 0)
+                return state ? alive : dead;
+            long half = 1L << (node.level-1);
+            if(y < half){
+                if(x < half)
+                    return join(setCell(node.nw, y, x, state), node.ne, node.sw, node.se);
+                return join(node.nw, setCell(node.ne, y, x-half, state), node.sw, node.se);
+            }
+            if(x < half)
+                return join(node.nw, node.ne, setCell(node.sw, y-half, x, state), node.se);
+            return join(node.nw, node.ne, node.sw, setCell(node.se, y-half, x-half, state));
+        }
+
+        /**
+         * Gives the center of node 2^step generations ahead, where
+         * step is less than or equal to level-2.
+         * @param node node of level 2 or more.
+         * @param step two-logarithm of the number of generations.
+         * @return node one level below node.
+         */
+        Node successor(Node node, int step){
+            if(node.population == 0)
+                return empty(node.level-1);
+            if(node.level == 2)
+                return node.result != null ? node.result : (node.result = baseCase(node));
+
+            boolean fullSpeed = step == node.level-2;
+            if(fullSpeed && node.result != null)
+                return node.result;
+            if(!fullSpeed && node.slowStep == step)
+                return node.slowResult;
+
+            Node n00 = node.nw,
+                 n01 = horizontal(node.nw, node.ne),
+                 n02 = node.ne,
+                 n10 = vertical(node.nw, node.sw),
+                 n11 = center(node),
+                 n12 = vertical(node.ne, node.se),
+                 n20 = node.sw,
+                 n21 = horizontal(node.sw, node.se),
+                 n22 = node.se;
+
+            Node result;
+            if(fullSpeed){
+                //Two steps of 2^(level-3) generations.
+                n00 = successor(n00, step-1); n01 = successor(n01, step-1); n02 = successor(n02, step-1);
+                n10 = successor(n10, step-1); n11 = successor(n11, step-1); n12 = successor(n12, step-1);
+                n20 = successor(n20, step-1); n21 = successor(n21, step-1); n22 = successor(n22, step-1);
+                result = join(successor(join(n00, n01, n10, n11), step-1),
+                              successor(join(n01, n02, n11, n12), step-1),
+                              successor(join(n10, n11, n20, n21), step-1),
+                              successor(join(n11, n12, n21, n22), step-1));
+                node.result = result;
+            }
+            else{
+                //One step of 2^step generations on the centers.
+                n00 = center(n00); n01 = center(n01); n02 = center(n02);
+                n10 = center(n10); n11 = center(n11); n12 = center(n12);
+                n20 = center(n20); n21 = center(n21); n22 = center(n22);
+                result = join(successor(join(n00, n01, n10, n11), step),
+                              successor(join(n01, n02, n11, n12), step),
+                              successor(join(n10, n11, n20, n21), step),
+                              successor(join(n11, n12, n21, n22), step));
+                node.slowResult = result;
+                node.slowStep = step;
+            }
+            return result;
+        }
+
+        private Node center(Node node){
+            return join(node.nw.se, node.ne.sw, node.sw.ne, node.se.nw);
+        }
+
+        private Node horizontal(Node w, Node e){
+            return join(w.ne, e.nw, w.se, e.sw);
+        }
+
+        private Node vertical(Node n, Node s){
+            return join(n.sw, n.se, s.nw, s.ne);
+        }
+
+        /**
+         * Calculates the center 2x2 cells of a 4x4 node one generation ahead.
+         */
+        private Node baseCase(Node node){
+            int bits = 0;
+            for(int y = 0; y<4; y++)
+                for(int x = 0; x<4; x++)
+                    bits |= (int) cell(node, y, x) << (y*4+x);
+
+            return join(nextCell(bits, 1, 1), nextCell(bits, 1, 2),
+                        nextCell(bits, 2, 1), nextCell(bits, 2, 2));
+        }
+
+        private static long cell(Node node, int y, int x){
+            Node quad = y < 2 ? (x < 2 ? node.nw : node.ne) : (x < 2 ? node.sw : node.se);
+            Node leaf = (y & 1) == 0 ? ((x & 1) == 0 ? quad.nw : quad.ne)
+                                     : ((x & 1) == 0 ? quad.sw : quad.se);
+            return leaf.population;
+        }
+
+        private Node nextCell(int bits, int y, int x){
+            int neighbourhood = 0;
+            for(int dy = -1; dy<2; dy++)
+                for(int dx = -1; dx<2; dx++)
+                    neighbourhood |= ((bits >>> ((y+dy)*4+x+dx)) & 1) << ((dy+1)*3+dx+1);
+
+            return rule.nextState(neighbourhood) == 1 ? alive : dead;
+        }
+
+        /**
+         * Copies a tree into this cache.
+         * @param node the tree to be copied.
+         * @param copies the nodes already copied.
+         * @return the copy of the tree.
+         */
+        Node copy(Node node, IdentityHashMap<Node, Node> copies){
+            if(node.level == 0)
+                return node.population == 0 ? dead : alive;
+            Node copy = copies.get(node);
+            if(copy == null){
+                copy = join(copy(node.nw, copies), copy(node.ne, copies),
+                            copy(node.sw, copies), copy(node.se, copies));
+                copies.put(node, copy);
+            }
+            return copy;
+        }
+
+        /**
+         * Creates a new cache containing only the nodes of root, dropping every
+         * node that is only kept alive by the hash table.
+         * @param root the current root.
+         * @return the new cache, with the copied root in lastRebuilt.
+         */
+        NodeCache rebuild(Node root){
+            NodeCache fresh = new NodeCache(rule);
+            fresh.lastRebuilt = fresh.copy(root, new IdentityHashMap<>());
+            return fresh;
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package logic;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.PrimitiveIterator;
+
+/**
+ * Incremental-implementation
+ * A Generation is represented by a set of living cells and a map holding the
+ * living neighbours of every cell as a neighbourhood mask, like GenerationHash.
+ * Here the masks are kept between generations: when a cell is born or dies,
+ * the masks of its eight neighbours are updated at once.
+ * <br>
+ * A cell can only change if it, or one of its neighbours, changed in the last
+ * step. Every step therefore only evaluates the cells that were born or died
+ * in the last step and their neighbours, so a world of blocks and beehives with
+ * a few active regions costs time proportional to the changes, not to the
+ * population. A change of rules evaluates every cell once.
+ * <br>
+ * The cells are stored by their keys in the world (see Generation.key), so
+ * expanding the world only moves the origin of the area. The generation is
+ * updated in place: calcNextGen returns this object.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class GenerationIncremental extends Generation{
+
+    //Contains the key for every living cell.
+    private final CellSet population = new CellSet();
+    //Neighbourhood mask (see CompiledRule) of every cell with a living neighbour.
+    private final CellCountMap neighbours = new CellCountMap();
+    //The cells evaluated in the running step.
+    private CellSet evaluated = new CellSet();
+    //The cells that were born or died in the last step, or were edited since.
+    private long[] changed = new long[16];
+    private int changedSize;
+    //The cells changing in the running step.
+    private long[] flips = new long[16];
+    private int flipsSize;
+    //The bounding box of the population, updated with every birth and death.
+    private final BoundingBox box = new BoundingBox();
+    private CompiledRule rule;
+    //The rule of the last step, to notice when the rules change.
+    private CompiledRule lastRule;
+    //The topology and the area the masks were made for, see checkWorld.
+    private Topology lastTopology = Topology.PLANE;
+    private long lastOrigin;
+    private int lastArea;
+
+    public GenerationIncremental(int area, int areaInc){
+        super(area, areaInc);
+    }
+
+    /**
+     * Adds a living cell. This method is used by
+     * the change-cell-status method found in DynamicBoard.
+     * @param cell The key of the cell.
+     */
+    @Override
+    public void addLivingCell(long cell){
+        if(population.add(cell)){
+            updateNeighbours(cell, 1);
+            changed = append(changed, changedSize++, cell);
+            box.add(row(cell), column(cell));
+        }
+    }
+
+    /**
+     * Removes a living cell. This method is used by
+     * the change-cell-status method found in DynamicBoard.
+     * @param cell The key of the cell.
+     */
+    @Override
+    public void removeLivingCell(long cell){
+        if(population.remove(cell)){
+            updateNeighbours(cell, -1);
+            changed = append(changed, changedSize++, cell);
+            box.remove(row(cell), column(cell));
+        }
+    }
+
+    /**
+     * Adds (or with sign -1 removes) the bit of the cell to the neighbourhood
+     * of its eight neighbours. The bits are distinct, so the sum is the mask.
+     */
+    private void updateNeighbours(long cell, int sign){
+        int y = row(cell), x = column(cell);
+        boolean edge = getTopology().isBounded() && onBoundary(y, x);
+        for(int dy = -1; dy<=1; dy++){
+            for(int dx = -1; dx<=1; dx++){
+                if(dy == 0 && dx == 0)
+                    continue;
+                long neighbour = neighbour(y+dy, x+dx, edge);
+                if(neighbour == Topology.DEAD)
+                    continue;
+                //Seen mirrored, east and west change places.
+                int bit = edge && mirrors(y+dy) && !inArea(y+dy, x+dx)
+                        ? CompiledRule.neighbourBit(-dy, dx) : CompiledRule.neighbourBit(-dy, -dx);
+                neighbours.add(neighbour, sign*bit);
+            }
+        }
+    }
+
+    /**
+     * @param edge true if the cell is next to a cell on the boundary, and
+     *        is mapped by the topology when it is outside the area.
+     * @return the key of the cell at (y,x), or Topology.DEAD.
+     */
+    private long neighbour(int y, int x, boolean edge){
+        if(edge && !inArea(y, x))
+            return wrap(y, x);
+        return key(y, x);
+    }
+
+    /**
+     * The masks across the edges of a bounded world depend on its topology
+     * and area, so when either changes every mask is made again, and every
+     * cell is evaluated once.
+     */
+    private void checkWorld(){
+        Topology topology = getTopology();
+        long origin = key(getOriginRow(), getOriginColumn());
+        if(topology == lastTopology && (!topology.isBounded() || origin == lastOrigin && getArea() == lastArea))
+            return;
+        lastTopology = topology;
+        lastOrigin = origin;
+        lastArea = getArea();
+        neighbours.clear();
+        for(PrimitiveIterator.OfLong it = population.iterator(); it.hasNext();)
+            updateNeighbours(it.nextLong(), 1);
+        lastRule = null;
+    }
+
+    /**
+     * Calculates the next generation in place. Evaluates the cells that
+     * changed in the last step and their neighbours, and then applies the
+     * births and deaths, updating the neighbour counts around them.
+     * @return this generation, now holding the next generation.
+     */
+    @Override
+    public GenerationIncremental calcNextGen(){
+        if(needExpansion())
+            expandWorld();
+
+        checkWorld();
+        rule = getRule();
+        //Unchanged cells are only stable under the rules they were calculated with.
+        if(!rule.equals(lastRule)){
+            long[] all = population.toArray();
+            int n = all.length;
+            for(int c = 0; c<changedSize; c++)
+                all = append(all, n+c, changed[c]);
+            changedSize += n;
+            changed = all;
+            lastRule = rule;
+        }
+
+        //Clearing costs the size of the table, which a full evaluation may have grown.
+        if(evaluated.capacity() > 64L*9*changedSize + 1024)
+            evaluated = new CellSet(9*changedSize);
+        else
+            evaluated.clear();
+        flipsSize = 0;
+        boolean bounded = getTopology().isBounded();
+        for(int c = 0; c<changedSize; c++){
+            int y = row(changed[c]), x = column(changed[c]);
+            boolean edge = bounded && onBoundary(y, x);
+            for(int dy = -1; dy<=1; dy++){
+                for(int dx = -1; dx<=1; dx++){
+                    long cell = neighbour(y+dy, x+dx, edge);
+                    if(cell != Topology.DEAD)
+                        evaluate(cell);
+                }
+            }
+        }
+
+        int deaths = 0;
+        for(int f = 0; f<flipsSize; f++){
+            long cell = flips[f];
+            if(population.contains(cell)){
+                population.remove(cell);
+                updateNeighbours(cell, -1);
+                box.remove(row(cell), column(cell));
+                deaths++;
+            }else{
+                population.add(cell);
+                updateNeighbours(cell, 1);
+                box.add(row(cell), column(cell));
+            }
+        }
+
+        emitStats(flipsSize-deaths, deaths);
+
+        long[] swap = changed;
+        changed = flips;
+        changedSize = flipsSize;
+        flips = swap;
+        return this;
+    }
+
+    /**
+     * Evaluates the cell once per step, adding it to the flips if it is
+     * born or dies.
+     */
+    private void evaluate(long cell){
+        if(!evaluated.add(cell))
+            return;
+        int neighbourhood = neighbours.get(cell);
+        int alive = population.contains(cell) ? 1 : 0;
+        if(rule.nextState(neighbourhood | alive*CompiledRule.CENTER) != alive)
+            flips = append(flips, flipsSize++, cell);
+    }
+
+    /**
+     * @return the array, grown if index is outside it, with the value at index.
+     */
+    private static long[] append(long[] array, int index, long value){
+        if(index == array.length)
+            array = Arrays.copyOf(array, Math.max(16, array.length*2));
+        array[index] = value;
+        return array;
+    }
+
+    /**
+     * The box follows the births and deaths of every step, so its cost
+     * follows the changes, like the step itself.
+     * @return the bounding box of the living cells, see Generation.
+     */
+    @Override
+    public int[] getBoundingBox() {
+        if(box.isEmpty())
+            return null;
+        return new int[]{box.getTop(), box.getBottom(), box.getLeft(), box.getRight()};
+    }
+
+    /**
+     * The hash follows the bounding box, see BoundingBox.
+     * @return the Zobrist hash of the living cells, see Generation.
+     */
+    @Override
+    public long getHash() {
+        return box.getHash();
+    }
+
+    @Override
+    public int cellsInRow(int row) {
+        return box.rowCount(row);
+    }
+
+    @Override
+    public int cellsInColumn(int column) {
+        return box.columnCount(column);
+    }
+
+    /**
+     * Enables to be the target of an enhanced for-loop.
+     * This is utilized in the draw-method of the DynamicBoard class.
+     * @return an iterator
+     */
+    @Override
+    public Iterator<Long> iterator(){
+        return population.iterator();
+    }
+
+    /**
+     * Removes every living cell.
+     */
+    @Override
+    public void clearPopulation() {
+        population.clear();
+        neighbours.clear();
+        changedSize = 0;
+        box.clear();
+    }
+
+    /**
+     * @return number of living cells.
+     */
+    @Override
+    public int getPopulation() {
+        return population.size();
+    }
+
+    /**
+     * @return number of cells that were born or died in the last step.
+     */
+    public int getChangeCount() {
+        return changedSize;
+    }
+
+    /**
+     * @return the class name
+     */
+    @Override
+    public String toString(){
+        return "IncrementalGeneration";
+    }
+}
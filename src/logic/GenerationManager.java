@@ -1,54 +1,423 @@
 package logic;
 
-import java.util.ArrayList; 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 
 /**
- * This class manages Generation-objects. It stores the generations in a Generation-pool. 
- * This way the user can navigate to previous generations. The generation-pool 
- * has a default cap of 50 generations, but can be expanded.
- * 
- * @deprecated Reason: class is not fully operable and will
- * not be ready in time for the deadline. For later versions the Generation-manager 
- * could be used to gather statistics be utilising the generation-pool.
+ * This class keeps the history of the generations of a board, so the user can
+ * step back, or jump to an earlier generation, without calculating the
+ * generations again from the first.
+ * <br>
+ * The history is cut into segments. A segment holds a keyframe, every cell
+ * of one generation, and the deltas of the generations after it: only the
+ * cells born and the cells that died. A keyframe is made every interval
+ * generations, and when the generations recorded do not follow each other,
+ * i.e. after a jump ahead. A generation is found from the keyframe before it
+ * in at most interval-1 deltas.
+ * <br>
+ * A delta holds every cell that changed, with its state XORed with its state
+ * before; a cell born or dead in a rule of two states is 1, which is not
+ * stored. The same delta then takes a generation to the next and back to the
+ * one before, so stepping back from the generation found last costs a single
+ * delta. The cells are sorted and packed by CellCodec, a byte or two for
+ * every cell.
+ * <br>
+ * When the segments hold more bytes than the budget, the oldest segments are
+ * dropped, never the newest. The cells of the last generation recorded and
+ * of the last generation found are kept unpacked, outside the budget.
+ * <br>
+ * Recording a generation that is not after the last one recorded, i.e. when
+ * the board has been stepped back or edited, forgets the generations from
+ * it on first.
  * @author Olav Sørlie and Øyvind Mjelstad
  */
-@Deprecated
-public class GenerationManager{   
-    
-    private final int poolSize;
-    private final ArrayList<Generation> generations = new ArrayList<>();
-    private final Generation current;
-    
+public class GenerationManager{
+
+    /**
+     * Default number of generations from one keyframe to the next.
+     */
+    public static final int DEFAULT_INTERVAL = 32;
+    /**
+     * Default number of bytes the history may hold, 64 MB.
+     */
+    public static final long DEFAULT_BUDGET = 64L << 20;
+    //The bytes of a frame besides its cells, roughly.
+    private static final int FRAME_BYTES = 64;
+    //The generation of an empty history.
+    private static final int NONE = Integer.MIN_VALUE;
+
+    private final int interval;
+    private final long budget;
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private long bytes;
+
+    //The last generation recorded, which the next generation is compared with.
+    private final Cells last = new Cells();
+    private int lastGeneration = NONE;
+    //The last generation found, which the next one is found from.
+    private final Cells cursor = new Cells();
+    private Segment cursorSegment;
+    private int cursorGeneration;
+    //Working space for the deltas.
+    private final Cells changes = new Cells();
+    private final Cells scratch = new Cells();
+
+    /**
+     * Constructor
+     * A history of the default interval and budget.
+     */
+    public GenerationManager(){
+        this(DEFAULT_INTERVAL, DEFAULT_BUDGET);
+    }
+
     /**
      * Constructor
-     * @param current The current generation
-     * @param poolSize The prefered size of the generation-pool.
+     * @param interval number of generations from one keyframe to the next,
+     *        at least 1.
+     * @param budget number of bytes the history may hold.
+     */
+    public GenerationManager(int interval, long budget){
+        if(interval < 1)
+            throw new IllegalArgumentException("The interval of the keyframes is at least 1.");
+        this.interval = interval;
+        this.budget = budget;
+    }
+
+    /**
+     * Adds a generation to the history. A generation following the last one
+     * recorded is held as a delta, unless a keyframe is due.
+     * @param gen the generation.
+     * @param generation the number of the generation, see Gameboard.getGenCount().
+     */
+    public void record(Generation gen, int generation){
+        if(lastGeneration != NONE && generation <= lastGeneration)
+            truncate(generation-1);
+
+        collect(gen, scratch);
+        Segment segment = segments.peekLast();
+        Frame frame;
+        if(segment == null || generation != lastGeneration+1 || generation-segment.first >= interval
+                || 4*segment.bytes > budget){
+            //A segment of more than a quarter of the budget is closed, so it can be dropped.
+            frame = pack(gen, scratch);
+            segment = new Segment(generation, frame);
+            segments.addLast(segment);
+        }else{
+            xor(last, scratch, changes);
+            frame = pack(gen, changes);
+            segment.deltas.add(frame);
+        }
+        segment.bytes += frame.bytes();
+        bytes += frame.bytes();
+        last.swap(scratch);
+        lastGeneration = generation;
+        evict();
+    }
+
+    /**
+     * Finds a generation in the history.
+     * @param generation the number of the generation.
+     * @return the cells, the area and the origin of the generation, or null
+     *         if the generation is not in the history.
+     */
+    public Snapshot get(int generation){
+        Segment segment = find(generation);
+        if(segment == null)
+            return null;
+        seek(segment, generation);
+        Frame frame = segment.frame(generation);
+        byte[] states = null;
+        for(int i = 0; i<cursor.size && states == null; i++)
+            if(cursor.states[i] != 1)
+                states = Arrays.copyOf(cursor.states, cursor.size);
+        return new Snapshot(Arrays.copyOf(cursor.cells, cursor.size), states, cursor.size, generation,
+                            frame.originRow, frame.originColumn, frame.area);
+    }
+
+    /**
+     * @param generation the number of a generation.
+     * @return true if the generation is in the history.
+     */
+    public boolean contains(int generation){
+        return find(generation) != null;
+    }
+
+    /**
+     * @return the number of the first generation in the history, or 0 if it
+     *         is empty.
+     */
+    public int getFirst(){
+        return segments.isEmpty() ? 0 : segments.peekFirst().first;
+    }
+
+    /**
+     * @return the number of the last generation in the history, or 0 if it
+     *         is empty.
+     */
+    public int getLast(){
+        return segments.isEmpty() ? 0 : segments.peekLast().last();
+    }
+
+    /**
+     * @return number of bytes held by the keyframes and the deltas.
+     */
+    public long getBytes(){
+        return bytes;
+    }
+
+    public long getBudget(){
+        return budget;
+    }
+
+    public int getInterval(){
+        return interval;
+    }
+
+    /**
+     * Forgets every generation, i.e. when the board is reset.
+     */
+    public void clear(){
+        segments.clear();
+        bytes = 0;
+        lastGeneration = NONE;
+        cursorSegment = null;
+    }
+
+    /**
+     * Forgets the generations after a generation. The generation, if it is
+     * held, is made the last one recorded, so the next one is held as a delta.
+     */
+    private void truncate(int generation){
+        if(cursorSegment != null && cursorGeneration > generation)
+            cursorSegment = null;
+        while(!segments.isEmpty() && segments.peekLast().first > generation){
+            Segment dropped = segments.removeLast();
+            bytes -= dropped.bytes;
+        }
+        Segment segment = segments.peekLast();
+        lastGeneration = NONE;
+        if(segment == null || segment.last() < generation)
+            return;
+        while(segment.last() > generation){
+            Frame dropped = segment.deltas.remove(segment.deltas.size()-1);
+            segment.bytes -= dropped.bytes();
+            bytes -= dropped.bytes();
+        }
+        seek(segment, generation);
+        last.copy(cursor);
+        lastGeneration = generation;
+    }
+
+    /**
+     * Drops the oldest segments until the history is within its budget.
      */
-    public GenerationManager(Generation current, int poolSize){
-        this.poolSize = poolSize;
-	this.current = current;
-	}
+    private void evict(){
+        while(bytes > budget && segments.size() > 1){
+            Segment dropped = segments.removeFirst();
+            bytes -= dropped.bytes;
+            if(cursorSegment == dropped)
+                cursorSegment = null;
+        }
+    }
+
+    /**
+     * @return the segment holding a generation, or null.
+     */
+    private Segment find(int generation){
+        Iterator<Segment> newest = segments.descendingIterator();
+        while(newest.hasNext()){
+            Segment segment = newest.next();
+            if(segment.first <= generation)
+                return generation <= segment.last() ? segment : null;
+        }
+        return null;
+    }
+
+    /**
+     * Moves the cursor to a generation of a segment, from the generation it
+     * holds or from the keyframe, whichever is closer.
+     */
+    private void seek(Segment segment, int generation){
+        if(cursorSegment != segment || Math.abs(generation-cursorGeneration) > generation-segment.first){
+            unpack(segment.keyframe, cursor);
+            cursorSegment = segment;
+            cursorGeneration = segment.first;
+        }
+        while(cursorGeneration < generation){
+            cursorGeneration++;
+            apply(segment.frame(cursorGeneration));
+        }
+        while(cursorGeneration > generation){
+            apply(segment.frame(cursorGeneration));
+            cursorGeneration--;
+        }
+    }
 
     /**
-     * Stores generations inside the geneartions-arraylist.
-     * @param gen The generation that is stored.
+     * Applies a delta to the cursor, forwards or backwards.
      */
-    private void saveGeneration(Generation gen){ 
-        generations.add(gen); 
-	if(poolSize < 0) return;
-        if(generations.size() > poolSize) 
-            generations.remove(0);
-	}
-           
+    private void apply(Frame delta){
+        unpack(delta, changes);
+        xor(cursor, changes, scratch);
+        cursor.swap(scratch);
+    }
+
     /**
-     * Displays the previous generation
-     * @return The previous generation and removes it from the pool
+     * Copies the cells of a generation, sorted.
      */
-    public Generation prevFrame(){     
-        if(generations.isEmpty()){      
-            return null;    
-        } 
-        Generation tail = generations.remove(generations.size()-1);      
-        return tail;    
+    private static void collect(Generation gen, Cells cells){
+        cells.size = 0;
+        cells.ensure(gen.getPopulation());
+        for(long cell : gen){
+            cells.ensure(cells.size+1);
+            cells.cells[cells.size++] = cell;
+        }
+        Arrays.parallelSort(cells.cells, 0, cells.size);
+        for(int i = 0; i<cells.size; i++)
+            cells.states[i] = (byte) gen.stateOf(cells.cells[i]);
+    }
+
+    /**
+     * Merges two sorted sets of cells, XORing the states of the cells in
+     * both, and leaving out the cells that end up dead. Of two generations
+     * this is the delta between them, and of a generation and a delta it is
+     * the generation on the other side of the delta.
+     */
+    private static void xor(Cells a, Cells b, Cells result){
+        result.size = 0;
+        result.ensure(a.size+b.size);
+        int i = 0, j = 0, size = 0;
+        while(i < a.size || j < b.size){
+            if(j == b.size || (i < a.size && a.cells[i] < b.cells[j])){
+                result.cells[size] = a.cells[i];
+                result.states[size++] = a.states[i++];
+            }else if(i == a.size || b.cells[j] < a.cells[i]){
+                result.cells[size] = b.cells[j];
+                result.states[size++] = b.states[j++];
+            }else{
+                byte state = (byte) (a.states[i] ^ b.states[j]);
+                if(state != 0){
+                    result.cells[size] = a.cells[i];
+                    result.states[size++] = state;
+                }
+                i++;
+                j++;
+            }
+        }
+        result.size = size;
+    }
+
+    /**
+     * Packs sorted cells into a frame, with the area and the origin of the
+     * generation.
+     */
+    private static Frame pack(Generation gen, Cells cells){
+        byte[] states = null;
+        for(int i = 0; i<cells.size && states == null; i++)
+            if(cells.states[i] != 1)
+                states = Arrays.copyOf(cells.states, cells.size);
+        return new Frame(gen.getArea(), gen.getOriginRow(), gen.getOriginColumn(),
+                         cells.size, CellCodec.encode(cells.cells, cells.size), states);
+    }
+
+    private static void unpack(Frame frame, Cells cells){
+        cells.ensure(frame.size);
+        CellCodec.decode(frame.cells, cells.cells, frame.size);
+        if(frame.states == null)
+            Arrays.fill(cells.states, 0, frame.size, (byte) 1);
+        else
+            System.arraycopy(frame.states, 0, cells.states, 0, frame.size);
+        cells.size = frame.size;
+    }
+
+    /**
+     * Sorted cells and their states, unpacked.
+     */
+    private static final class Cells{
+        long[] cells = new long[16];
+        byte[] states = new byte[16];
+        int size;
+
+        void ensure(int capacity){
+            if(capacity > cells.length){
+                int length = Math.max(capacity, 2*cells.length);
+                cells = Arrays.copyOf(cells, length);
+                states = Arrays.copyOf(states, length);
+            }
+        }
+
+        void copy(Cells other){
+            ensure(other.size);
+            System.arraycopy(other.cells, 0, cells, 0, other.size);
+            System.arraycopy(other.states, 0, states, 0, other.size);
+            size = other.size;
+        }
+
+        void swap(Cells other){
+            long[] c = cells;
+            byte[] s = states;
+            int n = size;
+            cells = other.cells;
+            states = other.states;
+            size = other.size;
+            other.cells = c;
+            other.states = s;
+            other.size = n;
+        }
+    }
+
+    /**
+     * A keyframe or a delta, packed.
+     */
+    private static final class Frame{
+        final int area;
+        final int originRow;
+        final int originColumn;
+        final int size;
+        final byte[] cells;
+        //The states, XORed in a delta, or null when every one is 1.
+        final byte[] states;
+
+        Frame(int area, int originRow, int originColumn, int size, byte[] cells, byte[] states){
+            this.area = area;
+            this.originRow = originRow;
+            this.originColumn = originColumn;
+            this.size = size;
+            this.cells = cells;
+            this.states = states;
+        }
+
+        long bytes(){
+            return FRAME_BYTES + cells.length + (states == null ? 0 : states.length);
+        }
+    }
+
+    /**
+     * A keyframe and the deltas of the generations after it.
+     */
+    private static final class Segment{
+        final int first;
+        final Frame keyframe;
+        final ArrayList<Frame> deltas = new ArrayList<>();
+        long bytes;
+
+        Segment(int first, Frame keyframe){
+            this.first = first;
+            this.keyframe = keyframe;
+        }
+
+        int last(){
+            return first+deltas.size();
+        }
+
+        /**
+         * @return the keyframe of the first generation, or the delta from
+         *         the generation before.
+         */
+        Frame frame(int generation){
+            return generation == first ? keyframe : deltas.get(generation-first-1);
         }
-}
\ No newline at end of file
+    }
+}
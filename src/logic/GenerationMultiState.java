@@ -0,0 +1,257 @@
+package logic;
+
+import java.util.Iterator;
+
+/**
+ * Multi-state implementation
+ * A Generation of a rule with more than two states, like Brian's Brain B2/S/C3,
+ * where a living cell that does not survive decays through the states 2, 3
+ * and on before it is dead (see CompiledRule). Every cell that is not dead is
+ * stored by its key (see Generation.key) with its state in a CellCountMap, so
+ * a cell costs a long and an int in plain arrays, its decay included.
+ * <br>
+ * A step works like GenerationHash: the living cells mark their neighbours in
+ * the neighbourhood-map, a decaying cell moves on to its next state without
+ * looking at its neighbours, and the dead cells in the neighbourhood-map are
+ * born by the rule. The cost follows the living and decaying cells. The two
+ * maps of states are swapped every step, and the neighbourhood-map is cleared,
+ * so the generation is updated in place and the tables are only allocated
+ * when they grow.
+ * <br>
+ * A rule of two states steps exactly like the other Generations, so the
+ * DynamicBoard can keep this generation when the rule changes back.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class GenerationMultiState extends Generation{
+
+    //The state of every cell that is not dead: 1 is alive, from 2 it decays.
+    private CellCountMap states = new CellCountMap();
+    //The states of the next generation, swapped with states every step.
+    private CellCountMap nextStates = new CellCountMap();
+    //Neighbourhood mask (see CompiledRule) of every dead cell with a living neighbour.
+    private final CellCountMap neighbourhood = new CellCountMap();
+    //The bounding box of the cells that are not dead, filled as they are stepped.
+    private final BoundingBox box = new BoundingBox();
+    //The Zobrist hash of the cells with their states, see ZobristHash.state(int).
+    private long hash;
+
+    public GenerationMultiState(int area, int areaInc){
+        super(area, areaInc);
+    }
+
+    /**
+     * Creates a multi-state generation holding the cells and the world of
+     * another generation, used when the rule gets more than two states.
+     * @param prev the generation to copy.
+     * @return the new generation.
+     */
+    public static GenerationMultiState copyOf(Generation prev){
+        GenerationMultiState gen = new GenerationMultiState(prev.getArea(), prev.getAreaInc());
+        gen.copyWorld(prev);
+        for(long cell : prev)
+            gen.addCell(cell, prev.stateOf(cell));
+        return gen;
+    }
+
+    /**
+     * Adds a living cell. This method is used by
+     * the change-cell-status method found in DynamicBoard.
+     * @param key The key of the cell.
+     */
+    @Override
+    public void addLivingCell(long key){
+        addCell(key, 1);
+    }
+
+    /**
+     * Adds a cell of any state, replacing the state it had.
+     * @param key the key of the cell.
+     * @param state the state of the cell, 0 removes it.
+     */
+    @Override
+    public void addCell(long key, int state){
+        int old = states.get(key);
+        if(old == state)
+            return;
+        states.add(key, state-old);
+        hash += ZobristHash.cell(row(key), column(key)) * (ZobristHash.state(state)-ZobristHash.state(old));
+        if(old == 0)
+            box.add(row(key), column(key));
+        else if(state == 0)
+            box.remove(row(key), column(key));
+    }
+
+    /**
+     * Removes a cell, living or decaying. This method is used by
+     * the change-cell-status method found in DynamicBoard.
+     * @param key The key of the cell.
+     */
+    @Override
+    public void removeLivingCell(long key){
+        addCell(key, 0);
+    }
+
+    /**
+     * Calculates the next generation in place. The living cells are visited
+     * first, marking their neighbours and surviving or starting to decay by
+     * the rule, and the decaying cells go on to their next state. Then the
+     * dead cells with living neighbours are born by the rule.
+     * @return this generation, now holding the next generation.
+     */
+    @Override
+    public GenerationMultiState calcNextGen(){
+        if(needExpansion())
+            expandWorld();
+
+        CompiledRule rule = getRule();
+        neighbourhood.clear();
+        nextStates.clear();
+        box.clear();
+        hash = 0;
+        states.forEach((cell, state) -> {
+            int mask = state == 1 ? countNeighbours(cell) | CompiledRule.CENTER : 0;
+            put(cell, rule.nextState(state, mask));
+        });
+        int survivors = nextStates.size();
+        neighbourhood.forEach((deadCell, mask) -> put(deadCell, rule.nextState(0, mask)));
+
+        int before = states.size();
+        CellCountMap swap = states;
+        states = nextStates;
+        nextStates = swap;
+        emitStats(states.size()-survivors, before-survivors);
+        return this;
+    }
+
+    /**
+     * Puts a cell of the next generation, unless it is dead.
+     */
+    private void put(long cell, int state){
+        if(state == 0)
+            return;
+        nextStates.add(cell, state);
+        box.add(row(cell), column(cell));
+        hash += ZobristHash.cell(row(cell), column(cell)) * ZobristHash.state(state);
+    }
+
+    /**
+     * Finds the living neighbours of a living cell, and sets the bit of the
+     * cell in the neighbourhood of every dead neighbour.
+     * @return the neighbourhood mask of the living neighbours of the cell.
+     */
+    private int countNeighbours(long livingCell){
+        int mask = 0;
+        int i = row(livingCell), j = column(livingCell);
+        //Only the neighbours of a cell on the boundary can be outside a bounded world.
+        boolean edge = getTopology().isBounded() && onBoundary(i, j);
+        for(int di = -1; di<=1; di++)
+            for(int dj = -1; dj<=1; dj++)
+                if(di != 0 || dj != 0)
+                    mask |= neighbourAt(i+di, j+dj, di, dj, edge);
+        return mask;
+    }
+
+    /**
+     * Looks at one neighbour of a living cell, like GenerationHash. A living
+     * neighbour gives its bit, a dead neighbour gets the bit of the living cell
+     * in its neighbourhood, and a decaying neighbour is neither.
+     * @return the bit of the neighbour if it is alive, else 0.
+     */
+    private int neighbourAt(int i, int j, int di, int dj, boolean edge){
+        long cell = key(i, j);
+        //The living cell is at the opposite offset, seen from the neighbour.
+        int bit = CompiledRule.neighbourBit(-di, -dj);
+        if(edge && !inArea(i, j)){
+            cell = wrap(i, j);
+            if(cell == Topology.DEAD)
+                return 0;
+            //Seen mirrored, east and west change places.
+            if(mirrors(i))
+                bit = CompiledRule.neighbourBit(-di, dj);
+        }
+        int state = states.get(cell);
+        if(state == 1)
+            return CompiledRule.neighbourBit(di, dj);
+        if(state == 0)
+            neighbourhood.add(cell, bit);
+        return 0;
+    }
+
+    /**
+     * @param key the key of a cell given by the iterator.
+     * @return the state of the cell, 1 if it is alive and from 2 if it decays.
+     */
+    @Override
+    public int stateOf(long key){
+        return states.get(key);
+    }
+
+    /**
+     * Enables to be the target of an enhanced for-loop.
+     * Gives every cell that is not dead, the decaying cells included.
+     * This is utilized in the draw-method of the DynamicBoard class.
+     * @return an iterator
+     */
+    @Override
+    public Iterator<Long> iterator(){
+        return states.keyIterator();
+    }
+
+    /**
+     * Removes every cell.
+     */
+    @Override
+    public void clearPopulation(){
+        states.clear();
+        box.clear();
+        hash = 0;
+    }
+
+    /**
+     * @return number of cells that are not dead, the decaying cells included.
+     */
+    @Override
+    public int getPopulation(){
+        return states.size();
+    }
+
+    /**
+     * The box is built as the next generation is filled, so no extra pass
+     * over the cells is needed.
+     * @return the bounding box of the cells that are not dead, see Generation.
+     */
+    @Override
+    public int[] getBoundingBox(){
+        if(box.isEmpty())
+            return null;
+        return new int[]{box.getTop(), box.getBottom(), box.getLeft(), box.getRight()};
+    }
+
+    /**
+     * The decaying cells are hashed with their states, so two patterns that
+     * only differ in the decay have different hashes.
+     * @return the Zobrist hash of the cells that are not dead, see Generation.
+     */
+    @Override
+    public long getHash(){
+        return hash;
+    }
+
+    @Override
+    public int cellsInRow(int row){
+        return box.rowCount(row);
+    }
+
+    @Override
+    public int cellsInColumn(int column){
+        return box.columnCount(column);
+    }
+
+    /**
+     * @return the class name
+     */
+    @Override
+    public String toString(){
+        return "MultiStateGeneration";
+    }
+}
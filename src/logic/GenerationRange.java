@@ -0,0 +1,153 @@
+package logic;
+
+/**
+ * Larger than Life implementation
+ * A Generation of a Larger than Life rule (see RangeRule), where a cell counts
+ * the living cells in a square of (2R+1) x (2R+1) cells around it. The cells
+ * are stored with their states like GenerationMultiState, but the step is
+ * dense: the patterns of these rules are blobs filling their bounding box, and
+ * visiting the neighbours of every living cell would cost R² for each.
+ * <br>
+ * Every step copies the bounding box, grown by the range on every side, into
+ * a board, steps the board with a RangeGeneration, which counts every square
+ * with a summed-area table in the same time for every range, and reads the
+ * cells back. A bounded world is stepped as the whole area, so the Topology
+ * glues its edges. The cost follows the area of the box, not the range.
+ * <br>
+ * A cell is born up to R cells from the living cells, so the world expands
+ * when the box is within the range of the boundary, by the range.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class GenerationRange extends GenerationMultiState{
+
+    //The rule used when there is no DynamicBoard, i.e. when testing.
+    private RangeRule rangeRule = RangeRule.BOSCO;
+    private final RangeGeneration range = new RangeGeneration();
+
+    public GenerationRange(int area, int areaInc){
+        super(area, areaInc);
+    }
+
+    /**
+     * Creates a Larger than Life generation holding the cells and the world
+     * of another generation, used when a Larger than Life rule is set.
+     * @param prev the generation to copy.
+     * @return the new generation.
+     */
+    public static GenerationRange copyOf(Generation prev){
+        GenerationRange gen = new GenerationRange(prev.getArea(), prev.getAreaInc());
+        gen.copyWorld(prev);
+        for(long cell : prev)
+            gen.addCell(cell, prev.stateOf(cell));
+        return gen;
+    }
+
+    /**
+     * @return a copy of the cells, the world and the range rule, see
+     *         Generation.copy().
+     */
+    @Override
+    public GenerationRange copy(){
+        GenerationRange copy = (GenerationRange) super.copy();
+        copy.rangeRule = rangeRule;
+        return copy;
+    }
+
+    /**
+     * Calculates the next generation in place, on a board of the bounding box
+     * and the range around it, or of the area of a bounded world.
+     * @return this generation, now holding the next generation.
+     */
+    @Override
+    public GenerationRange calcNextGen(){
+        if(needExpansion())
+            expandWorld();
+
+        RangeRule rule = getRangeRule();
+        int[] box = getBoundingBox();
+        if(box == null)
+            return this;
+        int r = rule.getRange(), top, left, rows, columns;
+        if(getTopology().isBounded()){
+            top = getOriginRow();
+            left = getOriginColumn();
+            rows = columns = getArea();
+        }else{
+            top = box[0]-r;
+            left = box[2]-r;
+            rows = box[1]-box[0]+1+2*r;
+            columns = box[3]-box[2]+1+2*r;
+        }
+        byte[][] board = new byte[rows][columns];
+        for(long cell : this)
+            board[row(cell)-top][column(cell)-left] = (byte) stateOf(cell);
+
+        range.setTopology(getTopology());
+        range.step(board, rule);
+
+        //The cells of the generation before that are dead on the board died.
+        int before = getPopulation(), deaths = 0;
+        for(long cell : this)
+            if(board[row(cell)-top][column(cell)-left] == 0)
+                deaths++;
+        clearPopulation();
+        for(int i = 0; i<rows; i++)
+            for(int j = 0; j<columns; j++)
+                if(board[i][j] != 0)
+                    addCell(key(i+top, j+left), board[i][j] & 0xFF);
+        emitStats(getPopulation()-(before-deaths), deaths);
+        return this;
+    }
+
+    /**
+     * A cell is born up to the range from the living cells, so the world
+     * expands before the box comes within the range of the boundary.
+     * @return true if there are cells within the range of the boundary.
+     */
+    @Override
+    public boolean needExpansion(){
+        if(getTopology().isBounded())
+            return false;
+        int[] box = getBoundingBox();
+        int r = getRangeRule().getRange();
+        return box != null && (onBoundary(box[0]-r, box[2]-r) || onBoundary(box[1]+r, box[3]+r));
+    }
+
+    /**
+     * Expands the area by the range, or the area-increase if it is larger,
+     * on every side.
+     */
+    @Override
+    public void expandWorld(){
+        long start = System.nanoTime();
+        growWorld(Math.max(getAreaInc(), getRangeRule().getRange()));
+        Metrics.record(Metrics.EXPAND_WORLD, start);
+    }
+
+    /**
+     * Gives the Larger than Life rule of the DynamicBoard, or the rule set
+     * with setRangeRule when there is no DynamicBoard or it has none.
+     * @return the range rule.
+     */
+    public RangeRule getRangeRule(){
+        if(ctrl != null && ctrl.getDynamicBoard() != null && ctrl.getDynamicBoard().getRangeRule() != null)
+            return ctrl.getDynamicBoard().getRangeRule();
+        return rangeRule;
+    }
+
+    /**
+     * Sets the rule used when no GoLController is present, i.e. when testing.
+     * @param rule the range rule.
+     */
+    public void setRangeRule(RangeRule rule){
+        this.rangeRule = rule;
+    }
+
+    /**
+     * @return the class name
+     */
+    @Override
+    public String toString(){
+        return "RangeGeneration";
+    }
+}
@@ -0,0 +1,73 @@
+package logic;
+
+/**
+ * The statistics of one step of a Generation: the population after the
+ * step, the cells born and the cells that died in it, the bounding box and
+ * the density of the living cells in the box.
+ * <br>
+ * Every calcNextGen counts the births and deaths as it decides them, and the
+ * population and the box are kept as the cells are added and removed, so
+ * the statistics cost no pass of their own, see Generation.getStats(). With
+ * decaying cells a birth is a dead cell coming alive, and a death a cell
+ * becoming dead, so the population changes by the births less the deaths.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public final class GenerationStats{
+
+    private final int population;
+    private final long births;
+    private final long deaths;
+    //The bounding box, or null if there are no living cells.
+    private final int[] box;
+
+    /**
+     * @param population number of living cells after the step.
+     * @param births number of cells born in the step.
+     * @param deaths number of cells that died in the step.
+     * @param box the bounding box after the step, see Generation.getBoundingBox().
+     */
+    public GenerationStats(int population, long births, long deaths, int[] box){
+        this.population = population;
+        this.births = births;
+        this.deaths = deaths;
+        this.box = box == null ? null : box.clone();
+    }
+
+    public int getPopulation(){
+        return population;
+    }
+
+    public long getBirths(){
+        return births;
+    }
+
+    public long getDeaths(){
+        return deaths;
+    }
+
+    /**
+     * @return min row, max row, min column and max column of the living
+     *         cells, or null if there are none.
+     */
+    public int[] getBoundingBox(){
+        return box == null ? null : box.clone();
+    }
+
+    /**
+     * @return the living cells per cell of the bounding box, from 0 to 1.
+     */
+    public double getDensity(){
+        if(box == null)
+            return 0;
+        return population / ((box[1]-(double) box[0]+1)*(box[3]-(double) box[2]+1));
+    }
+
+    /**
+     * @return i.e. "Population 36, births 4, deaths 2, density 0.25".
+     */
+    @Override
+    public String toString(){
+        return "Population " + population + ", births " + births + ", deaths " + deaths
+             + String.format(", density %.2f", getDensity());
+    }
+}
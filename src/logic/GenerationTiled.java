@@ -0,0 +1,481 @@
+package logic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Tile-implementation
+ * A Generation is represented by a map of tiles, where every tile is a 64x64
+ * bitmap of cells stored as 64 longs, one for every row. Only tiles containing
+ * living cells are stored; a tile that becomes empty is freed.
+ * <br>
+ * A tile that did not change in the last step, and whose eight neighbour
+ * tiles did not change either, is not visited at all: its next state is its
+ * current state. Only the changed tiles and their neighbours are calculated,
+ * 64 cells at a time with the bitwise adder of PackedNextGeneration. A world
+ * of settled still lifes with a few active regions is therefore stepped in
+ * time proportional to the active area, not the population.
+ * <br>
+ * The lists and the set a step needs are kept and reused, and the tiles are
+ * marked while they are collected instead of being put in a map, so a step
+ * allocates nothing but the tiles cells are born in. An empty neighbour of a
+ * changed tile is calculated into a spare array, and only becomes a tile if
+ * a cell is born in it.
+ * <br>
+ * The tiles are placed by the row and column of the cells in the world (see
+ * Generation.key), so expanding the world only moves the origin of the area.
+ * The generation is updated in place: calcNextGen returns this object.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class GenerationTiled extends Generation{
+
+    //Cells along each side of a tile, the number of bits in a long.
+    static final int TILE = 64;
+    private static final long[] EMPTY = new long[TILE];
+
+    //Contains every tile with living cells, keyed by its tile row and column.
+    private final CellMap<Tile> tiles = new CellMap<>();
+    //The tiles that changed in the last step or were edited since.
+    private List<Tile> changed = new ArrayList<>();
+    //The changed tiles of the step before, cleared and filled by the next step.
+    private List<Tile> nextChanged = new ArrayList<>();
+    //The tiles calculated in a step, the changed tiles and their neighbours.
+    private final List<Tile> active = new ArrayList<>();
+    //The empty neighbours of the changed tiles already calculated in a step.
+    private final CellSet checked = new CellSet();
+    //The next state of an empty neighbour, until a cell is born in one.
+    private long[] spare = new long[TILE];
+    private long population;
+    //The bounding box of the population, updated with the cells that change.
+    private final BoundingBox box = new BoundingBox();
+    //The rule of the last step, to notice when the rules change.
+    private CompiledRule lastRule;
+    //The counts of lastRule, see PackedNextGeneration.compileRule, or null
+    //if the rule is not totalistic.
+    private long[] packedRule;
+
+    public GenerationTiled(int area, int areaInc){
+        super(area, areaInc);
+    }
+
+    /**
+     * The tiles follow the world coordinates of the cells, so this generation
+     * only runs on the plane.
+     * @param topology the topology, only Topology.PLANE.
+     * @throws IllegalArgumentException if the topology is bounded.
+     */
+    @Override
+    public void setTopology(Topology topology){
+        if(topology.isBounded())
+            throw new IllegalArgumentException(this + " only runs on the plane, not on " + topology);
+        super.setTopology(topology);
+    }
+
+    /**
+     * A 64x64 square of the world. Bit b of cells[r] is the cell in row r and
+     * column b of the tile.
+     */
+    static class Tile{
+        final int row;
+        final int col;
+        long[] cells;
+        long[] next;
+        int population;
+        //True while the tile is in the changed list.
+        boolean queued;
+        //True while the tile is in the active list of a step.
+        boolean active;
+        //True if the calculated next state differs from the current state.
+        boolean differs;
+
+        Tile(int row, int col){
+            this(row, col, new long[TILE]);
+            differs = false;
+        }
+
+        /**
+         * Creates an empty tile whose next state is already calculated.
+         */
+        Tile(int row, int col, long[] next){
+            this.row = row;
+            this.col = col;
+            this.cells = new long[TILE];
+            this.next = next;
+            differs = true;
+        }
+    }
+
+    /**
+     * @return the map key of the tile in tile row and tile column.
+     */
+    private static long tileKey(int row, int col){
+        return key(row, col);
+    }
+
+    /**
+     * Adds a living cell. This method is used by
+     * the change-cell-status method found in DynamicBoard.
+     * @param key The key of the cell.
+     */
+    @Override
+    public void addLivingCell(long key){
+        int y = row(key), x = column(key);
+        Tile tile = tiles.get(tileKey(y >> 6, x >> 6));
+        if(tile == null){
+            tile = new Tile(y >> 6, x >> 6);
+            tiles.put(tileKey(tile.row, tile.col), tile);
+        }
+        long bit = 1L << (x & 63);
+        if((tile.cells[y & 63] & bit) == 0){
+            tile.cells[y & 63] |= bit;
+            tile.population++;
+            population++;
+            box.add(y, x);
+            queue(tile);
+        }
+    }
+
+    /**
+     * Removes a living cell, freeing its tile if it becomes empty. This method
+     * is used by the change-cell-status method found in DynamicBoard.
+     * @param key The key of the cell.
+     */
+    @Override
+    public void removeLivingCell(long key){
+        int y = row(key), x = column(key);
+        Tile tile = tiles.get(tileKey(y >> 6, x >> 6));
+        long bit = 1L << (x & 63);
+        if(tile == null || (tile.cells[y & 63] & bit) == 0)
+            return;
+        tile.cells[y & 63] &= ~bit;
+        tile.population--;
+        population--;
+        box.remove(y, x);
+        if(tile.population == 0)
+            tiles.remove(tileKey(tile.row, tile.col));
+        queue(tile);
+    }
+
+    /**
+     * Marks the tile as changed, so it and its neighbours are calculated in
+     * the next step.
+     */
+    private void queue(Tile tile){
+        if(!tile.queued){
+            tile.queued = true;
+            changed.add(tile);
+        }
+    }
+
+    /**
+     * Calculates the next generation in place. Collects the changed tiles and
+     * their neighbours, calculates all of them from the current cells, and then
+     * replaces the cells of the tiles that differ. New tiles with living cells
+     * are added, and tiles left empty are freed.
+     * @return this generation, now holding the next generation.
+     */
+    @Override
+    public GenerationTiled calcNextGen(){
+        if(needExpansion())
+            expandWorld();
+
+        CompiledRule compiled = getRule();
+        //Unchanged tiles are only stable under the rules they were calculated with.
+        if(!compiled.equals(lastRule)){
+            tiles.forEachValue(this::queue);
+            lastRule = compiled;
+            //Non-totalistic rules need the neighbourhood of every cell, not only the count.
+            packedRule = compiled.isTotalistic()
+                    ? PackedNextGeneration.compileRule(compiled.getBorn(), compiled.getSurvives()) : null;
+        }
+        long[] rule = packedRule;
+
+        for(Tile tile : changed){
+            tile.queued = false;
+            for(int dy = -1; dy<=1; dy++)
+                for(int dx = -1; dx<=1; dx++)
+                    collect(tile.row+dy, tile.col+dx, rule, compiled);
+        }
+        checked.clear();
+
+        nextChanged.clear();
+        long before = population, births = 0;
+        for(Tile tile : active){
+            tile.active = false;
+            if(!tile.differs)
+                continue;
+            births += updateBox(tile);
+            long[] swap = tile.cells;
+            tile.cells = tile.next;
+            tile.next = swap;
+
+            int count = 0;
+            for(long row : tile.cells)
+                count += Long.bitCount(row);
+            population += count - tile.population;
+            tile.population = count;
+
+            long key = tileKey(tile.row, tile.col);
+            if(count == 0)
+                tiles.remove(key);
+            else if(!tiles.containsKey(key))
+                tiles.put(key, tile);
+            tile.queued = true;
+            nextChanged.add(tile);
+        }
+        active.clear();
+        List<Tile> swap = changed;
+        changed = nextChanged;
+        nextChanged = swap;
+        emitStats(births, births-(population-before));
+        return this;
+    }
+
+    /**
+     * Calculates the tile at the tile row and column once a step, if it is
+     * not calculated yet, and puts it in the active list. The cells do not
+     * change before every tile is calculated, so the tile is calculated
+     * here. An empty tile becomes a tile only if a cell is born in it.
+     * @param row the tile row.
+     * @param col the tile column.
+     * @param rule the compiled counts, or null, see calc.
+     * @param compiled the compiled rule.
+     */
+    private void collect(int row, int col, long[] rule, CompiledRule compiled){
+        long key = tileKey(row, col);
+        Tile tile = tiles.get(key);
+        if(tile != null){
+            if(!tile.active){
+                tile.active = true;
+                tile.differs = calc(row, col, tile.cells, tile.next, rule, compiled);
+                active.add(tile);
+            }
+            return;
+        }
+        if(!checked.add(key))
+            return;
+        //Without a living cell around it, a cell of an empty tile is only born under B0.
+        if(compiled.nextState(0) == 0 && !bordersCells(row, col))
+            return;
+        if(calc(row, col, EMPTY, spare, rule, compiled)){
+            tile = new Tile(row, col, spare);
+            tile.active = true;
+            active.add(tile);
+            spare = new long[TILE];
+        }
+    }
+
+    /**
+     * @return true if a cell just outside the tile, on the edges of its
+     *         neighbour tiles, is alive.
+     */
+    private boolean bordersCells(int row, int col){
+        long edges = cellsAt(row-1, col)[TILE-1] | cellsAt(row+1, col)[0]
+                   | cellsAt(row-1, col-1)[TILE-1] >>> 63 | cellsAt(row-1, col+1)[TILE-1] & 1
+                   | cellsAt(row+1, col-1)[0] >>> 63 | cellsAt(row+1, col+1)[0] & 1;
+        long[] w = cellsAt(row, col-1), e = cellsAt(row, col+1);
+        for(int r = 0; r<TILE && edges == 0; r++)
+            edges = w[r] >>> 63 | e[r] & 1;
+        return edges != 0;
+    }
+
+    /**
+     * Calculates the next state of the tile into tile.next, reading the edge
+     * rows and columns of the eight neighbour tiles.
+     * @param row the tile row.
+     * @param col the tile column.
+     * @param c the cells of the tile.
+     * @param next the array the next state is put in.
+     * @param rule the compiled counts, see PackedNextGeneration.compileRule,
+     * or null if the rule is not totalistic.
+     * @param compiled the compiled rule.
+     * @return true if the next state differs from the cells.
+     */
+    private boolean calc(int row, int col, long[] c, long[] next, long[] rule, CompiledRule compiled){
+        long[] n  = cellsAt(row-1, col);
+        long[] s  = cellsAt(row+1, col);
+        long[] w  = cellsAt(row,   col-1);
+        long[] e  = cellsAt(row,   col+1);
+        long[] nw = cellsAt(row-1, col-1);
+        long[] ne = cellsAt(row-1, col+1);
+        long[] sw = cellsAt(row+1, col-1);
+        long[] se = cellsAt(row+1, col+1);
+        boolean differs = false;
+
+        for(int r = 0; r<TILE; r++){
+            long a, aW, aE, b, bW, bE;
+            if(r > 0){
+                a = c[r-1];  aW = w[r-1];  aE = e[r-1];
+            }else{
+                a = n[63];   aW = nw[63];  aE = ne[63];
+            }
+            if(r < 63){
+                b = c[r+1];  bW = w[r+1];  bE = e[r+1];
+            }else{
+                b = s[0];    bW = sw[0];   bE = se[0];
+            }
+            long m = c[r];
+            long aLeft = (a << 1) | (aW >>> 63), aRight = (a >>> 1) | (aE << 63);
+            long mLeft = (m << 1) | (w[r] >>> 63), mRight = (m >>> 1) | (e[r] << 63);
+            long bLeft = (b << 1) | (bW >>> 63), bRight = (b >>> 1) | (bE << 63);
+            next[r] = rule != null
+                    ? PackedNextGeneration.stepWord(a, aLeft, aRight, m, mLeft, mRight,
+                                                    b, bLeft, bRight, rule)
+                    : PackedNextGeneration.stepWord(a, aLeft, aRight, m, mLeft, mRight,
+                                                    b, bLeft, bRight, compiled);
+            differs |= next[r] != m;
+        }
+        return differs;
+    }
+
+    /**
+     * @return the cells of the tile, or an empty tile if it is not stored.
+     */
+    private long[] cellsAt(int row, int col){
+        Tile tile = tiles.get(tileKey(row, col));
+        return tile == null ? EMPTY : tile.cells;
+    }
+
+    /**
+     * Adds the cells born in the tile to the bounding box and removes the
+     * cells that die, so the box costs the changed cells and not the tiles.
+     * @param tile a tile whose next state differs from its cells.
+     * @return number of cells born in the tile.
+     */
+    private int updateBox(Tile tile){
+        int births = 0;
+        for(int r = 0; r<TILE; r++){
+            long diff = tile.cells[r] ^ tile.next[r];
+            births += Long.bitCount(diff & tile.next[r]);
+            int y = (tile.row << 6)+r;
+            for(long bits = diff; bits != 0; bits &= bits-1){
+                int b = Long.numberOfTrailingZeros(bits);
+                int x = (tile.col << 6)+b;
+                if((tile.next[r] >>> b & 1) != 0)
+                    box.add(y, x);
+                else
+                    box.remove(y, x);
+            }
+        }
+        return births;
+    }
+
+    /**
+     * @return the bounding box of the living cells, see Generation.
+     */
+    @Override
+    public int[] getBoundingBox() {
+        if(box.isEmpty())
+            return null;
+        return new int[]{box.getTop(), box.getBottom(), box.getLeft(), box.getRight()};
+    }
+
+    /**
+     * The hash follows the bounding box, see BoundingBox.
+     * @return the Zobrist hash of the living cells, see Generation.
+     */
+    @Override
+    public long getHash() {
+        return box.getHash();
+    }
+
+    @Override
+    public int cellsInRow(int row) {
+        return box.rowCount(row);
+    }
+
+    @Override
+    public int cellsInColumn(int column) {
+        return box.columnCount(column);
+    }
+
+    /**
+     * Enables to be the target of an enhanced for-loop.
+     * This is utilized in the draw-method of the DynamicBoard class.
+     * @return an iterator
+     */
+    @Override
+    public Iterator<Long> iterator(){
+        final long[] cells = collectCells();
+        return new Iterator<Long>(){
+            private int next = 0;
+
+            @Override
+            public boolean hasNext(){
+                return next < cells.length;
+            }
+
+            @Override
+            public Long next(){
+                if(next >= cells.length)
+                    throw new NoSuchElementException();
+                return cells[next++];
+            }
+        };
+    }
+
+    /**
+     * @return the key of every living cell.
+     */
+    private long[] collectCells(){
+        long[][] cells = {new long[(int) Math.min(population, 1 << 16)]};
+        int[] n = {0};
+        tiles.forEachValue(tile -> {
+            for(int r = 0; r<TILE; r++){
+                int y = (tile.row << 6)+r;
+                for(long bits = tile.cells[r]; bits != 0; bits &= bits-1){
+                    int x = (tile.col << 6)+Long.numberOfTrailingZeros(bits);
+                    if(n[0] == cells[0].length)
+                        cells[0] = Arrays.copyOf(cells[0], Math.max(16, cells[0].length*2));
+                    cells[0][n[0]++] = key(y, x);
+                }
+            }
+        });
+        return Arrays.copyOf(cells[0], n[0]);
+    }
+
+    /**
+     * Removes every living cell and every tile.
+     */
+    @Override
+    public void clearPopulation() {
+        tiles.clear();
+        changed.clear();
+        population = 0;
+        box.clear();
+    }
+
+    /**
+     * @return the number of living cells, capped at Integer.MAX_VALUE.
+     */
+    @Override
+    public int getPopulation() {
+        return (int) Math.min(population, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return the number of stored tiles.
+     */
+    public int getTileCount() {
+        return tiles.size();
+    }
+
+    /**
+     * @return the number of tiles calculated in the next step, before their
+     * neighbours are added.
+     */
+    public int getChangedTileCount() {
+        return changed.size();
+    }
+
+    /**
+     * @return the class name
+     */
+    @Override
+    public String toString(){
+        return "TiledGeneration";
+    }
+}
@@ -54,7 +54,8 @@ public class InstructionDialog {
                          + "\tU    - move up\n"
                          + "\tH    - move left\n"
                          + "\tJ    - move down\n"
-                         + "\tK    - move right.");
+                         + "\tK    - move right.\n"
+                         + "\tZ    - zoom to fit.");
         
         bornRule.setText("\nBorn - how\n"
                        + "many neighbours\n"
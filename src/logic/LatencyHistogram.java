@@ -0,0 +1,155 @@
+package logic;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of the nanoseconds a phase of the game takes, i.e. a step or
+ * a draw, see Metrics.
+ * <br>
+ * The times are counted in buckets: every power of two is cut into sixteen
+ * buckets of equal width, so a percentile is within 1/16 of the true time,
+ * from a nanosecond to years. Recording costs a few atomic additions and no
+ * allocation, so it may be called from the simulation thread every
+ * generation while the percentiles are read through JMX on another thread.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public final class LatencyHistogram implements LatencyHistogramMXBean{
+
+    //Number of buckets of every power of two, 2^SUB_BITS.
+    private static final int SUB_BITS = 4;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = SUB*(64-SUB_BITS);
+
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Constructor
+     * @param name the name of the phase, i.e. "step".
+     */
+    public LatencyHistogram(String name){
+        this.name = name;
+    }
+
+    /**
+     * Records the time since a start read from System.nanoTime().
+     * @param start the start of the phase.
+     * @return the nanoseconds recorded.
+     */
+    public long recordSince(long start){
+        long nanos = System.nanoTime()-start;
+        record(nanos);
+        return nanos;
+    }
+
+    /**
+     * @param nanos the nanoseconds a phase took, negative times count as 0.
+     */
+    public void record(long nanos){
+        nanos = Math.max(0, nanos);
+        buckets.incrementAndGet(bucket(nanos));
+        count.incrementAndGet();
+        total.addAndGet(nanos);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * The times below SUB have a bucket each, the others a sixteenth of
+     * their power of two.
+     */
+    private static int bucket(long nanos){
+        if(nanos < SUB)
+            return (int) nanos;
+        int exponent = 63-Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponent-SUB_BITS)) & (SUB-1);
+        return SUB*(exponent-SUB_BITS+1) + sub;
+    }
+
+    /**
+     * @return the largest time of a bucket.
+     */
+    private static long highest(int bucket){
+        if(bucket < SUB)
+            return bucket;
+        int exponent = bucket/SUB+SUB_BITS-1;
+        long sub = SUB + bucket%SUB;
+        return ((sub+1) << (exponent-SUB_BITS))-1;
+    }
+
+    /**
+     * Gives a percentile of the times recorded.
+     * @param percentile from 0 to 100, i.e. 99 for the p99.
+     * @return the time in nanoseconds no more than the percentile of the
+     *         times exceed, or 0 if none are recorded.
+     */
+    public long getPercentile(double percentile){
+        long n = count.get();
+        if(n == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile/100*n));
+        long seen = 0;
+        for(int i = 0; i<BUCKETS; i++){
+            seen += buckets.get(i);
+            if(seen >= rank)
+                return Math.min(highest(i), max.get());
+        }
+        return max.get();
+    }
+
+    @Override
+    public String getName(){
+        return name;
+    }
+
+    @Override
+    public long getCount(){
+        return count.get();
+    }
+
+    @Override
+    public long getP50(){
+        return getPercentile(50);
+    }
+
+    @Override
+    public long getP99(){
+        return getPercentile(99);
+    }
+
+    @Override
+    public long getMax(){
+        return max.get();
+    }
+
+    @Override
+    public double getMean(){
+        long n = count.get();
+        return n == 0 ? 0 : total.get() / (double) n;
+    }
+
+    /**
+     * Forgets every time recorded. Times recorded while resetting may be
+     * partly kept.
+     */
+    @Override
+    public void reset(){
+        for(int i = 0; i<BUCKETS; i++)
+            buckets.set(i, 0);
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    /**
+     * @return i.e. "step: count 120, p50 81920 ns, p99 262143 ns, max 301204 ns".
+     */
+    @Override
+    public String toString(){
+        return name + ": count " + getCount() + ", p50 " + getP50() + " ns, p99 " + getP99()
+             + " ns, max " + getMax() + " ns";
+    }
+}
@@ -0,0 +1,32 @@
+package logic;
+
+/**
+ * The times of a phase of the game as seen through JMX, i.e. in JConsole,
+ * under logic:type=Metrics. Every time is in nanoseconds, see Metrics.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public interface LatencyHistogramMXBean{
+
+    /**
+     * @return the name of the phase, i.e. "step".
+     */
+    String getName();
+
+    /**
+     * @return number of times recorded.
+     */
+    long getCount();
+
+    long getP50();
+
+    long getP99();
+
+    long getMax();
+
+    double getMean();
+
+    /**
+     * Forgets every time recorded.
+     */
+    void reset();
+}
@@ -39,6 +39,9 @@ public class LoadPattern {
     private String name;
     private String ruleB;
     private String ruleS;
+    private int states = 2;
+    //The Larger than Life rule of the pattern, or null.
+    private String rangeRule;
     private String rawPattern;
     
     GoLController ctrl;
@@ -152,6 +155,7 @@ public class LoadPattern {
      * @see logic.LoadPattern#decodeHeader(java.lang.StringBuilder) 
      */
     public byte[][] readGameboard(Reader r){
+        long start = System.nanoTime();
         //Testing Reader referance:
         try{
             if(r == null){
@@ -187,6 +191,7 @@ public class LoadPattern {
             }
         }
         pattern = decodeHeader(builder);
+        Metrics.record(Metrics.LOAD, start);
         return pattern;
     }
     
@@ -195,6 +200,10 @@ public class LoadPattern {
      * This method uses the Pattern and Matcher classes to retrieve x and y information
      * to the byte[][] that will represent the pattern when it has been decoded.
      * It also retrieves a ruleset, that represents the rules that goes along with the pattern.
+     * The ruleset may end with the number of states of a Generations rule, 
+     * i.e. B2/S/C3, or be written as survives/born/states, i.e. /2/3.
+     * A Larger than Life rule, i.e. R5,C0,M1,S34..58,B34..45,NM, is kept as 
+     * it is, see RangeRule.
      * @param builder is a StringBuilder object that contains the String data of the source.
      * @return the decoded data represented in a byte[][].
      */                              
@@ -202,19 +211,23 @@ public class LoadPattern {
         String nameRe = "(#N) ?(.*)",
                   xRe = "x ?= ?(\\d+),? ?",
                   yRe = "y ?= ?(\\d+)",
-               ruleRe = "(rule ?= ?)(B)?([0-8]+)\\/(S)?([0-8]+)";
+               ruleRe = "(rule ?= ?)(B)?([0-8a-z\\-]*)\\/(S)?([0-8a-z\\-]*)(\\/[CG]?(\\d+))?",
+              rangeRe = "rule ?= ?(R\\d+,[\\w.,]*)";
                 
-        ctrl = GoLController.instance; //comment out when running LoadPatternTest (1/4)
+        //Without the controller, i.e. in the tests and the benchmark, the name and rule are not shown.
+        ctrl = GoLController.instance;
         Pattern namePattern = Pattern.compile(nameRe);
         Matcher nameMatcher = namePattern.matcher(builder);
             
         if(nameMatcher.find()){
             name = nameMatcher.group(2);
-            ctrl.setPatternName(name); //comment out when running LoadPatternTest (2/4)
+            if(ctrl != null)
+                ctrl.setPatternName(name);
         }
         else{
             name = "noname";
-            ctrl.setPatternName(name); //comment out when running LoadPatternTest (3/4)
+            if(ctrl != null)
+                ctrl.setPatternName(name);
             }
         Pattern sizePattern = Pattern.compile(xRe + yRe, Pattern.CASE_INSENSITIVE);
         Matcher sizeMatcher = sizePattern.matcher(builder);
@@ -233,16 +246,39 @@ public class LoadPattern {
         }
         Pattern rulePattern = Pattern.compile(ruleRe, Pattern.CASE_INSENSITIVE);
         Matcher ruleMatcher = rulePattern.matcher(builder);
+        Pattern rangePattern = Pattern.compile(rangeRe, Pattern.CASE_INSENSITIVE);
+        Matcher rangeMatcher = rangePattern.matcher(builder);
+        rangeRule = null;
                 
-        if(ruleMatcher.find()){
+        if(rangeMatcher.find()){
+            rangeRule = rangeMatcher.group(1);
+            ruleB = "3";
+            ruleS = "23";
+            try{
+                states = RangeRule.parse(rangeRule).getStates();
+            }
+            catch(PatternFormatException e){
+                new PatternFormatExceptionDialog(e.getMessage());
+                states = 2;
+            }
+        }
+        else if(ruleMatcher.find()){
             ruleB = ruleMatcher.group(3).trim();
             ruleS = ruleMatcher.group(5).trim();   
+            states = ruleMatcher.group(7) != null ? Integer.parseInt(ruleMatcher.group(7)) : 2;
+            //Without letters, a Generations rule is survives/born/states:
+            if(ruleMatcher.group(2) == null && ruleMatcher.group(4) == null && ruleMatcher.group(7) != null){
+                ruleB = ruleMatcher.group(5).trim();
+                ruleS = ruleMatcher.group(3).trim();
+            }
         }
         else{  
             ruleB = "3";
             ruleS = "23";
+            states = 2;
         }  
-    ctrl.setPatternRules(ruleB, ruleS); //comment out when running LoadPatternTest (4/4)
+    if(ctrl != null)
+        ctrl.setPatternRules(getRule());
     pattern = decodePattern(builder); 
     
     return pattern;
@@ -260,7 +296,12 @@ public class LoadPattern {
      *  2o = 11<br>
      *  3b = 000<br>
      *  3$ = y += 3<br>
-     *   ! = end
+     *   ! = end<br>
+     * Patterns of rules with more than two states use letters, see cellState:<br>
+     *   . = 0<br>
+     *   A = 1<br>
+     *  2B = 22<br>
+     *  pA = 25
      * 
      * @param builder is a StringBuilder object that contains the 
      * String data from the source.
@@ -269,7 +310,7 @@ public class LoadPattern {
     public byte[][] decodePattern(StringBuilder builder){
         int yIndex  = 0;
         int yPattLog = 0;
-        final String cells = "([1-9]\\d*)*?([bo$!])";
+        final String cells = "([1-9]\\d*)*?([p-y]?[A-X]|[bo.$!])";
         
         pattern = new byte[height][width];
         Pattern cellPattern = Pattern.compile(cells);
@@ -295,22 +336,6 @@ public class LoadPattern {
                 }
                 try{
                     switch (cellMatcher.group(2)){
-                        //Looking for live notation:
-                        case "o": 
-                            xIndex++;
-                            assignValues(number, yIndex, xIndex,(byte)1);
-                            xIndex = addToRealX(number, xIndex);
-                            number = 0;
-                            
-                            break;
-                        //Looking for dead notation:
-                        case "b":
-                            xIndex++;
-                            assignValues(number, yIndex, xIndex,(byte)0);
-                            xIndex = addToRealX(number, xIndex);
-                            number = 0;
-                                
-                            break;
                         case "$":
                             yIndex++;
                                 
@@ -324,13 +349,19 @@ public class LoadPattern {
                         //Trigging "end of line", and returns pattern:
                         case "!":
                             return pattern; 
-                    
+                        //Looking for cells, dead (b or .), living (o or A) or decaying (B, C, ...):
                         default:
-                            throw new PatternFormatException();
+                            xIndex++;
+                            assignValues(number, yIndex, xIndex, cellState(cellMatcher.group(2)));
+                            xIndex = addToRealX(number, xIndex);
+                            number = 0;
+                            
+                            break;
                     }
                 }
                 catch(PatternFormatException i){  
-                    new PatternFormatExceptionDialog("Failed to parse logic in source.");
+                    new PatternFormatExceptionDialog(i.getMessage() != null ? i.getMessage() 
+                                                   : "Failed to parse logic in source.");
                 }
             }
         }
@@ -350,7 +381,7 @@ public class LoadPattern {
      */
     public String[] getPatternLogic(StringBuilder builder){
         final String splitAt = "(?<=\\$)",
-                   findLogic = "(^[ \\d*]?[ ]?[\\r\\n$[\\d*(o|b)+|\\d*(o|b)+]\\n\\r]*[!])";
+                   findLogic = "(^[ \\d*]?[ ]?[\\r\\n$\\dob.A-Xp-y]*[!])";
         
         Pattern findPattern = Pattern.compile(findLogic, Pattern.DOTALL | Pattern.MULTILINE);
         Matcher patternMatcher = findPattern.matcher(builder);
@@ -385,6 +416,57 @@ public class LoadPattern {
     return splitted;
     }
     
+    /**
+     * Decodes the letters of one cell to its state. The letters b and o are
+     * the dead and living cells of two-state rules. Rules with more states 
+     * use . for dead cells and the letters A to X for the states 1 to 24, 
+     * and the states from 25 are written with one of the letters p to y 
+     * before them: pA is 25, pX is 48, qA is 49 and yO is 255.
+     * @param cell the letters of the cell.
+     * @return the state of the cell.
+     * @throws PatternFormatException if the rule of the pattern has no such state.
+     */
+    public byte cellState(String cell) throws PatternFormatException{
+        if(cell.equals("b") || cell.equals("."))
+            return 0;
+        if(cell.equals("o"))
+            return 1;
+        int state = cell.charAt(cell.length()-1) - 'A' + 1;
+        if(cell.length() > 1)
+            state += 24*(cell.charAt(0) - 'p' + 1);
+        if(state >= states)
+            throw new PatternFormatException("Pattern contains state " + cell 
+                                           + ", the rule has " + states + " states.");
+        return (byte) state;
+    }
+    
+    /**
+     * Encodes a state to the letters of a cell, the opposite of cellState.
+     * @param state the state of the cell.
+     * @param multiState true for the letters of rules with more than two states.
+     * @return the letters of the cell.
+     * @see logic.LoadPattern#cellState(java.lang.String) 
+     */
+    public static String cellLetters(int state, boolean multiState){
+        if(!multiState)
+            return state == 0 ? "b" : "o";
+        if(state == 0)
+            return ".";
+        if(state <= 24)
+            return String.valueOf((char) ('A' + state - 1));
+        return "" + (char) ('p' + (state-25)/24) + (char) ('A' + (state-25)%24);
+    }
+    
+    /**
+     * @return the whole rule of the pattern, i.e. B3/S23, B2/S/C3 or 
+     *         R5,C0,M1,S34..58,B34..45,NM.
+     */
+    public String getRule(){
+        if(rangeRule != null)
+            return rangeRule;
+        return "B" + ruleB + "/S" + ruleS + (states > 2 ? "/C" + states : "");
+    }
+    
     /**
      * Adding number to realX.
      * Adding the number to the realX param, subtracting 1.
@@ -405,7 +487,8 @@ public class LoadPattern {
      * @param number is numbers from the pattern logic.
      * @param yIndex is the y index we are at in the decoding cycle.
      * @param xIndex is the pattern array index.
-     * @param value represents dead or live cells, being either 1 or 0.
+     * @param value represents the state of the cells, 0 for dead and 1 for 
+     * living cells.
      */
     public void assignValues(int number, int yIndex, int xIndex, byte value){
         int numbTimes = 0;
@@ -432,8 +515,8 @@ public class LoadPattern {
     @Override
     public String toString(){
         String result  = "Name: " + name + ". Size x = " + width + ", y = " 
-                         + height + ". Rules B" + ruleB.trim() + "/S" 
-                         + ruleS.trim() + ". Rawpattern: " + rawPattern.trim() 
+                         + height + ". Rules " + getRule() 
+                         + ". Rawpattern: " + rawPattern.trim() 
                          + " Returned:";
         
         for(int i = 0; i<pattern.length; i++){
@@ -0,0 +1,476 @@
+package logic;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dense board kept off the heap, for worlds larger than the heap.
+ * The cells are bit-packed like in PackedNextGeneration, 64 cells in a long,
+ * where bit b of word w of a row is column w*64+b. The rows are kept in two
+ * memory-mapped files, the current generation and the buffer the next
+ * generation is written into, which are swapped after every step like the
+ * buffers of DenseGeneration. A board of 100 000 x 100 000 cells is two files
+ * of 1.25 GB each, paged in and out by the operating system, and the heap
+ * only ever holds a few rows.
+ * <br>
+ * A step runs through the board in stripes of rows. Every stripe reads a
+ * window of three rows from the current file onto the heap, sums the
+ * neighbours of 64 cells at a time with the bitwise adder of
+ * PackedNextGeneration and writes the row into the next file. The stripes
+ * only write their own rows, so with a ForkJoinPool set they are calculated
+ * in parallel, see RowBandTask.
+ * <br>
+ * The rows are padded with a word on either side on the heap, which holds
+ * the columns of the opposite edge when the Topology wraps, and the rows
+ * beyond the edges are read through the topology as well.
+ * <br>
+ * The file starts with a header of HEADER bytes holding the size of the
+ * board and the generation, so a copy of the current file is a snapshot of
+ * the board, see snapshot(Path) and open(Path, Path). The copy is made by
+ * the file channels, without the cells passing through the heap. The file
+ * is little-endian on every machine, so a snapshot can be moved.
+ * <br>
+ * A bit holds two states, so the rules with decaying cells are not stepped
+ * here. Non-totalistic rules are looked up one cell at a time, see
+ * PackedNextGeneration.stepWord.
+ * <br>
+ * Every stripe counts the cells born and the cells that died a word at a
+ * time as it writes its rows, see getBirths() and getDeaths(), so the
+ * statistics of a step cost no pass over the files.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class MappedGeneration implements Closeable{
+
+    /**
+     * Size of the header of the files in bytes, the rows follow it.
+     */
+    public static final int HEADER = 64;
+
+    //"GoLM", the first int of the header.
+    private static final int MAGIC = 0x476F4C4D;
+    //The largest part of a file mapped as one buffer.
+    private static final long SEGMENT_BYTES = 1L << 30;
+    //The smallest stripe of rows calculated by a task.
+    private static final int MIN_STRIPE_ROWS = 64;
+
+    private final int rows;
+    private final int columns;
+    private final int words;
+    private final int rowsPerSegment;
+    private final long lastMask;
+    //The current generation, and the file the next generation is written into.
+    private Board cells;
+    private Board next;
+    private Topology topology = Topology.PLANE;
+    private ForkJoinPool pool;
+    //The cells born and the cells that died in the last generation calculated.
+    private final LongAdder births = new LongAdder();
+    private final LongAdder deaths = new LongAdder();
+
+    /**
+     * Creates an empty board in two new files, which are deleted on close().
+     * The files are sparse where the operating system supports it, so the
+     * disk is only used as the cells are written.
+     * @param directory the directory of the files.
+     * @param rows number of rows of the board.
+     * @param columns number of columns of the board.
+     * @throws IOException if the files cannot be created or mapped.
+     */
+    public MappedGeneration(Path directory, int rows, int columns) throws IOException{
+        this(directory, rows, columns, SEGMENT_BYTES);
+    }
+
+    /**
+     * @param segmentBytes the largest part of a file mapped as one buffer,
+     *        smaller than SEGMENT_BYTES to test boards of many segments.
+     */
+    MappedGeneration(Path directory, int rows, int columns, long segmentBytes) throws IOException{
+        if(rows < 1 || columns < 1)
+            throw new IllegalArgumentException("Board of " + rows + "x" + columns + " cells.");
+        this.rows = rows;
+        this.columns = columns;
+        this.words = PackedNextGeneration.words(columns);
+        this.rowsPerSegment = (int) Math.max(1, Math.min(rows, segmentBytes/(8L*words)));
+        this.lastMask = PackedNextGeneration.lastWordMask(columns);
+        this.cells = new Board(Files.createTempFile(directory, "gol", ".cells"));
+        this.next = new Board(Files.createTempFile(directory, "gol", ".cells"));
+        cells.writeHeader(0);
+    }
+
+    /**
+     * Opens a copy of a snapshot, leaving the snapshot as it is.
+     * @param snapshot the snapshot, see snapshot(Path).
+     * @param directory the directory of the files of the board.
+     * @return the board of the snapshot, at the generation of the snapshot.
+     * @throws IOException if the snapshot cannot be read, or is not a snapshot.
+     */
+    public static MappedGeneration open(Path snapshot, Path directory) throws IOException{
+        int rows, columns;
+        try(FileChannel in = FileChannel.open(snapshot, StandardOpenOption.READ)){
+            MappedByteBuffer header = in.map(FileChannel.MapMode.READ_ONLY, 0, HEADER);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if(header.getInt(0) != MAGIC)
+                throw new IOException("Not a snapshot of a board: " + snapshot);
+            rows = header.getInt(4);
+            columns = header.getInt(8);
+        }
+        MappedGeneration gen = new MappedGeneration(directory, rows, columns);
+        try(FileChannel in = FileChannel.open(snapshot, StandardOpenOption.READ)){
+            transfer(in, gen.cells.channel);
+        }
+        catch(IOException e){
+            gen.close();
+            throw e;
+        }
+        return gen;
+    }
+
+    /**
+     * Copies the current generation into a file, from which the board can
+     * be opened again, see open(Path, Path).
+     * @param target the file of the snapshot, replaced if it exists.
+     * @throws IOException if the file cannot be written.
+     */
+    public void snapshot(Path target) throws IOException{
+        try(FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+            transfer(cells.channel, out);
+        }
+    }
+
+    /**
+     * Copies every byte of one file channel into another, from the start.
+     * The channels hand the bytes to each other, so the copy does not pass
+     * through the heap.
+     */
+    private static void transfer(FileChannel in, FileChannel out) throws IOException{
+        long size = in.size(), done = 0;
+        while(done < size)
+            done += in.transferTo(done, size-done, out);
+    }
+
+    /**
+     * Calculates the next generation of the board.
+     * @param rule the compiled rule, of two states.
+     */
+    public void step(CompiledRule rule){
+        step(rule, 1);
+    }
+
+    /**
+     * Calculates a number of generations of the board, swapping the files
+     * between the generations.
+     * @param rule the compiled rule, of two states.
+     * @param generations number of generations to calculate.
+     * @throws IllegalArgumentException if the rule has more than two states.
+     */
+    public void step(CompiledRule rule, int generations){
+        if(rule.getStates() > 2)
+            throw new IllegalArgumentException("A bit holds no more than two states: " + rule);
+        long[] totalistic = rule.isTotalistic()
+                ? PackedNextGeneration.compileRule(rule.getBorn(), rule.getSurvives()) : null;
+        long generation = getGeneration();
+        for(int gen = 0; gen<generations; gen++){
+            births.reset();
+            deaths.reset();
+            if(pool != null && pool.getParallelism() > 1 && rows >= 2*MIN_STRIPE_ROWS){
+                int grain = Math.max(MIN_STRIPE_ROWS, rows/(pool.getParallelism()*4));
+                pool.invoke(new RowBandTask((from, to) -> calcRows(rule, totalistic, from, to), 0, rows, grain));
+            }else{
+                calcRows(rule, totalistic, 0, rows);
+            }
+            Board swap = cells;
+            cells = next;
+            next = swap;
+            cells.writeHeader(++generation);
+        }
+    }
+
+    /**
+     * Calculates the rows from (inclusive) to (exclusive) of the next file,
+     * rolling a window of three padded rows down the stripe.
+     */
+    private void calcRows(CompiledRule rule, long[] totalistic, int from, int to){
+        int width = words+2;
+        long[] above = new long[width], row = new long[width], below = new long[width];
+        long[] out = new long[words];
+        long born = 0, died = 0;
+        readRow(from-1, above);
+        readRow(from, row);
+        for(int i = from; i<to; i++){
+            readRow(i+1, below);
+            for(int w = 1; w<=words; w++){
+                out[w-1] = totalistic != null
+                        ? PackedNextGeneration.stepWord(above, row, below, w, width, totalistic)
+                        : PackedNextGeneration.stepWord(above, row, below, w, width, rule);
+            }
+            out[words-1] &= lastMask;
+            for(int w = 1; w<=words; w++){
+                //The padding of a wrapped row may set the bit after the last column.
+                long cur = w == words ? row[w] & lastMask : row[w];
+                born += Long.bitCount(out[w-1] & ~cur);
+                died += Long.bitCount(cur & ~out[w-1]);
+            }
+            next.write(i, out);
+            long[] swap = above;
+            above = row;
+            row = below;
+            below = swap;
+        }
+        births.add(born);
+        deaths.add(died);
+    }
+
+    /**
+     * Reads a row into words 1 to words of a padded row, and fills the
+     * padding. A row outside the board is read as given by the topology.
+     * @param i the row, may be -1 or rows.
+     * @param padded the padded row, words+2 long.
+     */
+    private void readRow(int i, long[] padded){
+        padded[0] = 0;
+        padded[words+1] = 0;
+        if(i < 0 || i >= rows){
+            if(!topology.wraps()){
+                Arrays.fill(padded, 0);
+                return;
+            }
+            cells.read(Math.floorMod(i, rows), padded);
+            if(topology.mirrors(i, rows))
+                mirror(padded);
+        }else{
+            cells.read(i, padded);
+        }
+        if(topology.wraps()){
+            //The west padding ends with the last column, the east column after the last is the first.
+            padded[0] = (padded[1+((columns-1) >>> 6)] >>> (columns-1)) << 63;
+            padded[1+(columns >>> 6)] |= (padded[1] & 1) << columns;
+        }
+    }
+
+    /**
+     * Mirrors the columns of a padded row east to west.
+     */
+    private void mirror(long[] padded){
+        long[] mirrored = new long[words];
+        for(int j = 0; j<columns; j++)
+            if((padded[1+(j >>> 6)] >>> j & 1) != 0){
+                int k = columns-1-j;
+                mirrored[k >>> 6] |= 1L << k;
+            }
+        System.arraycopy(mirrored, 0, padded, 1, words);
+    }
+
+    /**
+     * @param row the row.
+     * @param column the column.
+     * @return 1 if the cell is alive, else 0.
+     * @throws IndexOutOfBoundsException if the cell is outside the board.
+     */
+    public int get(int row, int column){
+        checkCell(row, column);
+        return (int) (cells.word(row, column >>> 6) >>> column & 1);
+    }
+
+    /**
+     * @param row the row.
+     * @param column the column.
+     * @param state 1 for a living cell, 0 for a dead cell.
+     * @throws IndexOutOfBoundsException if the cell is outside the board.
+     */
+    public void set(int row, int column, int state){
+        checkCell(row, column);
+        long word = cells.word(row, column >>> 6);
+        long bit = 1L << column;
+        cells.setWord(row, column >>> 6, state == 1 ? word | bit : word & ~bit);
+    }
+
+    /**
+     * Sets the cells of a pattern, the living cells alive and the others dead.
+     * @param pattern the pattern, as a dense board.
+     * @param row the row of the first row of the pattern.
+     * @param column the column of the first column of the pattern.
+     */
+    public void load(byte[][] pattern, int row, int column){
+        for(int i = 0; i<pattern.length; i++)
+            for(int j = 0; j<pattern[i].length; j++)
+                set(row+i, column+j, pattern[i][j] == 1 ? 1 : 0);
+    }
+
+    /**
+     * Copies a part of the board onto the heap, i.e. the part shown on the
+     * canvas. The cells outside the board are dead.
+     * @param row the first row.
+     * @param column the first column.
+     * @param height number of rows.
+     * @param width number of columns.
+     * @return the cells of the part, as a dense board.
+     */
+    public byte[][] region(int row, int column, int height, int width){
+        byte[][] region = new byte[height][width];
+        long[] padded = new long[words+2];
+        for(int i = Math.max(0, row); i<Math.min(rows, row+height); i++){
+            cells.read(i, padded);
+            for(int j = Math.max(0, column); j<Math.min(columns, column+width); j++)
+                region[i-row][j-column] = (byte) (padded[1+(j >>> 6)] >>> j & 1);
+        }
+        return region;
+    }
+
+    /**
+     * Counts the living cells, one row at a time.
+     * @return number of living cells.
+     */
+    public long getPopulation(){
+        long population = 0;
+        long[] padded = new long[words+2];
+        for(int i = 0; i<rows; i++){
+            cells.read(i, padded);
+            for(int w = 1; w<=words; w++)
+                population += Long.bitCount(padded[w]);
+        }
+        return population;
+    }
+
+    /**
+     * @return number of cells born in the last generation calculated.
+     */
+    public long getBirths(){
+        return births.sum();
+    }
+
+    /**
+     * @return number of cells that died in the last generation calculated.
+     */
+    public long getDeaths(){
+        return deaths.sum();
+    }
+
+    /**
+     * @return number of generations calculated, kept in the header so a
+     *         snapshot has it.
+     */
+    public long getGeneration(){
+        return cells.header.getLong(16);
+    }
+
+    private void checkCell(int row, int column){
+        if(row < 0 || row >= rows || column < 0 || column >= columns)
+            throw new IndexOutOfBoundsException("Cell " + row + "," + column
+                                              + " outside board of " + rows + "x" + columns + ".");
+    }
+
+    public int getRows(){
+        return rows;
+    }
+
+    public int getColumns(){
+        return columns;
+    }
+
+    /**
+     * @param topology what lies beyond the edges of the board, see Topology.
+     */
+    public void setTopology(Topology topology){
+        this.topology = topology;
+    }
+
+    public Topology getTopology(){
+        return topology;
+    }
+
+    /**
+     * Sets the pool calculating the stripes in parallel.
+     * @param pool the ForkJoinPool to use, or null to calculate on the
+     *        calling thread.
+     */
+    public void setPool(ForkJoinPool pool){
+        this.pool = pool;
+    }
+
+    public ForkJoinPool getPool(){
+        return pool;
+    }
+
+    /**
+     * Closes and deletes the files of the board. Where a mapped file cannot
+     * be deleted before the mapping is collected, it is deleted on exit.
+     * @throws IOException if a file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException{
+        for(Board board : new Board[]{cells, next}){
+            board.channel.close();
+            try{
+                Files.deleteIfExists(board.file);
+            }
+            catch(IOException e){
+                board.file.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * One file of the board: the header, and the rows mapped in segments of
+     * rowsPerSegment rows, since a buffer holds no more than 2 GB.
+     */
+    private final class Board{
+
+        private final Path file;
+        private final FileChannel channel;
+        private final MappedByteBuffer header;
+        private final LongBuffer[] segments;
+
+        private Board(Path file) throws IOException{
+            this.file = file;
+            this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            int count = (rows+rowsPerSegment-1)/rowsPerSegment;
+            this.segments = new LongBuffer[count];
+            long rowBytes = 8L*words;
+            for(int s = 0; s<count; s++){
+                int segmentRows = Math.min(rowsPerSegment, rows-s*rowsPerSegment);
+                segments[s] = channel.map(FileChannel.MapMode.READ_WRITE,
+                                          HEADER+s*rowsPerSegment*rowBytes, segmentRows*rowBytes)
+                                     .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            }
+        }
+
+        private void writeHeader(long generation){
+            header.putInt(0, MAGIC);
+            header.putInt(4, rows);
+            header.putInt(8, columns);
+            header.putLong(16, generation);
+        }
+
+        /**
+         * Reads row i into words 1 to words of a padded row.
+         */
+        private void read(int i, long[] padded){
+            segments[i/rowsPerSegment].get((i%rowsPerSegment)*words, padded, 1, words);
+        }
+
+        private void write(int i, long[] row){
+            segments[i/rowsPerSegment].put((i%rowsPerSegment)*words, row, 0, words);
+        }
+
+        private long word(int i, int w){
+            return segments[i/rowsPerSegment].get((i%rowsPerSegment)*words+w);
+        }
+
+        private void setWord(int i, int w, long word){
+            segments[i/rowsPerSegment].put((i%rowsPerSegment)*words+w, word);
+        }
+    }
+}
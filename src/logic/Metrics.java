@@ -0,0 +1,108 @@
+package logic;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The registry of the times the phases of the game take, in nanoseconds:
+ * stepping a generation, drawing the board, expanding the world, and
+ * loading and saving a pattern or a session. Each phase keeps a
+ * LatencyHistogram, registered as an MXBean under
+ * logic:type=Metrics,name=phase so the percentiles can be watched in
+ * JConsole while the game runs, and read by the tests.
+ * <br>
+ * The times are only printed if printing is turned on, with
+ * setPrinting(boolean) or the system property gol.metrics.print=true.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public final class Metrics{
+
+    public static final LatencyHistogram STEP = new LatencyHistogram("step");
+    public static final LatencyHistogram DRAW = new LatencyHistogram("draw");
+    public static final LatencyHistogram EXPAND_WORLD = new LatencyHistogram("expandWorld");
+    public static final LatencyHistogram LOAD = new LatencyHistogram("load");
+    public static final LatencyHistogram SAVE = new LatencyHistogram("save");
+
+    private static final List<LatencyHistogram> HISTOGRAMS =
+            Collections.unmodifiableList(Arrays.asList(STEP, DRAW, EXPAND_WORLD, LOAD, SAVE));
+
+    private static volatile boolean printing = Boolean.getBoolean("gol.metrics.print");
+
+    static{
+        register();
+    }
+
+    private Metrics(){
+    }
+
+    /**
+     * Registers the histograms with the platform MBeanServer. Without JMX,
+     * i.e. when it is not allowed, the histograms are still recorded.
+     */
+    private static void register(){
+        try{
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            for(LatencyHistogram histogram : HISTOGRAMS){
+                ObjectName name = objectName(histogram);
+                if(!server.isRegistered(name))
+                    server.registerMBean(histogram, name);
+            }
+        }
+        catch(JMException | SecurityException e){
+            System.err.println("Metrics not registered with JMX: " + e);
+        }
+    }
+
+    /**
+     * @param histogram a histogram of the registry.
+     * @return the name it is registered under, i.e. logic:type=Metrics,name=step.
+     * @throws JMException if the name of the histogram is no valid name.
+     */
+    public static ObjectName objectName(LatencyHistogram histogram) throws JMException{
+        return new ObjectName("logic:type=Metrics,name=" + histogram.getName());
+    }
+
+    /**
+     * Records the time of a phase since a start read from System.nanoTime(),
+     * and prints it if printing is on.
+     * @param histogram the phase, i.e. Metrics.STEP.
+     * @param start the start of the phase.
+     */
+    public static void record(LatencyHistogram histogram, long start){
+        long nanos = histogram.recordSince(start);
+        if(printing)
+            System.out.println(histogram.getName() + " time (ns): " + nanos);
+    }
+
+    /**
+     * @return every histogram of the registry.
+     */
+    public static List<LatencyHistogram> getHistograms(){
+        return HISTOGRAMS;
+    }
+
+    /**
+     * Forgets the times of every phase.
+     */
+    public static void reset(){
+        for(LatencyHistogram histogram : HISTOGRAMS)
+            histogram.reset();
+    }
+
+    public static boolean isPrinting(){
+        return printing;
+    }
+
+    /**
+     * @param printing true to print the time of every phase as it is
+     *        recorded, false by default.
+     */
+    public static void setPrinting(boolean printing){
+        Metrics.printing = printing;
+    }
+}
@@ -1,14 +1,54 @@
 package logic;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * Next generation calculates the next-current generation.
  * This class takes care of neighbour counting and calculation of the next generation.
+ * The next state of every cell is looked up in the CompiledRule from its 3x3
+ * neighbourhood, so non-totalistic rules cost the same as B/S rules.
+ * <br>
+ * With a ForkJoinPool set, large boards are split into bands of rows that are
+ * calculated in parallel, see setPool(ForkJoinPool). Boards with fewer cells
+ * than the parallel threshold are always calculated on the calling thread.
+ * <br>
+ * Every engine counts the cells born and the cells that died as it writes
+ * the rows, and every band adds its counts once, see getBirths() and
+ * getDeaths().
  * @author Olav Sørlie
  */
 public class NextGeneration implements Ruleset{
     
     private boolean[] survives = new boolean[9];
     private boolean[] born = new boolean[9];
+    private CompiledRule rule = CompiledRule.CONWAY;
+    //The Larger than Life rule used instead of rule, or null.
+    private RangeRule rangeRule;
+    
+    /**
+     * Default number of cells a board needs before it is calculated in parallel.
+     */
+    public static final int PARALLEL_THRESHOLD = 256*256;
+    
+    /**
+     * Smallest band of rows given to one task.
+     */
+    private static final int MIN_BAND_ROWS = 8;
+    
+    private ForkJoinPool pool;
+    private int parallelThreshold = PARALLEL_THRESHOLD;
+    private Topology topology = Topology.PLANE;
+    //Steps the boards of a torus or a Klein bottle, and the boards of step, created when first needed.
+    private DenseGeneration wrapped;
+    //Steps the boards of a Larger than Life rule, created when first needed.
+    private RangeGeneration range;
+    //The two boards calcDense and calcRange return in turn, see nextBuffer.
+    private byte[][] front;
+    private byte[][] back;
+    //The cells born and the cells that died in the last generation calculated.
+    private final LongAdder births = new LongAdder();
+    private final LongAdder deaths = new LongAdder();
     
     LoadPattern lp = new LoadPattern();
     
@@ -21,6 +61,54 @@ public class NextGeneration implements Ruleset{
         this.survives[3] = true;
     }
     
+    /**
+     * Creates a NextGeneration implementation chosen at runtime.
+     * "packed" gives PackedNextGeneration, "vector" gives VectorNextGeneration
+     * when the jdk.incubator.vector module is present, and anything else the 
+     * byte[][] implementation in this class. A missing vector module falls 
+     * back to this class, as does a VectorNextGeneration that is not
+     * compiled, see the source root vector, or fails to load, which is
+     * printed.
+     * @param engine name of the implementation, for example the system 
+     * property gol.engine.
+     * @return the NextGeneration implementation.
+     */
+    public static NextGeneration create(String engine){
+        if("packed".equals(engine))
+            return new PackedNextGeneration();
+        if("vector".equals(engine) && isVectorAvailable()){
+            try{
+                return (NextGeneration) Class.forName("logic.VectorNextGeneration")
+                        .getDeclaredConstructor().newInstance();
+            }
+            catch(ReflectiveOperationException | LinkageError e){
+                System.err.println("VectorNextGeneration not loaded, using NextGeneration: " + e);
+            }
+        }
+        return new NextGeneration();
+    }
+    
+    /**
+     * @return true if the jdk.incubator.vector module is loaded, which 
+     * VectorNextGeneration needs.
+     */
+    public static boolean isVectorAvailable(){
+        return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    }
+    
+    /**
+     * Creates new boolean arrays with default conway rules.
+     */
+    public void setConwayRules(){
+        born        = new boolean[9];
+        survives    = new boolean[9];
+        born[3]     = true;
+        survives[2] = true;
+        survives[3] = true;
+        rule        = CompiledRule.CONWAY;
+        rangeRule   = null;
+    }
+    
     /**
      * Deepclone method for Next Generation object.
      * Deepclones the current instance of NextGeneration.
@@ -37,6 +125,10 @@ public class NextGeneration implements Ruleset{
             clone.born[i] = this.born[i];
             clone.survives[i] = this.survives[i];
         }
+        clone.rule = this.rule;
+        clone.rangeRule = this.rangeRule;
+        clone.copyParallelism(this);
+        clone.topology = this.topology;
         return clone;
     }
     
@@ -45,36 +137,292 @@ public class NextGeneration implements Ruleset{
      * Based on the number of neighbours all the cells on the board has,
      * and the ruleset that is currently being used. The default ruleset is 
      * Conway's.
+     * The cells outside the board are dead, unless the topology wraps the
+     * board, see calcDense(byte[][]). With a rule of more than two states
+     * every byte holds the state of its cell, see CompiledRule. A Larger
+     * than Life rule is calculated by calcRange(byte[][]).
      * @param currGen  is the current generation to be calculated.
      * @return the new current generation, in other words the next generation.
      */
     public byte[][] calcNextGen(byte[][] currGen){
+        if(rangeRule != null)
+            return calcRange(currGen);
+        if(topology.wraps())
+            return calcDense(currGen);
                
         byte[][] nextGen = new byte[currGen.length][currGen[0].length];
-       
-        for(int i = 0; i<currGen.length; i++){
+        setChanges(0, 0);
+        
+        if(isParallel(currGen.length, currGen[0].length))
+            calcBands((from, to) -> calcRows(currGen, nextGen, from, to), currGen.length);
+        else
+            calcRows(currGen, nextGen, 0, currGen.length);
+        
+        return nextGen;
+    }
+    
+    /**
+     * Calculates a number of generations of a board in place, i.e. for
+     * StaticBoard. This class steps the board with a DenseGeneration, which
+     * reuses its buffers, unless the board is calculated in parallel on the
+     * pool. Subclasses, which calculate the rows their own way, and the
+     * parallel bands, calculate every generation with calcNextGen, and the
+     * last one is copied into the board. A Larger than Life rule is stepped
+     * in place by a RangeGeneration.
+     * @param board the board, updated in place.
+     * @param generations number of generations to calculate.
+     */
+    public void step(byte[][] board, int generations){
+        if(board.length == 0 || board[0].length == 0 || generations <= 0)
+            return;
+        if(rangeRule != null){
+            if(range == null)
+                range = new RangeGeneration();
+            range.setTopology(topology);
+            range.step(board, rangeRule, generations);
+            setChanges(range.getBirths(), range.getDeaths());
+            return;
+        }
+        if(getClass() == NextGeneration.class && !isParallel(board.length, board[0].length)){
+            if(wrapped == null)
+                wrapped = new DenseGeneration();
+            wrapped.setTopology(topology);
+            wrapped.step(board, rule, generations);
+            setChanges(wrapped.getBirths(), wrapped.getDeaths());
+            return;
+        }
+        byte[][] gen = board;
+        for(int i = 0; i<generations; i++)
+            gen = calcNextGen(gen);
+        for(int i = 0; i<board.length; i++)
+            System.arraycopy(gen[i], 0, board[i], 0, board[i].length);
+    }
+    
+    /**
+     * Calculates the next generation with a DenseGeneration, used for a torus
+     * or a Klein bottle and by subclasses that cannot hold every rule. The
+     * halo of the board is filled once by the Topology, so the edges cost no
+     * more than the rest of the board.
+     * @param currGen is the current generation to be calculated.
+     * @return the next generation, one of the two buffers, see nextBuffer.
+     */
+    protected byte[][] calcDense(byte[][] currGen){
+        byte[][] nextGen = nextBuffer(currGen);
+        if(wrapped == null)
+            wrapped = new DenseGeneration();
+        wrapped.setTopology(topology);
+        wrapped.step(nextGen, getCompiledRule());
+        setChanges(wrapped.getBirths(), wrapped.getDeaths());
+        return nextGen;
+    }
+    
+    /**
+     * Calculates the next generation of a Larger than Life rule with a
+     * RangeGeneration, which counts the square of every cell in the same time
+     * for every range, see RangeRule.
+     * @param currGen is the current generation to be calculated.
+     * @return the next generation, one of the two buffers, see nextBuffer.
+     */
+    protected byte[][] calcRange(byte[][] currGen){
+        byte[][] nextGen = nextBuffer(currGen);
+        if(range == null)
+            range = new RangeGeneration();
+        range.setTopology(topology);
+        range.step(nextGen, rangeRule);
+        setChanges(range.getBirths(), range.getDeaths());
+        return nextGen;
+    }
+    
+    /**
+     * Copies a board into one of the two buffers of this NextGeneration, the
+     * one that is not the board, so the next generation can be calculated
+     * in place without a new board every step, as in DenseGeneration. The
+     * buffers are only created again when the size of the board changes.
+     * A board returned by calcDense or calcRange is therefore overwritten by
+     * the step after the next one.
+     * @param currGen is the current generation.
+     * @return a copy of currGen in a buffer.
+     */
+    private byte[][] nextBuffer(byte[][] currGen){
+        int rows = currGen.length, columns = currGen[0].length;
+        if(front == null || front.length != rows || front[0].length != columns){
+            front = new byte[rows][columns];
+            back = new byte[rows][columns];
+        }
+        byte[][] nextGen = currGen == front ? back : front;
+        for(int i = 0; i<rows; i++)
+            System.arraycopy(currGen[i], 0, nextGen[i], 0, columns);
+        return nextGen;
+    }
+    
+    /**
+     * Calculates the rows from (inclusive) to (exclusive) of the next generation.
+     * Only reads currGen and only writes the given rows of nextGen, so bands
+     * of rows can be calculated in parallel.
+     * @param currGen is the current generation to be calculated.
+     * @param nextGen is the next generation to be written.
+     * @param from first row to be calculated.
+     * @param to the row after the last row to be calculated.
+     */
+    protected void calcRows(byte[][] currGen, byte[][] nextGen, int from, int to){
+        CompiledRule compiled = rule;
+        long born = 0, died = 0;
+        
+        for(int i = from; i<to; i++){
             
             for(int j = 0; j<currGen[0].length; j++){
                 
-                int neighbours = countNeighbours(i, j, currGen);
-                
+                int neighbourhood = neighbourhood(i, j, currGen);
                 
-                if(born[neighbours] && currGen[i][j] == 0){
-                
-                    nextGen[i][j] = 1;
-                
-                }else if(survives[neighbours] && currGen[i][j] == 1){
-                    
-                    nextGen[i][j] = currGen[i][j];
-                    
-                }else{      
-                    
-                    nextGen[i][j] = 0;
-                
-                }
+                int state = currGen[i][j] & 0xFF;
+                int next = compiled.nextState(state, neighbourhood);
+                born += DenseGeneration.born(state, next);
+                died += DenseGeneration.died(state, next);
+                nextGen[i][j] = (byte) next;
             }
         }
-        return nextGen;
+        addChanges(born, died);
+    }
+    
+    /**
+     * Starts the counts of a new generation, see getBirths().
+     * @param born number of cells born, i.e. counted by a DenseGeneration.
+     * @param died number of cells that died.
+     */
+    protected void setChanges(long born, long died){
+        births.reset();
+        deaths.reset();
+        addChanges(born, died);
+    }
+    
+    /**
+     * Adds the counts of a band of rows, called once by every band.
+     * @param born number of cells born in the band.
+     * @param died number of cells that died in the band.
+     */
+    protected void addChanges(long born, long died){
+        births.add(born);
+        deaths.add(died);
+    }
+    
+    /**
+     * Gives the cells born in the last generation calculated by calcNextGen
+     * or step. A decaying cell counts as living, as in GenerationStats.
+     * @return number of cells born.
+     */
+    public long getBirths(){
+        return births.sum();
+    }
+    
+    /**
+     * @return number of cells that died in the last generation calculated.
+     * @see logic.NextGeneration#getBirths() 
+     */
+    public long getDeaths(){
+        return deaths.sum();
+    }
+    
+    /**
+     * Finds the 3x3 neighbourhood of a cell, including the cell itself.
+     * Cells outside the board are dead.
+     * @param i is the x-position in the generation.
+     * @param j is the y-position in the generation.
+     * @param currentGen is the generation.
+     * @return the neighbourhood as a bitmask, see CompiledRule.
+     */
+    protected static int neighbourhood(int i, int j, byte[][] currentGen){
+        int mask = 0;
+        int bit = 1;
+        for(int x = i-1; x<i+2; x++){
+            for(int y = j-1; y<j+2; y++){
+                if(x >= 0 && x < currentGen.length && y >= 0 && y < currentGen[0].length
+                        && currentGen[x][y] == 1)
+                    mask |= bit;
+                bit <<= 1;
+            }
+        }
+        return mask;
+    }
+    
+    /**
+     * Sets the pool calculating large boards in parallel.
+     * @param pool the ForkJoinPool to use, or null to always calculate on the 
+     * calling thread.
+     */
+    public void setPool(ForkJoinPool pool){
+        this.pool = pool;
+    }
+    
+    /**
+     * @return the pool calculating large boards, null if parallel mode is off.
+     * @see logic.NextGeneration#setPool(ForkJoinPool) 
+     */
+    public ForkJoinPool getPool(){
+        return pool;
+    }
+    
+    /**
+     * Sets the number of cells a board needs before it is calculated in 
+     * parallel. Smaller boards are faster on one thread.
+     * @param cells number of cells, default PARALLEL_THRESHOLD.
+     */
+    public void setParallelThreshold(int cells){
+        this.parallelThreshold = cells;
+    }
+    
+    /**
+     * @return number of cells a board needs before it is calculated in parallel.
+     */
+    public int getParallelThreshold(){
+        return parallelThreshold;
+    }
+    
+    /**
+     * Sets what lies beyond the edges of the board. A torus and a Klein bottle
+     * wrap the board, the planes have dead cells outside it.
+     * @param topology the topology, see Topology.
+     */
+    public void setTopology(Topology topology){
+        this.topology = topology;
+    }
+    
+    /**
+     * @return the topology of the boards.
+     * @see logic.NextGeneration#setTopology(Topology) 
+     */
+    public Topology getTopology(){
+        return topology;
+    }
+    
+    /**
+     * Copies the pool and threshold of another NextGeneration, used by clones.
+     * @param other the NextGeneration to copy from.
+     */
+    protected void copyParallelism(NextGeneration other){
+        this.pool = other.pool;
+        this.parallelThreshold = other.parallelThreshold;
+    }
+    
+    /**
+     * @param rows number of rows of the board.
+     * @param columns number of columns of the board.
+     * @return true if the board should be calculated in parallel.
+     */
+    protected boolean isParallel(int rows, int columns){
+        return pool != null && pool.getParallelism() > 1 
+                && (long) rows*columns >= parallelThreshold 
+                && rows >= 2*MIN_BAND_ROWS;
+    }
+    
+    /**
+     * Calculates all rows in bands on the pool, and waits for them to finish.
+     * Every worker gets about four bands, so faster workers can steal the rest.
+     * @param rows the engine calculating a band.
+     * @param count number of rows of the board.
+     */
+    protected void calcBands(RowBandTask.Rows rows, int count){
+        int grain = Math.max(MIN_BAND_ROWS, count/(pool.getParallelism()*4));
+        pool.invoke(new RowBandTask(rows, 0, count, grain));
     }
     
     
@@ -100,8 +448,7 @@ public class NextGeneration implements Ruleset{
     
     /**
      * Is a support method for countNeighbours.
-     * It tries to check the current cell, and throws a ArrayIndexOutOfBounds 
-     * if it is outside the borders.
+     * It checks the current cell, cells outside the borders are dead.
      * @param i x-position of the cell being checked.
      * @param j y-position of the cell being checked.
      * @param currentGen is the current generation to be checked.
@@ -109,14 +456,9 @@ public class NextGeneration implements Ruleset{
      * generation being checked.
      */
     protected static int checkBorders(int i, int j, byte[][] currentGen){
-        
-        try{
-            return currentGen[i][j];
-        }
-        catch(ArrayIndexOutOfBoundsException e){
-
-        }
-        return 0;
+        if(i < 0 || i >= currentGen.length || j < 0 || j >= currentGen[i].length)
+            return 0;
+        return currentGen[i][j];
     }
     
     /**
@@ -132,32 +474,33 @@ public class NextGeneration implements Ruleset{
      */
     @Override
     public void decodeRuleset(String ruleB, String ruleS){
-        String[] b;
-        String[] s;
         try{
-        if(ruleB.matches("([0-8]{1,9})") && ruleS.matches("([0-8]{1,9})")){
-            b = ruleB.trim().split("");
-            s = ruleS.trim().split("");
-        
-            boolean[] birth = new boolean[9];
-            boolean[] surviving = new boolean[9];
-        
-            for(int i = 0; i<b.length; i++)
-                birth[Integer.parseInt(b[i])] = true;
-                        
-            for(int i = 0; i<s.length; i++)
-                surviving[Integer.parseInt(s[i])] = true;
-   
-            setBorn(birth);
-            setSurvives(surviving);
-        
-        }else{
+            
+            setCompiledRule(CompiledRule.parse(ruleB, ruleS));
         
-            throw new PatternFormatException(); 
+        }catch(PatternFormatException e){
+            
+            new PatternFormatExceptionDialog(e.getMessage());
         }
+    }
+    
+    /**
+     * Decodes a whole ruleset, i.e. B3/S23, the Generations rule B2/S/C3 or
+     * the Larger than Life rule R5,C0,M1,S34..58,B34..45,NM.
+     * @param rule String in B/S, B/S/C or Larger than Life notation.
+     */
+    @Override
+    public void decodeRuleset(String rule){
+        try{
+            
+            if(RangeRule.isRangeRule(rule))
+                setRangeRule(RangeRule.parse(rule));
+            else
+                setCompiledRule(CompiledRule.parse(rule));
+        
         }catch(PatternFormatException e){
             
-            new PatternFormatExceptionDialog("Ruleset contains non-digit values");
+            new PatternFormatExceptionDialog(e.getMessage());
         }
     }
     
@@ -169,6 +512,8 @@ public class NextGeneration implements Ruleset{
     @Override
     public void setBorn(boolean[] birth){
         this.born = birth;
+        this.rule = CompiledRule.fromCounts(born, survives, rule.getStates());
+        this.rangeRule = null;
     }
     
     /**
@@ -179,6 +524,8 @@ public class NextGeneration implements Ruleset{
     @Override
     public void setSurvives(boolean[] surviving){
         this.survives = surviving;
+        this.rule = CompiledRule.fromCounts(born, survives, rule.getStates());
+        this.rangeRule = null;
     }
     
     /**
@@ -198,4 +545,41 @@ public class NextGeneration implements Ruleset{
     public boolean[] getBorn(){
         return born;
     }
+    
+    /**
+     * @return the compiled rule used by calcNextGen.
+     */
+    @Override
+    public CompiledRule getCompiledRule(){
+        return rule;
+    }
+    
+    /**
+     * Sets the rule, which may be non-totalistic.
+     * @param rule the compiled rule.
+     */
+    @Override
+    public void setCompiledRule(CompiledRule rule){
+        this.born = rule.getBorn();
+        this.survives = rule.getSurvives();
+        this.rule = rule;
+        this.rangeRule = null;
+    }
+    
+    /**
+     * @return the Larger than Life rule used by calcNextGen, or null.
+     */
+    @Override
+    public RangeRule getRangeRule(){
+        return rangeRule;
+    }
+    
+    /**
+     * Sets a Larger than Life rule, used until a compiled rule is set.
+     * @param rule the range rule.
+     */
+    @Override
+    public void setRangeRule(RangeRule rule){
+        this.rangeRule = rule;
+    }
 }
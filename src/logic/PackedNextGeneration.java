@@ -0,0 +1,319 @@
+package logic;
+
+/**
+ * Bit-packed implementation of NextGeneration.
+ * Every row of the board is packed into longs, 64 cells in each long, where bit b
+ * of word w represents column w*64+b. The eight neighbours of all 64 cells in a
+ * word are summed at once with a bitwise adder (SWAR), giving the neighbour count
+ * as four bit-planes. The born/survives arrays of the ruleset are then applied
+ * to the bit-planes, so no cell is ever visited on its own.
+ * <br>
+ * The byte[][] calcNextGen packs the board, steps it and unpacks it again, so
+ * it can be used anywhere a NextGeneration is used (StaticBoard, PatternEditor).
+ * Callers stepping many generations in a row should use the packed methods
+ * directly and only unpack when they need to draw. The packed methods run in
+ * parallel bands of rows when a pool is set, like NextGeneration.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class PackedNextGeneration extends NextGeneration{
+
+    /**
+     * Constructor containing the default ruleset Conway's Game of Life.
+     */
+    public PackedNextGeneration(){
+        super();
+    }
+
+    /**
+     * Deepclone method for PackedNextGeneration object.
+     * @return a deepclone of the current PackedNextGeneration object.
+     */
+    @Override
+    public NextGeneration getNextGenerationClone(){
+        PackedNextGeneration clone = new PackedNextGeneration();
+        clone.setCompiledRule(getCompiledRule());
+        clone.setRangeRule(getRangeRule());
+        clone.copyParallelism(this);
+        clone.setTopology(getTopology());
+        return clone;
+    }
+
+    /**
+     * Calculating next generation.
+     * Packs the generation, calculates the next generation 64 cells at a time
+     * and unpacks the result. A bit holds no more than two states, so a
+     * wrapped board and a rule with more states are calculated by calcDense,
+     * and a Larger than Life rule by calcRange.
+     * @param currGen is the current generation to be calculated.
+     * @return the new current generation, in other words the next generation.
+     */
+    @Override
+    public byte[][] calcNextGen(byte[][] currGen){
+        if(getRangeRule() != null)
+            return calcRange(currGen);
+        if(getTopology().wraps() || getCompiledRule().getStates() > 2)
+            return calcDense(currGen);
+        int columns = currGen[0].length;
+        long[][] next = calcNextGen(pack(currGen), columns);
+        return unpack(next, columns);
+    }
+
+    /**
+     * Calculating next generation of a packed generation.
+     * @param currGen the packed current generation, see pack(byte[][]).
+     * @param columns number of columns (cells) in every row.
+     * @return the packed next generation.
+     */
+    public long[][] calcNextGen(long[][] currGen, int columns){
+        long[][] nextGen = new long[currGen.length][words(columns)];
+        setChanges(0, 0);
+        if(isParallel(currGen.length, columns))
+            calcBands((from, to) -> calcRows(currGen, nextGen, columns, from, to), currGen.length);
+        else
+            calcRows(currGen, nextGen, columns, 0, currGen.length);
+        return nextGen;
+    }
+
+    /**
+     * Calculates the rows from (inclusive) to (exclusive) of the next generation.
+     * Cells outside the board are dead. Every word is computed by summing the
+     * three words above, the two neighbours at the sides and the three words
+     * below, with the carry bits from the neighbouring words shifted in. The
+     * cells born and the cells that died are counted a word at a time.
+     * @param currGen the packed current generation.
+     * @param nextGen the packed next generation to be written.
+     * @param columns number of columns in every row.
+     * @param from first row to be calculated.
+     * @param to the row after the last row to be calculated.
+     */
+    protected void calcRows(long[][] currGen, long[][] nextGen, int columns, int from, int to){
+        int words = words(columns);
+        long lastMask = lastWordMask(columns);
+        long[] empty = new long[words];
+        CompiledRule compiled = getCompiledRule();
+        //Non-totalistic rules need the neighbourhood of every cell, not only the count.
+        long[] rule = compiled.isTotalistic() 
+                ? compileRule(compiled.getBorn(), compiled.getSurvives()) : null;
+        long born = 0, died = 0;
+
+        for(int i = from; i<to; i++){
+            long[] above = i > 0 ? currGen[i-1] : empty;
+            long[] row   = currGen[i];
+            long[] below = i < currGen.length-1 ? currGen[i+1] : empty;
+            long[] next  = nextGen[i];
+
+            for(int w = 0; w<words; w++){
+                long result = rule != null ? stepWord(above, row, below, w, words, rule)
+                                           : stepWord(above, row, below, w, words, compiled);
+                if(w == words-1)
+                    result &= lastMask;
+                born += Long.bitCount(result & ~row[w]);
+                died += Long.bitCount(row[w] & ~result);
+                next[w] = result;
+            }
+        }
+        addChanges(born, died);
+    }
+
+    /**
+     * Calculates the next state of the 64 cells in word w of row.
+     * This is where the SWAR adder lives; it is shared with the other packed
+     * engines.
+     * @param above the row above.
+     * @param row the row containing the cells.
+     * @param below the row below.
+     * @param w the word index in the rows.
+     * @param words number of words in every row.
+     * @param rule the compiled rule, see compileRule(boolean[], boolean[]).
+     * @return the next state of the 64 cells.
+     */
+    static long stepWord(long[] above, long[] row, long[] below, int w, int words, long[] rule){
+        long a = above[w], c = row[w], b = below[w];
+        long aW = 0, cW = 0, bW = 0, aE = 0, cE = 0, bE = 0;
+        if(w > 0){
+            aW = above[w-1] >>> 63;
+            cW = row[w-1]   >>> 63;
+            bW = below[w-1] >>> 63;
+        }
+        if(w < words-1){
+            aE = above[w+1] << 63;
+            cE = row[w+1]   << 63;
+            bE = below[w+1] << 63;
+        }
+        return stepWord(a, (a << 1) | aW, (a >>> 1) | aE,
+                        c, (c << 1) | cW, (c >>> 1) | cE,
+                        b, (b << 1) | bW, (b >>> 1) | bE, rule);
+    }
+
+    /**
+     * Calculates the next state of the 64 cells in word w of row with a
+     * non-totalistic rule, looking up the neighbourhood of every cell.
+     * @param compiled the compiled rule.
+     * @return the next state of the 64 cells.
+     */
+    static long stepWord(long[] above, long[] row, long[] below, int w, int words, CompiledRule compiled){
+        long a = above[w], c = row[w], b = below[w];
+        long aW = 0, cW = 0, bW = 0, aE = 0, cE = 0, bE = 0;
+        if(w > 0){
+            aW = above[w-1] >>> 63;
+            cW = row[w-1]   >>> 63;
+            bW = below[w-1] >>> 63;
+        }
+        if(w < words-1){
+            aE = above[w+1] << 63;
+            cE = row[w+1]   << 63;
+            bE = below[w+1] << 63;
+        }
+        return stepWord(a, (a << 1) | aW, (a >>> 1) | aE,
+                        c, (c << 1) | cW, (c >>> 1) | cE,
+                        b, (b << 1) | bW, (b >>> 1) | bE, compiled);
+    }
+
+    /**
+     * Looks up the next state of 64 cells one by one in a compiled rule.
+     * The parameters are aligned as in the bitwise adder, so bit b of aW is the
+     * north west neighbour of bit b of c.
+     * @return the next state of the 64 cells in c.
+     */
+    static long stepWord(long a, long aW, long aE, long c, long cW, long cE,
+                         long b, long bW, long bE, CompiledRule compiled){
+        long result = 0;
+        for(int bit = 0; bit<64; bit++){
+            int neighbourhood = (int) (  (aW >>> bit & 1)      | (a >>> bit & 1) << 1 | (aE >>> bit & 1) << 2
+                                       | (cW >>> bit & 1) << 3 | (c >>> bit & 1) << 4 | (cE >>> bit & 1) << 5
+                                       | (bW >>> bit & 1) << 6 | (b >>> bit & 1) << 7 | (bE >>> bit & 1) << 8);
+            result |= (long) compiled.nextState(neighbourhood) << bit;
+        }
+        return result;
+    }
+
+    /**
+     * Bitwise adder for the neighbours of 64 cells.
+     * The parameters are the three words above, the cell word with its two
+     * shifted neighbour words and the three words below, already aligned so bit b
+     * of every word is a neighbour of bit b of c.
+     * @return the next state of the 64 cells in c.
+     */
+    static long stepWord(long a, long aW, long aE, long c, long cW, long cE,
+                         long b, long bW, long bE, long[] rule){
+        //Above: full adder
+        long a0 = a ^ aW ^ aE;
+        long a1 = (a & aW) | (a & aE) | (aW & aE);
+        //Below: full adder
+        long b0 = b ^ bW ^ bE;
+        long b1 = (b & bW) | (b & bE) | (bW & bE);
+        //Middle row: half adder
+        long m0 = cW ^ cE;
+        long m1 = cW & cE;
+        //Adding the three two bit numbers
+        long s0 = a0 ^ b0 ^ m0;
+        long c0 = (a0 & b0) | (a0 & m0) | (b0 & m0);
+        long t  = a1 ^ b1 ^ m1;
+        long u  = (a1 & b1) | (a1 & m1) | (b1 & m1);
+        long s1 = t ^ c0;
+        long v  = t & c0;
+        long s2 = u ^ v;
+        long s3 = u & v;
+        return applyRule(s0, s1, s2, s3, c, rule);
+    }
+
+    /**
+     * Applies the compiled rule to the four bit-planes of the neighbour count.
+     * @param alive the current state of the cells.
+     * @return the next state of the cells.
+     */
+    static long applyRule(long s0, long s1, long s2, long s3, long alive, long[] rule){
+        long result = 0;
+        for(int k = 0; k<rule.length; k+=2){
+            int n = (int) rule[k];
+            long eq = ((n & 1) != 0 ? s0 : ~s0)
+                    & ((n & 2) != 0 ? s1 : ~s1)
+                    & ((n & 4) != 0 ? s2 : ~s2)
+                    & ((n & 8) != 0 ? s3 : ~s3);
+            long state = rule[k+1];
+            result |= eq & ((alive & (state >> 1)) | (~alive & -(state & 1)));
+        }
+        return result;
+    }
+
+    /**
+     * Compiles the born and survives arrays to pairs of (count, state) for the
+     * counts that lead to a living cell. The state has bit 0 set if a dead cell
+     * is born and bit 1 set (as -1 in the upper bits) if a living cell survives.
+     * Counts no rule mentions are left out, so Conway's rules only test two counts.
+     * @param born is a boolean[9].
+     * @param survives is a boolean[9].
+     * @return the compiled rule.
+     */
+    static long[] compileRule(boolean[] born, boolean[] survives){
+        int used = 0;
+        for(int n = 0; n<9; n++)
+            if(born[n] || survives[n])
+                used++;
+
+        long[] rule = new long[used*2];
+        int k = 0;
+        for(int n = 0; n<9; n++){
+            if(born[n] || survives[n]){
+                rule[k++] = n;
+                rule[k++] = (survives[n] ? -2L : 0L) | (born[n] ? 1L : 0L);
+            }
+        }
+        return rule;
+    }
+
+    /**
+     * Packs a generation into longs, 64 cells in every long.
+     * @param gen the generation to be packed.
+     * @return the packed generation.
+     */
+    public static long[][] pack(byte[][] gen){
+        int columns = gen[0].length;
+        long[][] packed = new long[gen.length][words(columns)];
+
+        for(int i = 0; i<gen.length; i++){
+            byte[] row = gen[i];
+            long[] target = packed[i];
+            for(int j = 0; j<columns; j++){
+                target[j >>> 6] |= (long)(row[j] & 1) << j;
+            }
+        }
+        return packed;
+    }
+
+    /**
+     * Unpacks a packed generation to a byte[][].
+     * @param packed the packed generation.
+     * @param columns the number of columns in every row.
+     * @return the unpacked generation.
+     */
+    public static byte[][] unpack(long[][] packed, int columns){
+        byte[][] gen = new byte[packed.length][columns];
+
+        for(int i = 0; i<packed.length; i++){
+            long[] row = packed[i];
+            byte[] target = gen[i];
+            for(int j = 0; j<columns; j++){
+                target[j] = (byte)((row[j >>> 6] >>> j) & 1);
+            }
+        }
+        return gen;
+    }
+
+    /**
+     * @param columns number of cells.
+     * @return number of longs needed to hold the cells.
+     */
+    static int words(int columns){
+        return (columns+63) >>> 6;
+    }
+
+    /**
+     * @param columns number of cells in the row.
+     * @return mask for the used bits of the last word in a row.
+     */
+    static long lastWordMask(int columns){
+        int used = columns & 63;
+        return used == 0 ? -1L : (1L << used)-1;
+    }
+}
@@ -0,0 +1,158 @@
+package logic;
+
+/**
+ * Dense implementation of the Larger than Life rules (see RangeRule), where
+ * a cell counts the living cells in the square of (2R+1) x (2R+1) cells
+ * around it. Counting the square of every cell costs R² reads, so instead
+ * every step builds a summed-area table of the board: entry (p,q) holds the
+ * number of living cells above and to the left of it. The count of any
+ * square is then four reads of the table,
+ * <pre>
+ *      count = S[bottom][right] - S[top][right] - S[bottom][left] + S[top][left]
+ * </pre>
+ * so a step costs the same for every range, one pass to fill the table and
+ * one pass to calculate the cells.
+ * <br>
+ * The table covers the board with a halo of R cells on every side, filled by
+ * the Topology: dead cells, or the cells of the opposite edges of a torus or
+ * a Klein bottle, so the cells at the edges need no checks when they are
+ * calculated. The table is reused, and only created again when a larger board
+ * or range is given. The table has already read every cell, so the next
+ * generation is written straight into the board.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class RangeGeneration{
+
+    //The summed-area table of the board and its halo, with a row and a column of zeroes first.
+    private int[][] sums = new int[1][1];
+    private int rows;
+    private int columns;
+    private Topology topology = Topology.PLANE;
+    //The cells born and the cells that died in the last generation calculated.
+    private long births;
+    private long deaths;
+
+    /**
+     * Calculates the next generation of the board, and writes it into the board.
+     * @param board the board, updated in place.
+     * @param rule the Larger than Life rule.
+     * @return the board.
+     */
+    public byte[][] step(byte[][] board, RangeRule rule){
+        return step(board, rule, 1);
+    }
+
+    /**
+     * Calculates a number of generations of the board, and writes every
+     * generation into the board.
+     * @param board the board, updated in place.
+     * @param rule the Larger than Life rule.
+     * @param generations number of generations to calculate.
+     * @return the board.
+     */
+    public byte[][] step(byte[][] board, RangeRule rule, int generations){
+        if(board.length == 0 || board[0].length == 0)
+            return board;
+        rows = board.length;
+        columns = board[0].length;
+        int range = rule.getRange();
+        int height = rows+2*range+1, width = columns+2*range+1;
+        if(height > sums.length || width > sums[0].length)
+            sums = new int[Math.max(height, sums.length)][Math.max(width, sums[0].length)];
+        for(int gen = 0; gen<generations; gen++){
+            fillSums(board, range);
+            calcRows(board, rule, range);
+        }
+        return board;
+    }
+
+    /**
+     * Fills the summed-area table of the board and the halo of the range
+     * around it, one row at a time: the running sum of the row is added to
+     * the row of the table above.
+     */
+    private void fillSums(byte[][] board, int range){
+        int width = columns+2*range;
+        for(int p = 0; p<rows+2*range; p++){
+            int i = p-range;
+            int[] above = sums[p], out = sums[p+1];
+            int rowSum = 0;
+            if(i >= 0 && i < rows){
+                byte[] row = board[i];
+                for(int q = 0; q<range; q++){
+                    rowSum += alive(board, i, q-range);
+                    out[q+1] = above[q+1]+rowSum;
+                }
+                for(int j = 0; j<columns; j++){
+                    rowSum += DenseGeneration.ALIVE[row[j] & 0xFF];
+                    out[j+range+1] = above[j+range+1]+rowSum;
+                }
+                for(int q = columns+range; q<width; q++){
+                    rowSum += alive(board, i, q-range);
+                    out[q+1] = above[q+1]+rowSum;
+                }
+            }else{
+                for(int q = 0; q<width; q++){
+                    rowSum += alive(board, i, q-range);
+                    out[q+1] = above[q+1]+rowSum;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 1 if the cell in the halo is glued to a living cell of the
+     *         board by the topology, else 0.
+     */
+    private int alive(byte[][] board, int i, int j){
+        if(!topology.wraps())
+            return 0;
+        long cell = topology.wrap(i, j, rows, columns);
+        return DenseGeneration.ALIVE[board[Generation.row(cell)][Generation.column(cell)] & 0xFF];
+    }
+
+    /**
+     * Calculates every cell from the count of its square in the table.
+     */
+    private void calcRows(byte[][] board, RangeRule rule, int range){
+        int side = 2*range+1;
+        births = 0;
+        deaths = 0;
+        for(int i = 0; i<rows; i++){
+            int[] top = sums[i], bottom = sums[i+side];
+            byte[] row = board[i];
+            for(int j = 0; j<columns; j++){
+                int count = bottom[j+side]-top[j+side]-bottom[j]+top[j];
+                int state = row[j] & 0xFF, next = rule.nextState(state, count);
+                births += DenseGeneration.born(state, next);
+                deaths += DenseGeneration.died(state, next);
+                row[j] = (byte) next;
+            }
+        }
+    }
+
+    /**
+     * @return number of cells born in the last generation calculated.
+     */
+    public long getBirths(){
+        return births;
+    }
+
+    /**
+     * @return number of cells that died in the last generation calculated.
+     */
+    public long getDeaths(){
+        return deaths;
+    }
+
+    /**
+     * @param topology what lies beyond the edges of the board, see Topology.
+     */
+    public void setTopology(Topology topology){
+        this.topology = topology;
+    }
+
+    public Topology getTopology(){
+        return topology;
+    }
+}
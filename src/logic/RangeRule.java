@@ -0,0 +1,164 @@
+package logic;
+
+/**
+ * An immutable Larger than Life rule, where the neighbourhood of a cell is
+ * the square of (2R+1) x (2R+1) cells around it instead of the 3x3 square of
+ * CompiledRule. A cell is born or survives when the number of living cells
+ * in its neighbourhood is within a range, so a rule is written as
+ * <pre>
+ *      R5,C0,M1,S34..58,B34..45,NM
+ * </pre>
+ * R is the range, C the number of states (0 or 2 for a rule without decay),
+ * M is 1 if the cell counts itself, S and B are the ranges of counts a cell
+ * survives and is born with, and NM is the Moore neighbourhood, the square.
+ * The example is Bosco's Rule. As with CompiledRule, a rule of more than two
+ * states lets the living cells that do not survive decay one state every
+ * generation, and only the living cells are counted.
+ * <br>
+ * The engines give nextState the number of living cells in the square,
+ * the cell itself included, which a summed-area table gives in the same time
+ * for every range, see RangeGeneration.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public final class RangeRule{
+
+    /**
+     * The largest range of a rule.
+     */
+    public static final int MAX_RANGE = 500;
+
+    /**
+     * Bosco's Rule, R5,C0,M1,S34..58,B34..45,NM.
+     */
+    public static final RangeRule BOSCO = new RangeRule(5, 2, true, 34, 45, 34, 58);
+
+    private final int range;
+    private final int states;
+    private final boolean middle;
+    private final int bornMin;
+    private final int bornMax;
+    private final int survivesMin;
+    private final int survivesMax;
+    //The state after every state, for a cell that is not alive in the next generation.
+    private final byte[] decay = new byte[CompiledRule.MAX_STATES];
+
+    private RangeRule(int range, int states, boolean middle, int bornMin, int bornMax,
+                      int survivesMin, int survivesMax){
+        this.range = range;
+        this.states = states;
+        this.middle = middle;
+        this.bornMin = bornMin;
+        this.bornMax = bornMax;
+        this.survivesMin = survivesMin;
+        this.survivesMax = survivesMax;
+        for(int state = 1; state<states; state++)
+            decay[state] = (byte) (state+1 < states ? state+1 : 0);
+    }
+
+    /**
+     * @param rule a rule in any notation.
+     * @return true if the rule is written as a Larger than Life rule, from R.
+     */
+    public static boolean isRangeRule(String rule){
+        return rule.trim().matches("(?i)R\\s*\\d+\\s*,.*");
+    }
+
+    /**
+     * Parses a Larger than Life rule, i.e. "R5,C0,M1,S34..58,B34..45,NM".
+     * The parts may come in any order, and C, M and N may be left out, for
+     * two states, a cell not counting itself and the Moore neighbourhood.
+     * @param rule the rule.
+     * @return the rule.
+     * @throws PatternFormatException if the rule is not valid, or has
+     *         another neighbourhood than the square.
+     */
+    public static RangeRule parse(String rule) throws PatternFormatException{
+        int range = -1, states = 2;
+        boolean middle = false;
+        int[] born = null, survives = null;
+        for(String part : rule.replaceAll("\\s", "").toUpperCase().split(",")){
+            if(part.matches("R\\d{1,3}"))
+                range = Integer.parseInt(part.substring(1));
+            else if(part.matches("C\\d{1,3}"))
+                states = Math.max(2, Integer.parseInt(part.substring(1)));
+            else if(part.matches("M[01]"))
+                middle = part.equals("M1");
+            else if(part.matches("S\\d+\\.\\.\\d+"))
+                survives = bounds(part);
+            else if(part.matches("B\\d+\\.\\.\\d+"))
+                born = bounds(part);
+            else if(!part.equals("NM"))
+                throw new PatternFormatException("Larger than Life rule contains invalid values: " + part);
+        }
+        if(range < 1 || range > MAX_RANGE)
+            throw new PatternFormatException("The range has to be 1 to " + MAX_RANGE + ": " + rule);
+        if(states > CompiledRule.MAX_STATES)
+            throw new PatternFormatException("Number of states has to be 2 to " + CompiledRule.MAX_STATES + ": " + rule);
+        if(born == null || survives == null)
+            throw new PatternFormatException("Larger than Life rule needs both S and B: " + rule);
+        return new RangeRule(range, states, middle, born[0], born[1], survives[0], survives[1]);
+    }
+
+    /**
+     * @return the minimum and maximum of a part like S34..58.
+     */
+    private static int[] bounds(String part) throws PatternFormatException{
+        String[] bounds = part.substring(1).split("\\.\\.");
+        int min = Integer.parseInt(bounds[0]), max = Integer.parseInt(bounds[1]);
+        if(min > max)
+            throw new PatternFormatException("Larger than Life rule contains an empty range: " + part);
+        return new int[]{min, max};
+    }
+
+    /**
+     * The next state of a cell of any state.
+     * @param state the state of the cell, 0 to CompiledRule.MAX_STATES-1.
+     * @param count number of living cells in the square around the cell,
+     *        the cell itself included.
+     * @return the state of the cell in the next generation.
+     */
+    public int nextState(int state, int count){
+        if(state == 0)
+            return count >= bornMin && count <= bornMax ? 1 : 0;
+        if(state == 1){
+            if(!middle)
+                count--;
+            if(count >= survivesMin && count <= survivesMax)
+                return 1;
+        }
+        return decay[state];
+    }
+
+    /**
+     * @return the range R, the square is 2R+1 cells wide.
+     */
+    public int getRange(){
+        return range;
+    }
+
+    /**
+     * @return number of states, 2 for a rule where every cell is dead or alive.
+     */
+    public int getStates(){
+        return states;
+    }
+
+    @Override
+    public boolean equals(Object other){
+        return other instanceof RangeRule && toString().equals(other.toString());
+    }
+
+    @Override
+    public int hashCode(){
+        return toString().hashCode();
+    }
+
+    /**
+     * @return the rule in Larger than Life notation, i.e. R5,C0,M1,S34..58,B34..45,NM.
+     */
+    @Override
+    public String toString(){
+        return "R" + range + ",C" + (states > 2 ? states : 0) + ",M" + (middle ? 1 : 0)
+                + ",S" + survivesMin + ".." + survivesMax + ",B" + bornMin + ".." + bornMax + ",NM";
+    }
+}
@@ -0,0 +1,53 @@
+package logic;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork/join task calculating a band of rows of the next generation.
+ * The band is split in two until it is no larger than the grain, and the
+ * halves are run in parallel. Every band reads the shared current generation
+ * and writes only its own rows of the next generation, so no locking is needed.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+class RowBandTask extends RecursiveAction{
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Calculates the rows from (inclusive) to (exclusive) of a generation.
+     */
+    interface Rows{
+        void calcRows(int from, int to);
+    }
+
+    private final Rows rows;
+    private final int from;
+    private final int to;
+    private final int grain;
+
+    /**
+     * @param rows the engine calculating a band.
+     * @param from first row of the band.
+     * @param to the row after the last row of the band.
+     * @param grain largest band calculated without splitting.
+     */
+    RowBandTask(Rows rows, int from, int to, int grain){
+        this.rows = rows;
+        this.from = from;
+        this.to = to;
+        this.grain = Math.max(1, grain);
+    }
+
+    /**
+     * Calculates the band, or splits it and waits for both halves.
+     */
+    @Override
+    protected void compute(){
+        if(to-from <= grain){
+            rows.calcRows(from, to);
+            return;
+        }
+        int middle = (from+to) >>> 1;
+        invokeAll(new RowBandTask(rows, from, middle, grain), new RowBandTask(rows, middle, to, grain));
+    }
+}
@@ -4,7 +4,7 @@ package logic;
  * Contains every method that is nessesary to implement a changeable ruleset.
  * @author Olav Sørlie and Øyvind Mjelstad
  */
-interface Ruleset{
+public interface Ruleset{
     
     /**
      * Decodes rulesets from userinput and RLE file/url.
@@ -12,6 +12,7 @@ interface Ruleset{
      * It allows a diffrent variation of the game.
      * The input is checked with a matcher, and throws PatternFormatException 
      * if the ruleset was invalid.
+     * Isotropic non-totalistic rules in Hensel notation are accepted as well.
      * @param ruleB String that contains number chars. 
      * Representing when a cell should be born.
      * @param ruleS String that contains number chars. 
@@ -19,6 +20,17 @@ interface Ruleset{
      */
     void decodeRuleset(String ruleB, String ruleS);
     
+    /**
+     * Decodes a whole ruleset, from userinput and RLE file/url, where the 
+     * number of states may follow the born and survives parts, 
+     * i.e. B3/S23 or B2/S/C3. A Larger than Life rule, 
+     * i.e. R5,C0,M1,S34..58,B34..45,NM, sets the range rule instead.
+     * @param rule String in B/S, B/S/C or Larger than Life notation.
+     * @see logic.CompiledRule#parse(String) 
+     * @see logic.RangeRule#parse(String) 
+     */
+    void decodeRuleset(String rule);
+    
     /**
      * Born rules gives restrictions for when a cell should be born.
      * It is tested on dead cells only.
@@ -44,4 +56,32 @@ interface Ruleset{
      * @see logic.NextGeneration#setSurvives(boolean[]) 
      */
     boolean[] getSurvives();
+    
+    /**
+     * @return the compiled rule, a lookup table from the neighbourhood of a
+     * cell to its next state.
+     * @see logic.CompiledRule
+     */
+    CompiledRule getCompiledRule();
+    
+    /**
+     * Sets the rule from a compiled rule, which may be non-totalistic.
+     * The born/survives arrays are set to the counts the rule always applies to.
+     * @param rule the compiled rule.
+     */
+    void setCompiledRule(CompiledRule rule);
+    
+    /**
+     * @return the Larger than Life rule, or null when the rule is the 
+     * compiled rule of the 3x3 neighbourhood.
+     * @see logic.RangeRule
+     */
+    RangeRule getRangeRule();
+    
+    /**
+     * Sets a Larger than Life rule, used instead of the compiled rule until
+     * a compiled rule is set again.
+     * @param rule the range rule.
+     */
+    void setRangeRule(RangeRule rule);
 }
\ No newline at end of file
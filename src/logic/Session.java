@@ -0,0 +1,365 @@
+package logic;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A session saved to a binary file, to resume a DynamicBoard where it was
+ * left: the cells that are not dead, the area and the origin of the world,
+ * the rule, the topology and the generation counter.
+ * <br>
+ * RLE files hold a pattern on a dense board, which is too large and too slow
+ * for a world of millions of cells. A session holds the keys of the cells
+ * sorted and packed as distances in seven bits to a byte, see CellCodec, a
+ * byte or two for every cell, followed by a byte for the state of every cell
+ * if the rule has decaying cells. The cells may be compressed with Deflate,
+ * which mostly halves a pattern with regular rows. The header is never
+ * compressed:
+ * <pre>
+ *   int    magic "GoLS"
+ *   byte   version
+ *   byte   flags, 1 if the cells are deflated, 2 if the states follow them
+ *   int    generation counter
+ *   int    origin row, origin column and area
+ *   int    population
+ *   short  length of the topology, and its name in UTF-8
+ *   short  length of the rule, and the rule in UTF-8, i.e. B3/S23
+ * </pre>
+ * The file is read and written through NIO channels, a buffer of a
+ * megabyte at a time, so a session of tens of millions of cells takes
+ * seconds, most of it sorting the cells and adding them to the Generation.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public final class Session{
+
+    public static final int MAGIC = 0x476F4C53;
+    public static final byte VERSION = 1;
+    private static final int DEFLATED = 1;
+    private static final int STATES = 2;
+    private static final int BUFFER = 1 << 20;
+    //Deflate never turns a byte into more than about 1032 bytes.
+    private static final int DEFLATE_RATIO = 1032;
+
+    private final Snapshot snapshot;
+    private final String rule;
+    private final Topology topology;
+
+    private Session(Snapshot snapshot, String rule, Topology topology){
+        this.snapshot = snapshot;
+        this.rule = rule;
+        this.topology = topology;
+    }
+
+    /**
+     * Saves the session of a board to a file.
+     * @param board the board.
+     * @param path the file, replaced if it exists.
+     * @param deflate true to compress the cells.
+     * @throws IOException if the file could not be written.
+     */
+    public static void save(DynamicBoard board, Path path, boolean deflate) throws IOException{
+        long start = System.nanoTime();
+        String rule = board.getRangeRule() != null ? board.getRangeRule().toString()
+                                                   : board.getCompiledRule().toString();
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+            write(channel, board.getGeneration(), board.getGenCount(), rule, deflate);
+        }
+        Metrics.record(Metrics.SAVE, start);
+    }
+
+    /**
+     * Reads a session from a file.
+     * @param path the file.
+     * @return the session, see DynamicBoard.resume(Session).
+     * @throws IOException if the file could not be read, or is not a session.
+     */
+    public static Session open(Path path) throws IOException{
+        long start = System.nanoTime();
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            Session session = read(channel);
+            Metrics.record(Metrics.LOAD, start);
+            return session;
+        }
+    }
+
+    /**
+     * Writes a generation as a session.
+     * @param channel the channel written to, left open.
+     * @param gen the generation.
+     * @param genCount the generation counter.
+     * @param rule the rule, i.e. B3/S23, B2/S/C3 or a Larger than Life rule.
+     * @param deflate true to compress the cells.
+     * @throws IOException if the channel could not be written to.
+     */
+    public static void write(WritableByteChannel channel, Generation gen, int genCount,
+                             String rule, boolean deflate) throws IOException{
+        long[] cells = new long[Math.max(16, gen.getPopulation())];
+        int size = 0;
+        for(long cell : gen){
+            if(size == cells.length)
+                cells = Arrays.copyOf(cells, 2*size);
+            cells[size++] = cell;
+        }
+        Arrays.parallelSort(cells, 0, size);
+        boolean states = false;
+        for(int i = 0; i<size && !states; i++)
+            states = gen.stateOf(cells[i]) != 1;
+
+        byte[] topology = gen.getTopology().name().getBytes(StandardCharsets.UTF_8);
+        byte[] name = rule.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(30+topology.length+name.length);
+        header.putInt(MAGIC).put(VERSION).put((byte) ((deflate ? DEFLATED : 0) | (states ? STATES : 0)));
+        header.putInt(genCount).putInt(gen.getOriginRow()).putInt(gen.getOriginColumn()).putInt(gen.getArea());
+        header.putInt(size);
+        header.putShort((short) topology.length).put(topology);
+        header.putShort((short) name.length).put(name);
+        header.flip();
+        while(header.hasRemaining())
+            channel.write(header);
+
+        Output out = new Output(channel, deflate);
+        long prev = 0;
+        for(int i = 0; i<size; i++){
+            out.putVarLong(cells[i]-prev);
+            prev = cells[i];
+        }
+        if(states)
+            for(int i = 0; i<size; i++)
+                out.put((byte) gen.stateOf(cells[i]));
+        out.finish();
+    }
+
+    /**
+     * Reads a session written by write. The number of cells in the header
+     * is not trusted: a file cannot hold more cells than it has bytes, or
+     * than DEFLATE_RATIO times as many when deflated, and the cells of any
+     * other channel are read into an array that grows as they come.
+     * @param channel the channel read from, left open.
+     * @return the session.
+     * @throws IOException if the channel could not be read, or does not
+     *         hold a session.
+     */
+    public static Session read(ReadableByteChannel channel) throws IOException{
+        ByteBuffer header = ByteBuffer.allocate(26);
+        readFully(channel, header);
+        if(header.getInt() != MAGIC)
+            throw new IOException("Not a Game of Life session.");
+        if(header.get() != VERSION)
+            throw new IOException("Unknown version of the session.");
+        int flags = header.get();
+        int genCount = header.getInt();
+        int originRow = header.getInt(), originColumn = header.getInt(), area = header.getInt();
+        int size = header.getInt();
+        if(size < 0 || area < 0)
+            throw new IOException("The session is damaged.");
+        Topology topology;
+        try{
+            topology = Topology.valueOf(readString(channel));
+        }
+        catch(IllegalArgumentException e){
+            throw new IOException("Unknown topology of the session.", e);
+        }
+        String rule = readString(channel);
+        if(channel instanceof FileChannel){
+            FileChannel file = (FileChannel) channel;
+            long bytes = file.size()-file.position();
+            if(size > ((flags & DEFLATED) != 0 ? bytes*DEFLATE_RATIO : bytes))
+                throw new IOException("The session is damaged.");
+        }
+
+        Input in = new Input(channel, (flags & DEFLATED) != 0);
+        long[] cells = new long[Math.min(size, 1 << 16)];
+        long cell = 0;
+        for(int i = 0; i<size; i++){
+            if(i == cells.length)
+                cells = Arrays.copyOf(cells, (int) Math.min(size, 2L*i));
+            long distance = 0;
+            int shift = 0;
+            byte b;
+            do{
+                b = in.get();
+                distance |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            }while(b < 0);
+            cell += distance;
+            cells[i] = cell;
+        }
+        byte[] states = null;
+        if((flags & STATES) != 0){
+            states = new byte[size];
+            for(int i = 0; i<size; i++)
+                states[i] = in.get();
+        }
+        in.finish();
+        return new Session(new Snapshot(cells, states, size, genCount, originRow, originColumn, area),
+                           rule, topology);
+    }
+
+    private static String readString(ReadableByteChannel channel) throws IOException{
+        ByteBuffer length = ByteBuffer.allocate(2);
+        readFully(channel, length);
+        ByteBuffer string = ByteBuffer.allocate(length.getShort() & 0xFFFF);
+        readFully(channel, string);
+        return new String(string.array(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Fills a buffer from a channel, and flips it.
+     */
+    private static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException{
+        while(buffer.hasRemaining())
+            if(channel.read(buffer) < 0)
+                throw new EOFException("The session ends too soon.");
+        buffer.flip();
+    }
+
+    /**
+     * @return the cells, the area, the origin and the generation counter.
+     */
+    public Snapshot getSnapshot(){
+        return snapshot;
+    }
+
+    /**
+     * @return the rule, i.e. B3/S23, B2/S/C3 or a Larger than Life rule.
+     */
+    public String getRule(){
+        return rule;
+    }
+
+    public Topology getTopology(){
+        return topology;
+    }
+
+    /**
+     * Writes bytes to a channel a buffer at a time, deflated or not.
+     */
+    private static final class Output{
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER);
+        private final Deflater deflater;
+        private final ByteBuffer deflated;
+
+        Output(WritableByteChannel channel, boolean deflate){
+            this.channel = channel;
+            this.deflater = deflate ? new Deflater(Deflater.BEST_SPEED) : null;
+            this.deflated = deflate ? ByteBuffer.allocate(BUFFER) : null;
+        }
+
+        void put(byte b) throws IOException{
+            if(!buffer.hasRemaining())
+                flush();
+            buffer.put(b);
+        }
+
+        void putVarLong(long value) throws IOException{
+            if(buffer.remaining() < 10)
+                flush();
+            buffer.position(CellCodec.putVarLong(buffer.array(), buffer.position(), value));
+        }
+
+        private void flush() throws IOException{
+            buffer.flip();
+            if(deflater == null){
+                while(buffer.hasRemaining())
+                    channel.write(buffer);
+            }else{
+                //The array is given, not the buffer, which is cleared and filled again.
+                deflater.setInput(buffer.array(), 0, buffer.limit());
+                while(!deflater.needsInput()){
+                    deflater.deflate(deflated);
+                    drain();
+                }
+            }
+            buffer.clear();
+        }
+
+        void finish() throws IOException{
+            flush();
+            if(deflater == null)
+                return;
+            deflater.finish();
+            while(!deflater.finished()){
+                deflater.deflate(deflated);
+                drain();
+            }
+            deflater.end();
+        }
+
+        private void drain() throws IOException{
+            deflated.flip();
+            while(deflated.hasRemaining())
+                channel.write(deflated);
+            deflated.clear();
+        }
+    }
+
+    /**
+     * Reads bytes from a channel a buffer at a time, inflated or not.
+     */
+    private static final class Input{
+        private final ReadableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER);
+        private final Inflater inflater;
+        private final ByteBuffer deflated;
+
+        Input(ReadableByteChannel channel, boolean inflate){
+            this.channel = channel;
+            this.inflater = inflate ? new Inflater() : null;
+            this.deflated = inflate ? ByteBuffer.allocate(BUFFER) : null;
+            buffer.flip();
+        }
+
+        byte get() throws IOException{
+            if(!buffer.hasRemaining())
+                fill();
+            return buffer.get();
+        }
+
+        private void fill() throws IOException{
+            buffer.clear();
+            if(inflater == null){
+                while(buffer.position() == 0)
+                    if(channel.read(buffer) < 0)
+                        throw new EOFException("The session ends too soon.");
+                buffer.flip();
+                return;
+            }
+            try{
+                while(buffer.position() == 0){
+                    if(inflater.finished())
+                        throw new EOFException("The session ends too soon.");
+                    if(inflater.needsInput()){
+                        deflated.clear();
+                        int read = channel.read(deflated);
+                        if(read < 0)
+                            throw new EOFException("The session ends too soon.");
+                        inflater.setInput(deflated.array(), 0, read);
+                    }
+                    inflater.inflate(buffer);
+                }
+            }
+            catch(DataFormatException e){
+                throw new IOException("The session is damaged.", e);
+            }
+            buffer.flip();
+        }
+
+        void finish(){
+            if(inflater != null)
+                inflater.end();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package logic;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a Gameboard on its own thread, one generation after the other at a
+ * target number of generations per second, so a slow generation never
+ * freezes the JavaFX application thread.
+ * <br>
+ * After a step the simulation publishes a Snapshot of the board, which the
+ * renderer takes and draws on its next frame, see takeSnapshot(). A snapshot
+ * is only made when the renderer has taken the last one, so the generations
+ * calculated between two frames are dropped without being copied, and the
+ * cost of the snapshots follows the frame rate, not the generation rate.
+ * <br>
+ * Every step is made while holding the monitor of the board. Code on other
+ * threads that edits the board while the simulation runs, i.e. the mouse
+ * and the loading of patterns, synchronizes on the board as well, and then
+ * waits for no more than the step being calculated.
+ * <br>
+ * When the generations take longer than the target allows, they are
+ * calculated back to back, and the simulation does not try to catch up
+ * afterwards for more than a second behind.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class Simulation{
+
+    /**
+     * Default number of generations per second.
+     */
+    public static final double DEFAULT_RATE = 8;
+
+    private final Gameboard board;
+    private final AtomicReference<Snapshot> latest = new AtomicReference<>();
+    private volatile double rate = DEFAULT_RATE;
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * @param board the board to run.
+     */
+    public Simulation(Gameboard board){
+        this.board = board;
+    }
+
+    /**
+     * Starts the simulation thread, unless it is running.
+     */
+    public synchronized void start(){
+        if(running)
+            return;
+        running = true;
+        thread = new Thread(this::run, "GoL simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the simulation and waits for the generation being calculated,
+     * so the board can be used by the caller when this returns.
+     */
+    public synchronized void pause(){
+        if(!running)
+            return;
+        running = false;
+        LockSupport.unpark(thread);
+        boolean interrupted = false;
+        while(thread.isAlive()){
+            try{
+                thread.join();
+            }
+            catch(InterruptedException e){
+                interrupted = true;
+            }
+        }
+        thread = null;
+        if(interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Steps the board and publishes snapshots until paused, waiting between
+     * the generations for the target rate.
+     */
+    private void run(){
+        long next = System.nanoTime();
+        while(running){
+            synchronized(board){
+                board.stepN(1);
+                if(latest.get() == null)
+                    latest.set(board.snapshot());
+            }
+            next += (long) (1e9/rate);
+            long now = System.nanoTime();
+            if(next-now > 0)
+                LockSupport.parkNanos(next-now);
+            else if(now-next > 1_000_000_000L)
+                next = now;
+        }
+    }
+
+    /**
+     * Takes the latest snapshot, leaving room for the next one.
+     * @return the snapshot made after the last generation the renderer has
+     *         not seen, or null if there is none.
+     */
+    public Snapshot takeSnapshot(){
+        return latest.getAndSet(null);
+    }
+
+    /**
+     * @param rate target number of generations per second, larger than 0.
+     */
+    public void setRate(double rate){
+        this.rate = rate;
+        LockSupport.unpark(thread);
+    }
+
+    public double getRate(){
+        return rate;
+    }
+
+    /**
+     * @return true while the simulation thread is running.
+     */
+    public boolean isRunning(){
+        return running;
+    }
+}
@@ -0,0 +1,138 @@
+package logic;
+
+import java.util.Arrays;
+
+/**
+ * An immutable picture of a board at one generation: the keys of the cells
+ * that are not dead (see Generation.key), their states, the generation
+ * counter, the population and the area of the world.
+ * <br>
+ * The Simulation makes a snapshot on its own thread after a step, and the
+ * renderer draws it on the JavaFX application thread, see Gameboard.draw(Snapshot).
+ * Nothing in a snapshot is shared with the board, so the board is stepped
+ * on while the last snapshot is drawn, and a snapshot may be drawn any
+ * number of times, i.e. when the canvas is resized.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public final class Snapshot{
+
+    private final long[] cells;
+    //The state of every cell, or null when every cell is alive.
+    private final byte[] states;
+    private final int size;
+    private final int genCount;
+    private final int originRow;
+    private final int originColumn;
+    private final int area;
+
+    /**
+     * A snapshot of cells copied already, i.e. by GenerationManager.
+     * @param states the states of the cells, or null when every cell is alive.
+     */
+    Snapshot(long[] cells, byte[] states, int size, int genCount,
+             int originRow, int originColumn, int area){
+        this.cells = cells;
+        this.states = states;
+        this.size = size;
+        this.genCount = genCount;
+        this.originRow = originRow;
+        this.originColumn = originColumn;
+        this.area = area;
+    }
+
+    /**
+     * Copies the cells of a generation.
+     * @param gen the generation.
+     * @param genCount the generation counter of the board.
+     * @param withStates true if the rule has decaying cells, whose states
+     *        are copied as well.
+     * @return the snapshot.
+     */
+    public static Snapshot of(Generation gen, int genCount, boolean withStates){
+        long[] cells = new long[Math.max(16, gen.getPopulation())];
+        byte[] states = withStates ? new byte[cells.length] : null;
+        int size = 0;
+        for(long cell : gen){
+            if(size == cells.length){
+                cells = Arrays.copyOf(cells, 2*size);
+                if(states != null)
+                    states = Arrays.copyOf(states, 2*size);
+            }
+            if(states != null)
+                states[size] = (byte) gen.stateOf(cell);
+            cells[size++] = cell;
+        }
+        return new Snapshot(cells, states, size, genCount,
+                            gen.getOriginRow(), gen.getOriginColumn(), gen.getArea());
+    }
+
+    /**
+     * Copies the cells that are not dead of a dense board, keyed by their
+     * row and column on the board.
+     * @param board the board.
+     * @param genCount the generation counter of the board.
+     * @return the snapshot.
+     */
+    public static Snapshot of(byte[][] board, int genCount){
+        int population = 0;
+        for(byte[] row : board)
+            for(byte cell : row)
+                if(cell != 0)
+                    population++;
+        long[] cells = new long[population];
+        byte[] states = new byte[population];
+        int size = 0;
+        for(int i = 0; i<board.length; i++){
+            for(int j = 0; j<board[i].length; j++){
+                if(board[i][j] != 0){
+                    states[size] = board[i][j];
+                    cells[size++] = Generation.key(i, j);
+                }
+            }
+        }
+        int area = board.length == 0 ? 0 : Math.max(board.length, board[0].length);
+        return new Snapshot(cells, states, size, genCount, 0, 0, area);
+    }
+
+    /**
+     * @return number of cells that are not dead.
+     */
+    public int getPopulation(){
+        return size;
+    }
+
+    /**
+     * @param index the index of a cell, from 0 to getPopulation()-1.
+     * @return the key of the cell.
+     */
+    public long cell(int index){
+        return cells[index];
+    }
+
+    /**
+     * @param index the index of a cell, from 0 to getPopulation()-1.
+     * @return the state of the cell, 1 if it is alive.
+     */
+    public int state(int index){
+        return states == null ? 1 : states[index] & 0xFF;
+    }
+
+    /**
+     * @return the generation counter of the board when the snapshot was made.
+     */
+    public int getGenCount(){
+        return genCount;
+    }
+
+    public int getOriginRow(){
+        return originRow;
+    }
+
+    public int getOriginColumn(){
+        return originColumn;
+    }
+
+    public int getArea(){
+        return area;
+    }
+}
@@ -32,11 +32,28 @@ public class StaticBoard extends Gameboard{
      * Constructs a static instance.
      * This object is created with a instance of NextGeneration. 
      * This NextGeneration object contains the standard ruleset of Game of Life(B3/S23).
+     * The implementation is chosen with the system property gol.engine, 
+     * see NextGeneration.create(String), and the topology with gol.topology,
+     * see Topology.fromName(String).
      * @param gc gc is the Canvas's GraphicsContext displaying the graphics to the user. 
      */  
     public StaticBoard(GraphicsContext gc){
         super(gc);
-        this.ng = new NextGeneration();
+        this.ng = NextGeneration.create(System.getProperty("gol.engine"));
+        this.ng.setTopology(Topology.fromName(System.getProperty("gol.topology")));
+    }
+    
+    
+    /**
+     * Constructs a static instance with a chosen NextGeneration implementation.
+     * Makes it possible to run the board with i.e. the bit-packed
+     * PackedNextGeneration instead of the byte[][] implementation.
+     * @param gc gc is the Canvas's GraphicsContext displaying the graphics to the user. 
+     * @param ng ng is the NextGeneration implementation calculating the generations.
+     */  
+    public StaticBoard(GraphicsContext gc, NextGeneration ng){
+        super(gc);
+        this.ng = ng;
     }
     
     
@@ -75,45 +92,92 @@ public class StaticBoard extends Gameboard{
     
     
     /**
-     * Draws the current generation.
+     * Draws a snapshot of the current generation.
      * Visualisation of the gameboard to the user, 
      * using Canvas's GraphicsContext support
+     * The dead cells are drawn over the whole board and the living cells
+     * of the snapshot on top of them.
+     * @param snapshot the snapshot of the generation, see Gameboard.draw().
      */
     @Override
-    public void draw(){ 
+    public void draw(Snapshot snapshot){ 
         gc.setFill(background);
         gc.fillRect(0, 0, ctrl.getCanvas().widthProperty().doubleValue(), 
                     ctrl.getCanvas().heightProperty().doubleValue()); //Removes overlay 
       
-        double startY = 0,//((ctrl.getCanvas().heightProperty().doubleValue())/(cellSize)), 
-               startX = 0;//((ctrl.getCanvas().widthProperty().doubleValue())/(cellSize));
-        for(int i = 0; i<currentGen.length; i++){
-            for(int j = 0; j<currentGen[0].length; j++){
-              
-                if(currentGen[i][j] == 1) {
-                    gc.setFill(getLiving());
-              
-                }else if(currentGen[i][j] == 0)
-                    gc.setFill(dead);
-                    gc.fillRect(startX + (getCellSize()*i), startY + (getCellSize()*j), getCellSize()*0.9, getCellSize()*0.9);
-            }
+        gc.setFill(dead);
+        for(int i = 0; i<currentGen.length; i++)
+            for(int j = 0; j<currentGen[0].length; j++)
+                gc.fillRect(getCellSize()*i, getCellSize()*j, getCellSize()*0.9, getCellSize()*0.9);
+        gc.setFill(getLiving());
+        for(int c = 0; c<snapshot.getPopulation(); c++){
+            long cell = snapshot.cell(c);
+            gc.fillRect(getCellSize()*Generation.row(cell), getCellSize()*Generation.column(cell), 
+                        getCellSize()*0.9, getCellSize()*0.9);
         }
         drawLoaded();
     }
     
+    /**
+     * Copies the living cells of the current generation.
+     * @return the snapshot of the current generation.
+     */
+    @Override
+    public Snapshot snapshot(){
+        return Snapshot.of(currentGen, getGenCount());
+    }
+    
     
     /**
-     * Looping through calcNextGen and draw().
+     * Looping through the next generation and draw().
      * Animating the gameboard visualy for the user.
+     * The next generation is written into currentGen, see stepN(int).
      */
     @Override
     public void displayNextGen(){
-        currentGen = ng.calcNextGen(currentGen);
-        incGenCount();
+        stepN(1);
         draw();
     }
     
     
+    /**
+     * Calculates a number of generations in place without drawing them, with
+     * the NextGeneration of the board, see NextGeneration.step(byte[][], int),
+     * so the engine chosen with gol.engine and the pool set on it are used,
+     * as when a GIF is saved. The plain engine steps the board with a
+     * DenseGeneration, which allocates nothing however many generations are
+     * calculated.
+     * @param generations number of generations to calculate.
+     */
+    @Override
+    public void stepN(int generations){
+        long start = System.nanoTime();
+        ng.step(currentGen, generations);
+        //Only single generations are timed as steps, not a warp of many.
+        if(generations == 1)
+            Metrics.record(Metrics.STEP, start);
+        setGenCount(getGenCount() + generations);
+    }
+
+    /**
+     * Gives the statistics of the last generation stepped, like the
+     * Generations of a DynamicBoard. The births and deaths are counted by
+     * the NextGeneration as it steps, see NextGeneration.getBirths(), while
+     * the population and the bounding box are counted from the board when
+     * asked, so a step costs no more when they are not.
+     * @return the statistics of the last generation stepped.
+     */
+    public GenerationStats getStats(){
+        int population = 0;
+        for(byte[] row : currentGen)
+            for(byte cell : row)
+                if(cell != 0)
+                    population++;
+        int[] box = population == 0 ? null : boundingBox(currentGen);
+        return new GenerationStats(population, ng.getBirths(), ng.getDeaths(), box);
+    }
+
+    
     /**
      * User is able to change the cell state with mouse impact.
      * Right-clicks or drags creates living cells.
@@ -152,7 +216,7 @@ public class StaticBoard extends Gameboard{
         }    
         
         resetGenCount();
-        ng = new NextGeneration();
+        ng.setConwayRules();
         draw();
     }  
     
@@ -242,7 +306,7 @@ public class StaticBoard extends Gameboard{
                     getPattMovesY()+j-1 > height-1){
                     continue;
                 }
-                if(getLoadedPattern()[i][j] == 1){
+                if(getLoadedPattern()[i][j] != 0){
                     this.currentGen[getPattMovesX()+i-1]
                                    [getPattMovesY()+j-1] = getLoadedPattern()[i][j];  
                 }
@@ -251,7 +315,8 @@ public class StaticBoard extends Gameboard{
     }
      
     /**
-     * Gives the border limits of the current living cells.
+     * Gives the border limits of the current living cells, and of the 
+     * decaying cells of a rule with more than two states.
      * @param input input the byte[][] being checked
      * @return int[] int[] containing min width, max width, min height, max height.
      */
@@ -263,7 +328,7 @@ public class StaticBoard extends Gameboard{
         boundingBox[3] = 0;
         for(int i = 0; i<input.length; i++){
             for(int j = 0; j<input[0].length; j++){
-                if(input[i][j] != 1) continue;
+                if(input[i][j] == 0) continue;
                 if(i < boundingBox[0])
                     boundingBox[0] = i;
                 if(i > boundingBox[1])
@@ -366,6 +431,13 @@ public class StaticBoard extends Gameboard{
         return ng;
     }
     
+    /**
+     * @param ng the NextGeneration implementation calculating the generations.
+     */
+    public void setNextGeneration(NextGeneration ng){
+        this.ng = ng;
+    }
+    
     /**
     * @param currentGen new current generation.
     */
@@ -415,10 +487,10 @@ public class StaticBoard extends Gameboard{
             for(int i = 0; i < getLoadedPattern().length; i++){
                 for(int j = 0; j < getLoadedPattern()[0].length; j++){
 
-                    if(getLoadedPattern()[i][j] == 1){
+                    if(getLoadedPattern()[i][j] != 0){
                         gc.setFill(Color.rgb(192, 192, 192, 0.8));
                     }
-                    else if(getLoadedPattern()[i][j] == 0){
+                    else{
                         gc.setFill(Color.TRANSPARENT);
                     }
                     gc.fillRect(startY + (getCellSize()*(i-1)),
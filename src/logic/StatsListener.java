@@ -0,0 +1,17 @@
+package logic;
+
+/**
+ * Listens to the statistics of every generation a DynamicBoard steps, i.e.
+ * to draw live charts. The listener is called on the thread stepping the
+ * board, which is not the JavaFX application thread while the simulation
+ * runs or the board warps, so it should only hand the statistics on.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public interface StatsListener{
+
+    /**
+     * @param generation the generation counter of the board after the step.
+     * @param stats the statistics of the step.
+     */
+    void generationStepped(int generation, GenerationStats stats);
+}
@@ -0,0 +1,138 @@
+package logic;
+
+/**
+ * The shape of the world: what lies beyond the edges of a board of rows x
+ * columns cells.
+ * <br>
+ * PLANE           - The world has no edges. A dense board treats the cells
+ *                   outside it as dead, a dynamic world grows instead.<br>
+ * BOUNDED_PLANE   - The cells outside the board are dead, and a dynamic
+ *                   world keeps its area.<br>
+ * TORUS           - The east edge is glued to the west edge, and the south
+ *                   edge to the north edge.<br>
+ * KLEIN_BOTTLE    - Like the torus, but the north and south edges are glued
+ *                   with a twist: a glider leaving the board at the north end
+ *                   of one column enters it at the south end of the mirrored
+ *                   column, mirrored.
+ * <br>
+ * The bounded topologies keep the memory of a run fixed, so they are made for
+ * long runs of soups. Dense boards are padded with a halo of one cell, which
+ * fillHalo fills once every step, so the cells at the edges need no checks.
+ * The sparse generations map the neighbours of the cells on the boundary with
+ * wrap, and no other cell.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public enum Topology{
+
+    PLANE,
+    BOUNDED_PLANE,
+    TORUS,
+    KLEIN_BOTTLE;
+
+    /**
+     * The key returned by wrap for a cell that is outside a bounded plane.
+     */
+    public static final long DEAD = Long.MIN_VALUE;
+
+    /**
+     * Reads a topology by name, for example from the system property gol.topology.
+     * @param name the name of the topology, in any case, or null.
+     * @return the topology, PLANE if the name is null or unknown.
+     */
+    public static Topology fromName(String name){
+        if(name != null)
+            for(Topology topology : values())
+                if(topology.name().equalsIgnoreCase(name.trim()))
+                    return topology;
+        return PLANE;
+    }
+
+    /**
+     * @return true if the world is the board only, and never grows.
+     */
+    public boolean isBounded(){
+        return this != PLANE;
+    }
+
+    /**
+     * @return true if cells leaving the board enter it on the other side.
+     */
+    public boolean wraps(){
+        return this == TORUS || this == KLEIN_BOTTLE;
+    }
+
+    /**
+     * Maps a cell outside the board onto the cell of the board it is, as a
+     * key (see Generation.key) of its row and column on the board.
+     * @param i the row, relative to the board.
+     * @param j the column, relative to the board.
+     * @param rows number of rows of the board.
+     * @param columns number of columns of the board.
+     * @return the key of the row and column on the board, or DEAD if the cell
+     *         is outside a bounded plane.
+     */
+    public long wrap(int i, int j, int rows, int columns){
+        switch(this){
+            case TORUS:
+                return Generation.key(Math.floorMod(i, rows), Math.floorMod(j, columns));
+            case KLEIN_BOTTLE:
+                j = Math.floorMod(j, columns);
+                if(mirrors(i, rows))
+                    j = columns-1-j;
+                return Generation.key(Math.floorMod(i, rows), j);
+            case BOUNDED_PLANE:
+                if(i < 0 || i >= rows || j < 0 || j >= columns)
+                    return DEAD;
+                return Generation.key(i, j);
+            default:
+                return Generation.key(i, j);
+        }
+    }
+
+    /**
+     * A cell reached across the twisted edges of a Klein bottle sees the
+     * world mirrored east to west, so the neighbours east and west of it
+     * change places.
+     * @param i the row, relative to the board.
+     * @param rows number of rows of the board.
+     * @return true if the cell is reached mirrored.
+     */
+    public boolean mirrors(int i, int rows){
+        return this == KLEIN_BOTTLE && (Math.floorDiv(i, rows) & 1) != 0;
+    }
+
+    /**
+     * Fills the halo of a board padded with one cell on every side, so the
+     * board can be stepped without checking its edges. Row 0 and row rows+1,
+     * and column 0 and column columns+1, are the halo.
+     * @param padded the padded board, at least rows+2 x columns+2.
+     * @param rows number of rows of the board.
+     * @param columns number of columns of the board.
+     */
+    public void fillHalo(byte[][] padded, int rows, int columns){
+        if(!wraps()){
+            for(int j = 0; j<columns+2; j++){
+                padded[0][j] = 0;
+                padded[rows+1][j] = 0;
+            }
+            for(int i = 1; i<=rows; i++){
+                padded[i][0] = 0;
+                padded[i][columns+1] = 0;
+            }
+            return;
+        }
+        for(int i = 1; i<=rows; i++){
+            padded[i][0] = padded[i][columns];
+            padded[i][columns+1] = padded[i][1];
+        }
+        if(this == TORUS){
+            System.arraycopy(padded[rows], 0, padded[0], 0, columns+2);
+            System.arraycopy(padded[1], 0, padded[rows+1], 0, columns+2);
+        }else{
+            for(int j = 0; j<columns+2; j++){
+                padded[0][j] = padded[rows][columns+1-j];
+                padded[rows+1][j] = padded[1][columns+1-j];
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package logic;
+
+/**
+ * The transform between the world of a DynamicBoard and its canvas.
+ * The viewport shows the world around a center, a row and a column that may
+ * be between two cells, at a given cell size. The center is drawn in the
+ * middle of the canvas, so the world coordinates of the cells never have to
+ * fit in the canvas, only the cells that are visible are drawn.
+ * <br>
+ * Drawing goes from the world to the canvas with screenX and screenY, and
+ * editing goes from the canvas to the world with row and column.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class Viewport{
+
+    private double width;
+    private double height;
+    private double cellSize = 12;
+    //The world coordinates shown in the middle of the canvas.
+    private double centerRow;
+    private double centerColumn;
+
+    /**
+     * Sets the size of the canvas and of the cells, read before every draw.
+     * @param width width of the canvas.
+     * @param height height of the canvas.
+     * @param cellSize size of a cell on the canvas.
+     */
+    public void setCanvas(double width, double height, double cellSize){
+        this.width = width;
+        this.height = height;
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * @param column a column in the world.
+     * @return the x-coordinate of the left side of the column on the canvas.
+     */
+    public double screenX(long column){
+        return width/2 + (column-centerColumn)*cellSize;
+    }
+
+    /**
+     * @param row a row in the world.
+     * @return the y-coordinate of the top of the row on the canvas.
+     */
+    public double screenY(long row){
+        return height/2 + (row-centerRow)*cellSize;
+    }
+
+    /**
+     * @param x an x-coordinate on the canvas.
+     * @return the column in the world under the coordinate.
+     */
+    public int column(double x){
+        return (int) Math.floor(centerColumn + (x-width/2)/cellSize);
+    }
+
+    /**
+     * @param y a y-coordinate on the canvas.
+     * @return the row in the world under the coordinate.
+     */
+    public int row(double y){
+        return (int) Math.floor(centerRow + (y-height/2)/cellSize);
+    }
+
+    /**
+     * @param row a row in the world.
+     * @param column a column in the world.
+     * @return true if any part of the cell is on the canvas.
+     */
+    public boolean isVisible(long row, long column){
+        return row >= firstRow() && row <= lastRow() &&
+               column >= firstColumn() && column <= lastColumn();
+    }
+
+    /**
+     * @return the first row on the canvas.
+     */
+    public int firstRow(){
+        return row(0);
+    }
+
+    /**
+     * @return the last row on the canvas.
+     */
+    public int lastRow(){
+        return row(height);
+    }
+
+    /**
+     * @return the first column on the canvas.
+     */
+    public int firstColumn(){
+        return column(0);
+    }
+
+    /**
+     * @return the last column on the canvas.
+     */
+    public int lastColumn(){
+        return column(width);
+    }
+
+    /**
+     * Moves the viewport over the world.
+     * @param rows rows to move, positive is south.
+     * @param columns columns to move, positive is east.
+     */
+    public void pan(double rows, double columns){
+        centerRow += rows;
+        centerColumn += columns;
+    }
+
+    /**
+     * Shows the world around a new center.
+     * @param row the row in the middle of the canvas.
+     * @param column the column in the middle of the canvas.
+     */
+    public void center(double row, double column){
+        centerRow = row;
+        centerColumn = column;
+    }
+
+    /**
+     * Shows the whole of a box of the world: centers the viewport on the box
+     * and picks the largest cell size, between min and max, that fits it on
+     * the canvas.
+     * @param top the first row of the box.
+     * @param bottom the last row of the box.
+     * @param left the first column of the box.
+     * @param right the last column of the box.
+     * @param min the smallest cell size.
+     * @param max the largest cell size.
+     * @return the new cell size.
+     */
+    public double fit(int top, int bottom, int left, int right, double min, double max){
+        double rows = (double) bottom-top+1, columns = (double) right-left+1;
+        cellSize = Math.max(min, Math.min(max, Math.min(width/columns, height/rows)));
+        center(top+rows/2, left+columns/2);
+        return cellSize;
+    }
+
+    public double getCenterRow(){
+        return centerRow;
+    }
+
+    public double getCenterColumn(){
+        return centerColumn;
+    }
+
+    public double getCellSize(){
+        return cellSize;
+    }
+}
@@ -0,0 +1,102 @@
+package logic;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+
+/**
+ * Runs a Gameboard a number of generations ahead on a worker thread, without
+ * drawing every generation. The board is stepped with Gameboard.stepN(int) in
+ * chunks, and redrawn on the JavaFX application thread every redraw interval
+ * and when the warp ends, so skipping ten thousand generations pays for a
+ * few redraws instead of ten thousand.
+ * <br>
+ * The chunks start at one generation and are doubled while a chunk takes less
+ * than CHUNK_NANOS, and halved when it takes more than four times as long, so
+ * the progress is updated and a cancel is noticed a few times a second for any
+ * engine and population. The generations are never split across a redraw.
+ * <br>
+ * The worker waits for every redraw to finish before it steps on, so the
+ * board is never drawn while it is stepped. The caller keeps the board from
+ * being edited until the task is done, see GoLController.warpBtnClicked().
+ * The value of the task is the number of generations calculated, fewer than
+ * asked for if it was cancelled.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class Warp extends Task<Integer>{
+
+    //The time a chunk of generations should take.
+    private static final long CHUNK_NANOS = 25_000_000;
+    //The largest chunk, the most generations between two looks at cancel.
+    private static final int MAX_CHUNK = 1 << 20;
+
+    private final Gameboard board;
+    private final int generations;
+    private final int redrawInterval;
+    private final Runnable redraw;
+
+    /**
+     * @param board the board to step.
+     * @param generations number of generations to calculate.
+     * @param redrawInterval number of generations between the redraws, or 0
+     *        to only redraw when the warp ends.
+     * @param redraw draws the board and its labels, run on the JavaFX
+     *        application thread.
+     */
+    public Warp(Gameboard board, int generations, int redrawInterval, Runnable redraw){
+        this.board = board;
+        this.generations = generations;
+        this.redrawInterval = redrawInterval > 0 ? redrawInterval : generations;
+        this.redraw = redraw;
+    }
+
+    /**
+     * Steps the board in chunks until every generation is calculated or the
+     * task is cancelled.
+     * @return number of generations calculated.
+     * @throws Exception if the redraw failed.
+     */
+    @Override
+    protected Integer call() throws Exception{
+        int done = 0, chunk = 1;
+        int nextRedraw = Math.min(redrawInterval, generations);
+        updateProgress(0, generations);
+        while(done < generations && !isCancelled()){
+            int step = Math.min(chunk, nextRedraw-done);
+            long start = System.nanoTime();
+            board.stepN(step);
+            long time = System.nanoTime()-start;
+            done += step;
+            updateProgress(done, generations);
+            updateMessage("Generation " + board.getGenCount());
+
+            if(time < CHUNK_NANOS && chunk < MAX_CHUNK)
+                chunk *= 2;
+            else if(time > 4*CHUNK_NANOS && chunk > 1)
+                chunk /= 2;
+
+            if(done == nextRedraw && done < generations){
+                redrawAndWait();
+                nextRedraw = (int) Math.min((long) done+redrawInterval, generations);
+            }
+        }
+        return done;
+    }
+
+    /**
+     * Runs the redraw on the JavaFX application thread and waits for it.
+     */
+    private void redrawAndWait() throws InterruptedException, ExecutionException{
+        FutureTask<Void> draw = new FutureTask<>(redraw, null);
+        Platform.runLater(draw);
+        draw.get();
+    }
+
+    /**
+     * @return number of generations asked for.
+     */
+    public int getGenerations(){
+        return generations;
+    }
+}
@@ -0,0 +1,157 @@
+package logic;
+
+/**
+ * A Zobrist-style hash of a set of cells, kept up to date as the cells are
+ * born and die: the hash is the sum of the values of the living cells, so a
+ * birth adds the value of the cell and a death subtracts it, in O(1).
+ * <br>
+ * The value of the cell at (row, column) is A^row * B^column modulo 2^64, for
+ * two odd constants A and B, instead of a random number from a table, as the
+ * world has no bound. Moving every cell of a pattern by (rows, columns)
+ * multiplies every value, and so the hash, by A^rows * B^columns, see
+ * translate(long, long, long). A spaceship is then recognised by its hash
+ * alone: the hash of the pattern p generations later is the hash of the
+ * pattern now, translated by the distance the bounding box has moved.
+ * <br>
+ * The powers of a row are looked up in three tables of 11, 11 and 10 bits of
+ * the row, so the value of a cell costs five multiplications. The rows are
+ * offset by 2^31 to be looked up as unsigned numbers, which multiplies every
+ * value by the same constant and changes nothing.
+ * <br>
+ * A rule with decaying cells multiplies the value of a cell by the value of
+ * its state, see state(int). The living cells have the value 1, so a pattern
+ * has the same hash under both kinds of rules.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+final class ZobristHash{
+
+    private static final long A = 0x9E3779B97F4A7C15L;
+    private static final long B = 0xC2B2AE3D27D4EB4FL;
+
+    private static final long[] ROWS = powers(A, 1, 2048), ROWS11 = powers(A, 1 << 11, 2048),
+                                ROWS22 = powers(A, 1 << 22, 1024);
+    private static final long[] COLUMNS = powers(B, 1, 2048), COLUMNS11 = powers(B, 1 << 11, 2048),
+                                COLUMNS22 = powers(B, 1 << 22, 1024);
+
+    //A^(2^k) and B^(2^k), the factors of the quadrants of a node of level k+1.
+    private static final long[] SOUTH = new long[63], EAST = new long[63];
+    static{
+        SOUTH[0] = A;
+        EAST[0] = B;
+        for(int k = 1; k<SOUTH.length; k++){
+            SOUTH[k] = SOUTH[k-1]*SOUTH[k-1];
+            EAST[k] = EAST[k-1]*EAST[k-1];
+        }
+    }
+
+    //The value of every state, 0 for the dead cells and 1 for the living cells.
+    private static final long[] STATES = new long[CompiledRule.MAX_STATES];
+    static{
+        long seed = 0x2545F4914F6CDD1DL;
+        STATES[1] = 1;
+        for(int state = 2; state<STATES.length; state++){
+            seed = seed*6364136223846793005L + 1442695040888963407L;
+            STATES[state] = seed | 1;
+        }
+    }
+
+    private ZobristHash(){
+    }
+
+    /**
+     * @return base^(step*i) for i from 0 to count-1.
+     */
+    private static long[] powers(long base, long step, int count){
+        long[] powers = new long[count];
+        long factor = power(base, step);
+        powers[0] = 1;
+        for(int i = 1; i<count; i++)
+            powers[i] = powers[i-1]*factor;
+        return powers;
+    }
+
+    /**
+     * @param row the row of the cell in the world.
+     * @param column the column of the cell in the world.
+     * @return the value of the living cell.
+     */
+    static long cell(int row, int column){
+        int r = row ^ Integer.MIN_VALUE, c = column ^ Integer.MIN_VALUE;
+        return ROWS[r & 0x7FF] * ROWS11[r >>> 11 & 0x7FF] * ROWS22[r >>> 22]
+             * COLUMNS[c & 0x7FF] * COLUMNS11[c >>> 11 & 0x7FF] * COLUMNS22[c >>> 22];
+    }
+
+    /**
+     * @param state the state of a cell, see CompiledRule.
+     * @return the factor of the state, 0 for a dead cell and 1 for a living cell.
+     */
+    static long state(int state){
+        return STATES[state];
+    }
+
+    /**
+     * Places cells hashed relative to a corner, like a node of a quadtree,
+     * with the corner at (row, column) of the world.
+     * @param hash the hash of the cells relative to the corner.
+     * @param row the row of the corner in the world.
+     * @param column the column of the corner in the world.
+     * @return the hash of the cells in the world.
+     */
+    static long at(long hash, long row, long column){
+        return hash * power(A, row-Integer.MIN_VALUE) * power(B, column-Integer.MIN_VALUE);
+    }
+
+    /**
+     * Moves the cells of a hash.
+     * @param hash the hash of a set of cells.
+     * @param rows number of rows to move the cells south, may be negative.
+     * @param columns number of columns to move the cells east, may be negative.
+     * @return the hash of the moved cells.
+     */
+    static long translate(long hash, long rows, long columns){
+        return hash * power(A, rows) * power(B, columns);
+    }
+
+    /**
+     * The hash of a node of a quadtree relative to its north west corner,
+     * from the hashes of its quadrants relative to theirs, see
+     * GenerationHashLife.
+     * @param level the level of the node, 2^level x 2^level cells.
+     * @return the hash of the node.
+     */
+    static long node(long nw, long ne, long sw, long se, int level){
+        long south = SOUTH[level-1], east = EAST[level-1];
+        return nw + ne*east + (sw + se*east)*south;
+    }
+
+    /**
+     * Raises an odd number to a power modulo 2^64, by squaring. A negative
+     * power is the power of the inverse.
+     */
+    private static long power(long base, long exponent){
+        if(exponent < 0){
+            base = inverse(base);
+            exponent = -exponent;
+        }
+        long result = 1;
+        while(exponent != 0){
+            if((exponent & 1) != 0)
+                result *= base;
+            base *= base;
+            exponent >>>= 1;
+        }
+        return result;
+    }
+
+    /**
+     * The inverse of an odd number modulo 2^64, by Newton's method: every
+     * step doubles the number of correct bits, from the three bits an odd
+     * number is its own inverse in.
+     */
+    private static long inverse(long odd){
+        long inverse = odd;
+        for(int i = 0; i<5; i++)
+            inverse *= 2-odd*inverse;
+        return inverse;
+    }
+}
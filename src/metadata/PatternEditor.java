@@ -3,6 +3,7 @@ package metadata;
 import controller.GoLController;
 import controller.PatternEditorController;
 import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.scene.canvas.GraphicsContext;
@@ -14,6 +15,9 @@ import javafx.scene.paint.Color;
 import javafx.scene.transform.Affine;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
+import logic.DenseGeneration;
+import logic.RangeGeneration;
+import logic.PackedNextGeneration;
 import logic.PatternFormatException;
 import logic.PatternFormatExceptionDialog;
 import logic.StaticBoard;
@@ -50,19 +54,28 @@ public class PatternEditor implements PatternLoader{
     private byte[][] initPattern;
     private byte[][] stripPattern;
     private byte[][] loadedPattern;
+    //Steps the strip pattern in place.
+    private final DenseGeneration stripGeneration = new DenseGeneration();
+    //Steps the strip pattern in place, with a Larger than Life rule.
+    private final RangeGeneration stripRange = new RangeGeneration();
     
     /**
      * Contructor PatternEditor.
      * Contains a graphicsContext, the singelton Controller object, the 
      * singelton PatternEditor Controller object, and a clone of the StaticBoard
-     * object from the current run.
+     * object from the current run. The StaticBoard calculates the strip and GIF
+     * generations with the bit-packed PackedNextGeneration, in parallel on the
+     * common ForkJoinPool when the board is large enough. The strip is stepped
+     * in place by a DenseGeneration, which reuses its buffers between frames,
+     * or by a RangeGeneration for a Larger than Life rule.
      * @param gc GraphicsContext to the main canvas.
      */
     public PatternEditor(GraphicsContext gc){
        this.gc = gc;
        this.ctrl = GoLController.instance;
        this.peCtrl = PatternEditorController.peInstance;
-       this.sb = new StaticBoard(gc);
+       this.sb = new StaticBoard(gc, new PackedNextGeneration());
+       this.sb.getNextGeneration().setPool(ForkJoinPool.commonPool());
     }
     
     /**
@@ -76,7 +89,7 @@ public class PatternEditor implements PatternLoader{
         loader = new FXMLLoader(getClass().getResource("/view/PatternEditor.fxml"));
         editorGrandParent = loader.load();
         //Pauses the main window:
-        ctrl.getInitSimulation().pause();
+        ctrl.pauseSimulation();
         
         editorStage.initModality(Modality.WINDOW_MODAL);
         editorStage.initOwner(ctrl.getGrandParent().getScene().getWindow());
@@ -96,7 +109,7 @@ public class PatternEditor implements PatternLoader{
      * Initiates a dynamic convertion, to static. 
      * Setting primitives and objects to the StaticBoard object.
      * @see metadata.PatternEditor#fetchDynamicValues() 
-     * @see logic.GenerationConcurrHash#convertToStatic()
+     * @see logic.Generation#convertToStatic()
      * @see metadata.PatternEditor#createInitPattern() 
      */
     public void initLogic(){
@@ -117,12 +130,12 @@ public class PatternEditor implements PatternLoader{
      * Putting them in to the StaticBoard object.
      * CurrentGen(see link), CellSize, and Living cell color is set.
      * Calling setDefaultPaintingColors.
-     * @see logic.GenerationConcurrHash#convertToStatic() 
+     * @see logic.Generation#convertToStatic() 
      */
     public void fetchDynamicValues(){
         sb.setCurrentGen(ctrl.getDynamicBoard().getGeneration().convertToStatic());
-        sb.getNextGeneration().setBorn(ctrl.getDynamicBoard().getBorn());
-        sb.getNextGeneration().setSurvives(ctrl.getDynamicBoard().getSurvives());
+        sb.getNextGeneration().setCompiledRule(ctrl.getDynamicBoard().getCompiledRule());
+        sb.getNextGeneration().setRangeRule(ctrl.getDynamicBoard().getRangeRule());
         sb.setLiving(ctrl.getDynamicBoard().getLiving());
         setUnusedColorsDynamicBoard();
     }
@@ -185,7 +198,7 @@ public class PatternEditor implements PatternLoader{
                 if(initPattern[i][j] == 1){ 
                     gc.setFill(sb.getLiving());
                 }
-                else if(initPattern[i][j] == 0){
+                else{
                     gc.setFill(sb.getDead());
                 }
                 gc.fillRect(offsetX + (sb.getCellSize()*i),
@@ -228,16 +241,16 @@ public class PatternEditor implements PatternLoader{
      * to check if the stripPattern is not empty, if it is it will return, and end 
      * the cycle. Then a dead border will be attached to the stripPattern, if nessesary.
      * And a calculation for the stripCellSize will happend, and the stripCellSize will be set.
-     * A next generation calculation through calcNextGen in NextGeneration class,
-     * in package logic is runned, the pattern will be checked if it is equal 
-     * to the initPattern, cycle will end if it is. 
+     * A next generation calculation through step in the DenseGeneration class,
+     * in package logic is runned, writing into the stripPattern, the pattern 
+     * will be checked if it is equal to the initPattern, cycle will end if it is. 
      * And that continues for stripFrames-1 generations, if the patternEqualityCheck
      * dosnt trigger.
      * @see metadata.PatternEditor#calcCanvasWidth(double) 
      * @see metadata.PatternEditor#patternNotEmpty(byte[][]) 
      * @see metadata.PatternEditor#deadBorderControl(byte[][]) 
      * @see metadata.PatternEditor#calcStripCellSize(byte[][]) 
-     * @see logic.NextGeneration#calcNextGen(byte[][]) 
+     * @see logic.DenseGeneration#step(byte[][], logic.CompiledRule) 
      * @see metadata.PatternEditor#patternEqualityCheck(byte[][]) 
      */
     public void drawStrip(){
@@ -252,6 +265,8 @@ public class PatternEditor implements PatternLoader{
         
         setGenCanvasWidth(calcCanvasWidth(padding));
         GraphicsContext strip = peCtrl.getGenCanvas().getGraphicsContext2D();
+        //The generations are written into the stripPattern, not the initPattern.
+        stripPattern = copyPattern(stripPattern);
         
         for(int counter = 0; counter < stripFrames; counter++){
             strip.setFill(Color.GRAY);
@@ -268,7 +283,7 @@ public class PatternEditor implements PatternLoader{
                     if(stripPattern[i][j] == 1){
                         strip.setFill(sb.getLiving());
                     }
-                    else if(stripPattern[i][j] == 0){
+                    else{
                         strip.setFill(sb.getDead());
                     }
                     strip.fillRect(stripCellSize*i, stripCellSize*j, 
@@ -280,7 +295,7 @@ public class PatternEditor implements PatternLoader{
             }
             form.setTx(tx);
             strip.setTransform(form);
-            stripPattern = sb.getNextGeneration().calcNextGen(stripPattern);
+            stripPattern = stepStrip(stripPattern);
                         
             if(patternEqualityCheck(stripPattern)){
                 counter = stripFrames;
@@ -288,6 +303,17 @@ public class PatternEditor implements PatternLoader{
         }
     }
     
+    /**
+     * Steps a pattern of the strip in place, with the rule of the StaticBoard.
+     * @param pattern the pattern, updated in place.
+     * @return the pattern.
+     */
+    private byte[][] stepStrip(byte[][] pattern){
+        if(sb.getNextGeneration().getRangeRule() != null)
+            return stripRange.step(pattern, sb.getNextGeneration().getRangeRule());
+        return stripGeneration.step(pattern, sb.getNextGeneration().getCompiledRule());
+    }
+    
     /**
      * Testing if a pattern is equal to the initPattern.
      * @param input input being tested at the initPattern
@@ -410,8 +436,7 @@ public class PatternEditor implements PatternLoader{
         
             for(int i = 0; i<temp.length-2; i++){
                 for(int j = 0; j<temp[0].length-2; j++){ 
-                    if(input[moves[0]+i][moves[2]+j] == 1)
-                        temp[i+1][j+1] = 1;
+                    temp[i+1][j+1] = input[moves[0]+i][moves[2]+j];
                 }
             }
         }
@@ -420,7 +445,7 @@ public class PatternEditor implements PatternLoader{
     
     /**
      * Checks if the pattern just contains zeros by iterating through it and 
-     * adding all the 1 values to a sum.
+     * counting the cells that are not dead.
      * @param input is the input byte[][] pattern to be checked.
      * @return true if the pattern is not empty,
      *         false if the pattern is empty.
@@ -429,7 +454,7 @@ public class PatternEditor implements PatternLoader{
         int sum = 0;
         for(int i = 0; i < input.length; i++){
             for(int j = 0; j < input[0].length; j++){
-                if(input[i][j] == 1)
+                if(input[i][j] != 0)
                     sum++;
             }
         }
@@ -601,10 +626,10 @@ public class PatternEditor implements PatternLoader{
         for(int i = 0; i < loadedPattern.length; i++){
             for(int j = 0; j < loadedPattern[0].length; j++){
         
-            if(loadedPattern[i][j] == 1){
+            if(loadedPattern[i][j] != 0){
                 gc.setFill(Color.rgb(192, 192, 192, 0.8));
             }
-            else if(loadedPattern[i][j] == 0){
+            else{
                 gc.setFill(Color.TRANSPARENT);
             }
             gc.fillRect(startX + (sb.getCellSize()*(i-1)),startY + 
@@ -629,7 +654,7 @@ public class PatternEditor implements PatternLoader{
                    pattMovesY+j > initPattern[0].length){
                    break;
                 }
-                if(loadedPattern[i][j] == 1){
+                if(loadedPattern[i][j] != 0){
                     initPattern[pattMovesX+i-1][pattMovesY+j-1] = loadedPattern[i][j];
                 }
             }
@@ -664,13 +689,13 @@ public class PatternEditor implements PatternLoader{
                sum = 0;
         
         if(patternNotEmpty(stripPattern)){
-            byte[][] temp = deadBorderControl(stripPattern);
+            byte[][] temp = deadBorderControl(copyPattern(stripPattern));
 
             for(int i = 0; i < stripFrames; i++){
                 if(temp != null){
                     add = temp.length * calcStripCellSize(temp);
                     sum += add+padding;
-                    temp = sb.getNextGeneration().calcNextGen(temp);
+                    temp = stepStrip(temp);
                     temp = deadBorderControl(temp);
                 }
             }
@@ -681,6 +706,20 @@ public class PatternEditor implements PatternLoader{
             return sum;
     }
     
+    /**
+     * Copies a pattern, so it can be stepped in place.
+     * @param input the pattern to copy, may be null.
+     * @return a copy of the pattern.
+     */
+    private byte[][] copyPattern(byte[][] input){
+        if(input == null)
+            return null;
+        byte[][] copy = new byte[input.length][];
+        for(int i = 0; i < input.length; i++)
+            copy[i] = input[i].clone();
+        return copy;
+    }
+    
     /**
      * The stripCellSize is pending on the user input and the stripPattern width.
      * @param input  the height of a byte[][] is used to calculate the width.
@@ -9,8 +9,12 @@ import java.io.OutputStreamWriter;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javafx.stage.FileChooser;
+import logic.CompiledRule;
+import logic.LoadPattern;
+import logic.Metrics;
 import logic.PatternFormatException;
 import logic.PatternFormatExceptionDialog;
+import logic.RangeRule;
 
 /**
  * Save allows the user to save his/her pattern to a RLE file.
@@ -26,6 +30,9 @@ public class SavePattern{
     private StringBuilder rawPattern;
     private String born;
     private String survives;
+    private int states = 2;
+    //The Larger than Life rule of the pattern, or null.
+    private RangeRule rangeRule;
     private byte[][] RLEPattern;
     
     /**
@@ -38,15 +45,16 @@ public class SavePattern{
 
     /**
      * Initiation cycle, engaging every method that is nessesary to create a RLE 
-     * save file. 
+     * save file. The ruleset is retrieved first, as the number of states
+     * decides the letters of the pattern.
      */
     public void initSavePattern(){
+        retrieveRuleStrings();
+        checkRuleset();
         encodePattern();
         encodePatternDuplicates();
         removeZeroesLineshift();
         encodeMultipleLineshift();
-        retrieveRuleStrings();
-        checkRuleset();
         buildRLE();
         saveToRLEDialog();
         savePatternFile();
@@ -61,6 +69,7 @@ public class SavePattern{
         if(file == null){
             return;
         }
+        long start = System.nanoTime();
         try{
             OutputStreamWriter output = new OutputStreamWriter(new FileOutputStream(file));
         
@@ -78,6 +87,7 @@ public class SavePattern{
         catch(FileNotFoundException e){
                 System.err.println("No file saved.");
         }
+        Metrics.record(Metrics.SAVE, start);
     }
     
     /**
@@ -108,6 +118,8 @@ public class SavePattern{
      *                0 = "b"
      *      end of line = "$"
      *  end of byte[][] = "!"
+     * A rule with more than two states uses "." for 0 and "A", "B" and on 
+     * for the states from 1, see LoadPattern.cellLetters(int, boolean).
      */
     public void encodePattern(){
         rawPattern = new StringBuilder();
@@ -117,12 +129,7 @@ public class SavePattern{
         for(int i = 0; i < RLEPattern.length; i++){
             for(int j = 0; j < RLEPattern[0].length; j++){
                 
-                if(RLEPattern[i][j] == 1){
-                    rawPattern.append("o");
-                }
-                else if(RLEPattern[i][j] == 0){
-                    rawPattern.append("b");
-                }
+                rawPattern.append(LoadPattern.cellLetters(RLEPattern[i][j] & 0xFF, states > 2));
                 count++;
             }            
             if(count != (RLEPattern.length*RLEPattern[0].length))
@@ -135,38 +142,43 @@ public class SavePattern{
      * Shrinking the RLE file.
      * Shrinking the RLE file to contain a number and a character for every 
      * line with more than one "o" or "b" in a row. Making sure the file is as
-     * small as posible.
+     * small as posible. A state written with two letters, i.e. "pA", counts
+     * as one cell.
      * Sample:
      * "bbb" = "3b"
      * "oooo" = "4o"
+     * "pApA" = "2pA"
      */
     public void encodePatternDuplicates(){
         StringBuilder result = new StringBuilder();
-        int count = 1;
+        Matcher cellMatch = Pattern.compile("[p-y]?.").matcher(rawPattern);
+        String last = null;
+        int count = 0;
 
-        for(int i = 1; i < rawPattern.length(); i++){
-            if(rawPattern.charAt(i) == rawPattern.charAt(i-1)){
+        while(cellMatch.find()){
+            String cell = cellMatch.group();
+            if(cell.equals(last)){
                 count++;
+                continue;
             }
-            else{
-                if(count > 1){
-                    result.append(String.valueOf(count) + rawPattern.charAt(i-1));
-                }else{ 
-                    result.append(rawPattern.charAt(i-1));
-                }
-                count = 1;
+            if(count > 1){
+                result.append(count);
+            }
+            if(last != null){
+                result.append(last);
             }
+            last = cell;
+            count = 1;
         }
-        result.append(String.valueOf("!"));
-        rawPattern = result;
+        rawPattern = result.append(last);
     }
     
     /**
-     * Shrinking the pattern further by removing zeroes/b's at the end of the 
-     * patternlines.
+     * Shrinking the pattern further by removing zeroes/b's (or .'s) at the end
+     * of the patternlines.
      */
     public void removeZeroesLineshift(){        
-        Pattern zeroPatt = Pattern.compile("([1-9]\\d*)?b\\$");
+        Pattern zeroPatt = Pattern.compile("([1-9]\\d*)?[b.]\\$");
         Matcher zeroMatch = zeroPatt.matcher(rawPattern);
         
         while(zeroMatch.find()){
@@ -218,7 +230,12 @@ public class SavePattern{
         }
         builder.append("x = " + getRLEPattern()[0].length + ", ");
         builder.append("y = " + getRLEPattern().length + ", ");
-        builder.append("rule = B" + getBorn() + "/S" + getSurvives());
+        if(rangeRule != null)
+            builder.append("rule = " + rangeRule);
+        else
+            builder.append("rule = B" + getBorn() + "/S" + getSurvives());
+        if(states > 2 && rangeRule == null)
+            builder.append("/C" + states);
         builder.append(System.lineSeparator());
         builder.append(rawPattern);
     }
@@ -226,28 +243,24 @@ public class SavePattern{
     /**
      * Retrieves the ruleset written in the textfields else the current ruleset 
      * from the current Gameboard instance, if nothing is written both 
-     * PatternEditor GUI TextFields.
+     * PatternEditor GUI TextFields. The number of states is always the one of 
+     * the current ruleset, which the pattern was made with. A Larger than 
+     * Life rule is saved as it is, see RangeRule.
      */
     public void retrieveRuleStrings(){
+        CompiledRule rule = peCtrl.getPatternEditor().getStaticBoard()
+                                  .getNextGeneration().getCompiledRule();
+        rangeRule = peCtrl.getPatternEditor().getStaticBoard()
+                          .getNextGeneration().getRangeRule();
+        setStates(rangeRule != null ? rangeRule.getStates() : rule.getStates());
         
         if(peCtrl.getBorn().getText().isEmpty() || peCtrl.getSurvives().getText().isEmpty()){
-            String b = null;
-            String s = null;
-            
-            for(int i = 0; i < 9; i++){
-                
-                if(peCtrl.getPatternEditor().getStaticBoard().getNextGeneration().getBorn()[i]){
-                    b += i;   
-                }
-                if(peCtrl.getPatternEditor().getStaticBoard().getNextGeneration().getSurvives()[i]){
-                    s += i;
-                }
-            }
-            setBorn(b.replace("null", ""));
-            setSurvives(s.replace("null", ""));
+            setBorn(rule.getBornString());
+            setSurvives(rule.getSurvivesString());
         }else{
             setBorn(peCtrl.getBorn().getText());
-            setSurvives(peCtrl.getSurvives().getText());
+            //The number of states after the survives rule, i.e. 345/C4, is the rule's.
+            setSurvives(peCtrl.getSurvives().getText().replaceFirst("/.*", ""));
         }
     }
     
@@ -258,7 +271,7 @@ public class SavePattern{
      */
     public void checkRuleset(){
         try{
-            if(!born.matches("([0-8]{1,9})") && !survives.matches("([0-8]{1,9})")){
+            if(rangeRule == null && !CompiledRule.isValid(born) && !CompiledRule.isValid(survives)){
                 born = "3";
                 survives = "23";
                 throw new PatternFormatException();
@@ -270,7 +283,7 @@ public class SavePattern{
     
     /**
      * Shrinks the pattern, so that there is no rows or columns around the 
-     * pattern that contains just dead cells.
+     * pattern that contains just dead cells. The cells keep their states.
      * @param trim is the pattern to be trimmed.
      * @return dosnt contain any dead cell borders.
      */
@@ -284,9 +297,7 @@ public class SavePattern{
             for(int i = 0; i<trimmed.length; i++){
                 for(int j = 0; j<trimmed[0].length; j++){
                 
-                    if(trim[moves[0]+i][moves[2]+j] == 1){
-                        trimmed[i][j] = 1;
-                    }
+                    trimmed[i][j] = trim[moves[0]+i][moves[2]+j];
                 }
             }
         }
@@ -364,6 +375,20 @@ public class SavePattern{
         this.survives = ruleS;
     }
     
+    /**
+     * @return number of states of the rule, 2 if no cells decay.
+     */
+    public int getStates() {
+        return states;
+    }
+    
+    /**
+     * @param states number of states of the rule, 2 if no cells decay.
+     */
+    public void setStates(int states) {
+        this.states = states;
+    }
+    
     /**
      * @param ruleB is a String containing the born rules.
      */
@@ -0,0 +1,195 @@
+package logic;
+
+import java.util.Random;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Testing the bounding box and the edge occupancy kept by the generations.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class BoundingBoxTest {
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.out.println("Before class");
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        System.out.println("After class");
+    }
+
+    /**
+     * @return the bounding box found by visiting every cell, or null.
+     */
+    private static int[] scannedBox(Generation gen){
+        int[] box = null;
+        for(long cell : gen){
+            int row = Generation.row(cell), column = Generation.column(cell);
+            if(box == null){
+                box = new int[]{row, row, column, column};
+                continue;
+            }
+            box[0] = Math.min(box[0], row);
+            box[1] = Math.max(box[1], row);
+            box[2] = Math.min(box[2], column);
+            box[3] = Math.max(box[3], column);
+        }
+        return box;
+    }
+
+    /**
+     * Test of add and remove, the sides move inwards when their last cell
+     * is removed, also across a wide gap, and the counts of the rows and
+     * columns follow.
+     */
+    @Test
+    public void testAddRemove() {
+        System.out.println("add and remove");
+        BoundingBox instance = new BoundingBox();
+        assertTrue(instance.isEmpty());
+        instance.add(-5, 3);
+        instance.add(2, -7);
+        instance.add(1_000_000, 3);
+        instance.add(1_000_000, 2);
+        assertEquals(-5, instance.getTop());
+        assertEquals(1_000_000, instance.getBottom());
+        assertEquals(-7, instance.getLeft());
+        assertEquals(3, instance.getRight());
+        assertEquals(2, instance.columnCount(3));
+        assertEquals(2, instance.rowCount(1_000_000));
+        assertEquals(0, instance.rowCount(1_000_001));
+
+        instance.remove(1_000_000, 2);
+        assertEquals(1_000_000, instance.getBottom());
+        instance.remove(1_000_000, 3);
+        assertEquals(2, instance.getBottom());
+        assertEquals(3, instance.getRight());
+        assertEquals(1, instance.columnCount(3));
+        instance.remove(-5, 3);
+        assertEquals(2, instance.getTop());
+        assertEquals(-7, instance.getRight());
+        instance.remove(2, -7);
+        assertTrue(instance.isEmpty());
+        assertEquals(0, instance.rowCount(2));
+
+        instance.add(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        assertEquals(Integer.MIN_VALUE, instance.getBottom());
+        assertEquals(Integer.MAX_VALUE, instance.getLeft());
+        assertEquals(1, instance.rowCount(Integer.MIN_VALUE));
+        assertEquals(1, instance.columnCount(Integer.MAX_VALUE));
+        instance.add(Integer.MIN_VALUE+1, Integer.MAX_VALUE-1);
+        assertEquals(Integer.MAX_VALUE-1, instance.getLeft());
+        instance.clear();
+        assertEquals(0, instance.rowCount(Integer.MIN_VALUE));
+
+        //A box wider than the arrays keep.
+        instance.add(0, 0);
+        instance.add(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        instance.add(Integer.MAX_VALUE, 0);
+        assertEquals(2, instance.columnCount(0));
+        assertEquals(1, instance.rowCount(Integer.MAX_VALUE));
+        instance.remove(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        assertEquals(0, instance.getTop());
+        assertEquals(0, instance.getRight());
+        instance.remove(Integer.MAX_VALUE, 0);
+        assertEquals(0, instance.getBottom());
+        instance.remove(0, 0);
+        instance.add(7, 8);
+        instance.add(9, 8);
+        assertEquals(2, instance.columnCount(8));
+        assertEquals(7, instance.getTop());
+    }
+
+    /**
+     * Test of a box moving, as a glider does, and of a box made for the
+     * next generation: the counts stay right as the lines are moved.
+     */
+    @Test
+    public void testMove() {
+        System.out.println("move");
+        BoundingBox instance = new BoundingBox();
+        for(int step = 0; step<200; step++){
+            instance.add(step, -step);
+            instance.add(step+2, -step-2);
+            if(step > 0){
+                instance.remove(step-1, -step+1);
+                instance.remove(step+1, -step-1);
+            }
+            assertEquals(step, instance.getTop());
+            assertEquals(step+2, instance.getBottom());
+            assertEquals(-step-2, instance.getLeft());
+            assertEquals(-step, instance.getRight());
+            assertEquals(1, instance.rowCount(step));
+            assertEquals(0, instance.rowCount(step+1));
+            assertEquals(1, instance.columnCount(-step-2));
+        }
+
+        BoundingBox next = new BoundingBox(instance);
+        assertTrue(next.isEmpty());
+        assertEquals(0, next.rowCount(199));
+        next.add(500, 500);
+        next.add(-500, -500);
+        assertEquals(-500, next.getTop());
+        assertEquals(500, next.getRight());
+        assertEquals(1, next.rowCount(500));
+        assertEquals(1, next.columnCount(-500));
+        next.remove(500, 500);
+        assertEquals(-500, next.getBottom());
+        assertEquals(-500, next.getRight());
+    }
+
+    /**
+     * Test of getBoundingBox, getEdgeOccupancy and needExpansion of every
+     * generation, against a scan of the cells, while a soup is running and
+     * while cells are edited.
+     */
+    @Test
+    public void testGenerations() {
+        System.out.println("generation boxes");
+        Generation[] generations = {new GenerationHash(60, 1), new GenerationConcurrHash(60, 1),
+                                    new GenerationHashLife(60, 1), new GenerationTiled(60, 1),
+                                    new GenerationIncremental(60, 1)};
+        for(int g = 0; g<generations.length; g++){
+            Generation gen = generations[g];
+            assertNull(gen.getBoundingBox());
+            assertFalse(gen.needExpansion());
+            Random random = new Random(12);
+            for(int i = 20; i<40; i++)
+                for(int j = 20; j<40; j++)
+                    if(random.nextInt(3) == 0)
+                        gen.addLivingCell(gen.indToKey(i, j));
+            gen.addLivingCell(gen.indToKey(0, 10));
+            assertTrue(gen.needExpansion());
+            assertArrayEquals(new int[]{1, 0, 0, 0}, gen.getEdgeOccupancy());
+
+            for(int step = 0; step<40; step++){
+                gen = gen.calcNextGen();
+                assertArrayEquals(gen.toString(), scannedBox(gen), gen.getBoundingBox());
+                int[] box = gen.getBoundingBox();
+                if(step % 10 == 0 && box != null){
+                    gen.removeLivingCell(Generation.key(box[0], box[2]));
+                    for(long cell : gen){
+                        if(Generation.row(cell) == box[1]){
+                            gen.removeLivingCell(cell);
+                            break;
+                        }
+                    }
+                    assertArrayEquals(gen.toString(), scannedBox(gen), gen.getBoundingBox());
+                }
+                int top = gen.getOriginRow(), left = gen.getOriginColumn();
+                int cells = 0;
+                for(long cell : gen)
+                    if(Generation.row(cell) == top || Generation.column(cell) == left)
+                        cells++;
+                int[] edges = gen.getEdgeOccupancy();
+                assertTrue(edges[0]+edges[2] >= cells);
+            }
+            gen.clearPopulation();
+            assertNull(gen.getBoundingBox());
+        }
+    }
+}
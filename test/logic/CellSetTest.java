@@ -0,0 +1,188 @@
+package logic;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.Set;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Testing the primitive CellSet, CellCountMap and CellMap against the
+ * java.util collections.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class CellSetTest {
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.out.println("Before class");
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        System.out.println("After class");
+    }
+
+    /**
+     * Test of add, remove and contains with random cells, including cell 0.
+     */
+    @Test
+    public void testAddRemoveContains() {
+        System.out.println("CellSet add/remove/contains");
+        Random random = new Random(1);
+        CellSet set = new CellSet();
+        Set<Long> expected = new HashSet<>();
+
+        for(int i = 0; i<100000; i++){
+            long key = random.nextInt(2000);
+            if(random.nextInt(3) == 0)
+                assertEquals(expected.remove(key), set.remove(key));
+            else
+                assertEquals(expected.add(key), set.add(key));
+        }
+        assertEquals(expected.size(), set.size());
+        for(long key = 0; key<2000; key++)
+            assertEquals(expected.contains(key), set.contains(key));
+
+        Set<Long> iterated = new HashSet<>();
+        for(PrimitiveIterator.OfLong it = set.iterator(); it.hasNext();)
+            iterated.add(it.nextLong());
+        assertEquals(expected, iterated);
+    }
+
+    /**
+     * Test of clear, the set is empty and can be reused.
+     */
+    @Test
+    public void testClear() {
+        System.out.println("CellSet clear");
+        CellSet set = new CellSet();
+        for(int key = 0; key<1000; key++)
+            set.add(key);
+        set.clear();
+        assertEquals(0, set.size());
+        assertFalse(set.contains(0));
+        assertFalse(set.iterator().hasNext());
+        set.add(7);
+        assertArrayEquals(new long[]{7}, set.toArray());
+    }
+
+    /**
+     * Test of increment and forEach in CellCountMap.
+     */
+    @Test
+    public void testCountMap() {
+        System.out.println("CellCountMap increment");
+        Random random = new Random(2);
+        CellCountMap map = new CellCountMap();
+        Map<Long, Integer> expected = new HashMap<>();
+
+        for(int i = 0; i<50000; i++){
+            long key = random.nextInt(5000);
+            expected.merge(key, 1, Integer::sum);
+            assertEquals((int) expected.get(key), map.increment(key));
+        }
+        assertEquals(expected.size(), map.size());
+
+        Map<Long, Integer> iterated = new HashMap<>();
+        map.forEach((key, count) -> iterated.put(key, count));
+        assertEquals(expected, iterated);
+
+        map.clear();
+        assertEquals(0, map.get(0));
+        assertEquals(0, map.size());
+    }
+
+    /**
+     * Test of add in CellCountMap, cells reaching 0 are removed.
+     */
+    @Test
+    public void testCountMapAdd() {
+        System.out.println("CellCountMap add");
+        Random random = new Random(3);
+        CellCountMap map = new CellCountMap();
+        Map<Long, Integer> expected = new HashMap<>();
+
+        for(int i = 0; i<100000; i++){
+            long key = random.nextInt(3000);
+            int delta = random.nextInt(5)-2;
+            int count = expected.getOrDefault(key, 0)+delta;
+            if(count == 0)
+                expected.remove(key);
+            else
+                expected.put(key, count);
+            assertEquals(count, map.add(key, delta));
+        }
+        assertEquals(expected.size(), map.size());
+        for(long key = 0; key<3000; key++)
+            assertEquals((int) expected.getOrDefault(key, 0), map.get(key));
+    }
+
+    /**
+     * Test of the set with the keys of cells on both sides of the origin,
+     * far apart in the world.
+     */
+    @Test
+    public void testSignedKeys() {
+        System.out.println("CellSet signed keys");
+        Random random = new Random(4);
+        CellSet set = new CellSet();
+        Set<Long> expected = new HashSet<>();
+
+        for(int i = 0; i<50000; i++){
+            int row = random.nextInt(200)-100;
+            int column = random.nextInt(200)-100;
+            if(random.nextBoolean())
+                row += Integer.MAX_VALUE/2;
+            long key = Generation.key(row, column);
+            assertEquals(expected.add(key), set.add(key));
+        }
+        assertEquals(expected.size(), set.size());
+        for(long key : expected){
+            assertTrue(set.contains(key));
+            assertFalse(set.contains(key+(1L << 32)) && !expected.contains(key+(1L << 32)));
+        }
+    }
+
+    /**
+     * Test of put, get and remove of CellMap with random cells, including
+     * cell 0 and the keys of tiles along a diagonal.
+     */
+    @Test
+    public void testCellMap() {
+        System.out.println("CellMap put/get/remove");
+        Random random = new Random(4);
+        CellMap<String> map = new CellMap<>();
+        Map<Long, String> expected = new HashMap<>();
+
+        for(int i = 0; i<100000; i++){
+            int d = random.nextInt(500)-250;
+            long key = random.nextBoolean() ? Generation.key(d, d) : random.nextInt(2000);
+            if(random.nextInt(3) == 0)
+                assertEquals(expected.remove(key), map.remove(key));
+            else{
+                String value = Integer.toString(i);
+                assertEquals(expected.put(key, value), map.put(key, value));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for(Map.Entry<Long, String> entry : expected.entrySet())
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        assertFalse(map.containsKey(Generation.key(1000, 1000)));
+
+        Set<String> values = new HashSet<>();
+        map.forEachValue(values::add);
+        assertEquals(new HashSet<>(expected.values()), values);
+
+        map.clear();
+        assertEquals(0, map.size());
+        assertNull(map.get(0));
+        map.put(7, "seven");
+        assertEquals("seven", map.get(7));
+    }
+}
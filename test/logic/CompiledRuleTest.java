@@ -0,0 +1,149 @@
+package logic;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Testing the compiled rule tables, the Hensel notation and the engines
+ * using them.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class CompiledRuleTest {
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.out.println("Before class");
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        System.out.println("After class");
+    }
+
+    private byte[][] randomBoard(int x, int y, long seed){
+        Random random = new Random(seed);
+        byte[][] board = new byte[x][y];
+        for(int i = 0; i<x; i++)
+            for(int j = 0; j<y; j++)
+                board[i][j] = (byte)(random.nextInt(3) == 0 ? 1 : 0);
+        return board;
+    }
+
+    /**
+     * Test of fromCounts and parse with B/S rules.
+     */
+    @Test
+    public void testTotalistic() throws PatternFormatException {
+        System.out.println("compiled B/S rules");
+        assertEquals(CompiledRule.CONWAY, CompiledRule.parse("3", "23"));
+        assertTrue(CompiledRule.CONWAY.isTotalistic());
+        assertEquals("B3/S23", CompiledRule.CONWAY.toString());
+
+        int blinker = CompiledRule.neighbourBit(-1, 0) | CompiledRule.neighbourBit(1, 0);
+        assertEquals(1, CompiledRule.CONWAY.nextState(blinker | CompiledRule.CENTER));
+        assertEquals(0, CompiledRule.CONWAY.nextState(blinker));
+
+        CompiledRule highlife = CompiledRule.parse("36", "23");
+        assertArrayEquals(new boolean[]{false,false,false,true,false,false,true,false,false},
+                          highlife.getBorn());
+        assertEquals("B36/S23", highlife.toString());
+    }
+
+    /**
+     * Test of the Hensel shapes, every shape of a count is a distinct class
+     * and together they hold every neighbourhood of the count.
+     */
+    @Test
+    public void testHenselShapes() throws PatternFormatException {
+        System.out.println("Hensel shapes");
+        String[] letters = {"", "ce", "ceaikn", "ceaiknjqry", "ceaiknjqrytwz",
+                            "ceaiknjqry", "ceaikn", "ce", ""};
+        int[] binomial = {1, 8, 28, 56, 70, 56, 28, 8, 1};
+        for(int count = 1; count<8; count++){
+            int total = 0;
+            for(char letter : letters[count].toCharArray()){
+                CompiledRule rule = CompiledRule.parse(count + "" + letter, "0");
+                assertFalse(rule.isTotalistic());
+                int born = 0;
+                for(int mask = 0; mask<512; mask++)
+                    if((mask & CompiledRule.CENTER) == 0)
+                        born += rule.nextState(mask);
+                assertTrue(born > 0);
+                total += born;
+                assertEquals(count + "" + letter, rule.getBornString());
+            }
+            assertEquals(binomial[count], total);
+        }
+        //Known shapes: 2i is a line through the cell, 2n the opposite corners.
+        CompiledRule rule = CompiledRule.parse("2in", "0");
+        assertEquals(1, rule.nextState(CompiledRule.neighbourBit(0, -1) | CompiledRule.neighbourBit(0, 1)));
+        assertEquals(1, rule.nextState(CompiledRule.neighbourBit(-1, 1) | CompiledRule.neighbourBit(1, -1)));
+        assertEquals(0, rule.nextState(CompiledRule.neighbourBit(-1, 0) | CompiledRule.neighbourBit(0, 1)));
+    }
+
+    /**
+     * Test of the minus notation and invalid rules.
+     */
+    @Test
+    public void testParse() throws PatternFormatException {
+        System.out.println("Hensel parse");
+        assertEquals(CompiledRule.parse("3", "23"), CompiledRule.parse("3", "2ceaikn3"));
+        assertEquals(CompiledRule.parse("2-a", "1"), CompiledRule.parse("2ceikn", "1"));
+        assertEquals("B2-a/S12-k", CompiledRule.parse("2ceikn", "12-k").toString());
+        assertTrue(CompiledRule.isValid("3-ai"));
+        assertFalse(CompiledRule.isValid("9"));
+        assertFalse(CompiledRule.isValid("0c"));
+        assertFalse(CompiledRule.isValid("1a"));
+        assertFalse(CompiledRule.isValid(""));
+        assertFalse(CompiledRule.isValid("3-"));
+    }
+
+    /**
+     * Test of a non-totalistic rule in every engine, against NextGeneration.
+     */
+    @Test
+    public void testEngines() throws PatternFormatException {
+        System.out.println("Hensel engines");
+        CompiledRule rule = CompiledRule.parse("2-a3", "23-k");
+        NextGeneration ng = new NextGeneration();
+        ng.setCompiledRule(rule);
+        NextGeneration[] engines = {new PackedNextGeneration(), NextGeneration.create("vector")};
+        for(NextGeneration engine : engines)
+            engine.setCompiledRule(rule);
+
+        byte[][] board = randomBoard(70, 90, 5);
+        for(int gen = 0; gen<5; gen++){
+            byte[][] expResult = ng.calcNextGen(board);
+            for(NextGeneration engine : engines)
+                assertArrayEquals(expResult, engine.calcNextGen(board));
+            board = expResult;
+        }
+
+        Generation[] generations = {new GenerationHash(200, 1), new GenerationHashLife(200, 1),
+                                    new GenerationTiled(200, 1), new GenerationIncremental(200, 1)};
+        byte[][] soup = new byte[200][200];
+        byte[][] random = randomBoard(40, 40, 6);
+        for(int i = 0; i<40; i++)
+            System.arraycopy(random[i], 0, soup[i+80], 80, 40);
+        Set<String> expCells = new HashSet<>();
+        for(Generation gen : generations){
+            gen.setRule(rule);
+            for(int i = 0; i<200; i++)
+                for(int j = 0; j<200; j++)
+                    if(soup[i][j] == 1)
+                        gen.addLivingCell(gen.indToKey(i, j));
+        }
+        for(int step = 0; step<20; step++){
+            soup = ng.calcNextGen(soup);
+            for(int g = 0; g<generations.length; g++){
+                generations[g] = generations[g].calcNextGen();
+                assertArrayEquals(soup, generations[g].convertToStatic());
+            }
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package logic;
+
+import java.util.Random;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Testing the Zobrist hashes of the Generations and the cycles found by
+ * CycleDetector.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class CycleDetectorTest {
+
+    private static final int[][] BLOCK = {{0, 0}, {0, 1}, {1, 0}, {1, 1}};
+    private static final int[][] BLINKER = {{0, 0}, {0, 1}, {0, 2}};
+    private static final int[][] GLIDER = {{0, 1}, {1, 2}, {2, 0}, {2, 1}, {2, 2}};
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.out.println("Before class");
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        System.out.println("After class");
+    }
+
+    private Generation[] generations(){
+        return new Generation[]{new GenerationHash(40, 1), new GenerationConcurrHash(40, 1),
+            new GenerationIncremental(40, 1), new GenerationTiled(40, 1),
+            new GenerationHashLife(40, 1), new GenerationMultiState(40, 1)};
+    }
+
+    private static void add(Generation gen, int[][] cells, int row, int column){
+        for(int[] cell : cells)
+            gen.addLivingCell(Generation.key(row+cell[0], column+cell[1]));
+    }
+
+    /**
+     * The hash of the cells, summed cell by cell.
+     */
+    private static long reference(Generation gen){
+        long hash = 0;
+        for(long cell : gen)
+            hash += ZobristHash.cell(Generation.row(cell), Generation.column(cell))
+                  * ZobristHash.state(gen.stateOf(cell));
+        return hash;
+    }
+
+    /**
+     * Test that every Generation keeps its hash equal to the sum of its
+     * cells, through births, deaths and edits.
+     */
+    @Test
+    public void testHash() {
+        System.out.println("getHash");
+        for(Generation gen : generations()){
+            Random random = new Random(4);
+            for(int i = 0; i<300; i++)
+                gen.addLivingCell(Generation.key(random.nextInt(30)-15, random.nextInt(30)-15));
+            assertEquals(gen.toString(), reference(gen), gen.getHash());
+            for(int step = 0; step<30; step++){
+                gen = gen.calcNextGen();
+                assertEquals(gen + " gen " + step, reference(gen), gen.getHash());
+            }
+            gen.removeLivingCell(gen.iterator().next());
+            assertEquals(gen.toString(), reference(gen), gen.getHash());
+            gen.clearPopulation();
+            assertEquals(gen.toString(), 0, gen.getHash());
+        }
+        GenerationMultiState decay = new GenerationMultiState(40, 1);
+        decay.setRule(CompiledRule.fromCounts(new boolean[]{false, false, true, false, false, false, false, false, false},
+                                              new boolean[9], 4));
+        add(decay, GLIDER, 0, 0);
+        for(int step = 0; step<10; step++){
+            decay.calcNextGen();
+            assertEquals("decay gen " + step, reference(decay), decay.getHash());
+        }
+    }
+
+    /**
+     * Test that a pattern moved has the hash of the pattern translated, and
+     * of Generation.translate.
+     */
+    @Test
+    public void testTranslate() {
+        System.out.println("translate");
+        for(Generation gen : generations()){
+            add(gen, GLIDER, 3, -7);
+            long hash = gen.getHash();
+            int originRow = gen.getOriginRow();
+            gen.translate(-1000, 25);
+            assertEquals(gen.toString(), ZobristHash.translate(hash, -1000, 25), gen.getHash());
+            assertEquals(originRow-1000, gen.getOriginRow());
+            assertEquals(5, gen.getPopulation());
+            assertEquals(1, gen.cellsInRow(3-1000));
+            Generation other = new GenerationHash(40, 1);
+            add(other, GLIDER, 3-1000, -7+25);
+            assertEquals(other.getHash(), gen.getHash());
+        }
+    }
+
+    /**
+     * Steps a generation until the detector finds a cycle.
+     */
+    private Cycle run(Generation gen, int generations){
+        CycleDetector detector = new CycleDetector();
+        for(int i = 1; i<=generations; i++){
+            gen = gen.calcNextGen();
+            Cycle cycle = detector.observe(gen, i);
+            if(cycle != null)
+                return cycle;
+        }
+        return null;
+    }
+
+    /**
+     * Test of the still life, the oscillator and the spaceship on every
+     * Generation, and of a soup that never repeats in the ring.
+     */
+    @Test
+    public void testObserve() {
+        System.out.println("observe");
+        for(Generation gen : generations()){
+            add(gen, BLOCK, 5, 5);
+            Cycle cycle = run(gen, 5);
+            assertEquals(gen.toString(), 1, cycle.getPeriod());
+            assertFalse(cycle.isMoving());
+            assertEquals("Still life", cycle.toString());
+        }
+        for(Generation gen : generations()){
+            add(gen, BLINKER, 0, 0);
+            Cycle cycle = run(gen, 5);
+            assertEquals(gen.toString(), 2, cycle.getPeriod());
+            assertEquals(3, cycle.getGeneration());
+            assertEquals("Period 2", cycle.toString());
+        }
+        for(Generation gen : generations()){
+            add(gen, GLIDER, 0, 0);
+            Cycle cycle = run(gen, 10);
+            assertEquals(gen.toString(), 4, cycle.getPeriod());
+            assertEquals(1, cycle.getRowShift());
+            assertEquals(1, cycle.getColumnShift());
+            assertEquals("Period 4, moving 1,1", cycle.toString());
+        }
+        //The R-pentomino runs for more than a thousand generations.
+        Generation gen = new GenerationHash(40, 1);
+        add(gen, new int[][]{{0, 1}, {0, 2}, {1, 0}, {1, 1}, {2, 1}}, 0, 0);
+        assertNull(run(gen, 500));
+    }
+
+    /**
+     * A generation whose every hash collides, stepped in place so the
+     * generations after it are of the class as well.
+     */
+    public static class CollidingGeneration extends GenerationMultiState{
+
+        public CollidingGeneration(int area, int areaInc){
+            super(area, areaInc);
+        }
+
+        @Override
+        public long getHash(){
+            return 0;
+        }
+    }
+
+    /**
+     * Test that a hash collision is not taken for a cycle: the R-pentomino
+     * repeats its population and size of box within the ring long before it
+     * settles, and the cycle found is checked against the cells.
+     */
+    @Test
+    public void testCollision() {
+        System.out.println("observe with colliding hashes");
+        Generation gen = new CollidingGeneration(40, 1);
+        add(gen, new int[][]{{0, 1}, {0, 2}, {1, 0}, {1, 1}, {2, 1}}, 0, 0);
+        assertNull(run(gen, 500));
+
+        gen = new CollidingGeneration(40, 1);
+        add(gen, GLIDER, 0, 0);
+        Cycle cycle = run(gen, 10);
+        assertEquals(4, cycle.getPeriod());
+        assertEquals(1, cycle.getRowShift());
+        assertEquals(1, cycle.getColumnShift());
+    }
+
+    /**
+     * Test that a glider on a torus is only found when it comes back in place.
+     */
+    @Test
+    public void testBounded() {
+        System.out.println("observe on a torus");
+        Generation gen = new GenerationHash(8, 1);
+        gen.setTopology(Topology.TORUS);
+        add(gen, GLIDER, -4, -4);
+        CycleDetector detector = new CycleDetector(40);
+        Cycle cycle = null;
+        for(int i = 1; i<=40 && cycle == null; i++){
+            gen = gen.calcNextGen();
+            cycle = detector.observe(gen, i);
+        }
+        assertEquals(32, cycle.getPeriod());
+        assertFalse(cycle.isMoving());
+    }
+
+    /**
+     * Test that a DynamicBoard skipping the periods of a glider lands where
+     * stepping every generation does, and that an edit forgets the cycle.
+     */
+    @Test
+    public void testSkipCycles() {
+        System.out.println("DynamicBoard skipping cycles");
+        Generation expected = new GenerationHash(40, 1);
+        add(expected, GLIDER, 0, 0);
+        expected = expected.stepN(10007);
+
+        DynamicBoard board = new DynamicBoard(null, new GenerationHash(40, 1));
+        add(board.getGeneration(), GLIDER, 0, 0);
+        board.setSkipCycles(true);
+        board.stepN(7);
+        assertNotNull(board.getCycle());
+        board.stepN(10000);
+        assertEquals(10008, board.getGenCount());
+        assertEquals(expected.getHash(), board.getGeneration().getHash());
+        int[] box = expected.getBoundingBox();
+        assertArrayEquals(box, board.getGeneration().getBoundingBox());
+        assertTrue(board.getGeneration().inArea(box[0], box[2]));
+
+        board.setCompiledRule(CompiledRule.CONWAY);
+        assertNull(board.getCycle());
+    }
+}
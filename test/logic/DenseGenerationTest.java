@@ -0,0 +1,126 @@
+package logic;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Testing the in place stepping of DenseGeneration against NextGeneration.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class DenseGenerationTest {
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.out.println("Before class");
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        System.out.println("After class");
+    }
+
+    private byte[][] randomBoard(int x, int y, long seed){
+        Random random = new Random(seed);
+        byte[][] board = new byte[x][y];
+        for(int i = 0; i<x; i++)
+            for(int j = 0; j<y; j++)
+                board[i][j] = (byte)(random.nextInt(3) == 0 ? 1 : 0);
+        return board;
+    }
+
+    /**
+     * Test of step, against NextGeneration with B/S and Hensel rules, on
+     * boards of changing sizes, so the buffers are both grown and reused.
+     */
+    @Test
+    public void testStep() throws PatternFormatException {
+        System.out.println("dense step");
+        DenseGeneration instance = new DenseGeneration();
+        NextGeneration ng = new NextGeneration();
+        int[][] sizes = {{70, 50}, {1, 1}, {3, 90}, {90, 3}, {70, 50}, {20, 20}};
+        for(CompiledRule rule : new CompiledRule[]{CompiledRule.CONWAY,
+                CompiledRule.parse("36", "23"), CompiledRule.parse("2-a3", "23-k")}){
+            ng.setCompiledRule(rule);
+            for(int[] size : sizes){
+                byte[][] board = randomBoard(size[0], size[1], size[0]*31+size[1]);
+                byte[][] expResult = board;
+                for(int gen = 0; gen<5; gen++){
+                    expResult = ng.calcNextGen(expResult);
+                    assertSame(board, instance.step(board, rule));
+                    assertArrayEquals(expResult, board);
+                }
+            }
+        }
+    }
+
+    /**
+     * Test of step over many generations, swapping the buffers in between.
+     */
+    @Test
+    public void testGenerations() {
+        System.out.println("dense generations");
+        byte[][] board = randomBoard(40, 60, 9);
+        byte[][] expResult = board;
+        NextGeneration ng = new NextGeneration();
+        for(int gen = 0; gen<7; gen++)
+            expResult = ng.calcNextGen(expResult);
+        new DenseGeneration().step(board, CompiledRule.CONWAY, 7);
+        assertArrayEquals(expResult, board);
+    }
+
+    /**
+     * Test of StaticBoard.stepN, in place and counting the generations, with
+     * a compiled rule and with a Larger than Life rule.
+     */
+    @Test
+    public void testStaticBoardStepN() throws PatternFormatException {
+        System.out.println("StaticBoard stepN");
+        NextGeneration ng = new NextGeneration();
+        StaticBoard sb = new StaticBoard(null, ng);
+        byte[][] board = randomBoard(40, 60, 13);
+        sb.setCurrentGen(board);
+        byte[][] expResult = board;
+        for(int gen = 0; gen<25; gen++)
+            expResult = ng.calcNextGen(expResult);
+        sb.stepN(25);
+        assertSame(board, sb.getCurrentGen());
+        assertArrayEquals(expResult, board);
+        assertEquals(26, sb.getGenCount());
+
+        ng.decodeRuleset("R2,C0,M0,S5..9,B6..8,NM");
+        for(int gen = 0; gen<10; gen++)
+            expResult = ng.calcNextGen(expResult);
+        sb.stepN(10);
+        assertArrayEquals(expResult, board);
+        assertEquals(36, sb.getGenCount());
+    }
+
+    /**
+     * Test that stepping a board of the same size creates no garbage, where
+     * the JVM can measure the memory allocated by a thread.
+     */
+    @Test
+    public void testNoAllocation() {
+        System.out.println("dense allocation");
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if(!(threads instanceof com.sun.management.ThreadMXBean))
+            return;
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+        long id = Thread.currentThread().getId();
+
+        DenseGeneration instance = new DenseGeneration();
+        byte[][] board = randomBoard(200, 200, 3);
+        for(int gen = 0; gen<200; gen++)
+            instance.step(board, CompiledRule.CONWAY);
+        long before = bean.getThreadAllocatedBytes(id);
+        for(int gen = 0; gen<100; gen++)
+            instance.step(board, CompiledRule.CONWAY);
+        long allocated = bean.getThreadAllocatedBytes(id)-before;
+        assertTrue("allocated " + allocated + " bytes", allocated < 200*200);
+    }
+}
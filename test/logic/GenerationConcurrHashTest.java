@@ -0,0 +1,162 @@
+package logic;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Testing the parallel generation against GenerationHash.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class GenerationConcurrHashTest {
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.out.println("Before class");
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        System.out.println("After class");
+    }
+
+    /**
+     * Adds the same random soup to every generation, leaving the border of
+     * the area empty.
+     */
+    private void soup(int area, long seed, Generation... gens){
+        Random random = new Random(seed);
+        for(int i = 1; i<area-1; i++)
+            for(int j = 1; j<area-1; j++)
+                if(random.nextInt(3) == 0)
+                    for(Generation gen : gens)
+                        gen.addLivingCell(gen.indToKey(i, j));
+    }
+
+    /**
+     * Test of calcNextGen against GenerationHash, with a population large
+     * enough to be calculated in parallel and cells reaching the border.
+     */
+    @Test
+    public void testCalcNextGen() {
+        System.out.println("calcNextGen");
+        Generation expResult = new GenerationHash(200, 1);
+        Generation result = new GenerationConcurrHash(200, 1);
+        soup(200, 1, expResult, result);
+        assertTrue(result.getPopulation() > 4096);
+
+        for(int gen = 0; gen<15; gen++){
+            expResult = expResult.calcNextGen();
+            result = result.calcNextGen();
+            assertEquals(expResult.getArea(), result.getArea());
+            assertEquals(expResult.getPopulation(), result.getPopulation());
+            assertArrayEquals(expResult.convertToStatic(), result.convertToStatic());
+        }
+    }
+
+    /**
+     * Test of calcNextGen against GenerationHash in the bounded worlds, where
+     * the neighbours of the border rows are mapped to rows far away.
+     */
+    @Test
+    public void testBoundedWorld() {
+        System.out.println("calcNextGen bounded");
+        for(Topology topology : new Topology[]{Topology.TORUS, Topology.KLEIN_BOTTLE}){
+            Generation expResult = new GenerationHash(150, 1);
+            Generation result = new GenerationConcurrHash(150, 1);
+            expResult.setTopology(topology);
+            result.setTopology(topology);
+            Random random = new Random(3);
+            for(int i = 0; i<150; i++)
+                for(int j = 0; j<150; j++)
+                    if(random.nextInt(3) == 0){
+                        expResult.addLivingCell(expResult.indToKey(i, j));
+                        result.addLivingCell(result.indToKey(i, j));
+                    }
+            assertTrue(result.getPopulation() > 4096);
+
+            for(int gen = 0; gen<10; gen++){
+                expResult = expResult.calcNextGen();
+                result = result.calcNextGen();
+                assertEquals(expResult.getPopulation(), result.getPopulation());
+                assertArrayEquals(expResult.convertToStatic(), result.convertToStatic());
+            }
+        }
+    }
+
+    /**
+     * Test of calcNextGen on many threads, the result should be the same
+     * every time and the same as GenerationHash.
+     */
+    @Test
+    public void testDeterministic() throws Exception {
+        System.out.println("deterministic");
+        ForkJoinPool pool = new ForkJoinPool(8);
+        CompiledRule rule = CompiledRule.parse("36", "23");
+        Generation expResult = new GenerationHash(150, 1);
+        expResult.setRule(rule);
+        soup(150, 2, expResult);
+        for(int gen = 0; gen<10; gen++)
+            expResult = expResult.calcNextGen();
+        byte[][] expCells = expResult.convertToStatic();
+
+        for(int run = 0; run<3; run++){
+            GenerationConcurrHash start = new GenerationConcurrHash(150, 1);
+            start.setRule(rule);
+            soup(150, 2, start);
+            Generation result = pool.submit(() -> {
+                Generation next = start;
+                for(int gen = 0; gen<10; gen++)
+                    next = next.calcNextGen();
+                return next;
+            }).get();
+            assertArrayEquals(expCells, result.convertToStatic());
+        }
+        pool.shutdown();
+    }
+
+    /**
+     * Test of expandWorld, the cells keep their keys and the origin moves.
+     */
+    @Test
+    public void testExpandWorld() {
+        System.out.println("expandWorld");
+        GenerationConcurrHash instance = new GenerationConcurrHash(40, 1);
+        long corner = instance.indToKey(0, 0);
+        assertEquals(Generation.key(-20, -20), corner);
+        instance.addLivingCell(corner);
+        assertTrue(instance.needExpansion());
+
+        instance.expandWorld();
+        assertEquals(42, instance.getArea());
+        assertEquals(-21, instance.getOriginRow());
+        assertFalse(instance.needExpansion());
+        assertEquals(corner, (long) instance.iterator().next());
+        assertArrayEquals(new int[]{1, 1}, instance.keyToInd(corner));
+    }
+
+    /**
+     * Test of addLivingCell, removeLivingCell and the iterator.
+     */
+    @Test
+    public void testCells() {
+        System.out.println("cells");
+        GenerationConcurrHash instance = new GenerationConcurrHash(40, 1);
+        instance.addLivingCell(instance.indToKey(5, 6));
+        instance.addLivingCell(instance.indToKey(5, 6));
+        instance.addLivingCell(instance.indToKey(0, 0));
+        instance.addLivingCell(instance.indToKey(30, 2));
+        instance.removeLivingCell(instance.indToKey(30, 2));
+        assertEquals(2, instance.getPopulation());
+        Set<Long> cells = new HashSet<>();
+        for(long cell : instance)
+            cells.add(cell);
+        assertEquals(new HashSet<>(Arrays.asList(instance.indToKey(5, 6), instance.indToKey(0, 0))), cells);
+    }
+}
@@ -0,0 +1,194 @@
+package logic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Testing the HashLife generation against the byte[][] implementation
+ * in NextGeneration.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class GenerationHashLifeTest {
+
+    NextGeneration ng = new NextGeneration();
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.out.println("Before class");
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        System.out.println("After class");
+    }
+
+    /**
+     * Lists the living cells of the generation relative to their bounding box.
+     */
+    private List<String> cells(Generation gen){
+        List<int[]> ind = new ArrayList<>();
+        for(long cell : gen)
+            ind.add(gen.keyToInd(cell));
+        return normalize(ind);
+    }
+
+    /**
+     * Lists the living cells of the 2D-array relative to their bounding box.
+     */
+    private List<String> cells(byte[][] board){
+        List<int[]> ind = new ArrayList<>();
+        for(int i = 0; i<board.length; i++)
+            for(int j = 0; j<board[0].length; j++)
+                if(board[i][j] == 1)
+                    ind.add(new int[]{i, j});
+        return normalize(ind);
+    }
+
+    private List<String> normalize(List<int[]> ind){
+        int minI = Integer.MAX_VALUE, minJ = Integer.MAX_VALUE;
+        for(int[] c : ind){
+            minI = Math.min(minI, c[0]);
+            minJ = Math.min(minJ, c[1]);
+        }
+        List<String> result = new ArrayList<>();
+        for(int[] c : ind)
+            result.add((c[0]-minI) + "," + (c[1]-minJ));
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * Creates a board with a random soup in the middle and the same soup
+     * in a HashLife generation.
+     */
+    private byte[][] soup(GenerationHashLife gen, int size, int soup){
+        Random random = new Random(42);
+        byte[][] board = new byte[size][size];
+        int start = (size-soup)/2;
+        for(int i = 0; i<soup; i++){
+            for(int j = 0; j<soup; j++){
+                if(random.nextBoolean()){
+                    board[start+i][start+j] = 1;
+                    gen.addLivingCell(gen.indToKey(i+10, j+10));
+                }
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Test of calcNextGen on a random soup.
+     */
+    @Test
+    public void testCalcNextGen() {
+        System.out.println("HashLife calcNextGen");
+        GenerationHashLife gen = new GenerationHashLife(40, 1);
+        byte[][] board = soup(gen, 300, 20);
+        assertEquals(cells(board).size(), gen.getPopulation());
+
+        for(int i = 0; i<60; i++){
+            board = ng.calcNextGen(board);
+            gen = gen.calcNextGen();
+            assertEquals(cells(board), cells(gen));
+        }
+    }
+
+    /**
+     * Test of jump, 2^k generations in one call.
+     */
+    @Test
+    public void testJump() {
+        System.out.println("HashLife jump");
+        GenerationHashLife gen = new GenerationHashLife(40, 1);
+        byte[][] board = soup(gen, 300, 20);
+
+        for(int i = 0; i<64; i++)
+            board = ng.calcNextGen(board);
+        gen = gen.jump(6);
+        assertEquals(cells(board), cells(gen));
+    }
+
+    /**
+     * Test of stepN, one jump for every bit of the number of generations,
+     * against the default of Generation stepping one generation at a time.
+     */
+    @Test
+    public void testStepN() {
+        System.out.println("HashLife stepN");
+        GenerationHashLife gen = new GenerationHashLife(40, 1);
+        byte[][] board = soup(gen, 400, 20);
+        GenerationHash hash = new GenerationHash(40, 1);
+        for(long cell : gen)
+            hash.addLivingCell(cell);
+
+        for(int i = 0; i<100; i++)
+            board = ng.calcNextGen(board);
+        gen = gen.stepN(100);
+        assertEquals(cells(board), cells(gen));
+        assertEquals(cells(board), cells(hash.stepN(100)));
+        assertSame(gen, gen.stepN(0));
+    }
+
+    /**
+     * Test of alternative rules, B36/S23 (Highlife).
+     */
+    @Test
+    public void testRules() {
+        System.out.println("HashLife B36/S23");
+        GenerationHashLife gen = new GenerationHashLife(40, 1);
+        byte[][] board = soup(gen, 300, 20);
+        ng.decodeRuleset("36", "23");
+        gen.setRules(ng.getBorn(), ng.getSurvives());
+
+        for(int i = 0; i<32; i++)
+            board = ng.calcNextGen(board);
+        gen = gen.jump(5);
+        assertEquals(cells(board), cells(gen));
+    }
+
+    /**
+     * Test of a glider travelling far away.
+     */
+    @Test
+    public void testGliderJump() {
+        System.out.println("HashLife glider");
+        GenerationHashLife gen = new GenerationHashLife(40, 1);
+        int[][] glider = {{0,1}, {1,2}, {2,0}, {2,1}, {2,2}};
+        for(int[] c : glider)
+            gen.addLivingCell(gen.indToKey(c[0]+20, c[1]+20));
+
+        GenerationHashLife far = gen.jump(12);
+        assertEquals(5, far.getPopulation());
+        assertEquals(5, cells(far).size());
+        far.removeLivingCell(far.iterator().next());
+        assertEquals(4, far.getPopulation());
+
+        //There is no area cap, the area grows to the glider a million generations away.
+        far = gen.jump(20);
+        assertEquals(5, far.getPopulation());
+        assertEquals(5, cells(far).size());
+        assertTrue(far.getArea() > 2*(1 << 20)/4);
+        for(long cell : far)
+            assertTrue(far.inArea(Generation.row(cell), Generation.column(cell)));
+    }
+
+    /**
+     * Test of Generation.create, the name chooses the implementation.
+     */
+    @Test
+    public void testCreate() {
+        System.out.println("create");
+        assertTrue(Generation.create("HashLife", 40, 1) instanceof GenerationHashLife);
+        assertTrue(Generation.create(" tiled ", 40, 1) instanceof GenerationTiled);
+        assertTrue(Generation.create("incremental", 40, 1) instanceof GenerationIncremental);
+        assertEquals(GenerationHash.class, Generation.create("hash", 40, 1).getClass());
+        assertTrue(Generation.create(null, 40, 1) instanceof GenerationConcurrHash);
+        assertEquals(40, Generation.create("unknown", 40, 1).getArea());
+    }
+}
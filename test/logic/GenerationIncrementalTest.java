@@ -0,0 +1,181 @@
+package logic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Testing the incremental generation against the byte[][] implementation
+ * in NextGeneration.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class GenerationIncrementalTest {
+
+    NextGeneration ng = new NextGeneration();
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.out.println("Before class");
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        System.out.println("After class");
+    }
+
+    /**
+     * Lists the living cells of the generation relative to their bounding box.
+     */
+    private List<String> cells(Generation gen){
+        List<int[]> ind = new ArrayList<>();
+        for(long cell : gen)
+            ind.add(gen.keyToInd(cell));
+        return normalize(ind);
+    }
+
+    /**
+     * Lists the living cells of the 2D-array relative to their bounding box.
+     */
+    private List<String> cells(byte[][] board){
+        List<int[]> ind = new ArrayList<>();
+        for(int i = 0; i<board.length; i++)
+            for(int j = 0; j<board[0].length; j++)
+                if(board[i][j] == 1)
+                    ind.add(new int[]{i, j});
+        return normalize(ind);
+    }
+
+    private List<String> normalize(List<int[]> ind){
+        int minI = Integer.MAX_VALUE, minJ = Integer.MAX_VALUE;
+        for(int[] c : ind){
+            minI = Math.min(minI, c[0]);
+            minJ = Math.min(minJ, c[1]);
+        }
+        List<String> result = new ArrayList<>();
+        for(int[] c : ind)
+            result.add((c[0]-minI) + "," + (c[1]-minJ));
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * Creates a board with a random soup in the middle and the same soup
+     * in a incremental generation, crossing the key borders at (0,0).
+     */
+    private byte[][] soup(GenerationIncremental gen, int size, int soup){
+        Random random = new Random(42);
+        byte[][] board = new byte[size][size];
+        int start = (size-soup)/2;
+        for(int i = 0; i<soup; i++){
+            for(int j = 0; j<soup; j++){
+                if(random.nextBoolean()){
+                    board[start+i][start+j] = 1;
+                    gen.addLivingCell(gen.indToKey(i+10, j+10));
+                }
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Test of calcNextGen on a random soup, until it has settled.
+     */
+    @Test
+    public void testCalcNextGen() {
+        System.out.println("incremental calcNextGen");
+        GenerationIncremental gen = new GenerationIncremental(40, 1);
+        byte[][] board = soup(gen, 400, 30);
+        assertEquals(cells(board).size(), gen.getPopulation());
+
+        for(int i = 0; i<300; i++){
+            board = ng.calcNextGen(board);
+            gen = gen.calcNextGen();
+            assertEquals(cells(board), cells(gen));
+            assertEquals(cells(board).size(), gen.getPopulation());
+        }
+    }
+
+    /**
+     * Test of alternative rules, changed while running.
+     */
+    @Test
+    public void testRules() {
+        System.out.println("incremental B36/S23");
+        GenerationIncremental gen = new GenerationIncremental(40, 1);
+        byte[][] board = soup(gen, 300, 20);
+        for(int i = 0; i<10; i++){
+            board = ng.calcNextGen(board);
+            gen = gen.calcNextGen();
+        }
+        ng.decodeRuleset("36", "23");
+        gen.setRules(ng.getBorn(), ng.getSurvives());
+        for(int i = 0; i<30; i++){
+            board = ng.calcNextGen(board);
+            gen = gen.calcNextGen();
+            assertEquals(cells(board), cells(gen));
+        }
+    }
+
+    /**
+     * Test of still lifes being skipped, only the cells of the glider change.
+     */
+    @Test
+    public void testChanges() {
+        System.out.println("incremental changes");
+        GenerationIncremental gen = new GenerationIncremental(40, 1);
+        //A block, which is a still life.
+        int[][] block = {{0,0}, {0,1}, {1,0}, {1,1}};
+        for(int[] c : block)
+            gen.addLivingCell(gen.indToKey(c[0]+5, c[1]+5));
+        gen.calcNextGen();
+        assertEquals(0, gen.getChangeCount());
+        assertEquals(4, gen.getPopulation());
+
+        int[][] glider = {{0,1}, {1,2}, {2,0}, {2,1}, {2,2}};
+        for(int[] c : glider)
+            gen.addLivingCell(gen.indToKey(c[0]+20, c[1]+20));
+        for(int i = 0; i<4*300; i++){
+            gen.calcNextGen();
+            assertTrue(gen.getChangeCount() <= 6);
+        }
+        assertEquals(9, gen.getPopulation());
+
+        //Removing a cell of the block makes it change again.
+        gen.removeLivingCell(gen.indToKey(5+(gen.getArea()-40)/2, 5+(gen.getArea()-40)/2));
+        gen.calcNextGen();
+        assertEquals(9, gen.getPopulation());
+
+        gen.clearPopulation();
+        assertEquals(0, gen.getPopulation());
+        assertFalse(gen.iterator().hasNext());
+    }
+
+    /**
+     * Test of growWorld and changeBoardSize, the area grows in one step and
+     * the cells keep their keys.
+     */
+    @Test
+    public void testGrowWorld() {
+        System.out.println("incremental growWorld");
+        GenerationIncremental gen = new GenerationIncremental(40, 1);
+        long corner = gen.indToKey(0, 0);
+        gen.addLivingCell(corner);
+        assertTrue(gen.needExpansion());
+
+        gen.growWorld(1000);
+        assertFalse(gen.needExpansion());
+        assertEquals(2040, gen.getArea());
+        assertArrayEquals(new int[]{1000, 1000}, gen.keyToInd(corner));
+
+        gen.changeBoardSize(100000);
+        assertEquals(100000, gen.getArea());
+        assertEquals(corner, (long) gen.iterator().next());
+        assertTrue(gen.inArea(Generation.row(corner), Generation.column(corner)));
+        assertEquals(-50000, gen.getOriginRow());
+    }
+}
@@ -0,0 +1,224 @@
+package logic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Testing the history of the generations, GenerationManager, and the packed
+ * cells of CellCodec.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class GenerationManagerTest {
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.out.println("Before class");
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        System.out.println("After class");
+    }
+
+    private static Generation soup(Generation gen, long seed){
+        Random random = new Random(seed);
+        for(int i = 0; i<400; i++)
+            gen.addLivingCell(Generation.key(random.nextInt(40)-20, random.nextInt(40)-20));
+        return gen;
+    }
+
+    /**
+     * The sorted keys of the cells, and their states after the keys.
+     */
+    private static long[] cells(Generation gen){
+        Snapshot snapshot = Snapshot.of(gen, 0, true);
+        return cells(snapshot);
+    }
+
+    private static long[] cells(Snapshot snapshot){
+        long[][] pairs = new long[snapshot.getPopulation()][];
+        for(int i = 0; i<pairs.length; i++)
+            pairs[i] = new long[]{snapshot.cell(i), snapshot.state(i)};
+        Arrays.sort(pairs, (a, b) -> Long.compare(a[0], b[0]));
+        long[] cells = new long[2*pairs.length];
+        for(int i = 0; i<pairs.length; i++){
+            cells[i] = pairs[i][0];
+            cells[pairs.length+i] = pairs[i][1];
+        }
+        return cells;
+    }
+
+    /**
+     * Test of record and get, in order, backwards and out of order, with the
+     * area of the world growing as the generations are stepped.
+     */
+    @Test
+    public void testGet() {
+        System.out.println("history get");
+        GenerationManager history = new GenerationManager(8, Long.MAX_VALUE);
+        Generation gen = soup(new GenerationHash(40, 1), 1);
+        List<long[]> expected = new ArrayList<>();
+        List<int[]> worlds = new ArrayList<>();
+        for(int generation = 1; generation<=100; generation++){
+            history.record(gen, generation);
+            expected.add(cells(gen));
+            worlds.add(new int[]{gen.getArea(), gen.getOriginRow(), gen.getOriginColumn()});
+            gen = gen.calcNextGen();
+        }
+        assertEquals(1, history.getFirst());
+        assertEquals(100, history.getLast());
+        assertNull(history.get(0));
+        assertNull(history.get(101));
+        for(int generation = 100; generation>=1; generation--)
+            assertArrayEquals("gen " + generation, expected.get(generation-1), cells(history.get(generation)));
+        Random random = new Random(2);
+        for(int i = 0; i<200; i++){
+            int generation = 1+random.nextInt(100);
+            Snapshot snapshot = history.get(generation);
+            assertArrayEquals("gen " + generation, expected.get(generation-1), cells(snapshot));
+            int[] world = worlds.get(generation-1);
+            assertEquals(world[0], snapshot.getArea());
+            assertEquals(world[1], snapshot.getOriginRow());
+            assertEquals(world[2], snapshot.getOriginColumn());
+            assertEquals(generation, snapshot.getGenCount());
+        }
+    }
+
+    /**
+     * Test of the decaying cells of a rule with more than two states.
+     */
+    @Test
+    public void testStates() throws PatternFormatException {
+        System.out.println("history states");
+        GenerationManager history = new GenerationManager(5, Long.MAX_VALUE);
+        Generation gen = soup(new GenerationMultiState(40, 1), 3);
+        gen.setRule(CompiledRule.parse("B2/S345/C5"));
+        List<long[]> expected = new ArrayList<>();
+        for(int generation = 1; generation<=30; generation++){
+            history.record(gen, generation);
+            expected.add(cells(gen));
+            gen = gen.calcNextGen();
+        }
+        for(int generation = 30; generation>=1; generation -= 3)
+            assertArrayEquals("gen " + generation, expected.get(generation-1), cells(history.get(generation)));
+        Generation restored = new GenerationMultiState(40, 1);
+        restored.restore(history.get(17));
+        assertArrayEquals(expected.get(16), cells(restored));
+    }
+
+    /**
+     * Test that recording a generation again forgets the generations after
+     * it, and that a jump ahead starts a new keyframe.
+     */
+    @Test
+    public void testTruncate() {
+        System.out.println("history truncate");
+        GenerationManager history = new GenerationManager(8, Long.MAX_VALUE);
+        Generation gen = soup(new GenerationHash(40, 1), 4);
+        for(int generation = 1; generation<=20; generation++){
+            history.record(gen, generation);
+            gen = gen.calcNextGen();
+        }
+        Generation edited = new GenerationHash(40, 1);
+        edited.restore(history.get(10));
+        edited.addLivingCell(Generation.key(10, 10));
+        history.record(edited, 10);
+        assertEquals(10, history.getLast());
+        assertNull(history.get(11));
+        assertArrayEquals(cells(edited), cells(history.get(10)));
+        edited = edited.calcNextGen();
+        history.record(edited, 11);
+        assertArrayEquals(cells(edited), cells(history.get(11)));
+
+        edited = edited.stepN(50);
+        history.record(edited, 61);
+        assertTrue(history.contains(11));
+        assertFalse(history.contains(12));
+        assertArrayEquals(cells(edited), cells(history.get(61)));
+        history.clear();
+        assertEquals(0, history.getBytes());
+        assertNull(history.get(61));
+    }
+
+    /**
+     * Test that the oldest segments are dropped to stay within the budget.
+     */
+    @Test
+    public void testBudget() {
+        System.out.println("history budget");
+        GenerationManager history = new GenerationManager(10, 20000);
+        Generation gen = soup(new GenerationHash(40, 1), 5);
+        Generation copy = soup(new GenerationHash(40, 1), 5);
+        for(int generation = 1; generation<=300; generation++){
+            history.record(gen, generation);
+            gen = gen.calcNextGen();
+        }
+        assertTrue(history.getBytes() <= 20000);
+        assertTrue(history.getFirst() > 1);
+        assertEquals(300, history.getLast());
+        assertNull(history.get(1));
+        int first = history.getFirst();
+        copy = copy.stepN(first-1);
+        assertArrayEquals(cells(copy), cells(history.get(first)));
+    }
+
+    /**
+     * Test of stepping a DynamicBoard back and jumping to a generation, and
+     * stepping on from there.
+     */
+    @Test
+    public void testDynamicBoard() {
+        System.out.println("DynamicBoard history");
+        Generation reference = soup(new GenerationHash(40, 1), 6);
+        long[][] expected = new long[41][];
+        for(int generation = 1; generation<=40; generation++){
+            expected[generation] = cells(reference);
+            reference = reference.calcNextGen();
+        }
+
+        DynamicBoard board = new DynamicBoard(null, soup(new GenerationHash(40, 1), 6));
+        board.setHistory(new GenerationManager(8, Long.MAX_VALUE));
+        assertFalse(board.stepBack());
+        board.stepN(39);
+        assertEquals(40, board.getGenCount());
+        assertArrayEquals(expected[40], cells(board.getGeneration()));
+        assertTrue(board.stepBack());
+        assertEquals(39, board.getGenCount());
+        assertArrayEquals(expected[39], cells(board.getGeneration()));
+        assertTrue(board.jumpTo(3));
+        assertArrayEquals(expected[3], cells(board.getGeneration()));
+        assertTrue(board.jumpTo(40));
+        assertArrayEquals(expected[40], cells(board.getGeneration()));
+        assertFalse(board.jumpTo(41));
+
+        board.jumpTo(12);
+        board.stepN(5);
+        assertEquals(17, board.getGenCount());
+        assertArrayEquals(expected[17], cells(board.getGeneration()));
+        assertEquals(17, board.getHistory().getLast());
+        assertFalse(board.jumpTo(20));
+    }
+
+    /**
+     * Test of packing the keys of cells anywhere in the world.
+     */
+    @Test
+    public void testCodec() {
+        System.out.println("CellCodec");
+        long[] cells = {Generation.key(Integer.MIN_VALUE, Integer.MIN_VALUE), Generation.key(-5, 7),
+            Generation.key(-5, 8), Generation.key(0, 0), Generation.key(0, -1), Generation.key(3, Integer.MAX_VALUE),
+            Generation.key(Integer.MAX_VALUE, Integer.MAX_VALUE)};
+        Arrays.sort(cells);
+        byte[] data = CellCodec.encode(cells, cells.length);
+        long[] decoded = new long[cells.length];
+        CellCodec.decode(data, decoded, cells.length);
+        assertArrayEquals(cells, decoded);
+        assertEquals(0, CellCodec.encode(cells, 0).length);
+    }
+}
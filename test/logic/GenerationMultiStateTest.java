@@ -0,0 +1,235 @@
+package logic;
+
+import java.util.Random;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Testing the rules of the Generations family, with decaying cells, on the
+ * dense engines and on GenerationMultiState, against a reference written
+ * from the counts of the rule.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class GenerationMultiStateTest {
+
+    private static final String[] RULES = {"B2/S/C3", "B2/S345/C4", "B3/S23/C5", "B3/S23"};
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.out.println("Before class");
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        System.out.println("After class");
+    }
+
+    private byte[][] randomBoard(int x, int y, int states, long seed){
+        Random random = new Random(seed);
+        byte[][] board = new byte[x][y];
+        for(int i = 0; i<x; i++)
+            for(int j = 0; j<y; j++)
+                board[i][j] = (byte)(random.nextInt(3) == 0 ? 1+random.nextInt(states-1) : 0);
+        return board;
+    }
+
+    /**
+     * The next generation, counting the living neighbours of every cell.
+     * Cells outside the board are dead.
+     */
+    private byte[][] reference(byte[][] board, CompiledRule rule){
+        boolean[] born = rule.getBorn(), survives = rule.getSurvives();
+        int rows = board.length, columns = board[0].length, states = rule.getStates();
+        byte[][] next = new byte[rows][columns];
+        for(int i = 0; i<rows; i++){
+            for(int j = 0; j<columns; j++){
+                int count = 0;
+                for(int di = -1; di<=1; di++)
+                    for(int dj = -1; dj<=1; dj++)
+                        if((di != 0 || dj != 0) && i+di >= 0 && i+di < rows && j+dj >= 0 && j+dj < columns
+                                && board[i+di][j+dj] == 1)
+                            count++;
+                int state = board[i][j];
+                if(state == 0)
+                    next[i][j] = (byte) (born[count] ? 1 : 0);
+                else if(state == 1 && survives[count])
+                    next[i][j] = 1;
+                else
+                    next[i][j] = (byte) (state+1 < states ? state+1 : 0);
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Test of parse, withStates and toString.
+     */
+    @Test
+    public void testParse() throws PatternFormatException {
+        System.out.println("parse");
+        CompiledRule brain = CompiledRule.parse("B2/S/C3");
+        assertEquals(3, brain.getStates());
+        assertEquals("B2/S/C3", brain.toString());
+        assertEquals(brain, CompiledRule.parse("/2/3"));
+        assertEquals(brain, CompiledRule.parse("2", "").withStates(3));
+        assertNotEquals(brain, CompiledRule.parse("2", ""));
+        assertEquals(CompiledRule.parse("B2/S345/C4"), CompiledRule.parse("345/2/4"));
+        assertEquals(CompiledRule.CONWAY, CompiledRule.parse("B3/S23"));
+        assertEquals(CompiledRule.CONWAY, CompiledRule.parse("23/3"));
+        assertEquals(CompiledRule.CONWAY, CompiledRule.parse("S23/B3"));
+        assertEquals(2, CompiledRule.CONWAY.getStates());
+        for(String invalid : new String[]{"B2/S/C1", "B2/S/C257", "B2/S/Cx", "B9/S23", "B3"}){
+            try{
+                CompiledRule.parse(invalid);
+                fail(invalid);
+            }
+            catch(PatternFormatException e){
+            }
+        }
+    }
+
+    /**
+     * Test of nextState(int, int), a living cell decays and a decaying cell
+     * is never born.
+     */
+    @Test
+    public void testNextState() throws PatternFormatException {
+        System.out.println("nextState");
+        CompiledRule starWars = CompiledRule.parse("B2/S345/C4");
+        int two = CompiledRule.neighbourBit(-1, 0) | CompiledRule.neighbourBit(1, 0);
+        assertEquals(1, starWars.nextState(0, two));
+        assertEquals(2, starWars.nextState(1, two | CompiledRule.CENTER));
+        assertEquals(3, starWars.nextState(2, two));
+        assertEquals(0, starWars.nextState(3, two));
+        assertEquals(0, starWars.nextState(7, two));
+        int one = CompiledRule.neighbourBit(0, 1);
+        assertEquals(0, CompiledRule.CONWAY.nextState(1, one | CompiledRule.CENTER));
+        assertEquals(1, CompiledRule.CONWAY.nextState(1, two | CompiledRule.CENTER));
+    }
+
+    /**
+     * Test of the dense engines against the reference.
+     */
+    @Test
+    public void testDense() throws PatternFormatException {
+        System.out.println("dense Generations rules");
+        for(String name : RULES){
+            CompiledRule rule = CompiledRule.parse(name);
+            byte[][] expected = randomBoard(40, 50, rule.getStates(), name.hashCode());
+            byte[][] board = copy(expected);
+            NextGeneration simple = new NextGeneration();
+            NextGeneration packed = new PackedNextGeneration();
+            simple.setCompiledRule(rule);
+            packed.setCompiledRule(rule);
+            byte[][] bySimple = copy(expected), byPacked = copy(expected);
+            DenseGeneration dense = new DenseGeneration();
+            for(int gen = 0; gen<12; gen++){
+                expected = reference(expected, rule);
+                bySimple = simple.calcNextGen(bySimple);
+                byPacked = packed.calcNextGen(byPacked);
+                dense.step(board, rule);
+                assertArrayEquals(name + " gen " + gen, expected, bySimple);
+                assertArrayEquals(name + " gen " + gen, expected, byPacked);
+                assertArrayEquals(name + " gen " + gen, expected, board);
+            }
+        }
+    }
+
+    /**
+     * Test of GenerationMultiState on a growing world against the reference
+     * on a board large enough for the soup.
+     */
+    @Test
+    public void testGeneration() throws PatternFormatException {
+        System.out.println("GenerationMultiState");
+        for(String name : RULES){
+            CompiledRule rule = CompiledRule.parse(name);
+            int size = 80, offset = -size/2;
+            byte[][] expected = new byte[size][size];
+            byte[][] soup = randomBoard(16, 16, rule.getStates(), name.hashCode());
+            GenerationMultiState gen = new GenerationMultiState(20, 1);
+            gen.setRule(rule);
+            for(int i = 0; i<16; i++){
+                for(int j = 0; j<16; j++){
+                    expected[32+i][32+j] = soup[i][j];
+                    gen.addCell(Generation.key(32+i+offset, 32+j+offset), soup[i][j]);
+                }
+            }
+            for(int step = 0; step<15; step++){
+                expected = reference(expected, rule);
+                gen = gen.calcNextGen();
+                byte[][] actual = new byte[size][size];
+                int population = 0;
+                for(long cell : gen){
+                    actual[Generation.row(cell)-offset][Generation.column(cell)-offset] = (byte) gen.stateOf(cell);
+                    population++;
+                }
+                assertArrayEquals(name + " gen " + step, expected, actual);
+                assertEquals(population, gen.getPopulation());
+            }
+        }
+    }
+
+    /**
+     * Test of GenerationMultiState on a torus against DenseGeneration.
+     */
+    @Test
+    public void testTorus() throws PatternFormatException {
+        System.out.println("GenerationMultiState on a torus");
+        CompiledRule rule = CompiledRule.parse("B2/S345/C4");
+        int area = 30;
+        byte[][] board = randomBoard(area, area, rule.getStates(), 7);
+        GenerationMultiState gen = new GenerationMultiState(area, 1);
+        gen.setRule(rule);
+        gen.setTopology(Topology.TORUS);
+        for(int i = 0; i<area; i++)
+            for(int j = 0; j<area; j++)
+                gen.addCell(gen.indToKey(i, j), board[i][j]);
+        DenseGeneration dense = new DenseGeneration();
+        dense.setTopology(Topology.TORUS);
+        for(int step = 0; step<20; step++){
+            dense.step(board, rule);
+            gen.calcNextGen();
+            assertArrayEquals("gen " + step, board, gen.convertToStatic());
+        }
+    }
+
+    /**
+     * Test of copyOf, editing and the bounding box holding the decaying cells.
+     */
+    @Test
+    public void testCopyAndBox() throws PatternFormatException {
+        System.out.println("copyOf and bounding box");
+        GenerationHash hash = new GenerationHash(20, 1);
+        hash.addLivingCell(Generation.key(0, 0));
+        hash.addLivingCell(Generation.key(0, 1));
+        GenerationMultiState gen = GenerationMultiState.copyOf(hash);
+        gen.setRule(CompiledRule.parse("B2/S/C3"));
+        assertEquals(2, gen.getPopulation());
+        assertEquals(1, gen.stateOf(Generation.key(0, 1)));
+
+        gen.calcNextGen();
+        //Both cells decay, and the two pairs above and below are born.
+        assertEquals(2, gen.stateOf(Generation.key(0, 0)));
+        assertEquals(1, gen.stateOf(Generation.key(-1, 0)));
+        assertArrayEquals(new int[]{-1, 1, 0, 1}, gen.getBoundingBox());
+
+        gen.removeLivingCell(Generation.key(-1, 0));
+        gen.removeLivingCell(Generation.key(-1, 1));
+        assertArrayEquals(new int[]{0, 1, 0, 1}, gen.getBoundingBox());
+        gen.addCell(Generation.key(5, 5), 2);
+        assertEquals(2, gen.stateOf(Generation.key(5, 5)));
+        assertArrayEquals(new int[]{0, 5, 0, 5}, gen.getBoundingBox());
+        gen.clearPopulation();
+        assertNull(gen.getBoundingBox());
+    }
+
+    private static byte[][] copy(byte[][] board){
+        byte[][] copy = new byte[board.length][];
+        for(int i = 0; i<board.length; i++)
+            copy[i] = board[i].clone();
+        return copy;
+    }
+}
@@ -0,0 +1,208 @@
+package logic;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Testing the statistics every calcNextGen gives, GenerationStats.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class GenerationStatsTest {
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.out.println("Before class");
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        System.out.println("After class");
+    }
+
+    private static Generation[] generations(){
+        return new Generation[]{new GenerationHash(40, 1), new GenerationConcurrHash(40, 1),
+            new GenerationIncremental(40, 1), new GenerationTiled(40, 1),
+            new GenerationHashLife(40, 1), new GenerationMultiState(40, 1), new GenerationRange(40, 1)};
+    }
+
+    private static Generation soup(Generation gen, long seed){
+        Random random = new Random(seed);
+        for(int i = 0; i<300; i++)
+            gen.addLivingCell(Generation.key(random.nextInt(30)-15, random.nextInt(30)-15));
+        return gen;
+    }
+
+    private static Map<Long, Integer> cells(Generation gen){
+        Map<Long, Integer> cells = new HashMap<>();
+        for(long cell : gen)
+            cells.put(cell, gen.stateOf(cell));
+        return cells;
+    }
+
+    /**
+     * Test that the births and deaths of every Generation are the cells
+     * that came alive and the cells that became dead, and that the
+     * population and the bounding box are those of the generation.
+     */
+    @Test
+    public void testStats() throws PatternFormatException {
+        System.out.println("GenerationStats of every Generation");
+        for(Generation first : generations()){
+            Generation gen = soup(first, 1);
+            if(gen instanceof GenerationMultiState && !(gen instanceof GenerationRange))
+                gen.setRule(CompiledRule.parse("B2/S345/C4"));
+            assertNull(gen.getStats());
+            for(int i = 0; i<60; i++){
+                Map<Long, Integer> before = cells(gen);
+                gen = gen.calcNextGen();
+                Map<Long, Integer> after = cells(gen);
+                long births = after.keySet().stream().filter(cell -> !before.containsKey(cell)).count();
+                long deaths = before.keySet().stream().filter(cell -> !after.containsKey(cell)).count();
+
+                GenerationStats stats = gen.getStats();
+                String name = gen + " gen " + i;
+                assertNotNull(name, stats);
+                assertEquals(name, births, stats.getBirths());
+                assertEquals(name, deaths, stats.getDeaths());
+                assertEquals(name, after.size(), stats.getPopulation());
+                assertArrayEquals(name, gen.getBoundingBox(), stats.getBoundingBox());
+            }
+        }
+    }
+
+    /**
+     * Test that the births and deaths counted by the dense engines, on one
+     * thread and in parallel bands, are the cells that changed, on a plane
+     * and a torus and with decaying cells and a Larger than Life rule, and
+     * that StaticBoard gives them with its population and bounding box.
+     */
+    @Test
+    public void testDenseStats() throws PatternFormatException {
+        System.out.println("Births and deaths of the dense engines");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try{
+            NextGeneration parallel = new NextGeneration();
+            parallel.setPool(pool);
+            parallel.setParallelThreshold(1);
+            NextGeneration packedParallel = new PackedNextGeneration();
+            packedParallel.setPool(pool);
+            packedParallel.setParallelThreshold(1);
+            NextGeneration[] engines = {new NextGeneration(), new PackedNextGeneration(),
+                NextGeneration.create("vector"), parallel, packedParallel};
+            String[] rules = {"B3/S23", "B2/S345/C4", "R2,C0,M1,S3..5,B3..4,NM"};
+            for(NextGeneration ng : engines){
+                for(Topology topology : new Topology[]{Topology.PLANE, Topology.TORUS}){
+                    for(String rule : rules){
+                        ng.setTopology(topology);
+                        ng.decodeRuleset(rule);
+                        byte[][] board = new byte[40][300];
+                        Random random = new Random(3);
+                        for(byte[] row : board)
+                            for(int j = 0; j<row.length; j++)
+                                row[j] = (byte) (random.nextInt(3) == 0 ? 1 : 0);
+                        for(int gen = 0; gen<8; gen++){
+                            String name = ng.getClass().getSimpleName() + " " + topology + " " + rule + " gen " + gen;
+                            byte[][] next = ng.calcNextGen(board);
+                            long[] changes = changes(board, next);
+                            assertEquals(name, changes[0], ng.getBirths());
+                            assertEquals(name, changes[1], ng.getDeaths());
+                            board = deepCopy(next);
+                        }
+                    }
+                }
+            }
+
+            StaticBoard board = new StaticBoard(null, new NextGeneration());
+            byte[][] glider = new byte[10][10];
+            glider[0][1] = glider[1][2] = glider[2][0] = glider[2][1] = glider[2][2] = 1;
+            board.setCurrentGen(glider);
+            board.stepN(1);
+            GenerationStats stats = board.getStats();
+            assertEquals(5, stats.getPopulation());
+            assertEquals(2, stats.getBirths());
+            assertEquals(2, stats.getDeaths());
+            assertArrayEquals(new int[]{1, 3, 0, 2}, stats.getBoundingBox());
+        }
+        finally{
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * @return the cells that came alive and the cells that became dead,
+     *         a decaying cell counting as living.
+     */
+    private static long[] changes(byte[][] before, byte[][] after){
+        long[] changes = new long[2];
+        for(int i = 0; i<before.length; i++)
+            for(int j = 0; j<before[i].length; j++){
+                if(before[i][j] == 0 && after[i][j] != 0)
+                    changes[0]++;
+                if(before[i][j] != 0 && after[i][j] == 0)
+                    changes[1]++;
+            }
+        return changes;
+    }
+
+    private static byte[][] deepCopy(byte[][] board){
+        byte[][] copy = new byte[board.length][];
+        for(int i = 0; i<board.length; i++)
+            copy[i] = board[i].clone();
+        return copy;
+    }
+
+    /**
+     * Test of the density, and of the statistics of an empty generation.
+     */
+    @Test
+    public void testDensity() {
+        System.out.println("GenerationStats density");
+        Generation block = new GenerationHash(40, 1);
+        block.addLivingCell(Generation.key(0, 0));
+        block.addLivingCell(Generation.key(0, 1));
+        block.addLivingCell(Generation.key(1, 0));
+        block.addLivingCell(Generation.key(1, 1));
+        GenerationStats stats = block.calcNextGen().getStats();
+        assertEquals(1.0, stats.getDensity(), 0);
+        assertEquals(0, stats.getBirths());
+        assertEquals(0, stats.getDeaths());
+
+        GenerationStats glider = new GenerationStats(5, 1, 1, new int[]{0, 2, 0, 2});
+        assertEquals(5/9.0, glider.getDensity(), 1e-12);
+
+        Generation single = new GenerationHash(40, 1);
+        single.addLivingCell(Generation.key(3, 3));
+        stats = single.calcNextGen().getStats();
+        assertEquals(0, stats.getPopulation());
+        assertEquals(1, stats.getDeaths());
+        assertNull(stats.getBoundingBox());
+        assertEquals(0, stats.getDensity(), 0);
+    }
+
+    /**
+     * Test that a DynamicBoard tells its listeners the statistics of every
+     * generation stepped.
+     */
+    @Test
+    public void testListener() {
+        System.out.println("DynamicBoard StatsListener");
+        DynamicBoard board = new DynamicBoard(null, soup(new GenerationHash(40, 1), 2));
+        int[] generations = new int[1];
+        StatsListener listener = (generation, stats) -> {
+            assertEquals(board.getGeneration().getPopulation(), stats.getPopulation());
+            generations[0] = generation;
+        };
+        board.addStatsListener(listener);
+        board.stepN(10);
+        assertEquals(11, generations[0]);
+        board.removeStatsListener(listener);
+        board.stepN(1);
+        assertEquals(11, generations[0]);
+    }
+}
@@ -0,0 +1,187 @@
+package logic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Testing the tiled generation against the byte[][] implementation
+ * in NextGeneration.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class GenerationTiledTest {
+
+    NextGeneration ng = new NextGeneration();
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.out.println("Before class");
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        System.out.println("After class");
+    }
+
+    /**
+     * Lists the living cells of the generation relative to their bounding box.
+     */
+    private List<String> cells(Generation gen){
+        List<int[]> ind = new ArrayList<>();
+        for(long cell : gen)
+            ind.add(gen.keyToInd(cell));
+        return normalize(ind);
+    }
+
+    /**
+     * Lists the living cells of the 2D-array relative to their bounding box.
+     */
+    private List<String> cells(byte[][] board){
+        List<int[]> ind = new ArrayList<>();
+        for(int i = 0; i<board.length; i++)
+            for(int j = 0; j<board[0].length; j++)
+                if(board[i][j] == 1)
+                    ind.add(new int[]{i, j});
+        return normalize(ind);
+    }
+
+    private List<String> normalize(List<int[]> ind){
+        int minI = Integer.MAX_VALUE, minJ = Integer.MAX_VALUE;
+        for(int[] c : ind){
+            minI = Math.min(minI, c[0]);
+            minJ = Math.min(minJ, c[1]);
+        }
+        List<String> result = new ArrayList<>();
+        for(int[] c : ind)
+            result.add((c[0]-minI) + "," + (c[1]-minJ));
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * Creates a board with a random soup in the middle and the same soup
+     * in a tiled generation, crossing the tile borders at (0,0).
+     */
+    private byte[][] soup(GenerationTiled gen, int size, int soup){
+        Random random = new Random(42);
+        byte[][] board = new byte[size][size];
+        int start = (size-soup)/2;
+        for(int i = 0; i<soup; i++){
+            for(int j = 0; j<soup; j++){
+                if(random.nextBoolean()){
+                    board[start+i][start+j] = 1;
+                    gen.addLivingCell(gen.indToKey(i+10, j+10));
+                }
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Test of calcNextGen on a random soup, until it has settled.
+     */
+    @Test
+    public void testCalcNextGen() {
+        System.out.println("tiled calcNextGen");
+        GenerationTiled gen = new GenerationTiled(40, 1);
+        byte[][] board = soup(gen, 400, 30);
+        assertEquals(cells(board).size(), gen.getPopulation());
+
+        for(int i = 0; i<300; i++){
+            board = ng.calcNextGen(board);
+            gen = gen.calcNextGen();
+            assertEquals(cells(board), cells(gen));
+            assertEquals(cells(board).size(), gen.getPopulation());
+        }
+    }
+
+    /**
+     * Test of alternative rules, changed while running.
+     */
+    @Test
+    public void testRules() {
+        System.out.println("tiled B36/S23");
+        GenerationTiled gen = new GenerationTiled(40, 1);
+        byte[][] board = soup(gen, 300, 20);
+        for(int i = 0; i<10; i++){
+            board = ng.calcNextGen(board);
+            gen = gen.calcNextGen();
+        }
+        ng.decodeRuleset("36", "23");
+        gen.setRules(ng.getBorn(), ng.getSurvives());
+        for(int i = 0; i<30; i++){
+            board = ng.calcNextGen(board);
+            gen = gen.calcNextGen();
+            assertEquals(cells(board), cells(gen));
+        }
+    }
+
+    /**
+     * Test of still lifes being skipped, and empty tiles being freed
+     * behind a glider.
+     */
+    @Test
+    public void testActiveTiles() {
+        System.out.println("tiled active tiles");
+        GenerationTiled gen = new GenerationTiled(40, 1);
+        //A block, which is a still life.
+        int[][] block = {{0,0}, {0,1}, {1,0}, {1,1}};
+        for(int[] c : block)
+            gen.addLivingCell(gen.indToKey(c[0]+5, c[1]+5));
+        gen.calcNextGen();
+        assertEquals(0, gen.getChangedTileCount());
+        assertEquals(4, gen.getPopulation());
+
+        //A glider far from the block leaves the tiles it passes empty.
+        int[][] glider = {{0,1}, {1,2}, {2,0}, {2,1}, {2,2}};
+        for(int[] c : glider)
+            gen.addLivingCell(gen.indToKey(c[0]+20, c[1]+20));
+        for(int i = 0; i<4*300; i++)
+            gen.calcNextGen();
+        assertEquals(9, gen.getPopulation());
+        assertTrue(gen.getTileCount() <= 1+4);
+        assertTrue(gen.getChangedTileCount() <= 4);
+
+        gen.clearPopulation();
+        assertEquals(0, gen.getTileCount());
+        assertFalse(gen.iterator().hasNext());
+    }
+
+    /**
+     * Test of the empty neighbours of the changed tiles, which only become
+     * tiles when a cell is born in them.
+     */
+    @Test
+    public void testEmptyNeighbours() {
+        System.out.println("tiled empty neighbours");
+        GenerationTiled gen = new GenerationTiled(40, 1);
+        //A block on the top row of tile (0,0), and a blinker reaching into tile (-1,0).
+        int[][] cells = {{0,30}, {0,31}, {1,30}, {1,31}, {0,10}, {0,11}, {0,12}};
+        for(int[] c : cells)
+            gen.addLivingCell(Generation.key(c[0], c[1]));
+        assertEquals(1, gen.getTileCount());
+
+        gen.calcNextGen();
+        assertEquals(2, gen.getTileCount());
+        assertEquals(1, gen.cellsInRow(-1));
+        gen.calcNextGen();
+        assertEquals(1, gen.getTileCount());
+        assertEquals(0, gen.cellsInRow(-1));
+        assertEquals(7, gen.getPopulation());
+
+        //Without the blinker, the block alone makes no tile.
+        gen.removeLivingCell(Generation.key(0, 10));
+        gen.removeLivingCell(Generation.key(0, 11));
+        gen.removeLivingCell(Generation.key(0, 12));
+        for(int i = 0; i<3; i++){
+            gen.calcNextGen();
+            assertEquals(1, gen.getTileCount());
+        }
+        assertEquals(0, gen.getChangedTileCount());
+    }
+}
@@ -111,5 +111,59 @@ public class LoadPatternTest{
         String result = lp.toString();
         assertEquals(expResult, result);
     }
-}
     
+    /**
+     * Testing ReadGameboard.
+     * If it can decode a pattern of a rule with more than two states, with
+     * the rule written as survives/born/states.
+     * @throws IOException IOException is thrown and a dialog is shown to the user.
+     */
+    @Test
+    public void testReadGameboardStates() throws IOException{
+        System.out.println("readGameboardStates");
+        FileReader generationsTest = new FileReader(new File("./Patterns/tester/generations.rle/"));
+        byte[][] expResult = {
+            {0,1,2,0,0},
+            {25,25,0,1,0},
+            {2,2,2,0,0},
+        };
+        lp = new LoadPattern();
+        byte[][] result = lp.readGameboard(generationsTest);
+        assertArrayEquals(expResult, result);
+        assertEquals("B2/S345/C30", lp.getRule());
+    }
+    
+    /**
+     * Testing readGameboard, with a Larger than Life rule.
+     * @throws IOException 
+     */
+    @Test
+    public void testReadGameboardRange() throws IOException{
+        System.out.println("readGameboardRange");
+        FileReader rangeTest = new FileReader(new File("./Patterns/tester/range.rle/"));
+        byte[][] expResult = {
+            {0,1,0,0},
+            {1,1,0,1},
+        };
+        lp = new LoadPattern();
+        byte[][] result = lp.readGameboard(rangeTest);
+        assertArrayEquals(expResult, result);
+        assertEquals("R5,C0,M1,S34..58,B34..45,NM", lp.getRule());
+    }
+    
+    /**
+     * Testing cellLetters, the letters of the states.
+     */
+    @Test
+    public void testCellLetters(){
+        System.out.println("cellLetters");
+        assertEquals("b", LoadPattern.cellLetters(0, false));
+        assertEquals("o", LoadPattern.cellLetters(1, false));
+        assertEquals(".", LoadPattern.cellLetters(0, true));
+        assertEquals("A", LoadPattern.cellLetters(1, true));
+        assertEquals("X", LoadPattern.cellLetters(24, true));
+        assertEquals("pA", LoadPattern.cellLetters(25, true));
+        assertEquals("qA", LoadPattern.cellLetters(49, true));
+        assertEquals("yO", LoadPattern.cellLetters(255, true));
+    }
+}
@@ -0,0 +1,177 @@
+package logic;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * Testing the memory-mapped board MappedGeneration against DenseGeneration.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class MappedGenerationTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.out.println("Before class");
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        System.out.println("After class");
+    }
+
+    private byte[][] randomBoard(int x, int y, long seed){
+        Random random = new Random(seed);
+        byte[][] board = new byte[x][y];
+        for(int i = 0; i<x; i++)
+            for(int j = 0; j<y; j++)
+                board[i][j] = (byte)(random.nextInt(3) == 0 ? 1 : 0);
+        return board;
+    }
+
+    /**
+     * Test of step against DenseGeneration on every topology, with rows of
+     * one word, a word and a part, and whole words, and a non-totalistic
+     * rule. The files are mapped in segments of a few rows. The births and
+     * deaths are those counted by DenseGeneration.
+     */
+    @Test
+    public void testStep() throws IOException, PatternFormatException {
+        System.out.println("mapped step");
+        Path directory = folder.getRoot().toPath();
+        int[][] sizes = {{30, 37}, {25, 64}, {20, 130}, {40, 128}, {9, 1}};
+        for(Topology topology : Topology.values()){
+            for(CompiledRule rule : new CompiledRule[]{CompiledRule.CONWAY, CompiledRule.parse("2-a3", "23-k")}){
+                for(int[] size : sizes){
+                    byte[][] expected = randomBoard(size[0], size[1], size[0]*31+size[1]);
+                    DenseGeneration dense = new DenseGeneration();
+                    dense.setTopology(topology);
+                    try(MappedGeneration mapped = new MappedGeneration(directory, size[0], size[1], 8*16)){
+                        mapped.setTopology(topology);
+                        mapped.load(expected, 0, 0);
+                        for(int gen = 0; gen<6; gen++){
+                            dense.step(expected, rule);
+                            mapped.step(rule);
+                            String name = topology + " " + rule + " " + size[0] + "x" + size[1] + " gen " + gen;
+                            assertArrayEquals(name, expected, mapped.region(0, 0, size[0], size[1]));
+                            assertEquals(name, dense.getBirths(), mapped.getBirths());
+                            assertEquals(name, dense.getDeaths(), mapped.getDeaths());
+                        }
+                        assertEquals(6, mapped.getGeneration());
+                    }
+                }
+            }
+        }
+        try(MappedGeneration mapped = new MappedGeneration(directory, 4, 4)){
+            mapped.step(CompiledRule.parse("B2/S/C3"));
+            fail("A bit holds two states.");
+        }
+        catch(IllegalArgumentException e){
+        }
+    }
+
+    /**
+     * Test of the stripes calculated in parallel on a pool.
+     */
+    @Test
+    public void testParallel() throws IOException {
+        System.out.println("mapped parallel");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        byte[][] expected = randomBoard(700, 300, 7);
+        DenseGeneration dense = new DenseGeneration();
+        dense.setTopology(Topology.TORUS);
+        try(MappedGeneration mapped = new MappedGeneration(folder.getRoot().toPath(), 700, 300, 8*5*100)){
+            mapped.setTopology(Topology.TORUS);
+            mapped.setPool(pool);
+            mapped.load(expected, 0, 0);
+            dense.step(expected, CompiledRule.CONWAY, 10);
+            mapped.step(CompiledRule.CONWAY, 10);
+            assertArrayEquals(expected, mapped.region(0, 0, 700, 300));
+            assertEquals(dense.getBirths(), mapped.getBirths());
+            assertEquals(dense.getDeaths(), mapped.getDeaths());
+        }
+        finally{
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Test of get, set, region outside the board and getPopulation.
+     */
+    @Test
+    public void testCells() throws IOException {
+        System.out.println("mapped cells");
+        try(MappedGeneration mapped = new MappedGeneration(folder.getRoot().toPath(), 100, 200)){
+            mapped.set(0, 0, 1);
+            mapped.set(99, 199, 1);
+            mapped.set(50, 64, 1);
+            mapped.set(50, 63, 1);
+            mapped.set(50, 63, 0);
+            assertEquals(1, mapped.get(50, 64));
+            assertEquals(0, mapped.get(50, 63));
+            assertEquals(3, mapped.getPopulation());
+            byte[][] region = mapped.region(98, 198, 3, 3);
+            assertArrayEquals(new byte[][]{{0, 0, 0}, {0, 1, 0}, {0, 0, 0}}, region);
+            try{
+                mapped.get(100, 0);
+                fail("Outside the board.");
+            }
+            catch(IndexOutOfBoundsException e){
+            }
+        }
+    }
+
+    /**
+     * Test of snapshot and open, which leaves the snapshot as it was.
+     */
+    @Test
+    public void testSnapshot() throws IOException {
+        System.out.println("mapped snapshot");
+        Path directory = folder.getRoot().toPath();
+        Path snapshot = directory.resolve("board.snapshot");
+        byte[][] board = randomBoard(50, 90, 3);
+        try(MappedGeneration mapped = new MappedGeneration(directory, 50, 90)){
+            mapped.load(board, 0, 0);
+            mapped.step(CompiledRule.CONWAY, 3);
+            mapped.snapshot(snapshot);
+            byte[][] expected = mapped.region(0, 0, 50, 90);
+            try(MappedGeneration opened = MappedGeneration.open(snapshot, directory)){
+                assertEquals(50, opened.getRows());
+                assertEquals(90, opened.getColumns());
+                assertEquals(3, opened.getGeneration());
+                assertArrayEquals(expected, opened.region(0, 0, 50, 90));
+                mapped.step(CompiledRule.CONWAY, 2);
+                opened.step(CompiledRule.CONWAY, 2);
+                assertArrayEquals(mapped.region(0, 0, 50, 90), opened.region(0, 0, 50, 90));
+                assertEquals(5, opened.getGeneration());
+            }
+            try(MappedGeneration opened = MappedGeneration.open(snapshot, directory)){
+                assertEquals(3, opened.getGeneration());
+                assertArrayEquals(expected, opened.region(0, 0, 50, 90));
+            }
+        }
+        Files.write(snapshot, new byte[MappedGeneration.HEADER]);
+        try{
+            MappedGeneration.open(snapshot, directory);
+            fail("Not a snapshot.");
+        }
+        catch(IOException e){
+        }
+        //The files of the boards are deleted on close, the snapshot is left.
+        try(Stream<Path> files = Files.list(directory)){
+            assertEquals(1, files.count());
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package logic;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.Random;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * Testing the histograms of the times of the phases, LatencyHistogram, and
+ * the registry of them, Metrics.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class MetricsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.out.println("Before class");
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        System.out.println("After class");
+    }
+
+    /**
+     * Test that the percentiles are within a sixteenth of the true times,
+     * and that the max, the count and the mean are exact.
+     */
+    @Test
+    public void testPercentiles() {
+        System.out.println("LatencyHistogram percentiles");
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        assertEquals(0, histogram.getP99());
+        for(long nanos = 1; nanos<=10000; nanos++)
+            histogram.record(nanos*1000);
+        assertEquals(10000, histogram.getCount());
+        assertEquals(10000000, histogram.getMax());
+        assertEquals(5000500, histogram.getMean(), 1e-6);
+        assertEquals(5000000, histogram.getP50(), 5000000/16.0);
+        assertEquals(9900000, histogram.getP99(), 9900000/16.0);
+        assertTrue(histogram.getP50() >= 5000000);
+        assertEquals(10000000, histogram.getPercentile(100));
+
+        for(int i = 0; i<16; i++)
+            assertEquals(i, bucketOf(i));
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(-5);
+        assertEquals(Long.MAX_VALUE, histogram.getMax());
+        assertEquals(Long.MAX_VALUE, histogram.getPercentile(100));
+        assertEquals(0, histogram.getPercentile(0.001));
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+
+    /**
+     * @return the percentile of a single time, the largest time of its bucket.
+     */
+    private static long bucketOf(long nanos){
+        LatencyHistogram histogram = new LatencyHistogram("bucket");
+        histogram.record(nanos);
+        histogram.record(Long.MAX_VALUE);
+        return histogram.getPercentile(50);
+    }
+
+    /**
+     * Test that the phases of a board are recorded, and read through JMX.
+     */
+    @Test
+    public void testRegistry() throws JMException, java.io.IOException {
+        System.out.println("Metrics registry");
+        assertFalse(Metrics.isPrinting());
+        Metrics.reset();
+        Generation gen = new GenerationHash(10, 1);
+        Random random = new Random(1);
+        for(int i = 0; i<50; i++)
+            gen.addLivingCell(Generation.key(random.nextInt(10)-5, random.nextInt(10)-5));
+        DynamicBoard board = new DynamicBoard(null, gen);
+        board.stepN(20);
+        assertEquals(20, Metrics.STEP.getCount());
+        assertTrue(Metrics.EXPAND_WORLD.getCount() > 0);
+
+        Path path = folder.getRoot().toPath().resolve("world.gols");
+        Session.save(board, path, true);
+        Session.open(path);
+        assertEquals(1, Metrics.SAVE.getCount());
+        assertEquals(1, Metrics.LOAD.getCount());
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName step = Metrics.objectName(Metrics.STEP);
+        assertTrue(server.isRegistered(step));
+        assertEquals(20L, server.getAttribute(step, "Count"));
+        assertEquals(Metrics.STEP.getMax(), server.getAttribute(step, "Max"));
+        assertTrue((Long) server.getAttribute(step, "P99") <= Metrics.STEP.getMax());
+        server.invoke(step, "reset", null, null);
+        assertEquals(0, Metrics.STEP.getCount());
+        assertEquals(5, Metrics.getHistograms().size());
+    }
+}
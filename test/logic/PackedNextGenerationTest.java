@@ -0,0 +1,167 @@
+package logic;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Testing the bit-packed PackedNextGeneration against the byte[][]
+ * implementation in NextGeneration.
+ * @author Olav Sørlie
+ */
+public class PackedNextGenerationTest {
+
+    NextGeneration ng = new NextGeneration();
+    PackedNextGeneration png = new PackedNextGeneration();
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.out.println("Before class");
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        System.out.println("After class");
+    }
+
+    /**
+     * Creates a random board.
+     * @param x cells in x-direction.
+     * @param y cells in y-direction.
+     * @param seed seed for the random generator.
+     * @return the random board.
+     */
+    private byte[][] randomBoard(int x, int y, long seed){
+        Random random = new Random(seed);
+        byte[][] board = new byte[x][y];
+        for(int i = 0; i<x; i++)
+            for(int j = 0; j<y; j++)
+                board[i][j] = (byte)(random.nextInt(3) == 0 ? 1 : 0);
+        return board;
+    }
+
+    /**
+     * Test of calcNextGen method, blinker.
+     */
+    @Test
+    public void testCalcNextGen() {
+        System.out.println("packed calcNextGen");
+        byte[][] testBoard = {
+            {0,0,0,0,0},
+            {0,0,0,0,0},
+            {0,1,1,1,0},
+            {0,0,0,0,0},
+            {0,0,0,0,0},
+        };
+        byte[][] expResult =  {
+            {0,0,0,0,0},
+            {0,0,1,0,0},
+            {0,0,1,0,0},
+            {0,0,1,0,0},
+            {0,0,0,0,0},
+        };
+        assertArrayEquals(expResult, png.calcNextGen(testBoard));
+    }
+
+    /**
+     * Test of calcNextGen across word borders and board edges, Conway's rules.
+     */
+    @Test
+    public void testCalcNextGenRandomConways() {
+        System.out.println("packed calcNextGen random B3/S23");
+        for(int size : new int[]{1, 63, 64, 65, 130}){
+            byte[][] board = randomBoard(size+3, size, size);
+            for(int gen = 0; gen<5; gen++){
+                byte[][] expResult = ng.calcNextGen(board);
+                byte[][] result = png.calcNextGen(board);
+                assertArrayEquals(expResult, result);
+                board = result;
+            }
+        }
+    }
+
+    /**
+     * Test of calcNextGen with alternative rulesets.
+     */
+    @Test
+    public void testCalcNextGenRandomRulesets() {
+        System.out.println("packed calcNextGen random rulesets");
+        String[][] rules = {{"36", "125"}, {"36", "23"}, {"3678", "34678"}, {"1", "012345678"}};
+        for(String[] rule : rules){
+            ng.decodeRuleset(rule[0], rule[1]);
+            png.decodeRuleset(rule[0], rule[1]);
+            byte[][] board = randomBoard(70, 100, 7);
+            for(int gen = 0; gen<5; gen++){
+                byte[][] expResult = ng.calcNextGen(board);
+                byte[][] result = png.calcNextGen(board);
+                assertArrayEquals(expResult, result);
+                board = result;
+            }
+        }
+    }
+
+    /**
+     * Test of pack and unpack.
+     */
+    @Test
+    public void testPackUnpack() {
+        System.out.println("pack/unpack");
+        byte[][] board = randomBoard(10, 129, 3);
+        long[][] packed = PackedNextGeneration.pack(board);
+        assertEquals(3, packed[0].length);
+        assertArrayEquals(board, PackedNextGeneration.unpack(packed, 129));
+    }
+
+    /**
+     * Test of the parallel mode, bands of rows on a ForkJoinPool give the
+     * same generations as one thread, for both implementations.
+     */
+    @Test
+    public void testParallelBands() {
+        System.out.println("parallel calcNextGen");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        NextGeneration parallel = new NextGeneration();
+        PackedNextGeneration packedParallel = new PackedNextGeneration();
+        for(NextGeneration engine : new NextGeneration[]{parallel, packedParallel}){
+            engine.setPool(pool);
+            engine.setParallelThreshold(0);
+        }
+        byte[][] board = randomBoard(301, 150, 11);
+        for(int gen = 0; gen<5; gen++){
+            byte[][] expResult = ng.calcNextGen(board);
+            assertArrayEquals(expResult, parallel.calcNextGen(board));
+            assertArrayEquals(expResult, packedParallel.calcNextGen(board));
+            board = expResult;
+        }
+        assertSame(pool, packedParallel.getNextGenerationClone().getPool());
+        pool.shutdown();
+    }
+
+    /**
+     * Test that step, which StaticBoard steps with, gives the generations of
+     * calcNextGen in place, for the plain, the packed and the parallel engine.
+     */
+    @Test
+    public void testStep() {
+        System.out.println("step in place");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        NextGeneration parallel = new NextGeneration();
+        parallel.setPool(pool);
+        parallel.setParallelThreshold(0);
+        for(NextGeneration engine : new NextGeneration[]{new NextGeneration(), png, parallel}){
+            byte[][] expResult = randomBoard(80, 70, 13);
+            byte[][] board = randomBoard(80, 70, 13);
+            for(int gen = 0; gen<7; gen++)
+                expResult = ng.calcNextGen(expResult);
+            byte[][] rows = board.clone();
+            engine.step(board, 7);
+            assertArrayEquals(expResult, board);
+            for(int i = 0; i<rows.length; i++)
+                assertSame(rows[i], board[i]);
+        }
+        pool.shutdown();
+    }
+}
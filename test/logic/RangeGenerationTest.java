@@ -0,0 +1,248 @@
+package logic;
+
+import java.util.Random;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Testing the Larger than Life rules on RangeGeneration, NextGeneration and
+ * GenerationRange, against a reference counting the square of every cell.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class RangeGenerationTest {
+
+    private static final String[] RULES = {"R5,C0,M1,S34..58,B34..45,NM",
+        "R2,C0,M0,S5..9,B6..8,NM", "R3,C4,M1,S14..30,B12..18,NM", "R1,C0,M0,S2..3,B3..3,NM"};
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.out.println("Before class");
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        System.out.println("After class");
+    }
+
+    private byte[][] randomBoard(int x, int y, int states, long seed){
+        Random random = new Random(seed);
+        byte[][] board = new byte[x][y];
+        for(int i = 0; i<x; i++)
+            for(int j = 0; j<y; j++)
+                board[i][j] = (byte)(random.nextInt(2) == 0 ? 1+random.nextInt(states-1) : 0);
+        return board;
+    }
+
+    /**
+     * The next generation, counting the living cells of the square of every
+     * cell one by one. The cells outside the board are given by the topology.
+     */
+    private byte[][] reference(byte[][] board, RangeRule rule, Topology topology){
+        int rows = board.length, columns = board[0].length, r = rule.getRange();
+        byte[][] next = new byte[rows][columns];
+        for(int i = 0; i<rows; i++){
+            for(int j = 0; j<columns; j++){
+                int count = 0;
+                for(int di = -r; di<=r; di++){
+                    for(int dj = -r; dj<=r; dj++){
+                        long cell = topology.wrap(i+di, j+dj, rows, columns);
+                        if(cell == Topology.DEAD)
+                            continue;
+                        int y = Generation.row(cell), x = Generation.column(cell);
+                        if(y >= 0 && y < rows && x >= 0 && x < columns && board[y][x] == 1)
+                            count++;
+                    }
+                }
+                next[i][j] = (byte) rule.nextState(board[i][j], count);
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Test of parse, isRangeRule and toString.
+     */
+    @Test
+    public void testParse() throws PatternFormatException {
+        System.out.println("parse");
+        RangeRule bosco = RangeRule.parse("R5,C0,M1,S34..58,B34..45,NM");
+        assertEquals(RangeRule.BOSCO, bosco);
+        assertEquals("R5,C0,M1,S34..58,B34..45,NM", bosco.toString());
+        assertEquals(bosco, RangeRule.parse("r5, c2, m1, b34..45, s34..58"));
+        assertEquals(5, bosco.getRange());
+        assertEquals(2, bosco.getStates());
+        assertEquals(3, RangeRule.parse("R2,C3,S1..2,B3..4").getStates());
+        assertEquals("R2,C3,M0,S1..2,B3..4,NM", RangeRule.parse("R2,C3,S1..2,B3..4").toString());
+        assertTrue(RangeRule.isRangeRule(" R5,C0,M1,S34..58,B34..45,NM"));
+        assertFalse(RangeRule.isRangeRule("B3/S23"));
+        for(String invalid : new String[]{"R0,S1..2,B3..4", "R501,S1..2,B3..4", "R5,S34..58",
+                                          "R5,S34..58,B34..45,NN", "R5,S58..34,B34..45", "R5,C257,S1..2,B3..4"}){
+            try{
+                RangeRule.parse(invalid);
+                fail(invalid);
+            }
+            catch(PatternFormatException e){
+            }
+        }
+    }
+
+    /**
+     * Test of nextState, with and without the middle cell counted.
+     */
+    @Test
+    public void testNextState() throws PatternFormatException {
+        System.out.println("nextState");
+        RangeRule life = RangeRule.parse("R1,C0,M0,S2..3,B3..3,NM");
+        assertEquals(1, life.nextState(0, 3));
+        assertEquals(0, life.nextState(0, 2));
+        //The living cell is in the count, and not counted with M0.
+        assertEquals(1, life.nextState(1, 3));
+        assertEquals(0, life.nextState(1, 2));
+        assertEquals(1, RangeRule.BOSCO.nextState(1, 34));
+        assertEquals(0, RangeRule.BOSCO.nextState(1, 33));
+        RangeRule decay = RangeRule.parse("R2,C3,M1,S10..12,B5..6,NM");
+        assertEquals(2, decay.nextState(1, 20));
+        assertEquals(0, decay.nextState(2, 11));
+        assertEquals(0, decay.nextState(2, 5));
+    }
+
+    /**
+     * Test of RangeGeneration against the reference on every topology, also
+     * with a range larger than the board.
+     */
+    @Test
+    public void testDense() throws PatternFormatException {
+        System.out.println("RangeGeneration");
+        RangeGeneration range = new RangeGeneration();
+        for(Topology topology : Topology.values()){
+            range.setTopology(topology);
+            for(String name : RULES){
+                RangeRule rule = RangeRule.parse(name);
+                byte[][] expected = randomBoard(30, 37, rule.getStates(), name.hashCode());
+                byte[][] board = copy(expected);
+                for(int gen = 0; gen<8; gen++){
+                    expected = reference(expected, rule, topology);
+                    range.step(board, rule);
+                    assertArrayEquals(topology + " " + name + " gen " + gen, expected, board);
+                }
+            }
+            RangeRule wide = RangeRule.parse("R12,C0,M1,S100..300,B80..200,NM");
+            byte[][] expected = randomBoard(10, 9, 2, 5);
+            byte[][] board = copy(expected);
+            for(int gen = 0; gen<4; gen++){
+                expected = reference(expected, wide, topology);
+                range.step(board, wide);
+                assertArrayEquals(topology + " wide gen " + gen, expected, board);
+            }
+        }
+    }
+
+    /**
+     * Test of R1 without the middle cell against Conway's rule on DenseGeneration.
+     */
+    @Test
+    public void testConway() throws PatternFormatException {
+        System.out.println("R1 is Conway");
+        byte[][] expected = randomBoard(40, 40, 2, 11);
+        byte[][] board = copy(expected);
+        DenseGeneration dense = new DenseGeneration();
+        RangeGeneration range = new RangeGeneration();
+        RangeRule life = RangeRule.parse("R1,C0,M0,S2..3,B3..3,NM");
+        range.step(board, life, 20);
+        dense.step(expected, CompiledRule.CONWAY, 20);
+        assertArrayEquals(expected, board);
+    }
+
+    /**
+     * Test of the range rule of NextGeneration and its subclasses, set by
+     * decodeRuleset and cleared by a compiled rule.
+     */
+    @Test
+    public void testNextGeneration() throws PatternFormatException {
+        System.out.println("NextGeneration with a range rule");
+        RangeRule rule = RangeRule.BOSCO;
+        for(NextGeneration ng : new NextGeneration[]{new NextGeneration(), new PackedNextGeneration()}){
+            ng.decodeRuleset(rule.toString());
+            assertEquals(rule, ng.getRangeRule());
+            assertEquals(rule, ng.getNextGenerationClone().getRangeRule());
+            byte[][] expected = randomBoard(50, 45, 2, 3);
+            byte[][] board = copy(expected);
+            for(int gen = 0; gen<5; gen++){
+                expected = reference(expected, rule, Topology.PLANE);
+                board = ng.calcNextGen(board);
+                assertArrayEquals(ng + " gen " + gen, expected, board);
+            }
+            ng.decodeRuleset("B3/S23");
+            assertNull(ng.getRangeRule());
+        }
+    }
+
+    /**
+     * Test of GenerationRange on a growing world against the reference on a
+     * board large enough for the soup.
+     */
+    @Test
+    public void testGeneration() throws PatternFormatException {
+        System.out.println("GenerationRange");
+        for(String name : RULES){
+            RangeRule rule = RangeRule.parse(name);
+            int size = 160, offset = -size/2;
+            byte[][] expected = new byte[size][size];
+            byte[][] soup = randomBoard(20, 20, rule.getStates(), name.hashCode());
+            GenerationRange gen = new GenerationRange(20, 1);
+            gen.setRangeRule(rule);
+            for(int i = 0; i<20; i++){
+                for(int j = 0; j<20; j++){
+                    expected[70+i][70+j] = soup[i][j];
+                    gen.addCell(Generation.key(70+i+offset, 70+j+offset), soup[i][j]);
+                }
+            }
+            for(int step = 0; step<10; step++){
+                expected = reference(expected, rule, Topology.PLANE);
+                gen = gen.calcNextGen();
+                assertFalse(gen.needExpansion() && gen.getArea() > size);
+                byte[][] actual = new byte[size][size];
+                for(long cell : gen)
+                    actual[Generation.row(cell)-offset][Generation.column(cell)-offset] = (byte) gen.stateOf(cell);
+                assertArrayEquals(name + " gen " + step, expected, actual);
+            }
+        }
+    }
+
+    /**
+     * Test of GenerationRange on a torus against RangeGeneration, and of
+     * copyOf keeping the cells.
+     */
+    @Test
+    public void testTorus() throws PatternFormatException {
+        System.out.println("GenerationRange on a torus");
+        RangeRule rule = RangeRule.parse("R3,C4,M1,S14..30,B12..18,NM");
+        int area = 30;
+        byte[][] board = randomBoard(area, area, rule.getStates(), 9);
+        GenerationMultiState cells = new GenerationMultiState(area, 1);
+        cells.setTopology(Topology.TORUS);
+        for(int i = 0; i<area; i++)
+            for(int j = 0; j<area; j++)
+                cells.addCell(cells.indToKey(i, j), board[i][j]);
+        GenerationRange gen = GenerationRange.copyOf(cells);
+        gen.setRangeRule(rule);
+        assertArrayEquals(board, gen.convertToStatic());
+        RangeGeneration range = new RangeGeneration();
+        range.setTopology(Topology.TORUS);
+        for(int step = 0; step<10; step++){
+            range.step(board, rule);
+            gen.calcNextGen();
+            assertEquals(area, gen.getArea());
+            assertArrayEquals("gen " + step, board, gen.convertToStatic());
+        }
+    }
+
+    private static byte[][] copy(byte[][] board){
+        byte[][] copy = new byte[board.length][];
+        for(int i = 0; i<board.length; i++)
+            copy[i] = board[i].clone();
+        return copy;
+    }
+}
@@ -0,0 +1,203 @@
+package logic;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * Testing the binary session files of Session.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class SessionTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.out.println("Before class");
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        System.out.println("After class");
+    }
+
+    private static Generation soup(Generation gen, int cells, int side, long seed){
+        Random random = new Random(seed);
+        for(int i = 0; i<cells; i++)
+            gen.addLivingCell(Generation.key(random.nextInt(side)-side/2, random.nextInt(side)-side/2));
+        return gen;
+    }
+
+    /**
+     * The sorted keys of the cells, and their states after the keys.
+     */
+    private static long[] cells(Snapshot snapshot){
+        long[][] pairs = new long[snapshot.getPopulation()][];
+        for(int i = 0; i<pairs.length; i++)
+            pairs[i] = new long[]{snapshot.cell(i), snapshot.state(i)};
+        Arrays.sort(pairs, (a, b) -> Long.compare(a[0], b[0]));
+        long[] cells = new long[2*pairs.length];
+        for(int i = 0; i<pairs.length; i++){
+            cells[i] = pairs[i][0];
+            cells[pairs.length+i] = pairs[i][1];
+        }
+        return cells;
+    }
+
+    private Session roundTrip(Generation gen, int genCount, String rule, boolean deflate) throws IOException{
+        Path path = folder.newFile().toPath();
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)){
+            Session.write(channel, gen, genCount, rule, deflate);
+        }
+        return Session.open(path);
+    }
+
+    /**
+     * Test of writing and reading the cells, the world and the rule, with and
+     * without Deflate, of an empty generation and of cells far apart.
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        System.out.println("session round trip");
+        for(boolean deflate : new boolean[]{false, true}){
+            Generation gen = soup(new GenerationHash(40, 1), 200000, 2000, 1);
+            gen.addLivingCell(Generation.key(Integer.MIN_VALUE, Integer.MIN_VALUE));
+            gen.addLivingCell(Generation.key(Integer.MAX_VALUE, -3));
+            gen.growWorld(12);
+            Session session = roundTrip(gen, 42, "B36/S23", deflate);
+            Snapshot snapshot = session.getSnapshot();
+            assertArrayEquals(cells(Snapshot.of(gen, 0, true)), cells(snapshot));
+            assertEquals(42, snapshot.getGenCount());
+            assertEquals(gen.getArea(), snapshot.getArea());
+            assertEquals(gen.getOriginRow(), snapshot.getOriginRow());
+            assertEquals(gen.getOriginColumn(), snapshot.getOriginColumn());
+            assertEquals("B36/S23", session.getRule());
+            assertEquals(Topology.PLANE, session.getTopology());
+
+            Session empty = roundTrip(new GenerationHash(40, 1), 1, "B3/S23", deflate);
+            assertEquals(0, empty.getSnapshot().getPopulation());
+        }
+    }
+
+    /**
+     * Test of the states of a rule with decaying cells, and of the topology.
+     */
+    @Test
+    public void testStates() throws IOException, PatternFormatException {
+        System.out.println("session states");
+        Generation gen = soup(new GenerationMultiState(60, 1), 900, 60, 2);
+        gen.setRule(CompiledRule.parse("B2/S345/C5"));
+        gen.setTopology(Topology.TORUS);
+        gen = gen.stepN(7);
+        Session session = roundTrip(gen, 8, "B2/S345/C5", true);
+        assertArrayEquals(cells(Snapshot.of(gen, 0, true)), cells(session.getSnapshot()));
+        assertEquals(Topology.TORUS, session.getTopology());
+    }
+
+    /**
+     * Test of saving a DynamicBoard and resuming it on another board, which
+     * then steps as the first one.
+     */
+    @Test
+    public void testResume() throws IOException, PatternFormatException {
+        System.out.println("session resume");
+        Path path = folder.getRoot().toPath().resolve("world.gols");
+        DynamicBoard board = new DynamicBoard(null, soup(new GenerationHash(40, 1), 500, 40, 3));
+        board.setCompiledRule(CompiledRule.parse("B2-a3/S23-k"));
+        board.stepN(25);
+        Session.save(board, path, true);
+
+        DynamicBoard resumed = new DynamicBoard(null, new GenerationHash(40, 1));
+        resumed.resume(Session.open(path));
+        assertEquals(26, resumed.getGenCount());
+        assertEquals(board.getCompiledRule(), resumed.getCompiledRule());
+        assertEquals(board.getGeneration().getHash(), resumed.getGeneration().getHash());
+        assertEquals(board.getGeneration().getArea(), resumed.getGeneration().getArea());
+        board.stepN(10);
+        resumed.stepN(10);
+        assertEquals(board.getGeneration().getHash(), resumed.getGeneration().getHash());
+
+        board.setRangeRule(RangeRule.parse("R2,C0,M1,S6..11,B9..11,NM"));
+        Session.save(board, path, false);
+        resumed.resume(Session.open(path));
+        assertEquals(board.getRangeRule(), resumed.getRangeRule());
+        assertEquals(board.getGeneration().getHash(), resumed.getGeneration().getHash());
+    }
+
+    /**
+     * Test that a file that is not a session, ends too soon, or claims more
+     * cells than it holds, is refused.
+     */
+    @Test
+    public void testDamaged() throws IOException {
+        System.out.println("session damaged");
+        Path path = folder.newFile().toPath();
+        Files.write(path, "x = 3, y = 3, rule = B3/S23".getBytes());
+        try{
+            Session.open(path);
+            fail("Not a session.");
+        }
+        catch(IOException e){
+        }
+        for(boolean deflate : new boolean[]{false, true}){
+            try(FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE,
+                                                       StandardOpenOption.TRUNCATE_EXISTING)){
+                Session.write(channel, soup(new GenerationHash(40, 1), 5000, 100, 4), 1, "B3/S23", deflate);
+            }
+            byte[] bytes = Files.readAllBytes(path);
+            Files.write(path, Arrays.copyOf(bytes, bytes.length/2));
+            try{
+                Session.open(path);
+                fail("The session ends too soon.");
+            }
+            catch(IOException e){
+            }
+        }
+        //A header claiming more cells than the file holds is refused before they are read.
+        for(boolean deflate : new boolean[]{false, true}){
+            try(FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE,
+                                                       StandardOpenOption.TRUNCATE_EXISTING)){
+                Session.write(channel, soup(new GenerationHash(40, 1), 50, 20, 5), 1, "B3/S23", deflate);
+            }
+            byte[] bytes = Files.readAllBytes(path);
+            ByteBuffer.wrap(bytes).putInt(22, Integer.MAX_VALUE);
+            Files.write(path, bytes);
+            try{
+                Session.open(path);
+                fail("The session claims too many cells.");
+            }
+            catch(IOException e){
+                assertEquals("The session is damaged.", e.getMessage());
+            }
+            try{
+                Session.read(Channels.newChannel(new ByteArrayInputStream(bytes)));
+                fail("The session ends too soon.");
+            }
+            catch(IOException e){
+            }
+        }
+        ByteBuffer header = ByteBuffer.allocate(6).putInt(Session.MAGIC).put((byte) 9);
+        Files.write(path, header.array());
+        try{
+            Session.open(path);
+            fail("Unknown version.");
+        }
+        catch(IOException e){
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package logic;
+
+import java.util.Random;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Testing the Simulation thread and the snapshots it publishes, on a
+ * StaticBoard without a canvas.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class SimulationTest {
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.out.println("Before class");
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        System.out.println("After class");
+    }
+
+    private byte[][] randomBoard(int x, int y, long seed){
+        Random random = new Random(seed);
+        byte[][] board = new byte[x][y];
+        for(int i = 0; i<x; i++)
+            for(int j = 0; j<y; j++)
+                board[i][j] = (byte)(random.nextInt(3) == 0 ? 1 : 0);
+        return board;
+    }
+
+    /**
+     * Test of Snapshot.of, on a dense board and on a Generation.
+     */
+    @Test
+    public void testSnapshot() {
+        System.out.println("snapshot");
+        byte[][] board = randomBoard(30, 20, 1);
+        Snapshot snapshot = Snapshot.of(board, 7);
+        byte[][] drawn = new byte[30][20];
+        for(int c = 0; c<snapshot.getPopulation(); c++){
+            assertEquals(1, snapshot.state(c));
+            drawn[Generation.row(snapshot.cell(c))][Generation.column(snapshot.cell(c))] = 1;
+        }
+        assertArrayEquals(board, drawn);
+        assertEquals(7, snapshot.getGenCount());
+        assertEquals(30, snapshot.getArea());
+
+        GenerationMultiState gen = new GenerationMultiState(20, 1);
+        gen.addCell(Generation.key(1, 2), 1);
+        gen.addCell(Generation.key(-3, 4), 2);
+        snapshot = Snapshot.of(gen, 3, true);
+        assertEquals(2, snapshot.getPopulation());
+        for(int c = 0; c<snapshot.getPopulation(); c++)
+            assertEquals(gen.stateOf(snapshot.cell(c)), snapshot.state(c));
+        assertEquals(gen.getOriginRow(), snapshot.getOriginRow());
+        assertEquals(gen.getArea(), snapshot.getArea());
+
+        //Stepping the generation leaves the snapshot as it was.
+        gen.calcNextGen();
+        assertEquals(2, snapshot.getPopulation());
+    }
+
+    /**
+     * Test that the simulation steps the board on its own thread, publishes
+     * snapshots taken by the renderer and stops within a generation.
+     */
+    @Test
+    public void testRun() throws InterruptedException {
+        System.out.println("simulation");
+        NextGeneration ng = new NextGeneration();
+        StaticBoard sb = new StaticBoard(null, ng);
+        sb.setCurrentGen(randomBoard(40, 40, 3));
+        Simulation simulation = new Simulation(sb);
+        simulation.setRate(1000);
+        simulation.start();
+        assertTrue(simulation.isRunning());
+        Snapshot snapshot = null;
+        for(int wait = 0; wait<200 && (snapshot == null || snapshot.getGenCount() < 20); wait++){
+            Thread.sleep(10);
+            Snapshot taken = simulation.takeSnapshot();
+            if(taken != null){
+                //A newer snapshot is only made after the last one is taken.
+                assertNull(simulation.takeSnapshot());
+                assertTrue(snapshot == null || taken.getGenCount() > snapshot.getGenCount());
+                snapshot = taken;
+            }
+        }
+        simulation.pause();
+        assertFalse(simulation.isRunning());
+        assertNotNull(snapshot);
+        assertTrue(snapshot.getGenCount() >= 20);
+
+        //The board does not move once paused.
+        int genCount = sb.getGenCount();
+        Thread.sleep(20);
+        assertEquals(genCount, sb.getGenCount());
+        Snapshot last = sb.snapshot();
+        assertEquals(genCount, last.getGenCount());
+        assertEquals(Snapshot.of(sb.getCurrentGen(), genCount).getPopulation(), last.getPopulation());
+
+        //The simulation starts again where it was paused.
+        simulation.start();
+        Thread.sleep(50);
+        simulation.pause();
+        assertTrue(sb.getGenCount() > genCount);
+    }
+
+    /**
+     * Test that the rate paces the generations.
+     */
+    @Test
+    public void testRate() throws InterruptedException {
+        System.out.println("rate");
+        StaticBoard sb = new StaticBoard(null, new NextGeneration());
+        sb.setCurrentGen(randomBoard(20, 20, 5));
+        Simulation simulation = new Simulation(sb);
+        simulation.setRate(20);
+        assertEquals(20, simulation.getRate(), 0);
+        simulation.start();
+        Thread.sleep(500);
+        simulation.pause();
+        int generations = sb.getGenCount()-1;
+        assertTrue("generations " + generations, generations >= 3 && generations <= 15);
+    }
+}
@@ -0,0 +1,201 @@
+package logic;
+
+import java.util.Random;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Testing the topologies, the halo of the dense boards and the mapped
+ * neighbours of the generations, against a reference that maps every
+ * neighbour of every cell.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class TopologyTest {
+
+    private static final Topology[] BOUNDED = {Topology.BOUNDED_PLANE, Topology.TORUS, Topology.KLEIN_BOTTLE};
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.out.println("Before class");
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        System.out.println("After class");
+    }
+
+    private byte[][] randomBoard(int x, int y, long seed){
+        Random random = new Random(seed);
+        byte[][] board = new byte[x][y];
+        for(int i = 0; i<x; i++)
+            for(int j = 0; j<y; j++)
+                board[i][j] = (byte)(random.nextInt(3) == 0 ? 1 : 0);
+        return board;
+    }
+
+    /**
+     * The next generation, with the neighbourhood of every cell read through
+     * Topology.wrap in the frame of the cell.
+     */
+    private byte[][] reference(byte[][] board, Topology topology, CompiledRule rule){
+        int rows = board.length, columns = board[0].length;
+        byte[][] next = new byte[rows][columns];
+        for(int i = 0; i<rows; i++){
+            for(int j = 0; j<columns; j++){
+                int mask = 0;
+                for(int di = -1; di<=1; di++){
+                    for(int dj = -1; dj<=1; dj++){
+                        //On a dense board, the plane is dead outside the board too.
+                        long cell = topology.wrap(i+di, j+dj, rows, columns);
+                        int r = Generation.row(cell), c = Generation.column(cell);
+                        if(cell != Topology.DEAD && r >= 0 && r < rows && c >= 0 && c < columns
+                                && board[r][c] == 1)
+                            mask |= CompiledRule.neighbourBit(di, dj);
+                    }
+                }
+                next[i][j] = (byte) rule.nextState(mask);
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Test of wrap and mirrors.
+     */
+    @Test
+    public void testWrap() {
+        System.out.println("wrap");
+        assertEquals(Generation.key(9, 0), Topology.TORUS.wrap(-1, 10, 10, 10));
+        assertEquals(Generation.key(0, 9), Topology.TORUS.wrap(10, -1, 10, 10));
+        assertEquals(Generation.key(9, 6), Topology.KLEIN_BOTTLE.wrap(-1, 3, 10, 10));
+        assertEquals(Generation.key(2, 0), Topology.KLEIN_BOTTLE.wrap(2, 10, 10, 10));
+        assertEquals(Topology.DEAD, Topology.BOUNDED_PLANE.wrap(-1, 3, 10, 10));
+        assertEquals(Generation.key(-1, 3), Topology.PLANE.wrap(-1, 3, 10, 10));
+        assertTrue(Topology.KLEIN_BOTTLE.mirrors(10, 10));
+        assertFalse(Topology.KLEIN_BOTTLE.mirrors(20, 10));
+        assertFalse(Topology.TORUS.mirrors(-1, 10));
+        assertEquals(Topology.KLEIN_BOTTLE, Topology.fromName(" klein_bottle"));
+        assertEquals(Topology.PLANE, Topology.fromName(null));
+    }
+
+    /**
+     * Test of DenseGeneration and NextGeneration on every topology, against
+     * the reference, with a Hensel rule that is not mirror-symmetric in
+     * count alone.
+     */
+    @Test
+    public void testDense() throws PatternFormatException {
+        System.out.println("dense topologies");
+        CompiledRule rule = CompiledRule.parse("2-a3", "23-k");
+        NextGeneration[] engines = {new NextGeneration(), new PackedNextGeneration()};
+        for(Topology topology : Topology.values()){
+            DenseGeneration dense = new DenseGeneration();
+            dense.setTopology(topology);
+            for(NextGeneration engine : engines){
+                engine.setTopology(topology);
+                engine.setCompiledRule(rule);
+            }
+            byte[][] board = randomBoard(23, 37, topology.ordinal());
+            byte[][] expResult = board;
+            for(int gen = 0; gen<10; gen++){
+                byte[][] current = expResult;
+                expResult = reference(current, topology, rule);
+                for(NextGeneration engine : engines)
+                    assertArrayEquals(topology + " " + engine, expResult, engine.calcNextGen(current));
+                dense.step(board, rule);
+                assertArrayEquals(topology.toString(), expResult, board);
+            }
+        }
+    }
+
+    /**
+     * Test that NextGeneration steps a wrapped board, fed its own results,
+     * in its two buffers instead of a new board every generation.
+     */
+    @Test
+    public void testDenseBuffers() {
+        System.out.println("dense buffers");
+        NextGeneration engine = new NextGeneration();
+        engine.setTopology(Topology.KLEIN_BOTTLE);
+        DenseGeneration dense = new DenseGeneration();
+        dense.setTopology(Topology.KLEIN_BOTTLE);
+        byte[][] board = randomBoard(31, 17, 5);
+        byte[][] gen = randomBoard(31, 17, 5);
+        byte[][] first = engine.calcNextGen(gen);
+        byte[][] second = engine.calcNextGen(first);
+        assertNotSame(first, second);
+        gen = second;
+        dense.step(board, CompiledRule.CONWAY, 2);
+        assertArrayEquals(board, gen);
+        for(int step = 0; step<20; step++){
+            byte[][] next = engine.calcNextGen(gen);
+            assertTrue(next == first || next == second);
+            assertNotSame(gen, next);
+            gen = next;
+        }
+        dense.step(board, CompiledRule.CONWAY, 20);
+        assertArrayEquals(board, gen);
+    }
+
+    /**
+     * Test of a glider on a torus, it comes back to where it started.
+     */
+    @Test
+    public void testGliderTorus() {
+        System.out.println("torus glider");
+        byte[][] board = new byte[8][8];
+        board[0][1] = board[1][2] = board[2][0] = board[2][1] = board[2][2] = 1;
+        byte[][] start = new byte[8][];
+        for(int i = 0; i<8; i++)
+            start[i] = board[i].clone();
+        DenseGeneration dense = new DenseGeneration();
+        dense.setTopology(Topology.TORUS);
+        dense.step(board, CompiledRule.CONWAY, 32);
+        assertArrayEquals(start, board);
+    }
+
+    /**
+     * Test of the generations on the bounded topologies, against the
+     * reference on the area. The area never grows.
+     */
+    @Test
+    public void testGenerations() throws PatternFormatException {
+        System.out.println("generation topologies");
+        CompiledRule rule = CompiledRule.parse("2-a3", "23-k");
+        int area = 30;
+        for(Topology topology : BOUNDED){
+            Generation[] generations = {new GenerationHash(area, 1), new GenerationConcurrHash(area, 1),
+                                        new GenerationIncremental(area, 1)};
+            byte[][] board = randomBoard(area, area, 7+topology.ordinal());
+            for(Generation gen : generations){
+                gen.setRule(rule);
+                gen.setTopology(topology);
+                for(int i = 0; i<area; i++)
+                    for(int j = 0; j<area; j++)
+                        if(board[i][j] == 1)
+                            gen.addLivingCell(gen.indToKey(i, j));
+            }
+            for(int step = 0; step<30; step++){
+                board = reference(board, topology, rule);
+                for(int g = 0; g<generations.length; g++){
+                    generations[g] = generations[g].calcNextGen();
+                    assertEquals(area, generations[g].getArea());
+                    assertArrayEquals(topology + " " + generations[g], board, generations[g].convertToStatic());
+                }
+            }
+        }
+    }
+
+    /**
+     * Test that the generations of the plane only refuse bounded topologies.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testTiledPlaneOnly() {
+        System.out.println("tiled plane only");
+        GenerationTiled instance = new GenerationTiled(40, 1);
+        instance.setTopology(Topology.PLANE);
+        instance.setTopology(Topology.TORUS);
+    }
+}
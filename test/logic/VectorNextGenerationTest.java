@@ -0,0 +1,83 @@
+package logic;
+
+import java.util.Random;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Testing the Vector API implementation against the byte[][] implementation
+ * in NextGeneration. Run with --add-modules jdk.incubator.vector and the
+ * source root vector compiled, without them only the fallback is tested.
+ * The class is only named, so the tests compile without the module.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class VectorNextGenerationTest {
+
+    NextGeneration ng = new NextGeneration();
+    NextGeneration vng = NextGeneration.create("vector");
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.out.println("Before class");
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        System.out.println("After class");
+    }
+
+    private byte[][] randomBoard(int x, int y, long seed){
+        Random random = new Random(seed);
+        byte[][] board = new byte[x][y];
+        for(int i = 0; i<x; i++)
+            for(int j = 0; j<y; j++)
+                board[i][j] = (byte)(random.nextInt(3) == 0 ? 1 : 0);
+        return board;
+    }
+
+    private static boolean compiled(){
+        try{
+            Class.forName("logic.VectorNextGeneration", false, NextGeneration.class.getClassLoader());
+            return true;
+        }
+        catch(ClassNotFoundException e){
+            return false;
+        }
+    }
+
+    /**
+     * Test of create, the vector implementation is only chosen with the module.
+     */
+    @Test
+    public void testCreate() {
+        System.out.println("create vector");
+        assertEquals(NextGeneration.isVectorAvailable() && compiled(),
+                     vng.getClass().getName().equals("logic.VectorNextGeneration"));
+        assertTrue(NextGeneration.create("packed") instanceof PackedNextGeneration);
+        assertEquals(NextGeneration.class, NextGeneration.create(null).getClass());
+    }
+
+    /**
+     * Test of calcNextGen across vector borders and board edges.
+     */
+    @Test
+    public void testCalcNextGenRandom() {
+        System.out.println("vector calcNextGen random");
+        String[][] rules = {{"3", "23"}, {"36", "23"}, {"1", "012345678"}, {"0", "8"}};
+        for(String[] rule : rules){
+            ng.decodeRuleset(rule[0], rule[1]);
+            vng.decodeRuleset(rule[0], rule[1]);
+            for(int size : new int[]{1, 15, 16, 17, 64, 100}){
+                byte[][] board = randomBoard(size+2, size, size);
+                for(int gen = 0; gen<4; gen++){
+                    byte[][] expResult = ng.calcNextGen(board);
+                    byte[][] result = vng.calcNextGen(board);
+                    assertArrayEquals(expResult, result);
+                    board = result;
+                }
+            }
+        }
+    }
+}
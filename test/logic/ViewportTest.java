@@ -0,0 +1,87 @@
+package logic;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Testing the transform between the world and the canvas.
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class ViewportTest {
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.out.println("Before class");
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        System.out.println("After class");
+    }
+
+    /**
+     * Test of screenX, screenY, row and column, on both sides of the origin.
+     */
+    @Test
+    public void testTransform() {
+        System.out.println("transform");
+        Viewport instance = new Viewport();
+        instance.setCanvas(800, 600, 10);
+        assertEquals(400, instance.screenX(0), 0);
+        assertEquals(300, instance.screenY(0), 0);
+        assertEquals(390, instance.screenX(-1), 0);
+
+        for(int cell = -50; cell<50; cell++){
+            assertEquals(cell, instance.column(instance.screenX(cell)+5));
+            assertEquals(cell, instance.row(instance.screenY(cell)+5));
+        }
+        assertEquals(-1, instance.column(399.9));
+        assertEquals(-40, instance.firstColumn());
+        assertEquals(40, instance.lastColumn());
+        assertTrue(instance.isVisible(-30, 39));
+        assertFalse(instance.isVisible(-31, 0));
+    }
+
+    /**
+     * Test of pan and center, far away from the origin.
+     */
+    @Test
+    public void testPan() {
+        System.out.println("pan");
+        Viewport instance = new Viewport();
+        instance.setCanvas(800, 600, 10);
+        instance.pan(-2, 3);
+        assertEquals(-2, instance.row(300));
+        assertEquals(3, instance.column(400));
+
+        int far = 2_000_000_000;
+        instance.center(0, far);
+        assertEquals(400, instance.screenX(far), 0);
+        assertEquals(far, instance.column(400));
+        assertTrue(instance.isVisible(0, far+40));
+        instance.center(-1_000_000, 0);
+        assertEquals(-1_000_000, instance.row(300));
+        assertTrue(instance.isVisible(-1_000_000, 0));
+    }
+
+    /**
+     * Test of fit, the box is centered and every cell of it is on the canvas.
+     */
+    @Test
+    public void testFit() {
+        System.out.println("fit");
+        Viewport instance = new Viewport();
+        instance.setCanvas(800, 600, 10);
+        assertEquals(20, instance.fit(-5, 24, 100, 139, 0.5, 25), 0);
+        assertEquals(10, instance.getCenterRow(), 0);
+        assertEquals(120, instance.getCenterColumn(), 0);
+        assertEquals(0, instance.screenY(-5), 0);
+        assertEquals(600, instance.screenY(25), 0);
+        assertTrue(instance.isVisible(-5, 100) && instance.isVisible(24, 139));
+
+        assertEquals(25, instance.fit(0, 0, 0, 0, 0.5, 25), 0);
+        assertEquals(0.5, instance.fit(0, 1_000_000, 0, 0, 0.5, 25), 0);
+    }
+}
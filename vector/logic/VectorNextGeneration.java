@@ -0,0 +1,175 @@
+package logic;
+
+import java.util.Arrays;
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD implementation of NextGeneration using the Java Vector API.
+ * A whole vector of cells is calculated at once: the eight neighbours are
+ * summed from the rows above, at and below the cells, and the sum is looked
+ * up in a table holding the born/survives rules for every neighbour count.
+ * The state of the cell then picks the born or the survives bit.
+ * <br>
+ * The rows are copied into buffers with a dead cell at each end, so the
+ * vector loop needs no border checks. Needs the jdk.incubator.vector module
+ * (--add-modules jdk.incubator.vector); use NextGeneration.create("vector"),
+ * which falls back to NextGeneration when the module is not present.
+ * <br>
+ * This class lives in the source root vector, beside src, so src compiles
+ * without the module. To use it, compile the root into the same directory
+ * as src, and run with the module:
+ * <pre>
+ *   javac --add-modules jdk.incubator.vector -d out -cp out vector/logic/VectorNextGeneration.java
+ *   java --add-modules jdk.incubator.vector -Dgol.engine=vector ...
+ * </pre>
+ * @author Olav Sørlie and Øyvind Mjelstad
+ */
+public class VectorNextGeneration extends NextGeneration{
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    /**
+     * Constructor containing the default ruleset Conway's Game of Life.
+     */
+    public VectorNextGeneration(){
+        super();
+    }
+
+    /**
+     * Deepclone method for VectorNextGeneration object.
+     * @return a deepclone of the current VectorNextGeneration object.
+     */
+    @Override
+    public NextGeneration getNextGenerationClone(){
+        VectorNextGeneration clone = new VectorNextGeneration();
+        clone.setCompiledRule(getCompiledRule());
+        clone.setRangeRule(getRangeRule());
+        clone.copyParallelism(this);
+        clone.setTopology(getTopology());
+        return clone;
+    }
+
+    /**
+     * Calculates the rows from (inclusive) to (exclusive) of the next generation,
+     * a vector of cells at a time. The cells after the last full vector are
+     * calculated one by one with the same table. The cells born and the cells
+     * that died are added up in lanes, and the lanes are summed before a lane
+     * can pass the largest byte. Non-totalistic rules and
+     * rules with more than two states are calculated by NextGeneration.
+     * @param currGen is the current generation to be calculated.
+     * @param nextGen is the next generation to be written.
+     * @param from first row to be calculated.
+     * @param to the row after the last row to be calculated.
+     */
+    @Override
+    protected void calcRows(byte[][] currGen, byte[][] nextGen, int from, int to){
+        //The table is indexed by the neighbour count, 0 to 8.
+        if(SPECIES.length() < 9 || !getCompiledRule().isTotalistic() || getCompiledRule().getStates() > 2){
+            super.calcRows(currGen, nextGen, from, to);
+            return;
+        }
+        int columns = currGen[0].length;
+        byte[] table = ruleTable(SPECIES.length());
+        ByteVector rule = ByteVector.fromArray(SPECIES, table, 0);
+        int bound = SPECIES.loopBound(columns);
+
+        byte[] above = padRow(currGen, from-1, new byte[columns+2]);
+        byte[] row   = padRow(currGen, from,   new byte[columns+2]);
+        byte[] below = new byte[columns+2];
+        ByteVector bornLanes = ByteVector.zero(SPECIES), diedLanes = ByteVector.zero(SPECIES);
+        int pending = 0;
+        long born = 0, died = 0;
+
+        for(int i = from; i<to; i++){
+            below = padRow(currGen, i+1, below);
+            byte[] next = nextGen[i];
+
+            int j = 0;
+            for(; j<bound; j += SPECIES.length()){
+                ByteVector count = ByteVector.fromArray(SPECIES, above, j)
+                        .add(ByteVector.fromArray(SPECIES, above, j+1))
+                        .add(ByteVector.fromArray(SPECIES, above, j+2))
+                        .add(ByteVector.fromArray(SPECIES, row, j))
+                        .add(ByteVector.fromArray(SPECIES, row, j+2))
+                        .add(ByteVector.fromArray(SPECIES, below, j))
+                        .add(ByteVector.fromArray(SPECIES, below, j+1))
+                        .add(ByteVector.fromArray(SPECIES, below, j+2));
+                ByteVector state = ByteVector.fromArray(SPECIES, row, j+1);
+                ByteVector result = count.selectFrom(rule)
+                        .lanewise(VectorOperators.LSHR, state)
+                        .and((byte) 1);
+                result.intoArray(next, j);
+                bornLanes = bornLanes.add(result.lanewise(VectorOperators.AND_NOT, state));
+                diedLanes = diedLanes.add(state.lanewise(VectorOperators.AND_NOT, result));
+                if(++pending == Byte.MAX_VALUE){
+                    born += sum(bornLanes);
+                    died += sum(diedLanes);
+                    bornLanes = ByteVector.zero(SPECIES);
+                    diedLanes = ByteVector.zero(SPECIES);
+                    pending = 0;
+                }
+            }
+            for(; j<columns; j++){
+                int count = above[j] + above[j+1] + above[j+2] + row[j] + row[j+2]
+                        + below[j] + below[j+1] + below[j+2];
+                next[j] = (byte) ((table[count] >> row[j+1]) & 1);
+                born += next[j] & ~row[j+1];
+                died += row[j+1] & ~next[j];
+            }
+
+            byte[] free = above;
+            above = row;
+            row = below;
+            below = free;
+        }
+        born += sum(bornLanes);
+        died += sum(diedLanes);
+        addChanges(born, died);
+    }
+
+    /**
+     * Sums the lanes as ints, as a sum of bytes would overflow.
+     * @param lanes the counts, every lane from 0 to Byte.MAX_VALUE.
+     * @return the sum of the lanes.
+     */
+    private static long sum(ByteVector lanes){
+        long sum = 0;
+        for(int part = 0; part<4; part++)
+            sum += ((IntVector) lanes.convert(VectorOperators.B2I, part)).reduceLanes(VectorOperators.ADD);
+        return sum;
+    }
+
+    /**
+     * Copies row i of the generation into the middle of a buffer with a dead
+     * cell at each end. Rows outside the board are dead.
+     * @param currGen the current generation.
+     * @param i the row to copy.
+     * @param padded the buffer, two cells longer than the row.
+     * @return the buffer.
+     */
+    private static byte[] padRow(byte[][] currGen, int i, byte[] padded){
+        if(i < 0 || i >= currGen.length)
+            Arrays.fill(padded, (byte) 0);
+        else
+            System.arraycopy(currGen[i], 0, padded, 1, currGen[i].length);
+        return padded;
+    }
+
+    /**
+     * Bit 0 of entry n tells if a dead cell with n neighbours is born, bit 1
+     * if a living cell with n neighbours survives.
+     * @param length length of the table, at least 9.
+     * @return the table.
+     */
+    private byte[] ruleTable(int length){
+        byte[] table = new byte[length];
+        boolean[] born = getCompiledRule().getBorn();
+        boolean[] survives = getCompiledRule().getSurvives();
+        for(int n = 0; n<9; n++)
+            table[n] = (byte) ((born[n] ? 1 : 0) | (survives[n] ? 2 : 0));
+        return table;
+    }
+}